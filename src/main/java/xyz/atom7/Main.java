@@ -1,28 +1,45 @@
 package xyz.atom7;
 
-import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import xyz.atom7.api.interpreter.ExecutionContext;
 import xyz.atom7.api.interpreter.Interpreter;
 import xyz.atom7.api.interpreter.Program;
+import xyz.atom7.api.interpreter.RunBatch;
+import xyz.atom7.api.io.InputChannel;
+import xyz.atom7.api.io.OutputChannel;
+import xyz.atom7.api.parser.ParseResult;
 import xyz.atom7.api.parser.ParserHelper;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.api.parser.semantic.SemanticError;
 import xyz.atom7.api.parser.semantic.SemanticWarning;
 import xyz.atom7.api.tracer.Tracer;
+import xyz.atom7.compiler.ijvm.IJVMJarCompiler;
+import xyz.atom7.interpreter.asm8088.ASM8088BlockProgram;
+import xyz.atom7.interpreter.asm8088.ASM8088Instruction;
+import xyz.atom7.interpreter.asm8088.ASM8088LinkedProgram;
+import xyz.atom7.interpreter.asm8088.ASM8088MachineProgram;
 import xyz.atom7.interpreter.asm8088.ASM8088Program;
+import xyz.atom7.interpreter.ijvm.IJVMImage;
+import xyz.atom7.interpreter.ijvm.IJVMLinkedProgram;
 import xyz.atom7.interpreter.ijvm.IJVMProgram;
+import xyz.atom7.parser.asm8088.ASM8088ParseResult;
 import xyz.atom7.parser.asm8088.ASM8088ParserHelper;
+import xyz.atom7.parser.ijvm.IJVMParseResult;
 import xyz.atom7.parser.ijvm.IJVMParserHelper;
 import xyz.atom7.tracer.asm8088.ASM8088Tracer;
 import xyz.atom7.tracer.ijvm.IJVMTracer;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
-import static xyz.atom7.Utils.debug;
-import static xyz.atom7.Utils.debugln;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * Main application entry point for the IJVM compiler.
@@ -37,6 +54,31 @@ public class Main
     private static final String FLAG_PARSE = "-parse";
     private static final String FLAG_INTERPRET = "-interpret";
     private static final String FLAG_TRACE = "-trace";
+    private static final String FLAG_COMPILE = "-compile";
+    private static final String FLAG_OUT = "-out";
+    private static final String FLAG_CACHE = "-cache";
+    private static final String FLAG_STREAM = "-stream";
+    private static final String FLAG_BATCH = "-batch";
+    private static final String FLAG_INPUT = "-input";
+    private static final String FLAG_OUTPUT = "-output";
+    private static final String FLAG_LIMIT = "-limit";
+    private static final String FLAG_TIMEOUT = "-timeout";
+    private static final String FLAG_ENGINE = "-engine=";
+
+    private static final String ENGINE_INTERPRET = "interpret";
+    private static final String ENGINE_BLOCK = "block";
+    private static final String ENGINE_JIT = "jit";
+    private static final String ENGINE_MACHINE = "machine";
+
+    /**
+     * The exit code of a run stopped by its instruction or time limit, as with timeout(1)
+     */
+    private static final int EXIT_STOPPED = 124;
+
+    /**
+     * Separates the input of a batch line from its expected output
+     */
+    private static final String BATCH_SEPARATOR = "=>";
 
     public static void main(String[] args) throws Exception
     {
@@ -51,18 +93,38 @@ public class Main
         String mode = options.getOrDefault("mode", "");
         String filePath = options.getOrDefault("file", "");
         boolean trace = options.containsKey("trace");
-        Utils.DEBUG = options.containsKey("debug");
+        String engine = options.getOrDefault("engine", ENGINE_INTERPRET);
+        Path cacheDirectory = options.containsKey("cache") ? Paths.get(options.get("cache")) : null;
+        boolean stream = options.containsKey("stream");
+        Path batchFile = options.containsKey("batch") ? Paths.get(options.get("batch")) : null;
 
-        switch (mode) {
-            case "parse":
-                handleParser(lang, filePath);
-                break;
-            case "interpret":
-                handleParser(lang, filePath);
-                handleInterpreter(lang, filePath, trace);
-                break;
-            default:
-                printHelp();
+        try (InputChannel input = options.containsKey("input")
+                     ? InputChannel.open(Paths.get(options.get("input"))) : InputChannel.stdin();
+             OutputChannel output = options.containsKey("output")
+                     ? OutputChannel.create(Paths.get(options.get("output"))) : OutputChannel.stdout())
+        {
+            ExecutionContext context = new ExecutionContext(options.containsKey("debug"), input, output);
+
+            if (options.containsKey("limit")) {
+                context.setInstructionLimit(Long.parseLong(options.get("limit")));
+            }
+            if (options.containsKey("timeout")) {
+                context.setTimeLimit(Duration.ofMillis(Long.parseLong(options.get("timeout"))));
+            }
+
+            switch (mode) {
+                case "parse":
+                    handleParser(lang, filePath, context);
+                    break;
+                case "interpret":
+                    handleInterpreter(lang, filePath, trace, engine, cacheDirectory, stream, batchFile, context);
+                    break;
+                case "compile":
+                    handleCompiler(lang, filePath, options.get("out"), context);
+                    break;
+                default:
+                    printHelp();
+            }
         }
     }
     
@@ -97,14 +159,60 @@ public class Main
                 case FLAG_INTERPRET:
                     options.put("mode", "interpret");
                     break;
+                case FLAG_COMPILE:
+                    options.put("mode", "compile");
+                    break;
                 case FLAG_FILE:
                     if (i + 1 < args.length) {
                         options.put("file", args[++i]);
                     }
                     break;
+                case FLAG_OUT:
+                    if (i + 1 < args.length) {
+                        options.put("out", args[++i]);
+                    }
+                    break;
+                case FLAG_CACHE:
+                    if (i + 1 < args.length) {
+                        options.put("cache", args[++i]);
+                    }
+                    break;
                 case FLAG_TRACE:
                     options.put("trace", "true");
                     break;
+                case FLAG_STREAM:
+                    options.put("stream", "true");
+                    break;
+                case FLAG_BATCH:
+                    if (i + 1 < args.length) {
+                        options.put("batch", args[++i]);
+                    }
+                    break;
+                case FLAG_INPUT:
+                    if (i + 1 < args.length) {
+                        options.put("input", args[++i]);
+                    }
+                    break;
+                case FLAG_OUTPUT:
+                    if (i + 1 < args.length) {
+                        options.put("output", args[++i]);
+                    }
+                    break;
+                case FLAG_LIMIT:
+                    if (i + 1 < args.length) {
+                        options.put("limit", args[++i]);
+                    }
+                    break;
+                case FLAG_TIMEOUT:
+                    if (i + 1 < args.length) {
+                        options.put("timeout", args[++i]);
+                    }
+                    break;
+                default:
+                    if (arg.startsWith(FLAG_ENGINE)) {
+                        options.put("engine", arg.substring(FLAG_ENGINE.length()));
+                    }
+                    break;
             }
         }
         
@@ -119,9 +227,20 @@ public class Main
      */
     private static boolean validateOptions(Map<String, String> options)
     {
-        return options.containsKey("lang") && 
+        String engine = options.getOrDefault("engine", ENGINE_INTERPRET);
+
+        return isCount(options.getOrDefault("limit", "0")) &&
+               isCount(options.getOrDefault("timeout", "0")) &&
+               options.containsKey("lang") && 
                options.containsKey("mode") && 
-               options.containsKey("file");
+               options.containsKey("file") &&
+               (engine.equals(ENGINE_INTERPRET) || engine.equals(ENGINE_BLOCK) || engine.equals(ENGINE_JIT)
+                       || engine.equals(ENGINE_MACHINE));
+    }
+
+    private static boolean isCount(String value)
+    {
+        return value.matches("\\d{1,18}");
     }
 
     /**
@@ -131,15 +250,15 @@ public class Main
      * @param filePath The path to the file to parse
      * @throws Exception If an error occurs
      */
-    private static void handleParser(String lang, String filePath) throws Exception
+    private static void handleParser(String lang, String filePath, ExecutionContext context) throws Exception
     {
         switch (lang) {
             case "ijvm": {
-                parseIJVM(filePath);
+                parseIJVM(filePath, context);
                 break;
             }
             case "8088": {
-                parse8088(filePath);
+                parse8088(filePath, context);
                 break;
             }
             default:
@@ -152,17 +271,50 @@ public class Main
      * 
      * @param lang The language to interpret
      * @param filePath The path to the file to interpret
+     * @param engine The execution engine, "interpret", "block", "jit" or "machine"
+     * @param cacheDirectory The directory of the program cache, or null to load the source without a cache
+     * @param stream Whether to parse 8088 sources a line at a time, without their parse tree
+     * @param batchFile The file of input vectors to run the program against, or null for a single run
+     * @param context The input, output and debug settings of the run
      * @throws Exception If an error occurs
      */
-    private static void handleInterpreter(String lang, String filePath, boolean trace) throws Exception
+    private static void handleInterpreter(String lang, String filePath, boolean trace, String engine,
+                                          Path cacheDirectory, boolean stream, Path batchFile,
+                                          ExecutionContext context) throws Exception
     {
         switch (lang) {
             case "ijvm": {
-                interpretIJVM(filePath, trace);
+                interpretIJVM(filePath, trace, engine, cacheDirectory, batchFile, context);
                 break;
             }
             case "8088": {
-                interpret8088(filePath, trace);
+                interpret8088(filePath, trace, engine, cacheDirectory, stream, batchFile, context);
+                break;
+            }
+            default:
+                printHelp();
+        }
+    }
+
+    /**
+     * Handles the ahead-of-time compiler
+     *
+     * @param lang The language to compile
+     * @param filePath The path to the file to compile
+     * @param outPath The path of the output to write, or null to write it next to the source
+     * @param context The debug settings of the loader
+     * @throws Exception If an error occurs
+     */
+    private static void handleCompiler(String lang, String filePath, String outPath, ExecutionContext context)
+            throws Exception
+    {
+        switch (lang) {
+            case "ijvm": {
+                compileIJVM(filePath, outPath, context);
+                break;
+            }
+            case "8088": {
+                compile8088(filePath, outPath, context);
                 break;
             }
             default:
@@ -178,13 +330,27 @@ public class Main
         System.err.println("Usage: java -jar antlr-impl.jar [options]");
         System.err.println("Options:");
         System.err.println("  -parse, -interpret       Specify the mode");
+        System.err.println("  -compile                 Compile IJVM to a runnable jar, or to a binary image with -out <name>.ijvm;");
+        System.err.println("                           compile 8088 to a machine code image (.bin)");
         System.err.println("  -ijvm, -asm8088          Specify the language");
-        System.err.println("  -file <path>             Path to the source file");
+        System.err.println("  -file <path>             Path to the source file, or to a binary .ijvm or .bin image to interpret");
+        System.err.println("  -out <path>              Path of the compiled output (default: the source file with .jar or .bin)");
+        System.err.println("  -cache <dir>             Cache loaded programs in a directory, so that later runs skip the parser");
+        System.err.println("  -stream                  Parse 8088 sources a line at a time, for very large sources (syntax checks only)");
+        System.err.println("  -batch <path>            Load the program once and run it in parallel against every input vector of a file:");
+        System.err.println("                           one run per line, as <input> or <input> => <expected output>, \\n for a line break");
+        System.err.println("  -input <path>            Read the input of the program from a file instead of the standard input");
+        System.err.println("  -output <path>           Write the output of the program to a file instead of the standard output");
+        System.err.println("  -limit <instructions>    Stop a run after about this many instructions");
+        System.err.println("  -timeout <ms>            Stop a run after this many milliseconds");
+        System.err.println("                           (a stopped run exits with " + EXIT_STOPPED + ", a stopped batch run fails)");
         System.err.println("  -d, -debug               Enable debug mode");
         System.err.println("  -trace                   Enable tracer");
+        System.err.println("  -engine=<name>           Execution engine: interpret (default), block or machine (8088 only), jit (IJVM only)");
     }
 
-    private static void parse(ParserHelper<?> helper, String filePath) throws Exception
+    private static <R extends ParseResult<?>> R parse(ParserHelper<R> helper, String filePath,
+                                                      ExecutionContext context) throws Exception
     {
         var result = helper.parseFile(filePath);
 
@@ -192,107 +358,366 @@ public class Main
         var semanticWarning = result.getSemanticWarnings();
         var semanticError = result.getSemanticErrors();
 
-        debugln("--------------------------------");
-        debug("Parser errors: ");
+        context.debugln("--------------------------------");
+        context.debug("Parser errors: ");
 
-        debugln(parserError.isEmpty() ? "NONE" : "");
+        context.debugln(parserError.isEmpty() ? "NONE" : "");
 
         for (ParserError message : parserError)
-            debugln(message.getFormattedMessage());
+            context.debugln(message.getFormattedMessage());
 
-        debugln("--------------------------------");
-        debug("Semantic warnings: ");
+        context.debugln("--------------------------------");
+        context.debug("Semantic warnings: ");
 
-        debugln(semanticWarning.isEmpty() ? "NONE" : "");
+        context.debugln(semanticWarning.isEmpty() ? "NONE" : "");
 
         for (SemanticWarning message : semanticWarning)
-            debugln(message.getFormattedMessage());
+            context.debugln(message.getFormattedMessage());
 
-        debugln("--------------------------------");
-        debug("Semantic errors: ");
+        context.debugln("--------------------------------");
+        context.debug("Semantic errors: ");
 
-        debugln(semanticError.isEmpty() ? "NONE" : "");
+        context.debugln(semanticError.isEmpty() ? "NONE" : "");
 
         for (SemanticError message : semanticError)
-            debugln(message.getFormattedMessage());
+            context.debugln(message.getFormattedMessage());
+
+        context.debugln("--------------------------------");
 
-        debugln("--------------------------------");
+        return result;
     }
 
     /**
      * Parses an IJVM file
      * 
      * @param filePath The path to the file to parse
+     * @param context The debug settings, for the report of the errors
+     * @return The parse result, shared with the interpreter
      * @throws Exception If an error occurs
      */
-    private static void parseIJVM(String filePath) throws Exception
+    private static IJVMParseResult parseIJVM(String filePath, ExecutionContext context) throws Exception
     {
         IJVMParserHelper helper = new IJVMParserHelper();
-        parse(helper, filePath);
+        return parse(helper, filePath, context);
     }
 
     /**
      * Parses an 8088 file
      * 
      * @param filePath The path to the file to parse
+     * @param context The debug settings, for the report of the errors
+     * @return The parse result, shared with the interpreter
      * @throws Exception If an error occurs
      */
-    private static void parse8088(String filePath) throws Exception
+    private static ASM8088ParseResult parse8088(String filePath, ExecutionContext context) throws Exception
     {
         ASM8088ParserHelper helper = new ASM8088ParserHelper();
-        parse(helper, filePath);
+        return parse(helper, filePath, context);
     }
 
     /**
      * Interprets an IJVM file
      * 
      * @param filePath The path to the file to interpret
+     * @param engine The execution engine, "interpret" or "jit"
+     * @param cacheDirectory The directory of the program cache, or null to load the source without a cache
+     * @param batchFile The file of input vectors to run the program against, or null for a single run
+     * @param context The input, output and debug settings of the run
      * @throws Exception If an error occurs
      */
-    private static void interpretIJVM(String filePath, boolean trace) throws Exception
+    private static void interpretIJVM(String filePath, boolean trace, String engine, Path cacheDirectory,
+                                      Path batchFile, ExecutionContext context) throws Exception
     {
         var program = new IJVMProgram<>();
+        program.setContext(context);
+
+        if (engine.equals(ENGINE_JIT)) {
+            program.setJitThreshold(IJVMProgram.DEFAULT_JIT_THRESHOLD);
+        }
+
         var tracer = new IJVMTracer(program);
 
-        init(program, tracer, filePath, trace);
+        // binary images were checked when they were compiled
+        if (isIJVMImage(filePath)) {
+            program.init(IJVMImage.read(Paths.get(filePath)));
+        }
+        else if (cacheDirectory != null) {
+            program.init(Files.readString(Paths.get(filePath)), IJVMProgram.newCache(1, cacheDirectory));
+        }
+        else {
+            program.init(parseIJVM(filePath, context));
+        }
+
+        if (batchFile != null) {
+            IJVMLinkedProgram image = program.getLinkedProgram();
+
+            // the parser and semantic errors have been printed; the runs share the image, and with it the
+            // methods the JIT compiles, so a method is compiled once for the whole batch
+            if (image != null) {
+                runBatch(() -> {
+                    var run = new IJVMProgram<>();
+                    run.setJitThreshold(program.getJitThreshold());
+                    run.init(image);
+                    return run;
+                }, batchFile, context);
+            }
+            return;
+        }
+
+        run(program, tracer, trace);
+    }
+
+    /**
+     * Compiles an IJVM file to a runnable jar, or to a binary image when the output ends with .ijvm
+     *
+     * @param filePath The path to the file to compile
+     * @param outPath The path of the output, or null to write a jar next to the source
+     * @param context The debug settings of the loader
+     * @throws Exception If an error occurs
+     */
+    private static void compileIJVM(String filePath, String outPath, ExecutionContext context) throws Exception
+    {
+        Path path = Paths.get(filePath);
+        Path out = outPath != null ? Paths.get(outPath) : jarPathFor(path);
+
+        var program = new IJVMProgram<>();
+        program.setContext(context);
+        program.init(String.valueOf(CharStreams.fromPath(path)));
+
+        // the parser and semantic errors have been printed
+        if (program.getLinkedProgram() == null) {
+            return;
+        }
+
+        if (isIJVMImage(out.toString())) {
+            IJVMImage.write(program.getLinkedProgram(), out);
+        }
+        else {
+            new IJVMJarCompiler(program.getLinkedProgram()).writeJar(out);
+        }
+
+        context.getOutput().flush();
+        System.out.println("Compiled " + path + " to " + out);
+    }
+
+    private static boolean isIJVMImage(String filePath)
+    {
+        return filePath.endsWith(IJVMImage.EXTENSION);
+    }
+
+    private static boolean isASM8088Image(String filePath)
+    {
+        return filePath.endsWith(ASM8088MachineProgram.EXTENSION);
+    }
+
+    private static Path jarPathFor(Path source)
+    {
+        return withExtension(source, ".jar");
+    }
+
+    private static Path withExtension(Path source, String extension)
+    {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+
+        return source.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + extension);
     }
 
     /**
      * Interprets an 8088 file
      * 
      * @param filePath The path to the file to interpret
+     * @param engine The execution engine, "interpret", "block" or "machine"; images always run as machine code
+     * @param cacheDirectory The directory of the program cache, or null to load the source without a cache
+     * @param stream Whether to parse the source a line at a time, without its parse tree
+     * @param batchFile The file of input vectors to run the program against, or null for a single run
+     * @param context The input, output and debug settings of the run
      * @throws Exception If an error occurs
      */
-    private static void interpret8088(String filePath, boolean trace) throws Exception
+    private static void interpret8088(String filePath, boolean trace, String engine, Path cacheDirectory,
+                                      boolean stream, Path batchFile, ExecutionContext context) throws Exception
     {
-        var program = new ASM8088Program<>();
-        var tracer = new ASM8088Tracer(program);
+        if (isASM8088Image(filePath)) {
+            byte[] image = Files.readAllBytes(Paths.get(filePath));
 
-        init(program, tracer, filePath, trace);
+            if (batchFile != null) {
+                runBatch(() -> {
+                    var run = new ASM8088MachineProgram<>();
+                    run.init(image);
+                    return run;
+                }, batchFile, context);
+                return;
+            }
+
+            var program = new ASM8088MachineProgram<>();
+            program.setContext(context);
+            program.init(image);
+            run(program, new ASM8088Tracer(program), trace);
+            return;
+        }
+
+        ASM8088Program<ASM8088Instruction> program = new8088Program(engine);
+        program.setContext(context);
+
+        if (batchFile != null) {
+            ASM8088LinkedProgram image;
+
+            if (cacheDirectory != null) {
+                image = ASM8088Program.newCache(1, cacheDirectory).get(Files.readString(Paths.get(filePath)),
+                        source -> program.link(new ASM8088ParserHelper().parseString(source)));
+            }
+            else if (stream) {
+                image = program.link(Paths.get(filePath));
+            }
+            else {
+                image = program.link(parse8088(filePath, context));
+            }
+
+            // the parser and semantic errors have been printed; the runs share the linked image
+            if (image != null) {
+                runBatch(() -> {
+                    ASM8088Program<ASM8088Instruction> run = new8088Program(engine);
+                    run.init(image);
+                    return run;
+                }, batchFile, context);
+            }
+            return;
+        }
+
+        if (cacheDirectory != null) {
+            program.init(Files.readString(Paths.get(filePath)), ASM8088Program.newCache(1, cacheDirectory));
+        }
+        else if (stream) {
+            program.init(Paths.get(filePath));
+        }
+        else {
+            program.init(parse8088(filePath, context));
+        }
+
+        run(program, new ASM8088Tracer(program), trace);
     }
 
     /**
-     * Initializes the interpreter with the given file and tracer
+     * Creates an 8088 program for an execution engine
      *
-     * @param interpreter The interpreter to initialize
-     * @param tracer The tracer to use for debugging
-     * @param filePath The path to the file to interpret
-     * @param trace Whether to enable tracing
+     * @param engine The execution engine, "interpret", "block" or "machine"
+     * @return The program
+     */
+    private static ASM8088Program<ASM8088Instruction> new8088Program(String engine)
+    {
+        switch (engine) {
+            case ENGINE_BLOCK:
+                return new ASM8088BlockProgram<>();
+            case ENGINE_MACHINE:
+                return new ASM8088MachineProgram<>();
+            default:
+                return new ASM8088Program<>();
+        }
+    }
+
+    /**
+     * Assembles an 8088 file to a machine code image
+     *
+     * @param filePath The path to the file to assemble
+     * @param outPath The path of the image, or null to write it next to the source
+     * @param context The debug settings of the loader
      * @throws Exception If an error occurs
      */
-    private static void init(Interpreter<?> interpreter,
-                             Tracer<?, ?, ?> tracer,
-                             String filePath,
-                             boolean trace) throws Exception
+    private static void compile8088(String filePath, String outPath, ExecutionContext context) throws Exception
     {
         Path path = Paths.get(filePath);
-        CharStream chars = CharStreams.fromPath(path);
-        interpreter.init(String.valueOf(chars));
+        Path out = outPath != null ? Paths.get(outPath) : withExtension(path, ASM8088MachineProgram.EXTENSION);
+
+        var program = new ASM8088MachineProgram<>();
+        program.setContext(context);
+        program.init(String.valueOf(CharStreams.fromPath(path)));
+
+        // the parser errors have been printed
+        if (program.getInstructions().isEmpty()) {
+            return;
+        }
+
+        Files.write(out, program.toImage());
+
+        context.getOutput().flush();
+        System.out.println("Compiled " + path + " to " + out);
+    }
+
+    /**
+     * Runs a program loaded once against every input vector of a batch file in parallel, and prints the
+     * result of every run and the throughput of the batch. Exits with 1 if a run failed.
+     *
+     * @param loader Creates an interpreter from the loaded program, once per run
+     * @param batchFile The file of input vectors
+     * @param limits The context whose instruction and time limits apply to every run
+     * @throws IOException If the batch file cannot be read
+     */
+    private static void runBatch(Supplier<? extends Interpreter<?>> loader, Path batchFile, ExecutionContext limits)
+            throws IOException
+    {
+        List<RunBatch.InputVector> vectors = new ArrayList<>();
+
+        for (String line : Files.readAllLines(batchFile))
+        {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            int arrow = line.indexOf(BATCH_SEPARATOR);
+            String input = arrow < 0 ? line : line.substring(0, arrow);
+            String expected = arrow < 0 ? null : line.substring(arrow + BATCH_SEPARATOR.length());
+
+            vectors.add(new RunBatch.InputVector(unescapeLineBreaks(input.strip()),
+                    expected == null ? null : unescapeLineBreaks(expected.strip())));
+        }
+
+        RunBatch batch = RunBatch.runAll(loader, vectors, ForkJoinPool.commonPool(), run -> {
+            run.setInstructionLimit(limits.getInstructionLimit());
+            run.setTimeLimit(limits.getTimeLimit());
+        });
+        List<RunBatch.Run> runs = batch.getRuns();
+
+        for (int i = 0; i < runs.size(); i++) {
+            System.out.println("#" + (i + 1) + " " + runs.get(i));
+        }
+
+        System.out.println(batch);
+
+        if (batch.getFailures() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String unescapeLineBreaks(String text)
+    {
+        return text.replace("\\n", "\n");
+    }
+
+    /**
+     * Runs an initialized interpreter, and exits with the exit code of the program if it exited
+     *
+     * @param interpreter The interpreter to run
+     * @param tracer The tracer to use for debugging
+     * @param trace Whether to enable tracing
+     */
+    private static void run(Interpreter<?> interpreter, Tracer<?, ?, ?> tracer, boolean trace)
+    {
+        ExecutionContext context = interpreter.getContext();
 
         if (trace) {
-            Utils.TRACER = tracer;
+            context.setTracer(tracer);
         }
 
         interpreter.execute();
+
+        if (context.isStopped()) {
+            System.err.println("Program stopped after " + interpreter.getExecutedInstructions() + " instructions: "
+                    + context.getStopReason().name().toLowerCase() + " budget exhausted");
+            System.exit(EXIT_STOPPED);
+        }
+
+        if (context.isExited()) {
+            System.exit(context.getExitCode());
+        }
     }
 }
\ No newline at end of file
@@ -1,13 +1,9 @@
 package xyz.atom7;
 
 import org.jetbrains.annotations.Nullable;
-import xyz.atom7.api.tracer.Tracer;
 
 public class Utils
 {
-    public static boolean DEBUG = false;
-    public static Tracer<?, ?, ?> TRACER;
-
     /**
      * Escapes special characters in strings to display them as literals in error messages
      *
@@ -116,28 +112,4 @@ public class Utils
 
         return value.byteValue();
     }
-
-    /**
-     * Prints a message to the console if debugging is enabled
-     * 
-     * @param message The message to print
-     */
-    public static void debugln(String message)
-    {
-        if (DEBUG) {
-            System.out.println(message);
-        }
-    }
-
-    /**
-     * Prints a message to the console if debugging is enabled
-     * 
-     * @param message The message to print
-     */
-    public static void debug(String message)
-    {
-        if (DEBUG) {
-            System.out.print(message);
-        }
-    }
 }
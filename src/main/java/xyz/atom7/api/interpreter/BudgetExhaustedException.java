@@ -0,0 +1,46 @@
+package xyz.atom7.api.interpreter;
+
+import lombok.Getter;
+
+/**
+ * Thrown at a safepoint of a program that has used up its budget or has been cancelled, to unwind it to its
+ * run loop. Why the run was stopped is kept in the {@link ExecutionContext} of the run.
+ */
+@Getter
+public class BudgetExhaustedException extends RuntimeException
+{
+    /**
+     * Why a run was stopped
+     */
+    public enum Reason
+    {
+        /**
+         * The run executed as many instructions as it was allowed to
+         */
+        INSTRUCTIONS,
+
+        /**
+         * The run took as long as it was allowed to
+         */
+        TIME,
+
+        /**
+         * The cancellation token of the run was cancelled
+         */
+        CANCELLED
+    }
+
+    private final Reason reason;
+
+    /**
+     * Constructor for BudgetExhaustedException
+     *
+     * @param reason Why the run was stopped
+     */
+    public BudgetExhaustedException(Reason reason)
+    {
+        // thrown on every stopped run, so it is cheap to make
+        super("Program stopped: " + reason.name().toLowerCase(), null, false, false);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,27 @@
+package xyz.atom7.api.interpreter;
+
+/**
+ * Stops the runs it is given to, from any thread. A run notices the cancellation at its next safepoint,
+ * a taken branch or a call, and ends with {@link BudgetExhaustedException.Reason#CANCELLED}.
+ * A token can be shared by several runs, to cancel them all at once.
+ */
+public class CancellationToken
+{
+    private volatile boolean cancelled;
+
+    /**
+     * Cancel the runs of this token
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the token has been cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
@@ -0,0 +1,262 @@
+package xyz.atom7.api.interpreter;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.api.io.InputChannel;
+import xyz.atom7.api.io.OutputChannel;
+import xyz.atom7.api.tracer.Tracer;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * The environment of a program run: whether debug output is printed, where the program reads its input
+ * from and writes its output to, the tracer, and how the program exited. Every interpreter has its own
+ * context, so that programs running on different threads do not share any state.
+ */
+@Getter
+public class ExecutionContext
+{
+    private final boolean debug;
+    private final InputChannel input;
+
+    /**
+     * The output of the program, which debug output and traces are written to as well; it is buffered,
+     * and flushed at the end of every run and before a read that may block
+     */
+    private final OutputChannel output;
+
+    /**
+     * The tracer that displays the state of the program after every instruction, or null
+     */
+    @Setter
+    @Nullable
+    private Tracer<?, ?, ?> tracer;
+
+    /**
+     * Whether the interpreter reports the end of the program on the output, like the IJVM output recap and
+     * the 8088 exit code; turned off when only what the program itself writes is wanted
+     */
+    @Setter
+    private boolean reportExit = true;
+
+    /**
+     * The number of instructions a run may execute, or 0 for no limit; checked at safepoints, so a run may
+     * go slightly past it before it is stopped
+     */
+    @Setter
+    private long instructionLimit;
+
+    /**
+     * The wall-clock time a run may take, or null for no limit; checked at safepoints
+     */
+    @Setter
+    @Nullable
+    private Duration timeLimit;
+
+    /**
+     * The token that stops the run when it is cancelled, from any thread, or null
+     */
+    @Setter
+    @Nullable
+    private CancellationToken cancellationToken;
+
+    /**
+     * Why the last run was stopped before it ended, or null if it was not
+     */
+    @Nullable
+    private BudgetExhaustedException.Reason stopReason;
+
+    /**
+     * The {@link System#nanoTime()} at which the current run runs out of time
+     */
+    @Getter(AccessLevel.NONE)
+    private long deadline;
+
+    /**
+     * Whether the program ended by exiting, rather than by running past its last instruction
+     */
+    private boolean exited;
+
+    /**
+     * The exit code of the program, 0 unless it exited with another code
+     */
+    private int exitCode;
+
+    /**
+     * Constructor for a context reading the standard input and writing the standard output, without debug output
+     */
+    public ExecutionContext()
+    {
+        this(false, InputChannel.stdin(), OutputChannel.stdout());
+    }
+
+    /**
+     * Constructor for ExecutionContext over streams, which are buffered by the context
+     *
+     * @param debug Whether debug output is printed
+     * @param input The input of the program
+     * @param output The output of the program, which debug output and traces are printed to as well
+     */
+    public ExecutionContext(boolean debug, @NotNull InputStream input, @NotNull OutputStream output)
+    {
+        this(debug, InputChannel.of(input), OutputChannel.of(output));
+    }
+
+    /**
+     * Constructor for ExecutionContext
+     *
+     * @param debug Whether debug output is printed
+     * @param input The input of the program
+     * @param output The output of the program, which debug output and traces are printed to as well
+     */
+    public ExecutionContext(boolean debug, @NotNull InputChannel input, @NotNull OutputChannel output)
+    {
+        this.debug = debug;
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Check whether a tracer is set
+     *
+     * @return True if the program is traced
+     */
+    public boolean isTraced()
+    {
+        return tracer != null;
+    }
+
+    /**
+     * Read a character the way a user types it: the first character of the next non-empty line of input.
+     * The output is flushed first if the read may block, so that a prompt is shown before the program waits.
+     * A run cancelled while it waited for input is stopped as soon as the read returns.
+     *
+     * @return The character, or -1 at the end of the input
+     * @throws BudgetExhaustedException If the run was cancelled
+     */
+    public int readChar()
+    {
+        if (input.available() == 0) {
+            output.flush();
+        }
+
+        String line;
+
+        do {
+            line = input.readLine();
+        } while (line != null && line.isEmpty());
+
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            throw stop(BudgetExhaustedException.Reason.CANCELLED);
+        }
+
+        return line == null ? -1 : line.charAt(0);
+    }
+
+    /**
+     * Clear the exit of a previous run, and start the clock of the time limit
+     */
+    public void reset()
+    {
+        exited = false;
+        exitCode = 0;
+        stopReason = null;
+        deadline = timeLimit != null ? System.nanoTime() + timeLimit.toNanos() : 0;
+    }
+
+    /**
+     * Check whether the last run was stopped before it ended
+     *
+     * @return True if the run used up its budget or was cancelled
+     */
+    public boolean isStopped()
+    {
+        return stopReason != null;
+    }
+
+    /**
+     * Stop the run if it has been cancelled or has used up its budget; called by the interpreters at their
+     * safepoints
+     *
+     * @param executedInstructions The number of instructions the run has executed so far
+     * @throws BudgetExhaustedException If the run has to stop
+     */
+    public void checkBudget(long executedInstructions)
+    {
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            throw stop(BudgetExhaustedException.Reason.CANCELLED);
+        }
+
+        if (instructionLimit > 0 && executedInstructions >= instructionLimit) {
+            throw stop(BudgetExhaustedException.Reason.INSTRUCTIONS);
+        }
+
+        if (timeLimit != null && System.nanoTime() - deadline >= 0) {
+            throw stop(BudgetExhaustedException.Reason.TIME);
+        }
+    }
+
+    private BudgetExhaustedException stop(BudgetExhaustedException.Reason reason)
+    {
+        stopReason = reason;
+        return new BudgetExhaustedException(reason);
+    }
+
+    /**
+     * End the run with an exit code
+     *
+     * @param code The exit code
+     * @return Never returns normally; the exception is returned so that callers can throw it
+     * @throws ProgramExitException Always, to unwind the program to its run loop
+     */
+    public ProgramExitException exit(int code)
+    {
+        exited = true;
+        exitCode = code;
+
+        throw new ProgramExitException(code);
+    }
+
+    /**
+     * Prints a lazily built message if debugging is enabled.
+     * The supplier is only invoked when debugging is on, so disabled logging builds no strings.
+     *
+     * @param message The supplier of the message to print
+     */
+    public void debugln(Supplier<String> message)
+    {
+        if (debug) {
+            output.println(message.get());
+        }
+    }
+
+    /**
+     * Prints a message if debugging is enabled
+     *
+     * @param message The message to print
+     */
+    public void debugln(String message)
+    {
+        if (debug) {
+            output.println(message);
+        }
+    }
+
+    /**
+     * Prints a message without a line break if debugging is enabled
+     *
+     * @param message The message to print
+     */
+    public void debug(String message)
+    {
+        if (debug) {
+            output.print(message);
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package xyz.atom7.api.interpreter;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Abstract class for interpreters that handle a specific type of instruction.
+ * The interpreter keeps no global state: its input, output, debug output, tracer and exit code live in its
+ * {@link ExecutionContext}, so any number of interpreters can run at once, each on its own thread.
  * 
  * @param <T> The type of instruction handled by the interpreter
  */
@@ -23,12 +27,30 @@ public abstract class Interpreter<T extends Instruction> implements Program
     @Setter
     protected int pc;
 
-    protected final Scanner scanner;
     protected Semaphore running;
 
+    /**
+     * The environment of the runs of the interpreter; set it before the program is initialized for the debug
+     * output of the loader to go to it too
+     */
+    @Setter
+    @NotNull
+    protected ExecutionContext context;
+
+    /**
+     * The number of instructions retired since the interpreter was created.
+     */
+    protected long executedInstructions;
+
+    /**
+     * The number of instructions retired before the current run, which its instruction limit does not count
+     */
+    @Getter(AccessLevel.NONE)
+    private long runStart;
+
     public Interpreter()
     {
-        scanner = new Scanner(System.in);
+        context = new ExecutionContext();
         instructionHandlers = new HashMap<>();
         running = new Semaphore(0);
         pc = 0;
@@ -68,6 +90,87 @@ public abstract class Interpreter<T extends Instruction> implements Program
      */
     protected abstract void initInstructions();
 
+    /**
+     * Executes the program until it runs past its last instruction or exits. An exit ends the run, not the JVM:
+     * its code is kept in the {@link ExecutionContext}. A run that uses up its budget or is cancelled is
+     * stopped at its next safepoint, and the context tells why. The output of the run is flushed when it ends.
+     */
+    @Override
+    public void execute()
+    {
+        context.reset();
+        runStart = executedInstructions;
+
+        try {
+            executeProgram();
+        }
+        catch (ProgramExitException | BudgetExhaustedException e) {
+            // the exit code or the reason of the stop is recorded in the context
+        }
+        finally {
+            context.getOutput().flush();
+        }
+    }
+
+    /**
+     * Executes the program; an instruction that ends it throws {@link ProgramExitException} through
+     * {@link #exit(int)}.
+     */
+    protected abstract void executeProgram();
+
+    /**
+     * A point where the run may be stopped: the interpreters call it on taken branches and calls, so that
+     * every loop and every recursion passes through one
+     *
+     * @throws BudgetExhaustedException If the run has used up its budget or has been cancelled
+     */
+    protected void safepoint()
+    {
+        context.checkBudget(executedInstructions - runStart);
+    }
+
+    /**
+     * Ends the run of the program
+     *
+     * @param code The exit code
+     * @throws ProgramExitException Always
+     */
+    protected void exit(int code)
+    {
+        throw context.exit(code);
+    }
+
+    /**
+     * Checks if debugging is enabled for this interpreter; guard any debug-only work that a message supplier
+     * cannot cover
+     *
+     * @return True if debugging is enabled, false otherwise
+     */
+    public boolean isDebug()
+    {
+        return context.isDebug();
+    }
+
+    /**
+     * Prints a lazily built message to the output of the interpreter if debugging is enabled
+     *
+     * @param message The supplier of the message to print
+     */
+    protected void debugln(Supplier<String> message)
+    {
+        context.debugln(message);
+    }
+
+    /**
+     * Prints a message to the output of the interpreter if debugging is enabled
+     *
+     * @param message The message to print
+     */
+    protected void debugln(String message)
+    {
+        context.debugln(message);
+    }
+
     /**
      * Interprets an instruction.
      * 
@@ -0,0 +1,264 @@
+package xyz.atom7.api.interpreter;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A content-addressed cache of loaded programs, so that running the same source again skips the parser,
+ * the semantic analysis and the instruction building.
+ * <p>
+ * Programs are keyed by the SHA-256 hash of their source and kept in memory, evicting the least recently
+ * used one once the cache is full. With a directory and a codec the cache also persists programs to disk,
+ * one file per hash, so that later processes find them too. Cached programs are shared by every
+ * interpreter loaded from them, so they must not be changed by running them.
+ *
+ * @param <V> The type of the loaded programs
+ */
+public final class ProgramCache<V>
+{
+    /**
+     * Converts programs to and from the bytes stored on disk
+     *
+     * @param <V> The type of the programs
+     */
+    public interface Codec<V>
+    {
+        /**
+         * Encode a program
+         *
+         * @param program The program
+         * @return The encoded program
+         */
+        byte[] encode(V program);
+
+        /**
+         * Decode a program
+         *
+         * @param bytes The encoded program
+         * @return The program
+         * @throws IllegalArgumentException If the bytes are not a valid encoding
+         */
+        V decode(byte[] bytes);
+    }
+
+    private final int capacity;
+
+    @Nullable
+    private final Path directory;
+
+    @Nullable
+    private final Codec<V> codec;
+
+    /**
+     * The file extension of the cached files
+     */
+    private final String extension;
+
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits, misses;
+
+    /**
+     * Constructor for an in-memory cache
+     *
+     * @param capacity The number of programs kept in memory
+     */
+    public ProgramCache(int capacity)
+    {
+        this(capacity, null, null, "");
+    }
+
+    /**
+     * Constructor for a cache persisted to a directory
+     *
+     * @param capacity The number of programs kept in memory
+     * @param directory The directory holding the cached files, created if needed; null to only cache in memory
+     * @param codec The encoding of the cached files
+     * @param extension The file extension of the cached files
+     */
+    public ProgramCache(int capacity, @Nullable Path directory, @Nullable Codec<V> codec, @NotNull String extension)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.directory = codec != null ? directory : null;
+        this.codec = codec;
+        this.extension = extension;
+    }
+
+    /**
+     * Compute the key of a source
+     *
+     * @param source The source of a program
+     * @return The SHA-256 hash of the source, in hexadecimal
+     */
+    public static String key(@NotNull String source)
+    {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the program loaded from a source, loading it on a miss.
+     * The loader runs without holding the cache, so loads of different sources run in parallel; a program
+     * that fails to load, for which the loader returns null, is not cached.
+     *
+     * @param source The source of the program
+     * @param loader Loads the program from its source, returning null if it has errors
+     * @return The program, or null if it failed to load
+     */
+    @Nullable
+    public V get(@NotNull String source, @NotNull Function<String, V> loader)
+    {
+        String key = key(source);
+        V program;
+
+        synchronized (this) {
+            program = entries.get(key);
+
+            if (program != null) {
+                hits++;
+                return program;
+            }
+
+            misses++;
+        }
+
+        program = read(key);
+
+        if (program == null) {
+            program = loader.apply(source);
+
+            if (program == null) {
+                return null;
+            }
+
+            write(key, program);
+        }
+
+        put(key, program);
+        return program;
+    }
+
+    private synchronized void put(String key, V program)
+    {
+        entries.put(key, program);
+
+        if (entries.size() > capacity) {
+            Map.Entry<String, V> eldest = entries.entrySet().iterator().next();
+            entries.remove(eldest.getKey());
+        }
+    }
+
+    /**
+     * Read a program from the cache directory
+     *
+     * @return The program, or null if it is not cached on disk or its file is unreadable or corrupt
+     */
+    @Nullable
+    private V read(String key)
+    {
+        if (directory == null) {
+            return null;
+        }
+
+        Path file = directory.resolve(key + extension);
+
+        try {
+            return Files.isRegularFile(file) ? codec.decode(Files.readAllBytes(file)) : null;
+        }
+        catch (IOException | IllegalArgumentException e) {
+            // the program is loaded from its source again and the file overwritten
+            return null;
+        }
+    }
+
+    /**
+     * Write a program to the cache directory, through a temporary file so that readers never see it half
+     * written; a cache that cannot be written only costs the next process a load
+     */
+    private void write(String key, V program)
+    {
+        if (directory == null) {
+            return;
+        }
+
+        Path temporary = null;
+
+        try {
+            Files.createDirectories(directory);
+
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, codec.encode(program));
+            Files.move(temporary, directory.resolve(key + extension),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            // the program stays cached in memory
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+            catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Drop every program kept in memory; the files on disk are kept
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of programs kept in memory
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups answered from memory
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that had to read the disk or load the source
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,25 @@
+package xyz.atom7.api.interpreter;
+
+import lombok.Getter;
+
+/**
+ * Thrown by an instruction that ends the program, such as IJVM HALT or 8088 SYS EXIT, to unwind the program to
+ * its run loop instead of exiting the JVM. The exit code is kept in the {@link ExecutionContext} of the run.
+ */
+@Getter
+public class ProgramExitException extends RuntimeException
+{
+    private final int exitCode;
+
+    /**
+     * Constructor for ProgramExitException
+     *
+     * @param exitCode The exit code of the program
+     */
+    public ProgramExitException(int exitCode)
+    {
+        // thrown on every normal exit, so it is cheap to make
+        super("Program exited with code: " + exitCode, null, false, false);
+        this.exitCode = exitCode;
+    }
+}
@@ -0,0 +1,228 @@
+package xyz.atom7.api.interpreter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.api.io.InputChannel;
+import xyz.atom7.api.io.MemoryOutputChannel;
+import xyz.atom7.api.io.OutputChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The runs of one program against a batch of input vectors, in the order of the vectors, with the throughput
+ * of the batch.
+ * <p>
+ * {@link #runAll(Supplier, List, ForkJoinPool)} loads the program once, into an image shared by every run,
+ * and gives each run its own interpreter initialized from the image, with fresh frames or registers and
+ * its own {@link ExecutionContext}, so that the runs can go in parallel.
+ */
+@Getter
+@AllArgsConstructor
+public class RunBatch
+{
+    private final List<Run> runs;
+
+    /**
+     * The wall-clock time the batch took, in nanoseconds
+     */
+    private final long elapsedNanos;
+
+    /**
+     * The input of a run and the output it should produce
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class InputVector
+    {
+        /**
+         * The text the program reads
+         */
+        @NotNull
+        private final String input;
+
+        /**
+         * The text the program should write, compared without leading and trailing whitespace, or null to
+         * only check that the run does not fail
+         */
+        @Nullable
+        private final String expectedOutput;
+    }
+
+    /**
+     * The result of a run
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Run
+    {
+        private final InputVector vector;
+
+        /**
+         * What the program wrote, without the report of its exit
+         */
+        private final String output;
+
+        private final boolean exited;
+        private final int exitCode;
+        private final long executedInstructions;
+        private final long elapsedNanos;
+
+        /**
+         * Why the run was stopped before it ended, or null if it was not
+         */
+        @Nullable
+        private final BudgetExhaustedException.Reason stopReason;
+
+        /**
+         * The message of the exception that stopped the run, or null if it ended normally
+         */
+        @Nullable
+        private final String error;
+
+        /**
+         * @return True if the run ended normally, within its budget, and wrote the expected output, if any
+         */
+        public boolean isPassed()
+        {
+            String expected = vector.getExpectedOutput();
+            return error == null && stopReason == null
+                    && (expected == null || output.strip().equals(expected.strip()));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s exit=%s, %d instructions, %.3f ms, output=\"%s\"%s%s",
+                    isPassed() ? "PASS" : "FAIL", exited ? String.valueOf(exitCode) : "none",
+                    executedInstructions, elapsedNanos / 1e6, output.strip(),
+                    stopReason != null ? ", stopped: " + stopReason.name().toLowerCase() : "",
+                    error != null ? ", error: " + error : "");
+        }
+    }
+
+    /**
+     * Run a program against a batch of input vectors in parallel on a work-stealing pool.
+     * The loader is called once per run, on the thread of the run; it should initialize a new interpreter from
+     * an image loaded beforehand, such as a linked program, so that nothing is parsed again.
+     *
+     * @param loader Creates an interpreter with the program loaded
+     * @param vectors The input vectors
+     * @param pool The pool that runs the program
+     * @return The runs, in the order of the vectors, and the throughput of the batch
+     */
+    public static RunBatch runAll(Supplier<? extends Interpreter<?>> loader, List<InputVector> vectors,
+                                  ForkJoinPool pool)
+    {
+        return runAll(loader, vectors, pool, context -> {});
+    }
+
+    /**
+     * Run a program against a batch of input vectors in parallel on a work-stealing pool, with every run
+     * set up the same way, such as with an instruction or time limit so that no run holds a thread of the
+     * pool forever.
+     *
+     * @param loader Creates an interpreter with the program loaded
+     * @param vectors The input vectors
+     * @param pool The pool that runs the program
+     * @param setup Sets up the context of every run
+     * @return The runs, in the order of the vectors, and the throughput of the batch
+     */
+    public static RunBatch runAll(Supplier<? extends Interpreter<?>> loader, List<InputVector> vectors,
+                                  ForkJoinPool pool, Consumer<ExecutionContext> setup)
+    {
+        List<InputVector> inputs = new ArrayList<>(vectors);
+        long start = System.nanoTime();
+
+        try {
+            List<Run> runs = pool.submit(() -> inputs.parallelStream()
+                    .map(vector -> run(loader, vector, setup))
+                    .collect(Collectors.toList())).get();
+
+            return new RunBatch(runs, System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the batch", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Run run(Supplier<? extends Interpreter<?>> loader, InputVector vector,
+                           Consumer<ExecutionContext> setup)
+    {
+        MemoryOutputChannel output = OutputChannel.memory();
+        ExecutionContext context = new ExecutionContext(false, InputChannel.of(vector.getInput()), output);
+        context.setReportExit(false);
+        setup.accept(context);
+
+        long start = System.nanoTime();
+        Interpreter<?> interpreter = null;
+        String error = null;
+
+        try {
+            interpreter = loader.get();
+            interpreter.setContext(context);
+            interpreter.execute();
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        return new Run(vector, output.toString(), context.isExited(), context.getExitCode(),
+                interpreter != null ? interpreter.getExecutedInstructions() : 0, elapsed, context.getStopReason(),
+                error);
+    }
+
+    /**
+     * @return The number of runs per second
+     */
+    public double getRunsPerSecond()
+    {
+        return runs.size() / seconds();
+    }
+
+    /**
+     * @return The number of instructions executed per second, by all the runs together
+     */
+    public double getInstructionsPerSecond()
+    {
+        return runs.stream().mapToLong(Run::getExecutedInstructions).sum() / seconds();
+    }
+
+    /**
+     * @return The number of runs that failed, were stopped or wrote an unexpected output
+     */
+    public long getFailures()
+    {
+        return runs.stream().filter(run -> !run.isPassed()).count();
+    }
+
+    private double seconds()
+    {
+        return Math.max(elapsedNanos, 1) / 1e9;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d runs (%d failed), %.1f runs/s, %.0f instructions/s",
+                runs.size(), getFailures(), getRunsPerSecond(), getInstructionsPerSecond());
+    }
+}
@@ -0,0 +1,151 @@
+package xyz.atom7.api.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An input channel reading a stream a block at a time
+ */
+public class BufferedInputChannel implements InputChannel
+{
+    /**
+     * The number of bytes read from the stream at a time
+     */
+    public static final int BUFFER_SIZE = 8192;
+
+    private final InputStream input;
+    private final boolean closeInput;
+    private final byte[] buffer;
+
+    private int position;
+    private int limit;
+
+    /**
+     * The bytes of the line being read, reused from line to line
+     */
+    private byte[] line = new byte[128];
+
+    /**
+     * Constructor for BufferedInputChannel
+     *
+     * @param input The stream
+     * @param closeInput Whether closing the channel closes the stream
+     */
+    public BufferedInputChannel(InputStream input, boolean closeInput)
+    {
+        this(input, closeInput, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for BufferedInputChannel
+     *
+     * @param input The stream
+     * @param closeInput Whether closing the channel closes the stream
+     * @param bufferSize The number of bytes read from the stream at a time
+     */
+    public BufferedInputChannel(InputStream input, boolean closeInput, int bufferSize)
+    {
+        this.input = input;
+        this.closeInput = closeInput;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Read the next block of the stream if the buffer has been consumed
+     *
+     * @return False at the end of the stream
+     */
+    private boolean fill()
+    {
+        if (position < limit) {
+            return true;
+        }
+
+        try {
+            int read = input.read(buffer, 0, buffer.length);
+
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int read()
+    {
+        return fill() ? buffer[position++] & 0xFF : -1;
+    }
+
+    @Nullable
+    @Override
+    public String readLine()
+    {
+        int length = 0;
+        boolean read = false;
+
+        while (fill())
+        {
+            read = true;
+
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+
+            int chunk = end - position;
+            if (length + chunk > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+            }
+
+            System.arraycopy(buffer, position, line, length, chunk);
+            length += chunk;
+
+            if (end < limit) {
+                position = end + 1;
+                return decode(length);
+            }
+
+            position = limit;
+        }
+
+        return read ? decode(length) : null;
+    }
+
+    private String decode(int length)
+    {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int available()
+    {
+        return limit - position;
+    }
+
+    @Override
+    public void close()
+    {
+        if (!closeInput) {
+            return;
+        }
+
+        try {
+            input.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
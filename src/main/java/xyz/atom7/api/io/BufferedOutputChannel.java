@@ -0,0 +1,122 @@
+package xyz.atom7.api.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * An output channel writing to a stream a block at a time
+ */
+public class BufferedOutputChannel implements OutputChannel
+{
+    /**
+     * The number of bytes written to the stream at a time
+     */
+    public static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream output;
+    private final boolean closeOutput;
+    private final byte[] buffer;
+
+    private int count;
+
+    /**
+     * Constructor for BufferedOutputChannel
+     *
+     * @param output The stream
+     * @param closeOutput Whether closing the channel closes the stream
+     */
+    public BufferedOutputChannel(OutputStream output, boolean closeOutput)
+    {
+        this(output, closeOutput, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for BufferedOutputChannel
+     *
+     * @param output The stream
+     * @param closeOutput Whether closing the channel closes the stream
+     * @param bufferSize The number of bytes written to the stream at a time
+     */
+    public BufferedOutputChannel(OutputStream output, boolean closeOutput, int bufferSize)
+    {
+        this.output = output;
+        this.closeOutput = closeOutput;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int value)
+    {
+        if (count == buffer.length) {
+            drain();
+        }
+
+        buffer[count++] = (byte) value;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        if (length > buffer.length - count) {
+            drain();
+
+            // too large to buffer, it goes to the stream as it is
+            if (length > buffer.length) {
+                writeToStream(bytes, offset, length);
+                return;
+            }
+        }
+
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    private void drain()
+    {
+        if (count > 0) {
+            writeToStream(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeToStream(byte[] bytes, int offset, int length)
+    {
+        try {
+            output.write(bytes, offset, length);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        drain();
+
+        try {
+            output.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+
+        if (!closeOutput) {
+            return;
+        }
+
+        try {
+            output.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.atom7.api.io;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The byte-oriented input of a program run, read ahead in blocks rather than a character at a time.
+ * Read errors are thrown as {@link java.io.UncheckedIOException}, since they surface inside instruction handlers.
+ */
+public interface InputChannel extends Closeable
+{
+    /**
+     * Read a byte
+     *
+     * @return The byte, from 0 to 255, or -1 at the end of the input
+     */
+    int read();
+
+    /**
+     * Read a line, without its line terminator, decoded as UTF-8
+     *
+     * @return The line, or null at the end of the input
+     */
+    @Nullable
+    String readLine();
+
+    /**
+     * Get the number of bytes that can be read without blocking
+     *
+     * @return The number of bytes already buffered
+     */
+    int available();
+
+    @Override
+    void close();
+
+    /**
+     * Create a buffered channel reading a stream; closing the channel closes the stream
+     *
+     * @param input The stream
+     * @return The channel
+     */
+    static InputChannel of(InputStream input)
+    {
+        return new BufferedInputChannel(input, true);
+    }
+
+    /**
+     * Create a channel reading text held in memory
+     *
+     * @param text The text, encoded as UTF-8
+     * @return The channel
+     */
+    static InputChannel of(String text)
+    {
+        return of(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Open a buffered channel reading a file
+     *
+     * @param path The file
+     * @return The channel
+     * @throws IOException If the file cannot be opened
+     */
+    static InputChannel open(Path path) throws IOException
+    {
+        return of(Files.newInputStream(path));
+    }
+
+    /**
+     * Create a buffered channel reading the standard input; closing the channel leaves the standard input open
+     *
+     * @return The channel
+     */
+    static InputChannel stdin()
+    {
+        return new BufferedInputChannel(System.in, false);
+    }
+}
@@ -0,0 +1,78 @@
+package xyz.atom7.api.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An output channel that keeps what is written in memory, to capture the output of a run
+ */
+public class MemoryOutputChannel implements OutputChannel
+{
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    @Override
+    public void write(int value)
+    {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) value;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length)
+    {
+        ensureCapacity(size + length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, capacity));
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * @return The number of bytes written
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return A copy of the bytes written
+     */
+    public byte[] toByteArray()
+    {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * Discard what has been written
+     */
+    public void reset()
+    {
+        size = 0;
+    }
+
+    /**
+     * @return What has been written, decoded as UTF-8
+     */
+    @Override
+    public String toString()
+    {
+        return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+}
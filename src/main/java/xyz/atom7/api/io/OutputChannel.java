@@ -0,0 +1,144 @@
+package xyz.atom7.api.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The byte-oriented output of a program run, written through in blocks rather than a character at a time.
+ * Text is encoded as UTF-8. Write errors are thrown as {@link java.io.UncheckedIOException}, since they
+ * surface inside instruction handlers.
+ */
+public interface OutputChannel extends Flushable, Closeable
+{
+    /**
+     * Write a byte
+     *
+     * @param value The byte, in the low 8 bits
+     */
+    void write(int value);
+
+    /**
+     * Write bytes
+     *
+     * @param bytes The bytes
+     * @param offset The index of the first byte to write
+     * @param length The number of bytes to write
+     */
+    void write(byte[] bytes, int offset, int length);
+
+    /**
+     * Write what has been buffered to where the channel goes
+     */
+    @Override
+    void flush();
+
+    /**
+     * Flush the channel and release what it writes to
+     */
+    @Override
+    void close();
+
+    /**
+     * Write a character
+     *
+     * @param value The character
+     */
+    default void print(char value)
+    {
+        if (value < 0x80) {
+            write(value);
+        }
+        else {
+            print(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Write text
+     *
+     * @param text The text
+     */
+    default void print(String text)
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write text and a line separator
+     *
+     * @param text The text
+     */
+    default void println(String text)
+    {
+        print(text);
+        println();
+    }
+
+    /**
+     * Write a line separator
+     */
+    default void println()
+    {
+        print(System.lineSeparator());
+    }
+
+    /**
+     * Write formatted text
+     *
+     * @param format The format, as in {@link String#format(String, Object...)}
+     * @param args The arguments of the format
+     */
+    default void printf(String format, Object... args)
+    {
+        print(String.format(format, args));
+    }
+
+    /**
+     * Create a buffered channel writing to a stream; closing the channel closes the stream
+     *
+     * @param output The stream
+     * @return The channel
+     */
+    static OutputChannel of(OutputStream output)
+    {
+        return new BufferedOutputChannel(output, true);
+    }
+
+    /**
+     * Create a buffered channel writing to a file, replacing its contents
+     *
+     * @param path The file
+     * @return The channel
+     * @throws IOException If the file cannot be created
+     */
+    static OutputChannel create(Path path) throws IOException
+    {
+        return of(Files.newOutputStream(path));
+    }
+
+    /**
+     * Create a buffered channel writing to the standard output; closing the channel only flushes it
+     *
+     * @return The channel
+     */
+    static OutputChannel stdout()
+    {
+        return new BufferedOutputChannel(System.out, false);
+    }
+
+    /**
+     * Create a channel that keeps what is written in memory
+     *
+     * @return The channel
+     */
+    static MemoryOutputChannel memory()
+    {
+        return new MemoryOutputChannel();
+    }
+}
@@ -0,0 +1,65 @@
+package xyz.atom7.api.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The results of parsing a batch of source files, in the order of the files, with the throughput of the
+ * batch.
+ *
+ * @param <T> The type of the parse results
+ */
+@Getter
+@AllArgsConstructor
+public class ParseBatch<T extends ParseResult<?>>
+{
+    private final List<T> results;
+
+    /**
+     * The total size of the files, in bytes
+     */
+    private final long bytes;
+
+    /**
+     * The wall-clock time the batch took, in nanoseconds
+     */
+    private final long elapsedNanos;
+
+    /**
+     * @return The number of files parsed per second
+     */
+    public double getFilesPerSecond()
+    {
+        return results.size() / seconds();
+    }
+
+    /**
+     * @return The number of megabytes (10^6 bytes) parsed per second
+     */
+    public double getMegabytesPerSecond()
+    {
+        return bytes / 1e6 / seconds();
+    }
+
+    /**
+     * @return The number of results with parser or semantic errors
+     */
+    public long getFailures()
+    {
+        return results.stream().filter(ParseResult::hasErrors).count();
+    }
+
+    private double seconds()
+    {
+        return Math.max(elapsedNanos, 1) / 1e9;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d files (%d failed), %.1f files/s, %.2f MB/s",
+                results.size(), getFailures(), getFilesPerSecond(), getMegabytesPerSecond());
+    }
+}
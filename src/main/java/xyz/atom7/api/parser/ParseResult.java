@@ -3,6 +3,7 @@ package xyz.atom7.api.parser;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.antlr.v4.runtime.ParserRuleContext;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.api.parser.semantic.SemanticError;
 import xyz.atom7.api.parser.semantic.SemanticWarning;
@@ -13,6 +14,11 @@ import java.util.List;
 @AllArgsConstructor
 public class ParseResult<T extends ParserRuleContext>
 {
+    /**
+     * The parse tree, only kept when the parser helper is asked to keep it; the interpreters load programs
+     * from the compact representation of the language instead
+     */
+    @Nullable
     private final T programContext;
     private final List<ParserError> parserErrors;
     private final List<SemanticError> semanticErrors;
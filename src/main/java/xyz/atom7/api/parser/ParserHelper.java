@@ -1,13 +1,45 @@
 package xyz.atom7.api.parser;
 
+import lombok.Getter;
+import lombok.Setter;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import xyz.atom7.api.parser.error.ParserErrorListener;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public abstract class ParserHelper<T extends ParseResult<?>>
 {
+    /**
+     * Whether the results keep their parse tree; by default only the compact representation of the
+     * program is kept, and the tree is dropped once it has been analysed
+     */
+    @Getter
+    @Setter
+    private boolean keepTree;
+
     /**
      * Parse an IJVM source file
      *
@@ -25,7 +57,7 @@ public abstract class ParserHelper<T extends ParseResult<?>>
      * Parse an IJVM string with custom error formatting.
      *
      * @param code IJVM code string to parse
-     * @return The parsed program result containing the tree and any errors
+     * @return The parsed program result containing the compact program and any errors
      */
     public T parseString(String code)
     {
@@ -34,10 +66,125 @@ public abstract class ParserHelper<T extends ParseResult<?>>
     }
 
     /**
-     * Parse an IJVM code from a CharStream.
+     * Parse and analyze a batch of source files in parallel on the common fork-join pool.
+     *
+     * @param paths The source files
+     * @return The results, in the order of the files, and the throughput of the batch
+     * @throws IOException If a file cannot be read
+     * @see #parseAll(Collection, ForkJoinPool)
+     */
+    public ParseBatch<T> parseAll(Collection<Path> paths) throws IOException
+    {
+        return parseAll(paths, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parse and analyze a batch of source files in parallel on a work-stealing pool.
+     * Every worker thread reuses its own lexer and parser, while the DFA cache ANTLR builds while
+     * predicting is shared by all of them, so the files parsed first speed up the rest.
+     *
+     * @param paths The source files
+     * @param pool The pool that parses the files
+     * @return The results, in the order of the files, and the throughput of the batch
+     * @throws IOException If a file cannot be read
+     */
+    public ParseBatch<T> parseAll(Collection<Path> paths, ForkJoinPool pool) throws IOException
+    {
+        List<Path> files = new ArrayList<>(paths);
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+
+        try {
+            List<T> results = pool.submit(() -> files.parallelStream()
+                    .map(path -> {
+                        try {
+                            byte[] contents = Files.readAllBytes(path);
+                            bytes.addAndGet(contents.length);
+
+                            return parseStream(CharStreams.fromString(
+                                    new String(contents, StandardCharsets.UTF_8), path.toString()));
+                        }
+                        catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList())).get();
+
+            return new ParseBatch<>(results, bytes.get(), System.nanoTime() - start);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Parse an IJVM code from a CharStream. Implementations must be safe to call from several threads at once.
      *
      * @param input CharStream containing IJVM code
-     * @return The parsed program result containing the tree and any errors
+     * @return The parsed program result containing the compact program and any errors
      */
     protected abstract T parseStream(CharStream input);
+
+    /**
+     * Parse the input of a parser in two stages. The first stage uses the faster SLL prediction and gives up
+     * at the first syntax error; only when it fails is the input parsed again with full LL prediction and
+     * the usual error recovery, which reports every error to the listener. SLL fails on every invalid input
+     * and on the rare valid inputs it cannot predict, so the errors and the tree are those of a full LL parse.
+     * <p>
+     * The parser's error listeners are replaced by the given listener, and its token stream must be
+     * buffered, so that the second stage reads the same tokens without lexing them again. Once the tree is
+     * built the parser and its lexer let go of their input, so that a recognizer kept by its thread does not
+     * keep the last source and its tokens alive after the tree is dropped.
+     *
+     * @param parser The parser, positioned at the start of its input
+     * @param rule Invokes the start rule of the parser
+     * @param errorListener The listener that collects the syntax errors
+     * @return The parse tree
+     */
+    protected static <P extends Parser, C extends ParserRuleContext> C parseTwoStage(P parser, Function<P, C> rule,
+                                                                                    ParserErrorListener errorListener)
+    {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+        try {
+            return rule.apply(parser);
+        }
+        catch (ParseCancellationException e) {
+            parser.getTokenStream().seek(0);
+            parser.reset();
+
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+            return rule.apply(parser);
+        }
+        finally {
+            TokenSource source = parser.getTokenStream().getTokenSource();
+            ParserATNSimulator interpreter = parser.getInterpreter();
+
+            // the simulator remembers the last context and tokens it predicted from; a new one shares the DFA
+            parser.setInterpreter(new ParserATNSimulator(parser, parser.getATN(), interpreter.decisionToDFA,
+                    interpreter.getSharedContextCache()));
+            parser.setTokenStream(null);
+
+            if (source instanceof Lexer) {
+                ((Lexer) source).setInputStream(null);
+            }
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package xyz.atom7.api.session;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.api.interpreter.CancellationToken;
+import xyz.atom7.api.interpreter.ExecutionContext;
+import xyz.atom7.api.interpreter.Interpreter;
+import xyz.atom7.api.io.BufferedInputChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A program running in a {@link SessionService}: input is sent to it as it comes, and its output is streamed
+ * to a listener. The program runs once, on its own virtual thread; its exit code, or why it was stopped, is
+ * in its {@link ExecutionContext} once {@link #getCompletion()} completes.
+ */
+@Getter
+public class Session
+{
+    /**
+     * The number of bytes of input read at a time; small, since a session mostly reads short lines and
+     * thousands of sessions are open at once
+     */
+    private static final int INPUT_BUFFER_SIZE = 256;
+
+    private final long id;
+    private final Interpreter<?> interpreter;
+    private final ExecutionContext context;
+    private final CancellationToken cancellationToken = new CancellationToken();
+
+    /**
+     * Completes with this session when its run ends, exceptionally if the program failed
+     */
+    private final CompletableFuture<Session> completion = new CompletableFuture<>();
+
+    @Getter(AccessLevel.NONE)
+    private final SessionInputStream input = new SessionInputStream();
+
+    /**
+     * Constructor for Session
+     *
+     * @param id The identifier of the session in its service
+     * @param interpreter The program, initialized
+     * @param output Receives the output of the program
+     */
+    Session(long id, Interpreter<?> interpreter, Consumer<String> output)
+    {
+        this.id = id;
+        this.interpreter = interpreter;
+        this.context = new ExecutionContext(false, new BufferedInputChannel(input, false, INPUT_BUFFER_SIZE),
+                new SessionOutputChannel(output));
+        this.context.setCancellationToken(cancellationToken);
+
+        // the output is streamed as it is written, so the recap of the exit would only repeat it
+        this.context.setReportExit(false);
+
+        interpreter.setContext(context);
+    }
+
+    /**
+     * Run the program on the current thread, and complete the session
+     *
+     * @param onEnd Called when the run ends, before the session completes
+     */
+    void run(Runnable onEnd)
+    {
+        Throwable failure = null;
+
+        try {
+            interpreter.execute();
+        }
+        catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        finally {
+            onEnd.run();
+        }
+
+        if (failure != null) {
+            completion.completeExceptionally(failure);
+        }
+        else {
+            completion.complete(this);
+        }
+    }
+
+    /**
+     * Send input to the program
+     *
+     * @param text The input
+     */
+    public void send(String text)
+    {
+        input.send(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a line of input to the program, such as a character typed by the user for IN or SYS GETCHAR
+     *
+     * @param line The line, without its line terminator
+     */
+    public void sendLine(String line)
+    {
+        send(line + "\n");
+    }
+
+    /**
+     * End the input; the program reads the end of the input once it has read what was sent before
+     */
+    public void endInput()
+    {
+        input.end();
+    }
+
+    /**
+     * Stop the program at its next safepoint; a program waiting for input is woken up by the end of the input
+     */
+    public void cancel()
+    {
+        cancellationToken.cancel();
+        endInput();
+    }
+
+    /**
+     * @return True if the run of the program has ended
+     */
+    public boolean isDone()
+    {
+        return completion.isDone();
+    }
+
+    /**
+     * @return The exception that ended the run, or null if it has not ended or ended normally
+     */
+    @Nullable
+    public Throwable getFailure()
+    {
+        return completion.isCompletedExceptionally() ? completion.handle((session, e) -> e).join() : null;
+    }
+}
@@ -0,0 +1,89 @@
+package xyz.atom7.api.session;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The input of a session: the chunks of text sent to it, in order, read by its program through a
+ * {@link xyz.atom7.api.io.BufferedInputChannel}. A read waits on a queue, so on a virtual thread a program
+ * waiting for input parks without holding a platform thread.
+ */
+class SessionInputStream extends InputStream
+{
+    /**
+     * Marks the end of the input
+     */
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+
+    private byte[] chunk;
+    private int position;
+
+    /**
+     * Queue input for the program
+     *
+     * @param bytes The input
+     */
+    void send(byte[] bytes)
+    {
+        if (bytes.length > 0) {
+            chunks.add(bytes);
+        }
+    }
+
+    /**
+     * End the input; the program reads the end of the input once it has read what was sent before
+     */
+    void end()
+    {
+        chunks.add(END);
+    }
+
+    @Override
+    public int read() throws InterruptedIOException
+    {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    /**
+     * Read what is left of the current chunk, waiting for the next one if there is none
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws InterruptedIOException
+    {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (chunk == null || position == chunk.length) {
+            try {
+                chunk = chunk == END ? END : chunks.take();
+                position = 0;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+        }
+
+        if (chunk == END) {
+            return -1;
+        }
+
+        int read = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, read);
+        position += read;
+
+        return read;
+    }
+
+    @Override
+    public int available()
+    {
+        return chunk == null || chunk == END ? 0 : chunk.length - position;
+    }
+}
@@ -0,0 +1,109 @@
+package xyz.atom7.api.session;
+
+import xyz.atom7.api.io.OutputChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The output of a session, streamed to a listener as text whenever the channel is flushed: when the program
+ * waits for input, when its run ends, and when a block of output has piled up. A character split across
+ * two flushes is held back until it is complete.
+ */
+class SessionOutputChannel implements OutputChannel
+{
+    /**
+     * The number of bytes after which the output is streamed without waiting for a flush
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    private final Consumer<String> listener;
+
+    private byte[] bytes = new byte[64];
+    private int size;
+
+    /**
+     * Constructor for SessionOutputChannel
+     *
+     * @param listener Receives the output, a block at a time
+     */
+    SessionOutputChannel(Consumer<String> listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    public void write(int value)
+    {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) value;
+
+        if (size >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length)
+    {
+        ensureCapacity(size + length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+
+        if (size >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, capacity));
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        int complete = completeLength();
+
+        if (complete == 0) {
+            return;
+        }
+
+        String text = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+
+        System.arraycopy(bytes, complete, bytes, 0, size - complete);
+        size -= complete;
+
+        listener.accept(text);
+    }
+
+    /**
+     * @return The length of the output without a trailing incomplete UTF-8 sequence
+     */
+    private int completeLength()
+    {
+        // find the start of the last sequence, at most 4 bytes back
+        int start = size - 1;
+        while (start >= 0 && start > size - 4 && (bytes[start] & 0xC0) == 0x80) {
+            start--;
+        }
+
+        if (start < 0) {
+            return size;
+        }
+
+        int lead = bytes[start] & 0xFF;
+        int expected = lead < 0x80 ? 1 : lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+
+        return size - start < expected ? start : size;
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+}
@@ -0,0 +1,96 @@
+package xyz.atom7.api.session;
+
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.api.interpreter.ExecutionContext;
+import xyz.atom7.api.interpreter.Interpreter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs interactive programs, each in a {@link Session} on its own virtual thread.
+ * A program waiting for input in IN or SYS GETCHAR parks its virtual thread until input is sent to the
+ * session, so an idle session holds no platform thread, only its interpreter and a small input and output
+ * buffer, and a service can keep tens of thousands of them open.
+ * <p>
+ * Closing the service cancels the sessions still running and waits for them to end.
+ */
+public class SessionService implements AutoCloseable
+{
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Start a session
+     *
+     * @param interpreter The program, initialized; it runs once, and belongs to the session from now on
+     * @param output Receives the output of the program, on the thread of the session
+     * @return The session
+     */
+    public Session open(Interpreter<?> interpreter, Consumer<String> output)
+    {
+        return open(interpreter, output, context -> {});
+    }
+
+    /**
+     * Start a session, with its context set up before the program runs, such as with an instruction or time
+     * limit
+     *
+     * @param interpreter The program, initialized; it runs once, and belongs to the session from now on
+     * @param output Receives the output of the program, on the thread of the session
+     * @param setup Sets up the context of the session
+     * @return The session
+     * @throws RejectedExecutionException If the service has been closed
+     */
+    public Session open(Interpreter<?> interpreter, Consumer<String> output, Consumer<ExecutionContext> setup)
+    {
+        Session session = new Session(ids.incrementAndGet(), interpreter, output);
+        setup.accept(session.getContext());
+
+        sessions.put(session.getId(), session);
+
+        try {
+            executor.execute(() -> session.run(() -> sessions.remove(session.getId())));
+        }
+        catch (RejectedExecutionException e) {
+            sessions.remove(session.getId());
+            throw e;
+        }
+
+        return session;
+    }
+
+    /**
+     * Get a running session
+     *
+     * @param id The identifier of the session
+     * @return The session, or null if it has ended or does not exist
+     */
+    @Nullable
+    public Session getSession(long id)
+    {
+        return sessions.get(id);
+    }
+
+    /**
+     * @return The number of sessions whose program is still running
+     */
+    public int getActiveSessions()
+    {
+        return sessions.size();
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+        sessions.values().forEach(Session::cancel);
+        executor.close();
+    }
+}
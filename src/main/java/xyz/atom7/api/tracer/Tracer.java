@@ -55,7 +55,7 @@ public abstract class Tracer<I extends Interpreter<T>, T extends Instruction, S
      */
     protected void printColoredNoValue(String label, ColorCode color)
     {
-        System.out.println("\u001B[" + color.getCode() + "m" + label + " \u001B[0m");
+        interpreter.getContext().getOutput().println("\u001B[" + color.getCode() + "m" + label + " \u001B[0m");
     }
 
     /**
@@ -68,7 +68,8 @@ public abstract class Tracer<I extends Interpreter<T>, T extends Instruction, S
     protected void printColored(String label, Object value, ColorCode color)
     {
         var valueDisplay = value == null ? "null" : value.toString();
-        System.out.println("\u001B[" + color.getCode() + "m" + label + ": \u001B[0m" + valueDisplay);
+        interpreter.getContext().getOutput().println("\u001B[" + color.getCode() + "m" + label + ": \u001B[0m"
+                + valueDisplay);
     }
 
     /**
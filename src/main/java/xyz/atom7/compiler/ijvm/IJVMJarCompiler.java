@@ -0,0 +1,381 @@
+package xyz.atom7.compiler.ijvm;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import xyz.atom7.interpreter.ijvm.IJVMInstruction;
+import xyz.atom7.interpreter.ijvm.IJVMLinkedProgram;
+import xyz.atom7.interpreter.ijvm.IJVMMethod;
+import xyz.atom7.interpreter.ijvm.IJVMProgram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles a linked IJVM program ahead of time into a standalone, runnable jar.
+ * Every IJVM method becomes a static JVM method taking its arguments as ints: the IJVM locals are JVM
+ * locals and the operand stack is an {@link IJVMRuntime.OperandStack} owned by the activation, since IN
+ * makes its depth depend on the input. The jar holds the generated class and {@link IJVMRuntime} only;
+ * the interpreter, the parser and ANTLR are not needed to run it.
+ */
+public final class IJVMJarCompiler
+{
+    /**
+     * The name of the generated class, which is the Main-Class of the jar
+     */
+    public static final String MAIN_CLASS = "ijvm.Main";
+
+    private static final String CLASS_NAME = MAIN_CLASS.replace('.', '/');
+    private static final String RUNTIME = Type.getInternalName(IJVMRuntime.class);
+    private static final String STACK = Type.getInternalName(IJVMRuntime.OperandStack.class);
+
+    private final IJVMLinkedProgram program;
+
+    /**
+     * @param program The linked program to compile
+     */
+    public IJVMJarCompiler(IJVMLinkedProgram program)
+    {
+        this.program = program;
+    }
+
+    /**
+     * Parse, check and link an IJVM source
+     *
+     * @param contents The source of the program
+     * @return The compiler for the program
+     * @throws IllegalArgumentException If the source has syntactic or semantic errors, which are printed
+     */
+    public static IJVMJarCompiler fromSource(String contents)
+    {
+        IJVMProgram<?> parsed = new IJVMProgram<>();
+        parsed.init(contents);
+
+        if (parsed.getLinkedProgram() == null) {
+            throw new IllegalArgumentException("The program has errors and cannot be compiled");
+        }
+
+        return new IJVMJarCompiler(parsed.getLinkedProgram());
+    }
+
+    /**
+     * Write the runnable jar
+     *
+     * @param out The path of the jar
+     * @throws IOException If the jar cannot be written
+     */
+    public void writeJar(Path out) throws IOException
+    {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+
+        try (OutputStream file = Files.newOutputStream(out);
+             JarOutputStream jar = new JarOutputStream(file, manifest))
+        {
+            writeEntry(jar, CLASS_NAME + ".class", generate());
+            writeEntry(jar, RUNTIME + ".class", runtimeClass(IJVMRuntime.class));
+            writeEntry(jar, STACK + ".class", runtimeClass(IJVMRuntime.OperandStack.class));
+        }
+    }
+
+    /**
+     * Generate the program class
+     *
+     * @return The class file
+     */
+    public byte[] generate()
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object", null);
+
+        MethodVisitor main = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
+        main.visitCode();
+        main.visitMethodInsn(INVOKESTATIC, CLASS_NAME, methodName(0), descriptor(program.getMainMethod()), false);
+        main.visitMethodInsn(INVOKESTATIC, RUNTIME, "finish", "()V", false);
+        main.visitInsn(RETURN);
+        main.visitMaxs(0, 0);
+        main.visitEnd();
+
+        for (int i = 0; i < program.getMethodCount(); i++) {
+            generateMethod(cw, i);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private void generateMethod(ClassWriter cw, int methodIndex)
+    {
+        IJVMMethod method = program.getMethod(methodIndex);
+        List<IJVMInstruction> code = method.getInstructions();
+        int localCount = method.getLocalCount();
+
+        // JVM slots: the IJVM locals, arguments first, then the operand stack and the call temporaries
+        int stackSlot = localCount;
+        int firstTemp = stackSlot + 1;
+
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, methodName(methodIndex), descriptor(method),
+                null, null);
+        mv.visitCode();
+
+        for (int i = method.getArgumentCount(); i < localCount; i++) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, i);
+        }
+
+        mv.visitTypeInsn(NEW, STACK);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, STACK, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, stackSlot);
+
+        Label[] labels = new Label[code.size() + 1];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+
+        for (int pc = 0; pc < code.size(); pc++)
+        {
+            IJVMInstruction instruction = code.get(pc);
+            int operand = instruction.getOperand();
+
+            mv.visitLabel(labels[pc]);
+
+            if (instruction.getOpcode() == null) {
+                unknown(mv, instruction.getOpCode().toUpperCase());
+                continue;
+            }
+
+            switch (instruction.getOpcode())
+            {
+                case BIPUSH:
+                    pushConstant(mv, stackSlot, instruction.getValue());
+                    break;
+                case LDC_W:
+                    pushConstant(mv, stackSlot, program.getConstant(operand));
+                    break;
+                case ILOAD:
+                    mv.visitVarInsn(ALOAD, stackSlot);
+                    mv.visitVarInsn(ILOAD, operand);
+                    push(mv);
+                    break;
+                case ISTORE:
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ISTORE, operand);
+                    break;
+                case IADD:
+                    binary(mv, stackSlot, firstTemp, IADD);
+                    break;
+                case ISUB:
+                    binary(mv, stackSlot, firstTemp, ISUB);
+                    break;
+                case IAND:
+                    binary(mv, stackSlot, firstTemp, IAND);
+                    break;
+                case IOR:
+                    binary(mv, stackSlot, firstTemp, IOR);
+                    break;
+                case DUP:
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ISTORE, firstTemp);
+                    for (int i = 0; i < 2; i++) {
+                        mv.visitVarInsn(ALOAD, stackSlot);
+                        mv.visitVarInsn(ILOAD, firstTemp);
+                        push(mv);
+                    }
+                    break;
+                case SWAP:
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ISTORE, firstTemp);
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ISTORE, firstTemp + 1);
+                    mv.visitVarInsn(ALOAD, stackSlot);
+                    mv.visitVarInsn(ILOAD, firstTemp);
+                    push(mv);
+                    mv.visitVarInsn(ALOAD, stackSlot);
+                    mv.visitVarInsn(ILOAD, firstTemp + 1);
+                    push(mv);
+                    break;
+                case POP:
+                    pop(mv, stackSlot);
+                    mv.visitInsn(POP);
+                    break;
+                case IN:
+                    mv.visitVarInsn(ALOAD, stackSlot);
+                    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "in", "(L" + STACK + ";)V", false);
+                    break;
+                case OUT:
+                    pop(mv, stackSlot);
+                    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "out", "(I)V", false);
+                    break;
+                case IRETURN:
+                    pop(mv, stackSlot);
+                    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "returnValue", "(I)V", false);
+                    break;
+                case IINC:
+                    if (instruction.getValue() >= Short.MIN_VALUE && instruction.getValue() <= Short.MAX_VALUE) {
+                        mv.visitIincInsn(operand, instruction.getValue());
+                    }
+                    else {
+                        mv.visitVarInsn(ILOAD, operand);
+                        pushInt(mv, instruction.getValue());
+                        mv.visitInsn(IADD);
+                        mv.visitVarInsn(ISTORE, operand);
+                    }
+                    break;
+                case GOTO:
+                    mv.visitJumpInsn(GOTO, target(labels, operand));
+                    break;
+                case IFEQ:
+                    pop(mv, stackSlot);
+                    mv.visitJumpInsn(IFEQ, target(labels, operand + 1));
+                    break;
+                case IFLT:
+                    pop(mv, stackSlot);
+                    mv.visitJumpInsn(IFLT, target(labels, operand + 1));
+                    break;
+                case IF_ICMPEQ:
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ISTORE, firstTemp);
+                    pop(mv, stackSlot);
+                    mv.visitVarInsn(ILOAD, firstTemp);
+                    mv.visitJumpInsn(IF_ICMPEQ, target(labels, operand + 1));
+                    break;
+                case INVOKEVIRTUAL: {
+                    IJVMMethod callee = program.getMethod(operand);
+                    int argumentCount = callee.getArgumentCount();
+
+                    // the top of the stack is the last argument, below the arguments is the object reference
+                    for (int i = argumentCount - 1; i >= 0; i--) {
+                        pop(mv, stackSlot);
+                        mv.visitVarInsn(ISTORE, firstTemp + i);
+                    }
+                    pop(mv, stackSlot);
+                    mv.visitInsn(POP);
+
+                    for (int i = 0; i < argumentCount; i++) {
+                        mv.visitVarInsn(ILOAD, firstTemp + i);
+                    }
+                    mv.visitMethodInsn(INVOKESTATIC, CLASS_NAME, methodName(operand), descriptor(callee), false);
+
+                    mv.visitVarInsn(ALOAD, stackSlot);
+                    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "returnTo", "(L" + STACK + ";)V", false);
+                    break;
+                }
+                case HALT:
+                    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "halt", "()V", false);
+                    break;
+                case NOP:
+                case LABEL:
+                    break;
+                default:
+                    // ERR, which the interpreter has no handler for
+                    unknown(mv, instruction.getOpCode().toUpperCase());
+                    break;
+            }
+        }
+
+        // falling off the end of the method
+        mv.visitLabel(labels[code.size()]);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static Label target(Label[] labels, int pc)
+    {
+        return labels[Math.min(pc, labels.length - 1)];
+    }
+
+    private static String methodName(int methodIndex)
+    {
+        return "m" + methodIndex;
+    }
+
+    private static String descriptor(IJVMMethod method)
+    {
+        return "(" + "I".repeat(method.getArgumentCount()) + ")V";
+    }
+
+    private static void binary(MethodVisitor mv, int stackSlot, int temp, int opcode)
+    {
+        pop(mv, stackSlot);
+        mv.visitVarInsn(ISTORE, temp);
+        mv.visitVarInsn(ALOAD, stackSlot);
+        pop(mv, stackSlot);
+        mv.visitVarInsn(ILOAD, temp);
+        mv.visitInsn(opcode);
+        push(mv);
+    }
+
+    private static void unknown(MethodVisitor mv, String opCode)
+    {
+        mv.visitLdcInsn(opCode);
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "unknown", "(Ljava/lang/String;)V", false);
+    }
+
+    private static void pushConstant(MethodVisitor mv, int stackSlot, int value)
+    {
+        mv.visitVarInsn(ALOAD, stackSlot);
+        pushInt(mv, value);
+        push(mv);
+    }
+
+    private static void push(MethodVisitor mv)
+    {
+        mv.visitMethodInsn(INVOKEVIRTUAL, STACK, "push", "(I)V", false);
+    }
+
+    private static void pop(MethodVisitor mv, int stackSlot)
+    {
+        mv.visitVarInsn(ALOAD, stackSlot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, STACK, "pop", "()I", false);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value)
+    {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        }
+        else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static byte[] runtimeClass(Class<?> type) throws IOException
+    {
+        String resource = "/" + Type.getInternalName(type) + ".class";
+
+        try (InputStream in = IJVMJarCompiler.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Runtime class not found: " + resource);
+            }
+
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeEntry(JarOutputStream jar, String name, byte[] bytes) throws IOException
+    {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(bytes);
+        jar.closeEntry();
+    }
+}
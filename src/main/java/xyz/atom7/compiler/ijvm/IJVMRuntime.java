@@ -0,0 +1,157 @@
+package xyz.atom7.compiler.ijvm;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * The runtime support of IJVM programs compiled ahead of time by {@link IJVMJarCompiler}.
+ * It is copied into every compiled jar next to the generated program class, so it must only depend on
+ * the JDK. Its behaviour mirrors the instruction handlers of the interpreter, and like them it reads and
+ * writes through buffers, flushing the output before a read that may block and when the program ends.
+ */
+public final class IJVMRuntime
+{
+    private static final BufferedReader INPUT = new BufferedReader(new InputStreamReader(System.in));
+
+    private static final PrintStream OUTPUT = new PrintStream(new BufferedOutputStream(System.out, 8192), false);
+
+    private static final StringBuilder OUT_VIDEO = new StringBuilder();
+
+    static {
+        // the output is also written when the program ends with an exception
+        Runtime.getRuntime().addShutdownHook(new Thread(OUTPUT::flush));
+    }
+
+    private static int pendingReturnValue;
+    private static boolean hasPendingReturnValue;
+
+    private IJVMRuntime()
+    {
+    }
+
+    /**
+     * The operand stack of a method activation
+     */
+    public static final class OperandStack
+    {
+        private int[] values = new int[8];
+        private int sp;
+
+        public void push(int value)
+        {
+            if (sp == values.length) {
+                values = Arrays.copyOf(values, sp * 2);
+            }
+
+            values[sp++] = value;
+        }
+
+        public int pop()
+        {
+            if (sp == 0) {
+                throw new EmptyStackException();
+            }
+
+            return values[--sp];
+        }
+    }
+
+    /**
+     * IRETURN: leave a value pending for the caller
+     *
+     * @param value The return value
+     */
+    public static void returnValue(int value)
+    {
+        pendingReturnValue = value;
+        hasPendingReturnValue = true;
+    }
+
+    /**
+     * Push the pending return value, if any, to the caller once a method has ended
+     *
+     * @param caller The operand stack of the caller
+     */
+    public static void returnTo(OperandStack caller)
+    {
+        if (hasPendingReturnValue) {
+            caller.push(pendingReturnValue);
+            hasPendingReturnValue = false;
+        }
+    }
+
+    /**
+     * IN: push the first character of the next non-empty input line, if there is one
+     *
+     * @param stack The operand stack
+     */
+    public static void in(OperandStack stack)
+    {
+        try {
+            if (!INPUT.ready()) {
+                OUTPUT.flush();
+            }
+
+            String line;
+
+            do {
+                line = INPUT.readLine();
+            } while (line != null && line.isEmpty());
+
+            if (line != null) {
+                stack.push(line.charAt(0));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * OUT: write a character
+     *
+     * @param value The character code
+     */
+    public static void out(int value)
+    {
+        OUTPUT.print((char) value);
+        OUT_VIDEO.append((char) value);
+    }
+
+    /**
+     * HALT: print the program output and exit
+     */
+    public static void halt()
+    {
+        OUTPUT.println("\nPROGRAM OUTPUT IS:");
+        OUTPUT.print(OUT_VIDEO);
+        OUTPUT.println(" ");
+        OUTPUT.flush();
+
+        System.exit(0);
+    }
+
+    /**
+     * An instruction the interpreter has no handler for
+     *
+     * @param opCode The operation code
+     */
+    public static void unknown(String opCode)
+    {
+        throw new IllegalArgumentException("Unknown instruction: " + opCode);
+    }
+
+    /**
+     * Called when the main block ends
+     */
+    public static void finish()
+    {
+        OUTPUT.flush();
+    }
+}
@@ -0,0 +1,623 @@
+package xyz.atom7.interpreter.asm8088;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles decoded 8088 instructions into 8088 machine code, for {@link ASM8088MachineProgram}.
+ * The encodings are the ones of the 8088: opcode, ModRM byte, displacement and immediate, near JMP and
+ * CALL, and short conditional jumps, which are turned into an inverted short jump over a near JMP when
+ * their target is too far. PUSH of an immediate uses the 80186 encoding, and SYS is encoded as INT 20h.
+ * <p>
+ * The byte forms of the dialect (MOVB, ADDB, CMPB...) are the byte encodings of their base instruction,
+ * and an instruction's width comes from its registers, or is 16 bits when only memory and immediates are
+ * involved. Operands without an 8088 encoding, such as a subtracted register, are rejected.
+ */
+public final class ASM8088Assembler
+{
+    /**
+     * The longest single instruction the assembler emits
+     */
+    static final int MAX_INSTRUCTION_LENGTH = 6;
+
+    /**
+     * The ModRM register numbers of the 16-bit, 8-bit and segment registers
+     */
+    static final ASM8088Register[] WORD_REGISTERS = {
+            ASM8088Register.AX, ASM8088Register.CX, ASM8088Register.DX, ASM8088Register.BX,
+            ASM8088Register.SP, ASM8088Register.BP, ASM8088Register.SI, ASM8088Register.DI
+    };
+    static final ASM8088Register[] BYTE_REGISTERS = {
+            ASM8088Register.AL, ASM8088Register.CL, ASM8088Register.DL, ASM8088Register.BL,
+            ASM8088Register.AH, ASM8088Register.CH, ASM8088Register.DH, ASM8088Register.BH
+    };
+    static final ASM8088Register[] SEGMENT_REGISTERS = {
+            ASM8088Register.ES, null, ASM8088Register.SS, ASM8088Register.DS
+    };
+
+    /**
+     * The ModRM r/m values of the base and index register pairs, indexed like {@link #BASE_INDEX_REGISTERS}
+     */
+    static final ASM8088Register[][] BASE_INDEX_REGISTERS = {
+            {ASM8088Register.BX, ASM8088Register.SI},
+            {ASM8088Register.BX, ASM8088Register.DI},
+            {ASM8088Register.BP, ASM8088Register.SI},
+            {ASM8088Register.BP, ASM8088Register.DI},
+            {ASM8088Register.SI},
+            {ASM8088Register.DI},
+            {ASM8088Register.BP},
+            {ASM8088Register.BX}
+    };
+
+    /**
+     * The extension of the ALU instructions, also the opcode of their register forms shifted right by 3
+     */
+    static final String[] ALU_OPERATIONS = {"ADD", "OR", "ADC", "SBB", "AND", "SUB", "XOR", "CMP"};
+
+    /**
+     * The condition codes of the conditional jumps
+     */
+    private static final Map<String, Integer> CONDITIONS = new HashMap<>();
+
+    /**
+     * The byte forms of the dialect and the instruction they are the byte encoding of
+     */
+    private static final Map<String, String> BYTE_FORMS = Map.of(
+            "MOVB", "MOV",
+            "ADDB", "ADD",
+            "SUBB", "SUB",
+            "CMPB", "CMP",
+            "XORB", "XOR",
+            "MULB", "MUL",
+            "DIVB", "DIV"
+    );
+
+    static {
+        String[][] conditions = {
+                {"JO"}, {"JNO"}, {"JB", "JNAE", "JC"}, {"JAE", "JNB", "JNC"},
+                {"JE", "JZ"}, {"JNE", "JNZ"}, {"JBE", "JNA"}, {"JA", "JNBE"},
+                {"JS"}, {"JNS"}, {"JP", "JPE"}, {"JNP", "JPO"},
+                {"JL", "JNGE"}, {"JGE", "JNL"}, {"JLE", "JNG"}, {"JG", "JNLE"}
+        };
+
+        for (int code = 0; code < conditions.length; code++) {
+            for (String mnemonic : conditions[code]) {
+                CONDITIONS.put(mnemonic, code);
+            }
+        }
+    }
+
+    private ASM8088Assembler()
+    {
+    }
+
+    /**
+     * Assembled machine code
+     */
+    public static final class Assembly
+    {
+        /**
+         * The machine code
+         */
+        public final byte[] code;
+
+        /**
+         * The address of every instruction, and the address after the code at the last index
+         */
+        public final int[] addresses;
+
+        private Assembly(byte[] code, int[] addresses)
+        {
+            this.code = code;
+            this.addresses = addresses;
+        }
+    }
+
+    /**
+     * Assembles a program whose branch targets are resolved to instruction indices
+     *
+     * @param instructions The instructions
+     * @param origin The address of the first instruction
+     * @return The machine code
+     * @throws IllegalStateException If an instruction has no 8088 encoding
+     */
+    public static Assembly assemble(List<? extends ASM8088Instruction> instructions, int origin)
+    {
+        int count = instructions.size();
+        boolean[] far = new boolean[count];
+        int[] addresses = new int[count + 1];
+
+        // lay the code out with short conditional jumps, lengthening those whose target is out of reach
+        // until the layout settles; jumps only ever get longer, so this terminates
+        boolean changed = true;
+
+        while (changed)
+        {
+            changed = false;
+            addresses[0] = origin;
+
+            for (int i = 0; i < count; i++) {
+                addresses[i + 1] = addresses[i] + encode(instructions.get(i), addresses[i], origin, far[i]).length;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                ASM8088Instruction instruction = instructions.get(i);
+
+                if (!far[i] && isShortBranch(instruction.getOpCode())) {
+                    int displacement = addresses[instruction.getTarget()] - (addresses[i] + 2);
+
+                    if (displacement < Byte.MIN_VALUE || displacement > Byte.MAX_VALUE) {
+                        far[i] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        for (int i = 0; i < count; i++) {
+            ASM8088Instruction instruction = instructions.get(i);
+            int target = instruction.getTarget() >= 0 ? addresses[instruction.getTarget()] : -1;
+
+            code.writeBytes(encode(instruction, addresses[i], target, far[i]));
+        }
+
+        return new Assembly(code.toByteArray(), addresses);
+    }
+
+    private static boolean isShortBranch(String opCode)
+    {
+        return CONDITIONS.containsKey(opCode) || opCode.equals("LOOP") || opCode.equals("JCXZ");
+    }
+
+    /**
+     * Encodes one instruction
+     *
+     * @param instruction The instruction
+     * @param address The address of the instruction
+     * @param target The address a branch goes to; only its size matters while laying the code out
+     * @param far Whether a conditional jump needs the long form
+     * @return The machine code of the instruction
+     */
+    private static byte[] encode(ASM8088Instruction instruction, int address, int target, boolean far)
+    {
+        Encoder out = new Encoder(instruction);
+        String opCode = instruction.getOpCode().toUpperCase();
+        boolean byteForm = BYTE_FORMS.containsKey(opCode);
+        String operation = byteForm ? BYTE_FORMS.get(opCode) : opCode;
+
+        ASM8088Operand first = instruction.getOperand();
+        ASM8088Operand second = instruction.getSecondOperand();
+
+        Integer condition = CONDITIONS.get(operation);
+
+        if (condition != null) {
+            if (far) {
+                // the inverted condition skips the near jump
+                out.write(0x70 | (condition ^ 1));
+                out.write(3);
+                out.nearJump(0xE9, address + 2, target);
+            }
+            else {
+                out.shortJump(0x70 | condition, address, target);
+            }
+            return out.toByteArray();
+        }
+
+        int alu = indexOf(ALU_OPERATIONS, operation);
+
+        if (alu >= 0) {
+            out.binary(alu, first, second, width(out, byteForm, first, second));
+            return out.toByteArray();
+        }
+
+        switch (operation)
+        {
+            case "MOV":
+                out.move(first, second, byteForm);
+                break;
+            case "INC":
+            case "DEC": {
+                boolean wide = width(out, byteForm, first, ASM8088Operand.NONE);
+                int extension = operation.equals("INC") ? 0 : 1;
+
+                if (wide && first.getKind() == ASM8088Operand.Kind.REGISTER) {
+                    out.write(0x40 | (extension << 3) | out.registerCode(first));
+                }
+                else {
+                    out.unary(0xFE, extension, first, wide);
+                }
+                break;
+            }
+            case "NOT":
+                out.unary(0xF6, 2, first, width(out, byteForm, first, ASM8088Operand.NONE));
+                break;
+            case "MUL":
+                out.unary(0xF6, 4, first, width(out, byteForm, first, ASM8088Operand.NONE));
+                break;
+            case "DIV":
+                out.unary(0xF6, 6, first, width(out, byteForm, first, ASM8088Operand.NONE));
+                break;
+            case "PUSH":
+                out.push(first);
+                break;
+            case "POP":
+                out.pop(first);
+                break;
+            case "JMP":
+                out.nearJump(0xE9, address, target);
+                break;
+            case "CALL":
+                out.nearJump(0xE8, address, target);
+                break;
+            case "LOOP":
+            case "JCXZ": {
+                int opcode = operation.equals("LOOP") ? 0xE2 : 0xE3;
+
+                if (far) {
+                    // taken: skip the short jump to the near jump; not taken: skip the near jump
+                    out.write(opcode);
+                    out.write(2);
+                    out.write(0xEB);
+                    out.write(3);
+                    out.nearJump(0xE9, address + 4, target);
+                }
+                else {
+                    out.shortJump(opcode, address, target);
+                }
+                break;
+            }
+            case "RET":
+                out.write(0xC3);
+                break;
+            case "HLT":
+                out.write(0xF4);
+                break;
+            case "NOP":
+                out.write(0x90);
+                break;
+            case "SYS":
+                out.write(0xCD);
+                out.write(0x20);
+                break;
+            case "LABEL":
+                break;
+            default:
+                throw out.error("unknown instruction");
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Works out whether an instruction is 16 bits wide
+     */
+    private static boolean width(Encoder out, boolean byteForm, ASM8088Operand first, ASM8088Operand second)
+    {
+        Boolean wide = null;
+
+        for (ASM8088Operand operand : new ASM8088Operand[] {first, second})
+        {
+            if (operand.getKind() == ASM8088Operand.Kind.REGISTER) {
+                if (operand.getRegister().getKind() == ASM8088Register.Kind.SEGMENT) {
+                    throw out.error("segment register operand");
+                }
+                if (wide != null && wide != operand.isWide()) {
+                    throw out.error("operand size mismatch");
+                }
+                wide = operand.isWide();
+            }
+        }
+
+        if (byteForm) {
+            if (wide != null && wide) {
+                throw out.error("16-bit register in a byte instruction");
+            }
+            return false;
+        }
+
+        return wide == null || wide;
+    }
+
+    private static int indexOf(Object[] values, Object value)
+    {
+        for (int i = 0; i < values.length; i++) {
+            if (value.equals(values[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Collects the bytes of one instruction
+     */
+    private static final class Encoder extends ByteArrayOutputStream
+    {
+        private final ASM8088Instruction instruction;
+
+        private Encoder(ASM8088Instruction instruction)
+        {
+            this.instruction = instruction;
+        }
+
+        private IllegalStateException error(String reason)
+        {
+            return new IllegalStateException("Cannot assemble '" + instruction + "': " + reason);
+        }
+
+        private void word(int value)
+        {
+            write(value & 0xFF);
+            write((value >> 8) & 0xFF);
+        }
+
+        private void immediate(ASM8088Operand operand, boolean wide)
+        {
+            int value = operand.getValue();
+
+            if (wide ? value < Short.MIN_VALUE || value > 0xFFFF : value < Byte.MIN_VALUE || value > 0xFF) {
+                throw error("immediate out of range");
+            }
+
+            if (wide) {
+                word(value);
+            }
+            else {
+                write(value & 0xFF);
+            }
+        }
+
+        private void shortJump(int opcode, int address, int target)
+        {
+            write(opcode);
+            write((target - (address + 2)) & 0xFF);
+        }
+
+        private void nearJump(int opcode, int address, int target)
+        {
+            write(opcode);
+            word(target - (address + 3));
+        }
+
+        private int registerCode(ASM8088Operand operand)
+        {
+            ASM8088Register register = operand.getRegister();
+            ASM8088Register[] codes = register.getKind() == ASM8088Register.Kind.WORD ? WORD_REGISTERS
+                    : register.getKind() == ASM8088Register.Kind.BYTE ? BYTE_REGISTERS
+                    : SEGMENT_REGISTERS;
+
+            return indexOf(codes, register);
+        }
+
+        /**
+         * Writes a ModRM byte, and the displacement of a memory operand
+         *
+         * @param reg The reg field: a register code or an opcode extension
+         * @param operand The r/m operand, a register or memory
+         */
+        private void modRM(int reg, ASM8088Operand operand)
+        {
+            if (operand.getKind() == ASM8088Operand.Kind.REGISTER) {
+                write(0xC0 | (reg << 3) | registerCode(operand));
+                return;
+            }
+
+            if (operand.getKind() != ASM8088Operand.Kind.MEMORY) {
+                throw error("expected a register or memory operand");
+            }
+
+            if (!operand.isWide()) {
+                throw error("memory reference through a byte register");
+            }
+
+            if (operand.getSubtractedRegisters().length > 0) {
+                throw error("subtracted register");
+            }
+
+            ASM8088Register[] registers = operand.getAddedRegisters();
+            int displacement = operand.getValue();
+
+            if (registers.length == 0) {
+                if (displacement < 0 || displacement > 0xFFFF) {
+                    throw error("address out of range");
+                }
+
+                write((reg << 3) | 0b110);
+                word(displacement);
+                return;
+            }
+
+            int rm = baseIndex(registers);
+
+            if (rm < 0) {
+                throw error("no 8088 addressing mode for these registers");
+            }
+
+            if (displacement < Short.MIN_VALUE || displacement > Short.MAX_VALUE) {
+                throw error("displacement out of range");
+            }
+
+            // [BP] with no displacement is the direct address form, so it takes a zero disp8
+            if (displacement == 0 && rm != 0b110) {
+                write((reg << 3) | rm);
+            }
+            else if (displacement >= Byte.MIN_VALUE && displacement <= Byte.MAX_VALUE) {
+                write(0x40 | (reg << 3) | rm);
+                write(displacement & 0xFF);
+            }
+            else {
+                write(0x80 | (reg << 3) | rm);
+                word(displacement);
+            }
+        }
+
+        private int baseIndex(ASM8088Register[] registers)
+        {
+            for (int rm = 0; rm < BASE_INDEX_REGISTERS.length; rm++)
+            {
+                ASM8088Register[] candidate = BASE_INDEX_REGISTERS[rm];
+
+                if (candidate.length != registers.length) {
+                    continue;
+                }
+
+                boolean matches = candidate.length == 1
+                        ? registers[0] == candidate[0]
+                        : (registers[0] == candidate[0] && registers[1] == candidate[1])
+                          || (registers[0] == candidate[1] && registers[1] == candidate[0]);
+
+                if (matches) {
+                    return rm;
+                }
+            }
+
+            return -1;
+        }
+
+        private void binary(int operation, ASM8088Operand destination, ASM8088Operand source, boolean wide)
+        {
+            int w = wide ? 1 : 0;
+
+            if (source.getKind() == ASM8088Operand.Kind.IMMEDIATE) {
+                int value = source.getValue();
+
+                if (wide && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                    write(0x83);
+                    modRM(operation, destination);
+                    write(value & 0xFF);
+                }
+                else {
+                    write(0x80 | w);
+                    modRM(operation, destination);
+                    immediate(source, wide);
+                }
+            }
+            else if (source.getKind() == ASM8088Operand.Kind.REGISTER) {
+                write((operation << 3) | w);
+                modRM(registerCode(source), destination);
+            }
+            else if (destination.getKind() == ASM8088Operand.Kind.REGISTER) {
+                write((operation << 3) | 2 | w);
+                modRM(registerCode(destination), source);
+            }
+            else {
+                throw error("unsupported operands");
+            }
+        }
+
+        private void move(ASM8088Operand destination, ASM8088Operand source, boolean byteForm)
+        {
+            if (isSegment(destination) || isSegment(source)) {
+                if (byteForm || isSegment(destination) == isSegment(source)
+                        || source.getKind() == ASM8088Operand.Kind.IMMEDIATE) {
+                    throw error("unsupported segment register move");
+                }
+
+                if (isSegment(destination)) {
+                    write(0x8E);
+                    modRM(registerCode(destination), source);
+                }
+                else {
+                    write(0x8C);
+                    modRM(registerCode(source), destination);
+                }
+                return;
+            }
+
+            boolean wide = width(this, byteForm, destination, source);
+            int w = wide ? 1 : 0;
+
+            if (source.getKind() == ASM8088Operand.Kind.IMMEDIATE) {
+                if (destination.getKind() == ASM8088Operand.Kind.REGISTER) {
+                    write(0xB0 | (w << 3) | registerCode(destination));
+                }
+                else {
+                    write(0xC6 | w);
+                    modRM(0, destination);
+                }
+                immediate(source, wide);
+            }
+            else if (source.getKind() == ASM8088Operand.Kind.REGISTER) {
+                write(0x88 | w);
+                modRM(registerCode(source), destination);
+            }
+            else if (destination.getKind() == ASM8088Operand.Kind.REGISTER) {
+                write(0x8A | w);
+                modRM(registerCode(destination), source);
+            }
+            else {
+                throw error("unsupported operands");
+            }
+        }
+
+        private void unary(int opcode, int extension, ASM8088Operand operand, boolean wide)
+        {
+            write(opcode | (wide ? 1 : 0));
+            modRM(extension, operand);
+        }
+
+        private void push(ASM8088Operand operand)
+        {
+            switch (operand.getKind())
+            {
+                case REGISTER:
+                    if (isSegment(operand)) {
+                        write(0x06 | (registerCode(operand) << 3));
+                    }
+                    else if (operand.isWide()) {
+                        write(0x50 | registerCode(operand));
+                    }
+                    else {
+                        throw error("byte register pushed");
+                    }
+                    break;
+                case IMMEDIATE:
+                    write(0x68);
+                    immediate(operand, true);
+                    break;
+                case MEMORY:
+                    write(0xFF);
+                    modRM(6, operand);
+                    break;
+                default:
+                    throw error("missing operand");
+            }
+        }
+
+        private void pop(ASM8088Operand operand)
+        {
+            switch (operand.getKind())
+            {
+                case REGISTER:
+                    if (isSegment(operand)) {
+                        write(0x07 | (registerCode(operand) << 3));
+                    }
+                    else if (operand.isWide()) {
+                        write(0x58 | registerCode(operand));
+                    }
+                    else {
+                        throw error("byte register popped");
+                    }
+                    break;
+                case MEMORY:
+                    write(0x8F);
+                    modRM(0, operand);
+                    break;
+                default:
+                    throw error("expected a register or memory operand");
+            }
+        }
+
+        private static boolean isSegment(ASM8088Operand operand)
+        {
+            return operand.getKind() == ASM8088Operand.Kind.REGISTER
+                    && operand.getRegister().getKind() == ASM8088Register.Kind.SEGMENT;
+        }
+    }
+}
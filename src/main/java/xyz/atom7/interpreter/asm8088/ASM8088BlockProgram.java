@@ -0,0 +1,173 @@
+package xyz.atom7.interpreter.asm8088;
+
+import lombok.SneakyThrows;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ASM8088BlockProgram executes an 8088 program block by block instead of one instruction at a time.
+ * The .TEXT instructions are split into basic blocks at labels and after every jump, CALL, LOOP and RET;
+ * each block is compiled once, the first time it is entered, into an array of closures with the
+ * instruction handler and its decoded operands pre-bound, and then run straight through.
+ * Tracing and debug output need the state after every instruction, so with either enabled the program
+ * falls back to the instruction-at-a-time loop of {@link ASM8088Program}.
+ */
+public class ASM8088BlockProgram<T extends ASM8088Instruction> extends ASM8088Program<T>
+{
+    /**
+     * The compiled blocks, indexed by the instruction they start at
+     */
+    private Block[] blocks;
+
+    /**
+     * Whether each instruction starts a block because a label points at it
+     */
+    private boolean[] leaders;
+
+    @Override
+    protected void initProgram(ASM8088LinkedProgram program)
+    {
+        super.initProgram(program);
+
+        int size = getInstructions().size();
+        blocks = new Block[size];
+        leaders = new boolean[size];
+
+        for (int index : labels.values()) {
+            if (index < size) {
+                leaders[index] = true;
+            }
+        }
+    }
+
+    /**
+     * Executes the program, running one compiled block after the other
+     */
+    @SneakyThrows
+    @Override
+    protected void executeProgram()
+    {
+        if (context.isTraced() || isDebug()) {
+            super.executeProgram();
+            return;
+        }
+
+        resume();
+
+        ASM8088Scope scope = getScope();
+        int size = getInstructions().size();
+
+        scope.setPc(-1);
+
+        while (scope.getPc() + 1 < size)
+        {
+            int start = scope.getPc() + 1;
+            Block block = blocks[start];
+
+            if (block == null) {
+                block = blocks[start] = compile(start);
+            }
+
+            run(block, scope);
+
+            // blocks end at branches and labels, so every loop passes a block boundary
+            safepoint();
+        }
+    }
+
+    /**
+     * Runs a block; only its last instruction can branch, so the program counter is set just before it
+     *
+     * @param block The block to run
+     * @param scope The processor state
+     */
+    private void run(Block block, ASM8088Scope scope)
+    {
+        Runnable[] steps = block.steps;
+        int last = steps.length - 1;
+        int i = 0;
+
+        try {
+            for (; i < last; i++) {
+                steps[i].run();
+            }
+
+            scope.setPc(block.start + last);
+            steps[last].run();
+        }
+        catch (RuntimeException e) {
+            // leave the program counter at the instruction that failed or exited
+            scope.setPc(block.start + i);
+            executedInstructions += i + 1;
+            throw e;
+        }
+
+        executedInstructions += steps.length;
+    }
+
+    /**
+     * Compiles the block starting at an instruction, up to and including the next branch or up to the
+     * next label
+     *
+     * @param start The index of the first instruction
+     * @return The compiled block
+     */
+    private Block compile(int start)
+    {
+        List<ASM8088Instruction> instructions = getInstructions();
+        int end = start;
+
+        while (end + 1 < instructions.size() && !endsBlock(instructions.get(end)) && !leaders[end + 1]) {
+            end++;
+        }
+
+        Runnable[] steps = new Runnable[end - start + 1];
+
+        for (int i = start; i <= end; i++) {
+            steps[i - start] = bind((T) instructions.get(i));
+        }
+
+        return new Block(start, steps);
+    }
+
+    /**
+     * Binds an instruction to its handler
+     *
+     * @param instruction The instruction
+     * @return A closure executing the instruction
+     */
+    private Runnable bind(T instruction)
+    {
+        Consumer<T> handler = getHandler(instruction);
+
+        if (handler == null) {
+            return () -> {
+                throw new IllegalArgumentException("Unknown instruction: " + instruction.getOpCode());
+            };
+        }
+
+        return () -> handler.accept(instruction);
+    }
+
+    private boolean endsBlock(ASM8088Instruction instruction)
+    {
+        ASM8088Opcode opcode = instruction.getOpcode();
+        return branchOpCodes.contains(opcode) || opcode == ASM8088Opcode.RET;
+    }
+
+    /**
+     * A compiled basic block
+     */
+    private static final class Block
+    {
+        private final int start;
+        private final Runnable[] steps;
+
+        private Block(int start, Runnable[] steps)
+        {
+            this.start = start;
+            this.steps = steps;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package xyz.atom7.interpreter.asm8088;
+
+/**
+ * Decodes the 8088 machine code emitted by {@link ASM8088Assembler} back into instructions, reading it
+ * from the memory of a scope. Decoded instructions carry the mnemonic of the interpreter handler that
+ * executes them, their operands and, for branches, the absolute address they go to.
+ * <p>
+ * The conditional jumps decode to the mnemonic with the 8088 semantics of their condition code, so a
+ * jump assembled from JL is run as JNGE. The byte and word forms of MUL and DIV both decode to the
+ * interpreter's MUL and DIV.
+ */
+final class ASM8088Decoder
+{
+    private static final String[] CONDITIONS = {
+            "JO", "JNO", "JB", "JAE", "JE", "JNE", "JBE", "JA",
+            "JS", "JNS", "JP", "JNP", "JNGE", "JGE", "JNG", "JNLE"
+    };
+
+    private final ASM8088Scope scope;
+    private final int address;
+    private int next;
+
+    // the fields of the last ModRM byte
+    private int mod, reg, rm;
+
+    private ASM8088Decoder(ASM8088Scope scope, int address)
+    {
+        this.scope = scope;
+        this.address = address;
+        this.next = address;
+    }
+
+    /**
+     * A decoded instruction
+     */
+    static final class Decoded
+    {
+        final ASM8088Instruction instruction;
+
+        /**
+         * The number of bytes the instruction takes
+         */
+        final int length;
+
+        private Decoded(ASM8088Instruction instruction, int length)
+        {
+            this.instruction = instruction;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Decodes the instruction at an address
+     *
+     * @param scope The scope whose memory holds the code
+     * @param address The physical address of the instruction
+     * @return The decoded instruction
+     * @throws IllegalArgumentException If the bytes are not an instruction the interpreter supports
+     */
+    static Decoded decode(ASM8088Scope scope, int address)
+    {
+        ASM8088Decoder decoder = new ASM8088Decoder(scope, address);
+        ASM8088Instruction instruction = decoder.decode();
+
+        return new Decoded(instruction, decoder.next - address);
+    }
+
+    private ASM8088Instruction decode()
+    {
+        int opcode = nextByte();
+
+        // ADD, OR, ADC, SBB, AND, SUB, XOR and CMP, in their register and accumulator forms
+        if (opcode < 0x40 && (opcode & 7) < 6) {
+            String operation = ASM8088Assembler.ALU_OPERATIONS[opcode >> 3];
+            boolean wide = (opcode & 1) != 0;
+
+            if ((opcode & 4) != 0) {
+                ASM8088Register accumulator = wide ? ASM8088Register.AX : ASM8088Register.AL;
+                return instruction(operation, ASM8088Operand.of(accumulator), immediate(wide));
+            }
+
+            modRM();
+            ASM8088Operand register = register(reg, wide);
+            ASM8088Operand rmOperand = rmOperand(wide);
+
+            return (opcode & 2) != 0
+                    ? instruction(operation, register, rmOperand)
+                    : instruction(operation, rmOperand, register);
+        }
+
+        if (opcode < 0x20 && (opcode & 6) == 6) {
+            ASM8088Register segment = ASM8088Assembler.SEGMENT_REGISTERS[opcode >> 3];
+
+            if (segment != null) {
+                return instruction((opcode & 1) == 0 ? "PUSH" : "POP", ASM8088Operand.of(segment));
+            }
+        }
+
+        if (opcode >= 0x40 && opcode < 0x60) {
+            String[] operations = {"INC", "DEC", "PUSH", "POP"};
+            return instruction(operations[(opcode - 0x40) >> 3], register(opcode & 7, true));
+        }
+
+        if (opcode >= 0x70 && opcode < 0x80) {
+            return branch(CONDITIONS[opcode & 0xF], (byte) nextByte());
+        }
+
+        if (opcode >= 0xB0 && opcode < 0xC0) {
+            boolean wide = (opcode & 8) != 0;
+            return instruction("MOV", register(opcode & 7, wide), immediate(wide));
+        }
+
+        switch (opcode)
+        {
+            case 0x68:
+                return instruction("PUSH", immediate(true));
+            case 0x80:
+            case 0x81:
+            case 0x82:
+            case 0x83: {
+                boolean wide = (opcode & 1) != 0;
+                modRM();
+                ASM8088Operand destination = rmOperand(wide);
+                ASM8088Operand source = opcode == 0x83
+                        ? ASM8088Operand.immediate((byte) nextByte() & 0xFFFF)
+                        : immediate(wide);
+
+                return instruction(ASM8088Assembler.ALU_OPERATIONS[reg], destination, source);
+            }
+            case 0x88:
+            case 0x89:
+            case 0x8A:
+            case 0x8B: {
+                boolean wide = (opcode & 1) != 0;
+                modRM();
+                ASM8088Operand register = register(reg, wide);
+                ASM8088Operand rmOperand = rmOperand(wide);
+
+                return (opcode & 2) != 0
+                        ? instruction("MOV", register, rmOperand)
+                        : instruction("MOV", rmOperand, register);
+            }
+            case 0x8C:
+            case 0x8E: {
+                modRM();
+                ASM8088Register segment = reg < 4 ? ASM8088Assembler.SEGMENT_REGISTERS[reg] : null;
+
+                if (segment == null) {
+                    break;
+                }
+
+                return opcode == 0x8E
+                        ? instruction("MOV", ASM8088Operand.of(segment), rmOperand(true))
+                        : instruction("MOV", rmOperand(true), ASM8088Operand.of(segment));
+            }
+            case 0x8F:
+                modRM();
+                if (reg == 0) {
+                    return instruction("POP", rmOperand(true));
+                }
+                break;
+            case 0x90:
+                return instruction("NOP");
+            case 0xC3:
+                return instruction("RET");
+            case 0xC6:
+            case 0xC7: {
+                boolean wide = (opcode & 1) != 0;
+                modRM();
+
+                if (reg == 0) {
+                    ASM8088Operand destination = rmOperand(wide);
+                    return instruction("MOV", destination, immediate(wide));
+                }
+                break;
+            }
+            case 0xCD:
+                if (nextByte() == 0x20) {
+                    return instruction("SYS");
+                }
+                break;
+            case 0xE2:
+                return branch("LOOP", (byte) nextByte());
+            case 0xE3:
+                return branch("JCXZ", (byte) nextByte());
+            case 0xE8:
+                return branch("CALL", (short) nextWord());
+            case 0xE9:
+                return branch("JMP", (short) nextWord());
+            case 0xEB:
+                return branch("JMP", (byte) nextByte());
+            case 0xF4:
+                return instruction("HLT");
+            case 0xF6:
+            case 0xF7: {
+                String[] operations = {null, null, "NOT", null, "MUL", null, "DIV", null};
+                modRM();
+
+                if (operations[reg] != null) {
+                    return instruction(operations[reg], rmOperand((opcode & 1) != 0));
+                }
+                break;
+            }
+            case 0xFE:
+            case 0xFF: {
+                boolean wide = (opcode & 1) != 0;
+                modRM();
+
+                if (reg < 2) {
+                    return instruction(reg == 0 ? "INC" : "DEC", rmOperand(wide));
+                }
+                if (reg == 6 && wide) {
+                    return instruction("PUSH", rmOperand(true));
+                }
+                break;
+            }
+            default:
+                break;
+        }
+
+        throw new IllegalArgumentException("Unknown instruction: 0x" + Integer.toHexString(opcode)
+                + " at 0x" + Integer.toHexString(address));
+    }
+
+    private int nextByte()
+    {
+        return scope.readByte(next++) & 0xFF;
+    }
+
+    private int nextWord()
+    {
+        int word = scope.readWord(next);
+        next += 2;
+        return word;
+    }
+
+    private ASM8088Operand immediate(boolean wide)
+    {
+        return ASM8088Operand.immediate(wide ? nextWord() : nextByte());
+    }
+
+    private void modRM()
+    {
+        int modRM = nextByte();
+        mod = modRM >> 6;
+        reg = (modRM >> 3) & 7;
+        rm = modRM & 7;
+    }
+
+    private static ASM8088Operand register(int code, boolean wide)
+    {
+        return ASM8088Operand.of((wide ? ASM8088Assembler.WORD_REGISTERS : ASM8088Assembler.BYTE_REGISTERS)[code]);
+    }
+
+    /**
+     * Decodes the r/m operand of the last ModRM byte, reading its displacement
+     */
+    private ASM8088Operand rmOperand(boolean wide)
+    {
+        if (mod == 3) {
+            return register(rm, wide);
+        }
+
+        if (mod == 0 && rm == 0b110) {
+            return ASM8088Operand.memory(nextWord(), new ASM8088Register[0], wide);
+        }
+
+        int displacement = mod == 1 ? (byte) nextByte() : mod == 2 ? (short) nextWord() : 0;
+
+        return ASM8088Operand.memory(displacement, ASM8088Assembler.BASE_INDEX_REGISTERS[rm], wide);
+    }
+
+    private ASM8088Instruction branch(String opCode, int displacement)
+    {
+        int target = (next + displacement) & 0xFFFF;
+        return new ASM8088Instruction(opCode, ASM8088Operand.immediate(target), ASM8088Operand.NONE, target);
+    }
+
+    private static ASM8088Instruction instruction(String opCode)
+    {
+        return instruction(opCode, ASM8088Operand.NONE, ASM8088Operand.NONE);
+    }
+
+    private static ASM8088Instruction instruction(String opCode, ASM8088Operand operand)
+    {
+        return instruction(opCode, operand, ASM8088Operand.NONE);
+    }
+
+    private static ASM8088Instruction instruction(String opCode, ASM8088Operand operand, ASM8088Operand secondOperand)
+    {
+        return new ASM8088Instruction(opCode, operand, secondOperand, -1);
+    }
+}
@@ -1,11 +1,33 @@
 package xyz.atom7.interpreter.asm8088;
 
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.api.interpreter.Instruction;
 
 @Getter
 public class ASM8088Instruction extends Instruction
 {
+    /**
+     * The decoded operation code, or null if the mnemonic is unknown
+     */
+    @Nullable
+    private final ASM8088Opcode opcode;
+
+    /**
+     * The decoded first operand
+     */
+    private final ASM8088Operand operand;
+
+    /**
+     * The decoded second operand
+     */
+    private final ASM8088Operand secondOperand;
+
+    /**
+     * The instruction index a jump, CALL or LOOP branches to, resolved from its label when linking; -1 otherwise
+     */
+    private final int target;
+
     /**
      * Constructor for ASM8088Instruction with no operands
      * 
@@ -14,6 +36,10 @@ public class ASM8088Instruction extends Instruction
     public ASM8088Instruction(String opCode)
     {
         super(opCode, null, null);
+        this.opcode = ASM8088Opcode.fromMnemonic(opCode);
+        this.operand = ASM8088Operand.NONE;
+        this.secondOperand = ASM8088Operand.NONE;
+        this.target = -1;
     }
 
     /**
@@ -21,10 +47,11 @@ public class ASM8088Instruction extends Instruction
      * 
      * @param opCode The mnemonic for the instruction
      * @param argument The first operand for the instruction
+     * @param scope The scope used to resolve labels and constants in the operand
      */
-    public ASM8088Instruction(String opCode, String argument)
+    public ASM8088Instruction(String opCode, String argument, ASM8088Scope scope)
     {
-        super(opCode, argument, null);
+        this(opCode, argument, null, scope);
     }
 
     /**
@@ -33,9 +60,32 @@ public class ASM8088Instruction extends Instruction
      * @param opCode The mnemonic for the instruction
      * @param argument The first operand for the instruction
      * @param secondArgument The second operand for the instruction
+     * @param scope The scope used to resolve labels and constants in the operands
      */
-    public ASM8088Instruction(String opCode, String argument, String secondArgument)
+    public ASM8088Instruction(String opCode, String argument, String secondArgument, ASM8088Scope scope)
     {
         super(opCode, argument, secondArgument);
+        this.opcode = ASM8088Opcode.fromMnemonic(opCode);
+        this.operand = ASM8088Operand.decode(argument, scope);
+        this.secondOperand = ASM8088Operand.decode(secondArgument, scope);
+        this.target = -1;
+    }
+
+    /**
+     * Constructor for an instruction with its operands already decoded, from machine code, from an encoded
+     * program, or with its branch target resolved
+     *
+     * @param opCode The mnemonic for the instruction
+     * @param operand The first operand
+     * @param secondOperand The second operand
+     * @param target The instruction index or address a jump, CALL or LOOP branches to; -1 otherwise
+     */
+    ASM8088Instruction(String opCode, ASM8088Operand operand, ASM8088Operand secondOperand, int target)
+    {
+        super(opCode, operand.getText(), secondOperand.getText());
+        this.opcode = ASM8088Opcode.fromMnemonic(opCode);
+        this.operand = operand;
+        this.secondOperand = secondOperand;
+        this.target = target;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+package xyz.atom7.interpreter.asm8088;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The immutable image of a loaded 8088 program: its decoded instructions with their branch targets
+ * resolved, the labels of the code and of the data, and the initial contents of the data section.
+ * Loading it into a program skips the parser, the semantic analysis and the operand decoding, and it
+ * can be shared by every program loaded from it.
+ * An image is shared across threads by caches and batches, so its instructions and data are only handed out
+ * as arrays inside this package, and its labels as read-only maps.
+ * <p>
+ * {@link #toBytes()} and {@link #fromBytes(byte[])} encode it as big-endian binary, with the operands
+ * already decoded, for the on-disk program cache.
+ */
+public class ASM8088LinkedProgram
+{
+    /**
+     * The file extension of encoded 8088 programs
+     */
+    public static final String EXTENSION = ".asm8088";
+
+    private static final int MAGIC = 0x8088CAFE;
+    private static final short VERSION = 1;
+
+    private static final ASM8088Register[] REGISTERS = ASM8088Register.values();
+    private static final ASM8088Operand.Kind[] KINDS = ASM8088Operand.Kind.values();
+
+    /**
+     * The .TEXT instructions
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final ASM8088Instruction[] instructions;
+
+    /**
+     * The code labels and the index of the instruction they name
+     */
+    @Getter
+    private final Map<String, Integer> labels;
+
+    /**
+     * The data labels and constants, and their addresses or values
+     */
+    @Getter
+    private final Map<String, Integer> labelAddresses;
+
+    /**
+     * The initial contents of the data section
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final byte[] data;
+
+    /**
+     * The number of bytes reserved in the BSS section
+     */
+    @Getter
+    private final int bssSize;
+
+    /**
+     * Constructor for ASM8088LinkedProgram
+     *
+     * @param instructions The .TEXT instructions, with their branch targets resolved
+     * @param labels The code labels, copied
+     * @param labelAddresses The data labels and constants, copied
+     * @param data The initial contents of the data section
+     * @param bssSize The number of bytes reserved in the BSS section
+     */
+    ASM8088LinkedProgram(ASM8088Instruction[] instructions, Map<String, Integer> labels,
+                         Map<String, Integer> labelAddresses, byte[] data, int bssSize)
+    {
+        this.instructions = instructions;
+        this.labels = Collections.unmodifiableMap(new HashMap<>(labels));
+        this.labelAddresses = Collections.unmodifiableMap(new HashMap<>(labelAddresses));
+        this.data = data;
+        this.bssSize = bssSize;
+    }
+
+    /**
+     * @return The number of .TEXT instructions
+     */
+    public int getInstructionCount()
+    {
+        return instructions.length;
+    }
+
+    /**
+     * @param index The index of the instruction
+     * @return The instruction
+     */
+    public ASM8088Instruction getInstruction(int index)
+    {
+        return instructions[index];
+    }
+
+    /**
+     * Encode the program
+     *
+     * @return The encoded program
+     */
+    public byte[] toBytes()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            writeMap(out, labels);
+            writeMap(out, labelAddresses);
+
+            out.writeInt(data.length);
+            out.write(data);
+            out.writeInt(bssSize);
+
+            out.writeInt(instructions.length);
+
+            for (ASM8088Instruction instruction : instructions)
+            {
+                out.writeUTF(instruction.getOpCode());
+                out.writeInt(instruction.getTarget());
+                writeOperand(out, instruction.getOperand());
+                writeOperand(out, instruction.getSecondOperand());
+            }
+        }
+        catch (IOException e) {
+            // a ByteArrayOutputStream does not fail
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeMap(DataOutputStream out, Map<String, Integer> map) throws IOException
+    {
+        out.writeInt(map.size());
+
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static void writeOperand(DataOutputStream out, ASM8088Operand operand) throws IOException
+    {
+        out.writeByte(operand.getKind().ordinal());
+
+        if (operand.getKind() == ASM8088Operand.Kind.NONE) {
+            return;
+        }
+
+        out.writeUTF(operand.getText());
+        out.writeByte(operand.getRegister() != null ? operand.getRegister().ordinal() : -1);
+        out.writeInt(operand.getValue());
+        writeRegisters(out, operand.getAddedRegisters());
+        writeRegisters(out, operand.getSubtractedRegisters());
+        out.writeByte((operand.isStackSegment() ? 1 : 0) | (operand.isWrapped() ? 2 : 0) | (operand.isWide() ? 4 : 0));
+    }
+
+    private static void writeRegisters(DataOutputStream out, ASM8088Register[] registers) throws IOException
+    {
+        out.writeByte(registers.length);
+
+        for (ASM8088Register register : registers) {
+            out.writeByte(register.ordinal());
+        }
+    }
+
+    /**
+     * Decode a program
+     *
+     * @param bytes The encoded program
+     * @return The program
+     * @throws IllegalArgumentException If the bytes do not hold a valid encoding
+     */
+    public static ASM8088LinkedProgram fromBytes(@NotNull byte[] bytes)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an 8088 program");
+            }
+
+            short version = buffer.getShort();
+
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported 8088 program version: " + version);
+            }
+
+            Map<String, Integer> labels = readMap(buffer);
+            Map<String, Integer> labelAddresses = readMap(buffer);
+
+            byte[] data = new byte[readCount(buffer)];
+            buffer.get(data);
+            int bssSize = buffer.getInt();
+
+            ASM8088Instruction[] instructions = new ASM8088Instruction[readCount(buffer)];
+
+            for (int i = 0; i < instructions.length; i++)
+            {
+                String opCode = readUTF(buffer);
+                int target = buffer.getInt();
+                ASM8088Operand operand = readOperand(buffer);
+                ASM8088Operand secondOperand = readOperand(buffer);
+
+                instructions[i] = new ASM8088Instruction(opCode, operand, secondOperand, target);
+            }
+
+            return new ASM8088LinkedProgram(instructions, labels, labelAddresses, data, bssSize);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt 8088 program", e);
+        }
+    }
+
+    private static Map<String, Integer> readMap(ByteBuffer buffer)
+    {
+        int size = readCount(buffer);
+        Map<String, Integer> map = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            map.put(readUTF(buffer), buffer.getInt());
+        }
+
+        return map;
+    }
+
+    private static ASM8088Operand readOperand(ByteBuffer buffer)
+    {
+        ASM8088Operand.Kind kind = KINDS[buffer.get()];
+
+        if (kind == ASM8088Operand.Kind.NONE) {
+            return ASM8088Operand.NONE;
+        }
+
+        String text = readUTF(buffer);
+        int registerIndex = buffer.get();
+        @Nullable ASM8088Register register = registerIndex >= 0 ? REGISTERS[registerIndex] : null;
+        int value = buffer.getInt();
+        ASM8088Register[] added = readRegisters(buffer);
+        ASM8088Register[] subtracted = readRegisters(buffer);
+        int flags = buffer.get();
+
+        return ASM8088Operand.restore(kind, text, register, value, added, subtracted,
+                (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0);
+    }
+
+    private static ASM8088Register[] readRegisters(ByteBuffer buffer)
+    {
+        ASM8088Register[] registers = new ASM8088Register[Byte.toUnsignedInt(buffer.get())];
+
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = REGISTERS[buffer.get()];
+        }
+
+        return registers;
+    }
+
+    /**
+     * Read the number of entries of a table, each of which takes at least one byte of the encoding
+     *
+     * @throws IllegalArgumentException If the count is negative or larger than what is left of the encoding
+     */
+    private static int readCount(ByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt 8088 program: invalid count " + count);
+        }
+
+        return count;
+    }
+
+    private static String readUTF(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        // DataOutputStream writes modified UTF-8, which matches UTF-8 for the identifiers of a program
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
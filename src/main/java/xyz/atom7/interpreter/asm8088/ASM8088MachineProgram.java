@@ -0,0 +1,214 @@
+package xyz.atom7.interpreter.asm8088;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * ASM8088MachineProgram runs an 8088 program from machine code in memory instead of from the parsed
+ * instruction list. The .TEXT instructions are assembled by {@link ASM8088Assembler} at CS:0100, like a
+ * .COM program, and the core fetches and decodes the bytes at CS:IP. Decoded instructions are cached by
+ * address and dropped when the program writes over them, so self-modifying code keeps working.
+ * <p>
+ * While a machine program runs, the program counter holds the instruction pointer, so CALL pushes and RET
+ * pops real return addresses. Tracing and debug output work on the instruction list, so with either
+ * enabled a program assembled from source falls back to the loop of {@link ASM8088Program}.
+ * <p>
+ * A loaded program can be saved as an image: the size of the code as a little-endian word, followed by
+ * the memory from CS:0100 to the end of the initialised data. Images run without the source.
+ */
+public class ASM8088MachineProgram<T extends ASM8088Instruction> extends ASM8088Program<T>
+{
+    /**
+     * The file extension of 8088 images
+     */
+    public static final String EXTENSION = ".bin";
+
+    /**
+     * The address the code is loaded at
+     */
+    public static final int CODE_ORIGIN = 0x100;
+
+    /**
+     * The decoded instructions, indexed by their offset from {@link #CODE_ORIGIN}
+     */
+    private Step[] steps;
+
+    /**
+     * The address after the code
+     */
+    private int codeEnd;
+
+    /**
+     * Whether the program was loaded from an image, and so has no instruction list to fall back to
+     */
+    private boolean fromImage;
+
+    @Override
+    protected void initProgram(ASM8088LinkedProgram program)
+    {
+        super.initProgram(program);
+
+        ASM8088Assembler.Assembly assembly = ASM8088Assembler.assemble(getInstructions(), CODE_ORIGIN);
+        byte[] code = assembly.code;
+
+        if (CODE_ORIGIN + code.length > getScope().getDataSegmentStart()) {
+            throw new IllegalStateException("The code does not fit below the data segment: "
+                    + code.length + " bytes");
+        }
+
+        for (int i = 0; i < code.length; i++) {
+            getScope().writeByte(CODE_ORIGIN + i, code[i]);
+        }
+
+        load(CODE_ORIGIN + code.length);
+    }
+
+    /**
+     * Initializes the program from an image, without parsing any source
+     *
+     * @param image The image, as written by {@link #toImage()}
+     * @throws IllegalArgumentException If the image is truncated
+     */
+    public void init(@NotNull byte[] image)
+    {
+        initInstructions();
+
+        if (image.length < 2) {
+            throw new IllegalArgumentException("Truncated 8088 image");
+        }
+
+        int codeSize = (image[0] & 0xFF) | ((image[1] & 0xFF) << 8);
+
+        if (image.length - 2 < codeSize || CODE_ORIGIN + image.length - 2 > getScope().getMemory().length) {
+            throw new IllegalArgumentException("Truncated or oversized 8088 image");
+        }
+
+        for (int i = 2; i < image.length; i++) {
+            getScope().writeByte(CODE_ORIGIN + i - 2, image[i]);
+        }
+
+        fromImage = true;
+        load(CODE_ORIGIN + codeSize);
+    }
+
+    /**
+     * Saves the loaded program as an image
+     *
+     * @return The image
+     */
+    public byte[] toImage()
+    {
+        ASM8088Scope scope = getScope();
+        int end = Math.max(codeEnd, scope.getDataSegmentStart() + scope.getCurrentDataOffset());
+        int codeSize = codeEnd - CODE_ORIGIN;
+
+        byte[] image = new byte[end - CODE_ORIGIN + 2];
+        image[0] = (byte) codeSize;
+        image[1] = (byte) (codeSize >> 8);
+        System.arraycopy(scope.getMemory(), CODE_ORIGIN, image, 2, end - CODE_ORIGIN);
+
+        return image;
+    }
+
+    private void load(int end)
+    {
+        codeEnd = end;
+        steps = new Step[end - CODE_ORIGIN];
+
+        // a write can change any instruction that covers the byte, and none starts more than
+        // MAX_INSTRUCTION_LENGTH - 1 bytes before it
+        getScope().watchCode(CODE_ORIGIN, end, address -> {
+            int from = Math.max(CODE_ORIGIN, address - ASM8088Assembler.MAX_INSTRUCTION_LENGTH + 1);
+            Arrays.fill(steps, from - CODE_ORIGIN, address - CODE_ORIGIN + 1, null);
+        });
+    }
+
+    /**
+     * Executes the program, decoding the machine code at the instruction pointer
+     */
+    @SneakyThrows
+    @Override
+    protected void executeProgram()
+    {
+        if (!fromImage && (context.isTraced() || isDebug())) {
+            super.executeProgram();
+            return;
+        }
+
+        resume();
+
+        ASM8088Scope scope = getScope();
+        scope.setPc(CODE_ORIGIN - 1);
+
+        while (scope.getPc() + 1 < codeEnd)
+        {
+            int ip = scope.getPc() + 1;
+
+            if (ip < CODE_ORIGIN) {
+                throw new IllegalStateException("Instruction pointer outside of the code: 0x"
+                        + Integer.toHexString(ip));
+            }
+
+            Step step = steps[ip - CODE_ORIGIN];
+
+            if (step == null) {
+                step = steps[ip - CODE_ORIGIN] = decode(ip);
+            }
+
+            // branches set the program counter to their target minus one, like the index-based loop
+            scope.setPc(step.next - 1);
+
+            try {
+                step.action.run();
+            }
+            catch (RuntimeException e) {
+                // leave the program counter at the instruction that failed or exited
+                scope.setPc(ip);
+                executedInstructions++;
+                throw e;
+            }
+
+            executedInstructions++;
+
+            // a taken jump, a call or a return is a safepoint
+            if (scope.getPc() != step.next - 1) {
+                safepoint();
+            }
+        }
+    }
+
+    private Step decode(int address)
+    {
+        ASM8088Decoder.Decoded decoded = ASM8088Decoder.decode(getScope(), address);
+        Consumer<T> handler = getHandler(decoded.instruction);
+
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown instruction: " + decoded.instruction.getOpCode());
+        }
+
+        T instruction = (T) decoded.instruction;
+        return new Step(() -> handler.accept(instruction), address + decoded.length);
+    }
+
+    /**
+     * A decoded instruction bound to its handler
+     */
+    private static final class Step
+    {
+        private final Runnable action;
+
+        /**
+         * The address of the following instruction
+         */
+        private final int next;
+
+        private Step(Runnable action, int next)
+        {
+            this.action = action;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package xyz.atom7.interpreter.asm8088;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operation codes understood by the 8088 interpreter.
+ * Instructions are decoded to one of these once, when they are created, so the execution loop never touches
+ * mnemonics.
+ */
+public enum ASM8088Opcode
+{
+    ADC,
+    ADD,
+    ADDB,
+    AND,
+    CALL,
+    CMP,
+    CMPB,
+    DEC,
+    DIV,
+    DIVB,
+    HLT,
+    INC,
+    JA,
+    JAE,
+    JB,
+    JBE,
+    JC,
+    JCXZ,
+    JE,
+    JG,
+    JGE,
+    JL,
+    JLE,
+    JMP,
+    JNA,
+    JNAE,
+    JNB,
+    JNBE,
+    JNC,
+    JNE,
+    JNG,
+    JNGE,
+    JNL,
+    JNLE,
+    JNO,
+    JNP,
+    JNS,
+    JNZ,
+    JO,
+    JP,
+    JPE,
+    JPO,
+    JS,
+    JZ,
+    LOOP,
+    MOV,
+    MOVB,
+    MUL,
+    MULB,
+    NOP,
+    NOT,
+    OR,
+    POP,
+    PUSH,
+    RET,
+    SBB,
+    SUB,
+    SUBB,
+    SYS,
+    XOR,
+    XORB,
+    LABEL;
+
+    private static final Map<String, ASM8088Opcode> BY_MNEMONIC = new HashMap<>();
+
+    static {
+        for (ASM8088Opcode opcode : values()) {
+            BY_MNEMONIC.put(opcode.name(), opcode);
+        }
+    }
+
+    /**
+     * Decodes a mnemonic, regardless of its case
+     *
+     * @param mnemonic The mnemonic as written in the source
+     * @return The matching opcode, or null if the mnemonic is unknown, such as a data directive in the code
+     */
+    @Nullable
+    public static ASM8088Opcode fromMnemonic(String mnemonic)
+    {
+        return BY_MNEMONIC.get(mnemonic.toUpperCase());
+    }
+}
@@ -0,0 +1,361 @@
+package xyz.atom7.interpreter.asm8088;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An 8088 instruction operand, decoded once at load time.
+ * Label and constant references are resolved to numbers, registers to {@link ASM8088Register}s and
+ * memory references to a displacement plus the registers to add or subtract, so executing an
+ * instruction never parses its operand text.
+ */
+@Getter
+public final class ASM8088Operand
+{
+    /**
+     * The shapes an operand can take
+     */
+    public enum Kind
+    {
+        /**
+         * No operand; reads as 0 and ignores writes
+         */
+        NONE,
+
+        /**
+         * A register
+         */
+        REGISTER,
+
+        /**
+         * A number, or a label or constant resolved to its value
+         */
+        IMMEDIATE,
+
+        /**
+         * A memory reference in brackets
+         */
+        MEMORY
+    }
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern BYTE_REGISTER = Pattern.compile(".*\\b(AL|AH|BL|BH|CL|CH|DL|DH)\\b.*");
+    private static final ASM8088Register[] NO_REGISTERS = new ASM8088Register[0];
+
+    public static final ASM8088Operand NONE = new ASM8088Operand(Kind.NONE, null, null, 0,
+            NO_REGISTERS, NO_REGISTERS, false, false, false);
+
+    private final Kind kind;
+
+    /**
+     * The operand as written in the source
+     */
+    @Nullable
+    private final String text;
+
+    /**
+     * The register of a REGISTER operand
+     */
+    @Nullable
+    private final ASM8088Register register;
+
+    /**
+     * The value of an IMMEDIATE operand, or the displacement of a MEMORY operand
+     */
+    private final int value;
+
+    /**
+     * The 16-bit registers added to the displacement of a MEMORY operand
+     */
+    private final ASM8088Register[] addedRegisters;
+
+    /**
+     * The 16-bit registers subtracted from the displacement of a MEMORY operand
+     */
+    private final ASM8088Register[] subtractedRegisters;
+
+    /**
+     * Whether a MEMORY operand is BP-relative, and so addressed through the stack segment
+     */
+    private final boolean stackSegment;
+
+    /**
+     * Whether the address of a MEMORY operand wraps to the 20-bit address space
+     */
+    private final boolean wrapped;
+
+    /**
+     * Whether the operand is 16 bits wide
+     */
+    private final boolean wide;
+
+    private ASM8088Operand(Kind kind, @Nullable String text, @Nullable ASM8088Register register, int value,
+                           ASM8088Register[] addedRegisters, ASM8088Register[] subtractedRegisters,
+                           boolean stackSegment, boolean wrapped, boolean wide)
+    {
+        this.kind = kind;
+        this.text = text;
+        this.register = register;
+        this.value = value;
+        this.addedRegisters = addedRegisters;
+        this.subtractedRegisters = subtractedRegisters;
+        this.stackSegment = stackSegment;
+        this.wrapped = wrapped;
+        this.wide = wide;
+    }
+
+    /**
+     * Decodes an operand, resolving labels and constants against the symbols known to the scope
+     *
+     * @param text The operand as written in the source, or null if there is none
+     * @param scope The scope holding the data labels and constants
+     * @return The decoded operand
+     */
+    public static ASM8088Operand decode(@Nullable String text, @NotNull ASM8088Scope scope)
+    {
+        if (text == null) {
+            return NONE;
+        }
+
+        String operand = text.trim();
+
+        if (operand.startsWith("[") && operand.endsWith("]")) {
+            return decodeMemory(text, operand.substring(1, operand.length() - 1).trim(), scope);
+        }
+
+        ASM8088Register register = ASM8088Register.fromName(operand);
+
+        if (register != null) {
+            return new ASM8088Operand(Kind.REGISTER, text, register, 0,
+                    NO_REGISTERS, NO_REGISTERS, false, false, register.isWide());
+        }
+
+        return new ASM8088Operand(Kind.IMMEDIATE, text, null, decodeImmediate(operand, scope),
+                NO_REGISTERS, NO_REGISTERS, false, false, false);
+    }
+
+    /**
+     * Creates an operand naming a register
+     *
+     * @param register The register
+     * @return The register operand
+     */
+    public static ASM8088Operand of(@NotNull ASM8088Register register)
+    {
+        return new ASM8088Operand(Kind.REGISTER, register.name(), register, 0,
+                NO_REGISTERS, NO_REGISTERS, false, false, register.isWide());
+    }
+
+    /**
+     * Recreates an operand from its decoded fields, as read back from a cached program
+     *
+     * @return The operand
+     */
+    static ASM8088Operand restore(Kind kind, @Nullable String text, @Nullable ASM8088Register register, int value,
+                                  ASM8088Register[] addedRegisters, ASM8088Register[] subtractedRegisters,
+                                  boolean stackSegment, boolean wrapped, boolean wide)
+    {
+        if (kind == Kind.NONE) {
+            return NONE;
+        }
+
+        return new ASM8088Operand(kind, text, register, value, addedRegisters, subtractedRegisters,
+                stackSegment, wrapped, wide);
+    }
+
+    /**
+     * Creates an immediate operand, as decoded from machine code
+     *
+     * @param value The value
+     * @return The immediate operand
+     */
+    static ASM8088Operand immediate(int value)
+    {
+        return new ASM8088Operand(Kind.IMMEDIATE, "0x" + Integer.toHexString(value), null, value,
+                NO_REGISTERS, NO_REGISTERS, false, false, false);
+    }
+
+    /**
+     * Creates a memory operand addressed by a displacement plus base and index registers, as decoded from
+     * machine code; BP-based references go through the stack segment, like their source form
+     *
+     * @param displacement The displacement
+     * @param registers The base and index registers
+     * @param wide Whether the operand is 16 bits wide
+     * @return The memory operand
+     */
+    static ASM8088Operand memory(int displacement, ASM8088Register[] registers, boolean wide)
+    {
+        StringBuilder text = new StringBuilder("[");
+        boolean stackSegment = false;
+
+        for (ASM8088Register register : registers) {
+            stackSegment |= register == ASM8088Register.BP;
+            text.append(register.name()).append('+');
+        }
+
+        text.append("0x").append(Integer.toHexString(displacement)).append(']');
+
+        return memory(text.toString(), displacement, registers, NO_REGISTERS,
+                stackSegment, registers.length > 0 && !stackSegment, wide);
+    }
+
+    /**
+     * Decodes an immediate value: a hexadecimal or decimal number, a difference or sum of two labels,
+     * or a single label or constant; anything unresolved is 0
+     *
+     * @param operand The trimmed operand
+     * @param scope The scope holding the data labels and constants
+     * @return The value of the operand
+     */
+    private static int decodeImmediate(String operand, ASM8088Scope scope)
+    {
+        if (operand.startsWith("0x") || operand.startsWith("0X")) {
+            return Integer.parseInt(operand.substring(2), 16);
+        }
+
+        if (operand.contains("-")) {
+            String[] parts = operand.split("-");
+            if (parts.length == 2) {
+                int leftAddr = scope.getLabelAddress(parts[0].trim());
+                int rightAddr = scope.getLabelAddress(parts[1].trim());
+
+                if (leftAddr != -1 && rightAddr != -1) {
+                    return leftAddr - rightAddr;
+                }
+            }
+        }
+
+        if (operand.contains("+")) {
+            String[] parts = operand.split("\\+");
+            if (parts.length == 2) {
+                int leftAddr = scope.getLabelAddress(parts[0].trim());
+                int rightAddr = scope.getLabelAddress(parts[1].trim());
+
+                if (leftAddr != -1 && rightAddr != -1) {
+                    return leftAddr + rightAddr;
+                }
+            }
+        }
+
+        try {
+            return Integer.parseInt(operand);
+        }
+        catch (NumberFormatException e) {
+            int labelAddr = scope.getLabelAddress(operand);
+            return labelAddr != -1 ? labelAddr : 0;
+        }
+    }
+
+    /**
+     * Decodes a memory reference
+     *
+     * @param text The operand as written in the source
+     * @param memRef The reference without brackets
+     * @param scope The scope holding the data labels and constants
+     * @return The decoded operand
+     */
+    private static ASM8088Operand decodeMemory(String text, String memRef, ASM8088Scope scope)
+    {
+        // memory references are 16-bit unless they mention an 8-bit register
+        boolean wide = !BYTE_REGISTER.matcher(memRef.toUpperCase()).matches();
+
+        // a bare name, registers included, is a direct label reference
+        if (IDENTIFIER.matcher(memRef).matches()) {
+            int labelAddr = scope.getLabelAddress(memRef);
+            return memory(text, labelAddr != -1 ? labelAddr : 0, NO_REGISTERS, NO_REGISTERS, false, false, wide);
+        }
+
+        List<ASM8088Register> added = new ArrayList<>();
+        List<ASM8088Register> subtracted = new ArrayList<>();
+        int displacement = 0;
+
+        // register + offset patterns like "BX+SI", "BP+8", "label+2"
+        if (memRef.contains("+")) {
+            boolean usesStackSegment = false;
+
+            for (String rawPart : memRef.split("\\+")) {
+                String part = rawPart.trim();
+                ASM8088Register register = wordRegister(part);
+
+                if (register != null) {
+                    // BP-relative addressing uses the stack segment
+                    usesStackSegment |= register == ASM8088Register.BP;
+                    added.add(register);
+                }
+                else if (DIGITS.matcher(part).matches()) {
+                    displacement += Integer.parseInt(part);
+                }
+                else if (part.startsWith("0x")) {
+                    displacement += Integer.parseInt(part.substring(2), 16);
+                }
+                else {
+                    int labelAddr = scope.getLabelAddress(part);
+                    if (labelAddr != -1) {
+                        displacement += labelAddr;
+                    }
+                }
+            }
+
+            return memory(text, displacement, added.toArray(NO_REGISTERS), NO_REGISTERS,
+                    usesStackSegment, !usesStackSegment, wide);
+        }
+
+        // register - offset patterns: the first term is added, the others subtracted
+        if (memRef.contains("-")) {
+            String[] parts = memRef.split("-");
+
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i].trim();
+                ASM8088Register register = wordRegister(part);
+                int sign = i == 0 ? 1 : -1;
+
+                if (register != null) {
+                    (i == 0 ? added : subtracted).add(register);
+                }
+                else if (DIGITS.matcher(part).matches()) {
+                    displacement += sign * Integer.parseInt(part);
+                }
+            }
+
+            return memory(text, displacement, added.toArray(NO_REGISTERS), subtracted.toArray(NO_REGISTERS),
+                    false, true, wide);
+        }
+
+        // immediate address
+        try {
+            displacement = memRef.startsWith("0x") ? Integer.parseInt(memRef.substring(2), 16) : Integer.parseInt(memRef);
+        }
+        catch (NumberFormatException e) {
+            displacement = 0;
+        }
+
+        return memory(text, displacement, NO_REGISTERS, NO_REGISTERS, false, false, wide);
+    }
+
+    private static ASM8088Operand memory(String text, int displacement, ASM8088Register[] added,
+                                         ASM8088Register[] subtracted, boolean stackSegment,
+                                         boolean wrapped, boolean wide)
+    {
+        return new ASM8088Operand(Kind.MEMORY, text, null, displacement, added, subtracted, stackSegment, wrapped, wide);
+    }
+
+    @Nullable
+    private static ASM8088Register wordRegister(String name)
+    {
+        ASM8088Register register = ASM8088Register.fromName(name);
+        return register != null && register.getKind() == ASM8088Register.Kind.WORD ? register : null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+}
@@ -1,16 +1,24 @@
 package xyz.atom7.interpreter.asm8088;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.Utils;
 import xyz.atom7.api.interpreter.Interpreter;
+import xyz.atom7.api.interpreter.ProgramCache;
+import xyz.atom7.parser.asm8088.ASM8088ParseResult;
 import xyz.atom7.parser.asm8088.ASM8088ParserHelper;
-import xyz.atom7.parser.asm8088Parser;
+import xyz.atom7.parser.asm8088.ASM8088ProgramIR;
+import xyz.atom7.parser.asm8088.ASM8088StreamParser;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
-import static xyz.atom7.Utils.debugln;
 
 /**
  * ASM8088Program represents an 8088 assembly program interpreter
@@ -26,16 +34,20 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
      * Used for jump instructions and CALL instructions
      */
     protected final Map<String, Integer> labels = new HashMap<>();
-    
+
     /**
-     * Lists to store section content for processing
+     * Operation codes whose operand is a label, resolved to an instruction index after loading
      */
-    private final List<String> textSectionLines = new ArrayList<>();
-    private final List<String> dataSectionLines = new ArrayList<>();
-    private final List<String> bssSectionLines = new ArrayList<>();
-
+    protected final Set<ASM8088Opcode> branchOpCodes = EnumSet.noneOf(ASM8088Opcode.class);
+    
     private final List<ASM8088Instruction> instructions;
 
+    /**
+     * Instruction handlers indexed by {@link ASM8088Opcode#ordinal()}, filled once the handlers are registered
+     */
+    @Getter(AccessLevel.NONE)
+    private final Consumer<T>[] dispatchTable;
+
     /**
      * Constructor for ASM8088Program
      * Initializes the scope and instruction storage
@@ -45,6 +57,7 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
         super();
         this.scope = new ASM8088Scope("main");
         this.instructions = scope.getInstructions();
+        this.dispatchTable = new Consumer[ASM8088Opcode.values().length];
     }
 
     /**
@@ -55,86 +68,90 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
     protected void initInstructions()
     {
         addInstruction("MOV", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
-            int oldValue = getValue(dest);
+            int oldValue = isDebug() ? getValue(dest) : 0; // only reported in debug output
             int value = getValue(src);
             
             setValue(dest, value);
             
-            debugln(formatDebugTwoOp("MOV", dest, src, oldValue, value, value, "="));
+            debugln(() -> formatDebugTwoOp("MOV", dest, src, oldValue, value, value, "="));
         });
 
         addInstruction("PUSH", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int value = getValue(operand);
             
             scope.pushStack(value);
             
-            debugln("PUSH " + operand + " (value: 0x" + String.format("%04X", value & 0xFFFF) + ") ");
+            debugln(() -> "PUSH " + operand + " (value: 0x" + String.format("%04X", value & 0xFFFF) + ") ");
         });
 
         addInstruction("POP", (instr) -> {
-            String dest = instr.getArgument();
+            ASM8088Operand dest = instr.getOperand();
             
-            int oldValue = getValue(dest);
+            int oldValue = isDebug() ? getValue(dest) : 0; // only reported in debug output
             int value = scope.popStack();
 
             setValue(dest, value);
             
-            String extraInfo = "(from stack, SP: 0x" + String.format("%04X", scope.getRegister16("SP")) + ")";
-            debugln(formatDebug("POP", dest, oldValue, value, extraInfo));
+            debugln(() -> {
+                String extraInfo = "(from stack, SP: 0x" + String.format("%04X", scope.getRegister(ASM8088Register.SP)) + ")";
+                return formatDebug("POP", dest, oldValue, value, extraInfo);
+            });
         });
 
         addInstruction("ADD", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
             int result = destVal + srcVal;
             
             setValue(dest, result);
-            scope.updateArithmeticFlags(destVal, srcVal, result, is16BitOperand(dest), false);
+            scope.updateArithmeticFlags(destVal, srcVal, result, dest.isWide(), false);
             
-            debugln(formatDebugTwoOp("ADD", dest, src, destVal, result, srcVal, "+"));
+            debugln(() -> formatDebugTwoOp("ADD", dest, src, destVal, result, srcVal, "+"));
         });
 
         addInstruction("SUB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
             int result = destVal - srcVal;
             
             setValue(dest, result);
-            scope.updateArithmeticFlags(destVal, srcVal, result, is16BitOperand(dest), true);
+            scope.updateArithmeticFlags(destVal, srcVal, result, dest.isWide(), true);
             
-            debugln(formatDebugTwoOp("SUB", dest, src, destVal, result, srcVal, "-"));
+            debugln(() -> formatDebugTwoOp("SUB", dest, src, destVal, result, srcVal, "-"));
         });
 
         addInstruction("MUL", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int multiplicand = getValue(operand);
-            int multiplier = scope.getRegister8("AL");
-            int oldAX = scope.getRegister16("AX");
+            int multiplier = scope.getRegister(ASM8088Register.AL);
+            int oldAX = scope.getRegister(ASM8088Register.AX);
             int result = multiplicand * multiplier;
             
-            scope.setRegister16("AX", result);
+            scope.setRegister(ASM8088Register.AX, result);
             scope.updateFlags(result, false);
             
-            String extraInfo = "(AL:0x" + String.format("%02X", multiplier) + " * " + 
-                              operand + ":0x" + String.format("%02X", multiplicand) + 
-                              " = 0x" + String.format("%04X", result) + ")";
-            debugln(formatDebug("MUL", "AX", oldAX, result, extraInfo));
+            debugln(() -> {
+                String extraInfo = "(AL:0x" + String.format("%02X", multiplier) + " * " + 
+                                  operand + ":0x" + String.format("%02X", multiplicand) + 
+                                  " = 0x" + String.format("%04X", result) + ")";
+                return formatDebug("MUL", ASM8088Operand.of(ASM8088Register.AX), oldAX, result, extraInfo);
+            });
         });
 
         addInstruction("DIV", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int divisor = getValue(operand);
-            int dividend = scope.getRegister16("AX");
+            int dividend = scope.getRegister(ASM8088Register.AX);
             
             if (divisor == 0) {
                 throw new ArithmeticException("Division by zero");
@@ -143,222 +160,143 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             int quotient = dividend / divisor;
             int remainder = dividend % divisor;
             
-            scope.setRegister8("AL", quotient);
-            scope.setRegister8("AH", remainder);
+            scope.setRegister(ASM8088Register.AL, quotient);
+            scope.setRegister(ASM8088Register.AH, remainder);
             
-            String extraInfo = "(AX:0x" + String.format("%04X", dividend) + " / " + 
-                              operand + ":0x" + String.format("%02X", divisor) + 
-                              " = AL:0x" + String.format("%02X", quotient) + 
-                              " R AH:0x" + String.format("%02X", remainder) + ")";
-            debugln("DIV " + operand + " " + extraInfo);
+            debugln(() -> {
+                String extraInfo = "(AX:0x" + String.format("%04X", dividend) + " / " + 
+                                  operand + ":0x" + String.format("%02X", divisor) + 
+                                  " = AL:0x" + String.format("%02X", quotient) + 
+                                  " R AH:0x" + String.format("%02X", remainder) + ")";
+                return "DIV " + operand + " " + extraInfo;
+            });
         });
 
         addInstruction("INC", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int value = getValue(operand);
             int result = value + 1;
             
             setValue(operand, result);
-            scope.updateFlags(result, is16BitOperand(operand));
+            scope.updateFlags(result, operand.isWide());
             
-            debugln(formatDebug("INC", operand, value, result, null));
+            debugln(() -> formatDebug("INC", operand, value, result, null));
         });
 
         addInstruction("DEC", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int value = getValue(operand);
             int result = value - 1;
             
             setValue(operand, result);
-            scope.updateFlags(result, is16BitOperand(operand));
+            scope.updateFlags(result, operand.isWide());
             
-            debugln(formatDebug("DEC", operand, value, result, null));
+            debugln(() -> formatDebug("DEC", operand, value, result, null));
         });
 
         addInstruction("CMP", (instr) -> {
-            String op1 = instr.getArgument();
-            String op2 = instr.getSecondArgument();
+            ASM8088Operand op1 = instr.getOperand();
+            ASM8088Operand op2 = instr.getSecondOperand();
             
             int val1 = getValue(op1);
             int val2 = getValue(op2);
             int result = val1 - val2;
             
-            scope.updateArithmeticFlags(val1, val2, result, is16BitOperand(op1), true);
+            scope.updateArithmeticFlags(val1, val2, result, op1.isWide(), true);
             
-            String flagInfo = "(Z:" + (scope.isZeroFlag() ? "1" : "0") + 
-                             " S:" + (scope.isSignFlag() ? "1" : "0") + 
-                             " C:" + (scope.isCarryFlag() ? "1" : "0") + 
-                             " O:" + (scope.isOverflowFlag() ? "1" : "0") + 
-                             " P:" + (scope.isParityFlag() ? "1" : "0") + ")";
-            debugln(formatDebugTwoOp("CMP", op1, op2, val1, result, val2, "-") + " " + flagInfo);
+            debugln(() -> {
+                String flagInfo = "(Z:" + (scope.isZeroFlag() ? "1" : "0") + 
+                                 " S:" + (scope.isSignFlag() ? "1" : "0") + 
+                                 " C:" + (scope.isCarryFlag() ? "1" : "0") + 
+                                 " O:" + (scope.isOverflowFlag() ? "1" : "0") + 
+                                 " P:" + (scope.isParityFlag() ? "1" : "0") + ")";
+                return formatDebugTwoOp("CMP", op1, op2, val1, result, val2, "-") + " " + flagInfo;
+            });
         });
 
         addInstruction("AND", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
             int result = destVal & srcVal;
             
             setValue(dest, result);
-            scope.updateFlags(result, is16BitOperand(dest));
+            scope.updateFlags(result, dest.isWide());
             scope.setCarryFlag(false); // AND clears carry flag
             
-            debugln(formatDebugTwoOp("AND", dest, src, destVal, result, srcVal, "&"));
+            debugln(() -> formatDebugTwoOp("AND", dest, src, destVal, result, srcVal, "&"));
         });
 
         addInstruction("OR", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
             int result = destVal | srcVal;
             
             setValue(dest, result);
-            scope.updateFlags(result, is16BitOperand(dest));
+            scope.updateFlags(result, dest.isWide());
             scope.setCarryFlag(false); // OR clears carry flag
             
-            debugln(formatDebugTwoOp("OR", dest, src, destVal, result, srcVal, "|"));
+            debugln(() -> formatDebugTwoOp("OR", dest, src, destVal, result, srcVal, "|"));
         });
 
         addInstruction("XOR", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
             int result = destVal ^ srcVal;
             
             setValue(dest, result);
-            scope.updateFlags(result, is16BitOperand(dest));
+            scope.updateFlags(result, dest.isWide());
             scope.setCarryFlag(false); // XOR clears carry flag
             
-            debugln(formatDebugTwoOp("XOR", dest, src, destVal, result, srcVal, "^"));
+            debugln(() -> formatDebugTwoOp("XOR", dest, src, destVal, result, srcVal, "^"));
         });
 
         addInstruction("NOT", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int value = getValue(operand);
             int result = ~value;
             
             setValue(operand, result);
             
-            debugln(formatDebug("NOT", operand, value, result, "(bitwise NOT)"));
+            debugln(() -> formatDebug("NOT", operand, value, result, "(bitwise NOT)"));
         });
 
-        addInstruction("JMP", (instr) -> {
-            String label = instr.getArgument();
-            Integer targetIndex = labels.get(label);
-            if (targetIndex != null) {
-                scope.setPc(targetIndex - 1);
-                debugln("JMP " + label + " -> index: " + targetIndex);
-            } else {
-                throw new IllegalStateException("Label not found: " + label);
-            }
+        addBranch("JMP", (instr) -> {
+            int targetIndex = instr.getTarget();
+            scope.setPc(targetIndex - 1);
+            debugln(() -> "JMP " + instr.getArgument() + " -> index: " + targetIndex);
         });
 
-        addInstruction("JE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JE " + label + " (not taken)");
-            }
-        });
-
-        addInstruction("JNE", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNE " + label + " (not taken)");
-            }
-        });
-
-        addInstruction("JG", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isZeroFlag() && !scope.isSignFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JG " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JG " + label + " (not taken)");
-            }
-        });
+        addJump("JE", () -> scope.isZeroFlag());
+        addJump("JNE", () -> !scope.isZeroFlag());
+        addJump("JG", () -> !scope.isZeroFlag() && !scope.isSignFlag());
+        addJump("JL", () -> scope.isSignFlag());
+        addJump("JLE", () -> scope.isZeroFlag() || scope.isSignFlag());
 
-        addInstruction("JL", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isSignFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JL " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JL " + label + " (not taken)");
-            }
-        });
+        addBranch("CALL", (instr) -> {
+            int targetIndex = instr.getTarget();
 
-        addInstruction("JLE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isZeroFlag() || scope.isSignFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JLE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JLE " + label + " (not taken)");
-            }
-        });
+            // Push return address (current PC + 1)
+            int returnAddr = scope.getPc() + 1;
+            scope.pushStack(returnAddr);
 
-        addInstruction("CALL", (instr) -> {
-            String label = instr.getArgument();
-            Integer targetIndex = labels.get(label);
-            if (targetIndex != null) {
-                // Push return address (current PC + 1)
-                int returnAddr = scope.getPc() + 1;
-                int sp = scope.getRegister16("SP");
-                sp = (sp - 2) & 0xFFFF;
-                scope.setRegister16("SP", sp);
-                
-                int stackAddr = scope.getStackAddress(sp);
-                scope.writeWord(stackAddr, returnAddr);
-                
-                // Jump to target
-                scope.setPc(targetIndex - 1);
-                debugln("CALL " + label + " (return addr: " + returnAddr + ", target: " + targetIndex + ")");
-            } else {
-                throw new IllegalStateException("Label not found: " + label);
-            }
+            // Jump to target
+            scope.setPc(targetIndex - 1);
+            debugln(() -> "CALL " + instr.getArgument() + " (return addr: " + returnAddr + ", target: " + targetIndex + ")");
         });
 
         addInstruction("RET", (instr) -> {
             int returnAddr = scope.popStack();
             scope.setPc(returnAddr - 1);
-            debugln("RET (return to: " + returnAddr + ")");
+            debugln(() -> "RET (return to: " + returnAddr + ")");
         });
 
         addInstruction("SYS", (instr) -> {
@@ -368,42 +306,42 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
                 case 1: // EXIT
                     int exitCode = scope.popStack();
 
-                    debugln("SYS EXIT (code: " + exitCode + ")");
-                    System.out.println("\nProgram exited with code: " + exitCode);
-
-                    System.exit(exitCode);
-                    halt();
+                    debugln(() -> "SYS EXIT (code: " + exitCode + ")");
+                    if (context.isReportExit()) {
+                        context.getOutput().println("\nProgram exited with code: " + exitCode);
+                    }
 
+                    exit(exitCode);
                     break;
                     
                 case 117: // GETCHAR
                     debugln("SYS GETCHAR");
 
-                    char read;
-                    if (scanner.hasNext()) {
-                        String input = scanner.nextLine();
-                        read = input.charAt(0);
+                    int read = context.readChar();
 
-                        scope.setRegister8("AL", read);
-                        debugln("SYS GETCHAR (input: '" + read + "')");
+                    if (read >= 0) {
+                        scope.setRegister(ASM8088Register.AL, read);
+                        debugln(() -> "SYS GETCHAR (input: '" + (char) read + "')");
                     }
                     break;
                 case 127: // PRINTF
                     String format = getStringFromStack();
                     int value = scope.popStack();
-                    debugln("SYS PRINTF (format: \"" + format + "\", value: " + value + ")");
-                    System.out.printf(format, value);
+                    debugln(() -> "SYS PRINTF (format: \"" + format + "\", value: " + value + ")");
+                    context.getOutput().printf(format, value);
                     break;
 
                 default:
-                    debugln("SYS (unknown syscall: " + syscallNum + ")");
+                    debugln(() -> "SYS (unknown syscall: " + syscallNum + ")");
                     break;
             }
         });
 
         addInstruction("HLT", (instr) -> {
             debugln("HLT");
-            System.out.println("\nProgram halted.");
+            if (context.isReportExit()) {
+                context.getOutput().println("\nProgram halted.");
+            }
             halt();
         });
 
@@ -412,20 +350,20 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
         });
 
         addInstruction("MOVB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
-            int oldValue = getValue(dest) & 0xFF;
+            int oldValue = isDebug() ? getValue(dest) & 0xFF : 0; // only reported in debug output
             int value = getValue(src) & 0xFF;
                 
             setValue(dest, value);
               
-            debugln(formatDebugTwoOp("MOVB", dest, src, oldValue, value, value, "=") + " (8-bit)");
+            debugln(() -> formatDebugTwoOp("MOVB", dest, src, oldValue, value, value, "=") + " (8-bit)");
         });
 
         addInstruction("ADDB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest) & 0xFF;
             int srcVal = getValue(src) & 0xFF;
@@ -434,12 +372,12 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             setValue(dest, result);
             scope.updateFlags(result, false);
             
-            debugln(formatDebugTwoOp("ADDB", dest, src, destVal, result, srcVal, "+") + " (8-bit)");
+            debugln(() -> formatDebugTwoOp("ADDB", dest, src, destVal, result, srcVal, "+") + " (8-bit)");
         });
 
         addInstruction("SUBB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest) & 0xFF;
             int srcVal = getValue(src) & 0xFF;
@@ -448,12 +386,12 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             setValue(dest, result);
             scope.updateFlags(result, false);
             
-            debugln(formatDebugTwoOp("SUBB", dest, src, destVal, result, srcVal, "-") + " (8-bit)");
+            debugln(() -> formatDebugTwoOp("SUBB", dest, src, destVal, result, srcVal, "-") + " (8-bit)");
         });
 
         addInstruction("CMPB", (instr) -> {
-            String op1 = instr.getArgument();
-            String op2 = instr.getSecondArgument();
+            ASM8088Operand op1 = instr.getOperand();
+            ASM8088Operand op2 = instr.getSecondOperand();
             
             int val1 = getValue(op1) & 0xFF;
             int val2 = getValue(op2) & 0xFF;
@@ -461,16 +399,18 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             
             scope.updateFlags(result, false);
             
-            String flagInfo = "(Z:" + (scope.isZeroFlag() ? "1" : "0") + 
-                             " S:" + (scope.isSignFlag() ? "1" : "0") + 
-                             " C:" + (scope.isCarryFlag() ? "1" : "0") + ")";
-            debugln(formatDebugTwoOp("CMPB", op1, op2, val1, result, val2, "-") + " (8-bit) " + flagInfo);
+            debugln(() -> {
+                String flagInfo = "(Z:" + (scope.isZeroFlag() ? "1" : "0") + 
+                                 " S:" + (scope.isSignFlag() ? "1" : "0") + 
+                                 " C:" + (scope.isCarryFlag() ? "1" : "0") + ")";
+                return formatDebugTwoOp("CMPB", op1, op2, val1, result, val2, "-") + " (8-bit) " + flagInfo;
+            });
         });
 
         addInstruction("DIVB", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int divisor = getValue(operand) & 0xFF;
-            int dividend = scope.getRegister8("AL");
+            int dividend = scope.getRegister(ASM8088Register.AL);
             
             if (divisor == 0) {
                 throw new ArithmeticException("Division by zero");
@@ -479,19 +419,21 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             int quotient = dividend / divisor;
             int remainder = dividend % divisor;
             
-            scope.setRegister8("AL", quotient);
-            scope.setRegister8("AH", remainder);
+            scope.setRegister(ASM8088Register.AL, quotient);
+            scope.setRegister(ASM8088Register.AH, remainder);
             
-            String extraInfo = "(AL:0x" + String.format("%02X", dividend) + " / " + 
-                              operand + ":0x" + String.format("%02X", divisor) + 
-                              " = AL:0x" + String.format("%02X", quotient) + 
-                              " R AH:0x" + String.format("%02X", remainder) + ") (8-bit)";
-            debugln("DIVB " + operand + " " + extraInfo);
+            debugln(() -> {
+                String extraInfo = "(AL:0x" + String.format("%02X", dividend) + " / " + 
+                                  operand + ":0x" + String.format("%02X", divisor) + 
+                                  " = AL:0x" + String.format("%02X", quotient) + 
+                                  " R AH:0x" + String.format("%02X", remainder) + ") (8-bit)";
+                return "DIVB " + operand + " " + extraInfo;
+            });
         });
 
         addInstruction("XORB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest) & 0xFF;
             int srcVal = getValue(src) & 0xFF;
@@ -501,58 +443,60 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             scope.updateFlags(result, false);
             scope.setCarryFlag(false);
             
-            debugln(formatDebugTwoOp("XORB", dest, src, destVal, result, srcVal, "^") + " (8-bit)");
+            debugln(() -> formatDebugTwoOp("XORB", dest, src, destVal, result, srcVal, "^") + " (8-bit)");
         });
 
         addInstruction("MULB", (instr) -> {
-            String operand = instr.getArgument();
+            ASM8088Operand operand = instr.getOperand();
             int multiplicand = getValue(operand) & 0xFF;
-            int multiplier = scope.getRegister8("AL");
-            int oldAL = scope.getRegister8("AL");
+            int multiplier = scope.getRegister(ASM8088Register.AL);
+            int oldAL = scope.getRegister(ASM8088Register.AL);
             int result = multiplicand * multiplier;
             
-            scope.setRegister8("AL", result & 0xFF);
-            scope.setRegister8("AH", (result >> 8) & 0xFF);
+            scope.setRegister(ASM8088Register.AL, result & 0xFF);
+            scope.setRegister(ASM8088Register.AH, (result >> 8) & 0xFF);
             scope.updateFlags(result, false);
             
-            String extraInfo = "(AL:0x" + String.format("%02X", multiplier) + " * " + 
-                              operand + ":0x" + String.format("%02X", multiplicand) + 
-                              " = AL:0x" + String.format("%02X", result & 0xFF) + 
-                              " AH:0x" + String.format("%02X", (result >> 8) & 0xFF) + ") (8-bit)";
-            debugln(formatDebug("MULB", "AL", oldAL, result & 0xFF, extraInfo));
+            debugln(() -> {
+                String extraInfo = "(AL:0x" + String.format("%02X", multiplier) + " * " + 
+                                  operand + ":0x" + String.format("%02X", multiplicand) + 
+                                  " = AL:0x" + String.format("%02X", result & 0xFF) + 
+                                  " AH:0x" + String.format("%02X", (result >> 8) & 0xFF) + ") (8-bit)";
+                return formatDebug("MULB", ASM8088Operand.of(ASM8088Register.AL), oldAL, result & 0xFF, extraInfo);
+            });
         });
 
-        addInstruction("LOOP", (instr) -> {
+        addBranch("LOOP", (instr) -> {
             String label = instr.getArgument();
-            int oldCX = scope.getRegister16("CX");
+            int oldCX = scope.getRegister(ASM8088Register.CX);
             int cx = (oldCX - 1) & 0xFFFF;
-            scope.setRegister16("CX", cx);
+            scope.setRegister(ASM8088Register.CX, cx);
             
             if (cx != 0) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
+                int targetIndex = instr.getTarget();
+                scope.setPc(targetIndex - 1);
+                debugln(() -> {
                     String extraInfo = "(CX: 0x" + String.format("%04X", oldCX) + " -> 0x" + String.format("%04X", cx) + 
                                      ", taken -> index: " + targetIndex + ")";
-                    debugln("LOOP " + label + " " + extraInfo);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
+                    return "LOOP " + label + " " + extraInfo;
+                });
             } else {
-                String extraInfo = "(CX: 0x" + String.format("%04X", oldCX) + " -> 0x" + String.format("%04X", cx) + 
-                                 ", not taken)";
-                debugln("LOOP " + label + " " + extraInfo);
+                debugln(() -> {
+                    String extraInfo = "(CX: 0x" + String.format("%04X", oldCX) + " -> 0x" + String.format("%04X", cx) + 
+                                     ", not taken)";
+                    return "LOOP " + label + " " + extraInfo;
+                });
             }
         });
 
         addInstruction("LABEL", (instr) -> {
-            debugln("LABEL " + instr.getArgument());
+            debugln(() -> "LABEL " + instr.getArgument());
         });
 
         // ADC - Add with Carry
         addInstruction("ADC", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
@@ -560,15 +504,15 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             int result = destVal + srcVal + carryVal;
             
             setValue(dest, result);
-            scope.updateArithmeticFlags(destVal, srcVal + carryVal, result, is16BitOperand(dest), false);
+            scope.updateArithmeticFlags(destVal, srcVal + carryVal, result, dest.isWide(), false);
             
-            debugln(formatDebugTwoOp("ADC", dest, src, destVal, result, srcVal, "+") + " (with carry)");
+            debugln(() -> formatDebugTwoOp("ADC", dest, src, destVal, result, srcVal, "+") + " (with carry)");
         });
 
         // SBB - Subtract with Borrow
         addInstruction("SBB", (instr) -> {
-            String dest = instr.getArgument();
-            String src = instr.getSecondArgument();
+            ASM8088Operand dest = instr.getOperand();
+            ASM8088Operand src = instr.getSecondOperand();
             
             int destVal = getValue(dest);
             int srcVal = getValue(src);
@@ -576,1003 +520,596 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             int result = destVal - srcVal - borrowVal;
             
             setValue(dest, result);
-            scope.updateArithmeticFlags(destVal, srcVal + borrowVal, result, is16BitOperand(dest), true);
+            scope.updateArithmeticFlags(destVal, srcVal + borrowVal, result, dest.isWide(), true);
             
-            debugln(formatDebugTwoOp("SBB", dest, src, destVal, result, srcVal, "-") + " (with borrow)");
+            debugln(() -> formatDebugTwoOp("SBB", dest, src, destVal, result, srcVal, "-") + " (with borrow)");
         });
 
 
 
         // Jump instructions - aliases for existing jumps
-        addInstruction("JZ", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JZ " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JZ " + label + " (not taken)");
-            }
-        });
-
-        addInstruction("JNZ", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNZ " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNZ " + label + " (not taken)");
-            }
-        });
+        addJump("JZ", () -> scope.isZeroFlag());
+        addJump("JNZ", () -> !scope.isZeroFlag());
 
         // JGE - Jump if Greater or Equal (ZF=0 AND SF=OF)
-        addInstruction("JGE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isSignFlag() == scope.isOverflowFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JGE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JGE " + label + " (not taken)");
-            }
-        });
+        addJump("JGE", () -> scope.isSignFlag() == scope.isOverflowFlag());
 
         // JNL - Jump if Not Less (same as JGE)
-        addInstruction("JNL", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isSignFlag() == scope.isOverflowFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNL " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNL " + label + " (not taken)");
-            }
-        });
+        addJump("JNL", () -> scope.isSignFlag() == scope.isOverflowFlag());
 
         // JNGE - Jump if Not Greater or Equal (same as JL)
-        addInstruction("JNGE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isSignFlag() != scope.isOverflowFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNGE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNGE " + label + " (not taken)");
-            }
-        });
+        addJump("JNGE", () -> scope.isSignFlag() != scope.isOverflowFlag());
 
         // JNG - Jump if Not Greater (same as JLE)
-        addInstruction("JNG", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isZeroFlag() || (scope.isSignFlag() != scope.isOverflowFlag())) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNG " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNG " + label + " (not taken)");
-            }
-        });
+        addJump("JNG", () -> scope.isZeroFlag() || (scope.isSignFlag() != scope.isOverflowFlag()));
 
         // JNLE - Jump if Not Less or Equal (same as JG)
-        addInstruction("JNLE", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isZeroFlag() && (scope.isSignFlag() == scope.isOverflowFlag())) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNLE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNLE " + label + " (not taken)");
-            }
-        });
+        addJump("JNLE", () -> !scope.isZeroFlag() && (scope.isSignFlag() == scope.isOverflowFlag()));
 
         // Unsigned comparison jumps
         // JB - Jump if Below (CF=1)
-        addInstruction("JB", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JB " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JB " + label + " (not taken)");
-            }
-        });
+        addJump("JB", () -> scope.isCarryFlag());
 
         // JNAE - Jump if Not Above or Equal (same as JB)
-        addInstruction("JNAE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNAE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNAE " + label + " (not taken)");
-            }
-        });
+        addJump("JNAE", () -> scope.isCarryFlag());
 
         // JBE - Jump if Below or Equal (CF=1 OR ZF=1)
-        addInstruction("JBE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isCarryFlag() || scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JBE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JBE " + label + " (not taken)");
-            }
-        });
+        addJump("JBE", () -> scope.isCarryFlag() || scope.isZeroFlag());
 
         // JNA - Jump if Not Above (same as JBE)
-        addInstruction("JNA", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isCarryFlag() || scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNA " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNA " + label + " (not taken)");
-            }
-        });
+        addJump("JNA", () -> scope.isCarryFlag() || scope.isZeroFlag());
 
         // JA - Jump if Above (CF=0 AND ZF=0)
-        addInstruction("JA", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isCarryFlag() && !scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JA " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JA " + label + " (not taken)");
-            }
-        });
+        addJump("JA", () -> !scope.isCarryFlag() && !scope.isZeroFlag());
 
         // JNBE - Jump if Not Below or Equal (same as JA)
-        addInstruction("JNBE", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isCarryFlag() && !scope.isZeroFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNBE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNBE " + label + " (not taken)");
-            }
-        });
+        addJump("JNBE", () -> !scope.isCarryFlag() && !scope.isZeroFlag());
 
         // JAE - Jump if Above or Equal (CF=0)
-        addInstruction("JAE", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JAE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JAE " + label + " (not taken)");
-            }
-        });
+        addJump("JAE", () -> !scope.isCarryFlag());
 
         // JNB - Jump if Not Below (same as JAE)
-        addInstruction("JNB", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNB " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNB " + label + " (not taken)");
-            }
-        });
+        addJump("JNB", () -> !scope.isCarryFlag());
 
         // Flag-based jumps
         // JS - Jump if Sign (SF=1)
-        addInstruction("JS", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isSignFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JS " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JS " + label + " (not taken)");
-            }
-        });
+        addJump("JS", () -> scope.isSignFlag());
 
         // JNS - Jump if Not Sign (SF=0)
-        addInstruction("JNS", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isSignFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNS " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNS " + label + " (not taken)");
-            }
-        });
+        addJump("JNS", () -> !scope.isSignFlag());
 
         // JO - Jump if Overflow (OF=1)
-        addInstruction("JO", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isOverflowFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JO " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JO " + label + " (not taken)");
-            }
-        });
+        addJump("JO", () -> scope.isOverflowFlag());
 
         // JNO - Jump if Not Overflow (OF=0)
-        addInstruction("JNO", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isOverflowFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNO " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNO " + label + " (not taken)");
-            }
-        });
+        addJump("JNO", () -> !scope.isOverflowFlag());
 
         // JP - Jump if Parity (PF=1)
-        addInstruction("JP", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isParityFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JP " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JP " + label + " (not taken)");
-            }
-        });
+        addJump("JP", () -> scope.isParityFlag());
 
         // JPE - Jump if Parity Even (same as JP)
-        addInstruction("JPE", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isParityFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JPE " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JPE " + label + " (not taken)");
-            }
-        });
+        addJump("JPE", () -> scope.isParityFlag());
 
         // JNP - Jump if Not Parity (PF=0)
-        addInstruction("JNP", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isParityFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNP " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNP " + label + " (not taken)");
-            }
-        });
+        addJump("JNP", () -> !scope.isParityFlag());
 
         // JPO - Jump if Parity Odd (same as JNP)
-        addInstruction("JPO", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isParityFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JPO " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JPO " + label + " (not taken)");
-            }
-        });
+        addJump("JPO", () -> !scope.isParityFlag());
 
         // JC - Jump if Carry (CF=1)
-        addInstruction("JC", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JC " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JC " + label + " (not taken)");
-            }
-        });
+        addJump("JC", () -> scope.isCarryFlag());
 
         // JNC - Jump if Not Carry (CF=0)
-        addInstruction("JNC", (instr) -> {
-            String label = instr.getArgument();
-            if (!scope.isCarryFlag()) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JNC " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
-            } else {
-                debugln("JNC " + label + " (not taken)");
-            }
-        });
+        addJump("JNC", () -> !scope.isCarryFlag());
 
         // JCXZ - Jump if CX is Zero
-        addInstruction("JCXZ", (instr) -> {
-            String label = instr.getArgument();
-            if (scope.getRegister16("CX") == 0) {
-                Integer targetIndex = labels.get(label);
-                if (targetIndex != null) {
-                    scope.setPc(targetIndex - 1);
-                    debugln("JCXZ " + label + " (taken) -> index: " + targetIndex);
-                } else {
-                    throw new IllegalStateException("Label not found: " + label);
-                }
+        addJump("JCXZ", () -> scope.getRegister(ASM8088Register.CX) == 0);
+
+        buildDispatchTable();
+    }
+
+    /**
+     * Index the registered handlers by opcode, so that dispatching an instruction is a single array load
+     */
+    private void buildDispatchTable()
+    {
+        for (var entry : instructionHandlers.entrySet()) {
+            dispatchTable[ASM8088Opcode.valueOf(entry.getKey()).ordinal()] = entry.getValue();
+        }
+    }
+
+    /**
+     * Get the handler of an instruction
+     *
+     * @param instruction The instruction
+     * @return The handler, or null if the instruction is unknown
+     */
+    @Nullable
+    protected Consumer<T> getHandler(ASM8088Instruction instruction)
+    {
+        ASM8088Opcode opcode = instruction.getOpcode();
+        return opcode == null ? null : dispatchTable[opcode.ordinal()];
+    }
+
+    /**
+     * Adds a handler for an instruction whose operand is a label, resolved to an instruction index at load
+     *
+     * @param opCode The operation code to handle
+     * @param handler The handler, which reads the resolved index from {@link ASM8088Instruction#getTarget()}
+     */
+    private void addBranch(String opCode, Consumer<T> handler)
+    {
+        branchOpCodes.add(ASM8088Opcode.valueOf(opCode));
+        addInstruction(opCode, handler);
+    }
+
+    /**
+     * Adds a conditional jump, taken when the condition holds
+     *
+     * @param opCode The operation code to handle
+     * @param condition The jump condition, evaluated on the current flags
+     */
+    private void addJump(String opCode, BooleanSupplier condition)
+    {
+        addBranch(opCode, (instr) -> {
+            if (condition.getAsBoolean()) {
+                int targetIndex = instr.getTarget();
+                scope.setPc(targetIndex - 1);
+                debugln(() -> opCode + " " + instr.getArgument() + " (taken) -> index: " + targetIndex);
             } else {
-                debugln("JCXZ " + label + " (not taken)");
+                debugln(() -> opCode + " " + instr.getArgument() + " (not taken)");
             }
         });
     }
 
     /**
      * Initializes the program by parsing the assembly source code
-     * Processes sections, labels, and instructions in multiple passes
      * 
      * @param contents The assembly source code as a string
      */
-    @SneakyThrows
     @Override
     protected void initProgram(String contents)
     {
-        ASM8088ParserHelper helper = new ASM8088ParserHelper();
-        var parseResult = helper.parseString(contents);
-
-        if (haltIfErrors(parseResult)) {
-            return;
-        }
-
-        var ctx = parseResult.getProgramContext();
-        List<asm8088Parser.LineContext> lines = ctx.line();
-
-        String currentSection = null;
-        for (var line : lines)
-        {
-            if (line.section() != null) {
-                currentSection = handleSections(line);
-            }
-            else if (line.assignment() != null) {
-                handleAssignment(line);
-            }
-
-            if (currentSection == null) {
-                continue;
-            }
-
-            String lineText = getLineText(line);
-
-            if (lineText.trim().isEmpty()) {
-                continue;
-            }
-
-            switch (currentSection) {
-                case ".TEXT":
-                    textSectionLines.add(lineText);
-                    break;
-                case ".DATA":
-                    dataSectionLines.add(lineText);
-                    break;
-                case ".BSS":
-                    bssSectionLines.add(lineText);
-                    break;
-            }
-        }
-
-        if (!dataSectionLines.isEmpty()) {
-            scope.processSectData(dataSectionLines);
-        }
-
-        if (!bssSectionLines.isEmpty()) {
-            scope.processSectBss(bssSectionLines);
-        }
-
-        processTextSection();
-        
-        debugln("Program initialization completed:");
-        debugln("- Instructions: " + instructions.size());
-        debugln("- Labels: " + labels.size());
-        debugln("- Data entries: " + dataSectionLines.size());
-        debugln("- BSS entries: " + bssSectionLines.size());
+        initProgram(new ASM8088ParserHelper().parseString(contents));
     }
 
     /**
-     * Handles section directives (.SECT .TEXT, .SECT .DATA, .SECT .BSS)
-     * 
-     * @param line The line context containing the section directive
-     * @return The section name (.TEXT, .DATA, or .BSS)
+     * Initializes the program from source that has already been parsed and analysed, such as the result
+     * of the parse phase, so that it is not parsed again
+     *
+     * @param parseResult The parsed program
      */
-    private String handleSections(asm8088Parser.LineContext line)
+    public void init(@NotNull ASM8088ParseResult parseResult)
     {
-        var section = line.section();
-
-        if (section == null) {
-            return null;
-        }
-
-        if (section.TEXT() != null) {
-            return ".TEXT";
-        }
-        else if (section.DATA() != null) {
-            return ".DATA";
-        }
-        else if (section.BSS() != null) {
-            return ".BSS";
-        }
+        initInstructions();
+        initProgram(parseResult);
+    }
 
-        return null;
+    /**
+     * Initializes the program from source that has already been parsed, analysed and decoded, such as a
+     * program from a {@link xyz.atom7.api.interpreter.ProgramCache}
+     *
+     * @param program The loaded program
+     */
+    public void init(@NotNull ASM8088LinkedProgram program)
+    {
+        initInstructions();
+        initProgram(program);
     }
 
     /**
-     * Handles assignment statements (constants like _PRINTF = 127)
-     * 
-     * @param line The line context containing the assignment
+     * Initializes the program from source, going through a cache of loaded programs: a cached program
+     * skips the parser entirely, and a program loaded from source is added to the cache
+     *
+     * @param contents The assembly source code as a string
+     * @param cache The cache of loaded programs
      */
-    private void handleAssignment(asm8088Parser.LineContext line)
+    public void init(@NotNull String contents, @NotNull ProgramCache<ASM8088LinkedProgram> cache)
     {
-        var assignment = line.assignment();
-        if (assignment == null) return;
+        initInstructions();
 
-        String id = assignment.ID().getText();
-        int value;
+        ASM8088LinkedProgram program = cache.get(contents, source -> link(new ASM8088ParserHelper().parseString(source)));
 
-        if (assignment.HEX() != null) {
-            String hexStr = assignment.HEX().getText();
-            value = Integer.parseInt(hexStr.substring(2), 16); // Remove 0x prefix
+        if (program != null) {
+            initProgram(program);
         }
-        else if (assignment.NUM() != null) {
-            value = Integer.parseInt(assignment.NUM().getText());
-        }
-        else {
-            return;
-        }
-
-        scope.getLabelAddresses().put(id, value);
-        debugln("Constant: " + id + " = " + value);
     }
 
     /**
-     * Processes the .TEXT section to extract labels and instructions
-     * Builds the instruction list and label table for execution
+     * Creates a cache of loaded programs, persisted in their binary encoding when given a directory
+     *
+     * @param capacity The number of programs kept in memory
+     * @param directory The directory of the cached programs, or null to only cache in memory
+     * @return The cache
      */
-    private void processTextSection()
+    public static ProgramCache<ASM8088LinkedProgram> newCache(int capacity, @Nullable Path directory)
     {
-        for (String line : textSectionLines) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("//") || line.startsWith(";")) {
-                continue;
+        return new ProgramCache<>(capacity, directory, new ProgramCache.Codec<>()
+        {
+            @Override
+            public byte[] encode(ASM8088LinkedProgram program)
+            {
+                return program.toBytes();
             }
 
-            // Check if line contains a label
-            if (line.contains(":")) {
-                String[] parts = line.split(":", 2);
-                String label = parts[0].trim();
-                
-                // Store label with current instruction index
-                labels.put(label, instructions.size());
-                debugln("Label: " + label + " at instruction " + instructions.size());
-
-                // Process instruction part if present
-                if (parts.length > 1 && !parts[1].trim().isEmpty()) {
-                    processInstructionLine(parts[1].trim());
-                }
-            } else {
-                // Regular instruction line
-                processInstructionLine(line);
+            @Override
+            public ASM8088LinkedProgram decode(byte[] bytes)
+            {
+                return ASM8088LinkedProgram.fromBytes(bytes);
             }
-        }
+        }, ASM8088LinkedProgram.EXTENSION);
     }
 
     /**
-     * Processes a single instruction line and adds it to the instruction list
-     * 
-     * @param line The instruction line to process
+     * Loads a parsed program
+     *
+     * @param parseResult The parsed program
      */
-    private void processInstructionLine(String line)
+    protected void initProgram(ASM8088ParseResult parseResult)
     {
-        line = line.trim();
-        if (line.isEmpty()) return;
-
-        // Split instruction into opcode and operands
-        String[] parts = line.split("\\s+", 2);
-        String opCode = parts[0].toUpperCase();
-
-        ASM8088Instruction instruction;
-        if (parts.length > 1) {
-            // Instruction has operands
-            String operands = parts[1].trim();
-            if (operands.contains(",")) {
-                // Two operands
-                String[] operandParts = operands.split(",", 2);
-                instruction = new ASM8088Instruction(opCode, 
-                    operandParts[0].trim(), 
-                    operandParts[1].trim());
-            } else {
-                // Single operand
-                instruction = new ASM8088Instruction(opCode, operands);
-            }
-        } else {
-            // No operands
-            instruction = new ASM8088Instruction(opCode);
-        }
+        ASM8088LinkedProgram program = link(parseResult);
 
-        instructions.add((T) instruction);
-        debugln("Instruction " + instructions.size() + ": " + instruction);
+        if (program != null) {
+            initProgram(program);
+        }
     }
 
     /**
-     * Extracts the text content from a line context
-     * 
-     * @param line The line context
-     * @return The text representation of the line
+     * Loads a decoded program: its instructions and labels, and its data into memory
+     *
+     * @param program The loaded program
      */
-    private String getLineText(asm8088Parser.LineContext line)
+    protected void initProgram(ASM8088LinkedProgram program)
     {
-        if (line.labelDecl() != null && line.statement() != null) {
-            return line.labelDecl().getText() + " " + getStatementText(line.statement());
-        } else if (line.labelDecl() != null) {
-            return line.labelDecl().getText();
-        } else if (line.statement() != null) {
-            return getStatementText(line.statement());
-        }
-        return "";
+        instructions.addAll(Arrays.asList(program.getInstructions()));
+        labels.putAll(program.getLabels());
+        scope.getLabelAddresses().putAll(program.getLabelAddresses());
+
+        byte[] data = program.getData();
+        System.arraycopy(data, 0, scope.getMemory(), scope.getDataSegmentStart(), data.length);
+        scope.setCurrentDataOffset(data.length);
+        scope.setCurrentBssOffset(program.getBssSize());
+
+        debugln("Program initialization completed:");
+        debugln(() -> "- Instructions: " + instructions.size());
+        debugln(() -> "- Labels: " + labels.size());
+        debugln(() -> "- Data bytes: " + scope.getCurrentDataOffset());
+        debugln(() -> "- BSS bytes: " + scope.getCurrentBssOffset());
     }
 
     /**
-     * Extracts the text content from a statement context
-     * 
-     * @param statement The statement context
-     * @return The text representation of the statement
+     * Decodes a parsed program from its compact representation
+     *
+     * @param parseResult The parsed program
+     * @return The decoded program, or null if the source has errors
+     * @throws IllegalStateException If a branch refers to an undefined label
+     * @see #link(ASM8088ProgramIR)
      */
-    private String getStatementText(asm8088Parser.StatementContext statement)
+    @Nullable
+    public ASM8088LinkedProgram link(@NotNull ASM8088ParseResult parseResult)
     {
-        if (statement.instruction() != null) {
-            return getInstructionText(statement.instruction());
-        } else if (statement.directive() != null) {
-            return getDirectiveText(statement.directive());
+        if (haltIfErrors(parseResult) || parseResult.getProgram() == null) {
+            return null;
         }
-        return "";
+
+        return link(parseResult.getProgram());
     }
 
     /**
-     * Extracts the text content from an instruction context
-     * 
-     * @param instruction The instruction context
-     * @return The text representation of the instruction
+     * Parses and decodes a source file a line at a time with {@link ASM8088StreamParser}, without building
+     * its parse tree, for sources too large to parse whole. Only the syntax of the source is checked.
+     *
+     * @param path The source file
+     * @return The decoded program, or null if the source has errors
+     * @throws IOException If the file cannot be read
+     * @throws IllegalStateException If a branch refers to an undefined label
      */
-    private String getInstructionText(asm8088Parser.InstructionContext instruction)
+    @Nullable
+    public ASM8088LinkedProgram link(@NotNull Path path) throws IOException
     {
-        StringBuilder sb = new StringBuilder();
-        sb.append(instruction.mnemonic().getText());
-        
-        if (instruction.operandList() != null) {
-            sb.append(" ").append(instruction.operandList().getText());
-        }
-        
-        return sb.toString();
+        return link(new ASM8088StreamParser().parseFile(path));
     }
 
     /**
-     * Extracts the text content from a directive context
-     * 
-     * @param directive The directive context
-     * @return The text representation of the directive
+     * Initializes the program by parsing a source file a line at a time
+     *
+     * @param path The source file
+     * @throws IOException If the file cannot be read
+     * @see #link(Path)
      */
-    private String getDirectiveText(asm8088Parser.DirectiveContext directive)
+    public void init(@NotNull Path path) throws IOException
     {
-        if (directive.BYTE() != null) {
-            return ".BYTE " + directive.valueList().getText();
-        } else if (directive.ASCII() != null) {
-            return ".ASCII " + directive.STRING().getText();
-        } else if (directive.SPACE() != null) {
-            return ".SPACE " + directive.NUM().getText();
+        initInstructions();
+
+        ASM8088LinkedProgram program = link(path);
+
+        if (program != null) {
+            initProgram(program);
         }
-        return "";
     }
 
     /**
-     * Gets the value of an operand (register, immediate, memory, or label)
-     * 
-     * @param operand The operand string to evaluate
-     * @return The integer value of the operand
+     * Decodes a program in a single walk over its lines.
+     * Constants and the .DATA and .BSS sections are laid out as they come, and labels get the index of the
+     * next .TEXT statement. The statements are decoded once the walk is over, when every data label is known,
+     * so that code can refer to data declared after it.
+     *
+     * @param program The compact representation of the program
+     * @return The decoded program
+     * @throws IllegalStateException If a branch refers to an undefined label
      */
-    private int getValue(String operand)
+    public ASM8088LinkedProgram link(@NotNull ASM8088ProgramIR program)
     {
-        if (operand == null) return 0;
-        
-        operand = operand.trim();
-        
-        // Handle memory references [operand]
-        if (operand.startsWith("[") && operand.endsWith("]")) {
-            String memRef = operand.substring(1, operand.length() - 1).trim();
-            int address = getMemoryAddress(memRef);
-            
-            if (is16BitMemoryAccess(memRef)) {
-                return scope.readWord(address);
-            } else {
-                return scope.readByte(address) & 0xFF;
-            }
-        }
-        
-        // Handle 16-bit registers
-        if (isRegister16(operand)) {
-            return scope.getRegister16(operand);
+        // the branches are the instructions registered with a label operand, so a program that is only
+        // used to link has to register them first
+        if (branchOpCodes.isEmpty()) {
+            initInstructions();
         }
-        
-        // Handle 8-bit registers
-        if (isRegister8(operand)) {
-            return scope.getRegister8(operand);
-        }
-        
-        // Handle segment registers
-        if (isSegmentRegister(operand)) {
-            return scope.getSegmentRegister(operand);
-        }
-        
-        // Handle immediate values (hex or decimal)
-        if (operand.startsWith("0x") || operand.startsWith("0X")) {
-            return Integer.parseInt(operand.substring(2), 16);
-        }
-        
-        // Handle arithmetic expressions like v2-v1
-        if (operand.contains("-")) {
-            String[] parts = operand.split("-");
-            if (parts.length == 2) {
-                String left = parts[0].trim();
-                String right = parts[1].trim();
-                
-                // Try to resolve both parts as labels
-                int leftAddr = scope.getLabelAddress(left);
-                int rightAddr = scope.getLabelAddress(right);
-                
-                if (leftAddr != -1 && rightAddr != -1) {
-                    return leftAddr - rightAddr;
-                }
+
+        // the data is laid out in a scope of its own, so that the program can be shared
+        ASM8088Scope scope = new ASM8088Scope("link");
+        Map<String, Integer> labels = new HashMap<>();
+
+        // the indices of the .TEXT statements in the program
+        int[] statements = new int[program.getSize()];
+        int statementCount = 0;
+        String currentSection = null;
+
+        for (int i = 0; i < program.getSize(); i++)
+        {
+            String name = program.getNames()[i];
+
+            switch (program.getKinds()[i]) {
+                case SECTION:
+                    currentSection = name;
+                    continue;
+                case ASSIGNMENT:
+                    handleAssignment(scope, name, program.getOperands()[i][0]);
+                    continue;
+                default:
+                    break;
             }
-        }
-        
-        if (operand.contains("+")) {
-            String[] parts = operand.split("\\+");
-            if (parts.length == 2) {
-                String left = parts[0].trim();
-                String right = parts[1].trim();
-                
-                // Try to resolve both parts as labels
-                int leftAddr = scope.getLabelAddress(left);
-                int rightAddr = scope.getLabelAddress(right);
-                
-                if (leftAddr != -1 && rightAddr != -1) {
-                    return leftAddr + rightAddr;
-                }
+
+            if (currentSection == null) {
+                continue;
             }
-        }
-        
-        // Handle decimal immediate
-        try {
-            return Integer.parseInt(operand);
-        } catch (NumberFormatException e) {
-            // Handle labels and constants
-            Integer labelAddr = scope.getLabelAddress(operand);
-            if (labelAddr != -1) {
-                return labelAddr;
+
+            switch (currentSection) {
+                case ".TEXT":
+                    if (name != null) {
+                        int index = statementCount;
+                        labels.put(name, index);
+                        debugln(() -> "Label: " + name + " at instruction " + index);
+                    }
+                    if (program.getOpCodes()[i] != null) {
+                        statements[statementCount++] = i;
+                    }
+                    break;
+                case ".DATA":
+                case ".BSS":
+                    handleDirective(scope, currentSection, program, i);
+                    break;
             }
-            
-            // Default to 0 for unknown operands
-            return 0;
         }
+
+        ASM8088Instruction[] instructions = new ASM8088Instruction[statementCount];
+
+        for (int i = 0; i < instructions.length; i++) {
+            ASM8088Instruction instruction = decodeStatement(scope, program, statements[i]);
+            int number = i + 1;
+
+            instructions[i] = instruction;
+            debugln(() -> "Instruction " + number + ": " + instruction);
+        }
+
+        resolveBranchTargets(instructions, labels, program, statements);
+
+        int dataStart = scope.getDataSegmentStart();
+        byte[] data = Arrays.copyOfRange(scope.getMemory(), dataStart, dataStart + scope.getCurrentDataOffset());
+
+        return new ASM8088LinkedProgram(instructions, labels, scope.getLabelAddresses(),
+                data, scope.getCurrentBssOffset());
     }
 
     /**
-     * Sets the value of an operand (register or memory)
+     * Handles assignment statements (constants like _PRINTF = 127)
      * 
-     * @param operand The operand string to set
-     * @param value The value to set
+     * @param scope The scope holding the constants
+     * @param id The name of the constant
+     * @param text The value, decimal or hexadecimal
      */
-    private void setValue(String operand, int value)
+    private void handleAssignment(ASM8088Scope scope, String id, String text)
     {
-        if (operand == null) return;
-        
-        operand = operand.trim();
-        
-        // Handle memory references [operand]
-        if (operand.startsWith("[") && operand.endsWith("]")) {
-            String memRef = operand.substring(1, operand.length() - 1).trim();
-            int address = getMemoryAddress(memRef);
-            
-            if (is16BitMemoryAccess(memRef)) {
-                scope.writeWord(address, value & 0xFFFF);
-            } else {
-                scope.writeByte(address, (byte) (value & 0xFF));
-            }
-            return;
-        }
-        
-        // Handle 16-bit registers
-        if (isRegister16(operand)) {
-            scope.setRegister16(operand, value & 0xFFFF);
-            return;
-        }
-        
-        // Handle 8-bit registers
-        if (isRegister8(operand)) {
-            scope.setRegister8(operand, value & 0xFF);
-            return;
-        }
-        
-        // Handle segment registers
-        if (isSegmentRegister(operand)) {
-            scope.setSegmentRegister(operand, value & 0xFFFF);
-            return;
-        }
+        int value = text.startsWith("0x") || text.startsWith("0X")
+                ? Integer.parseInt(text.substring(2), 16) // Remove 0x prefix
+                : Integer.parseInt(text);
+
+        scope.getLabelAddresses().put(id, value);
+        debugln(() -> "Constant: " + id + " = " + value);
     }
 
     /**
-     * Calculates memory address from a memory reference string
-     * 
-     * @param memRef The memory reference (without brackets)
-     * @return The calculated memory address
+     * Lays out a line of the .DATA or .BSS section: .BYTE and .ASCII store data, .SPACE reserves space,
+     * and a label on its own names the next address of the section
+     *
+     * @param scope The scope the data is laid out in
+     * @param section The section, .DATA or .BSS
+     * @param program The program
+     * @param index The index of the line in the program
      */
-    private int getMemoryAddress(String memRef)
+    private void handleDirective(ASM8088Scope scope, String section, ASM8088ProgramIR program, int index)
     {
-        memRef = memRef.trim();
-        
-        // Handle simple label reference
-        if (memRef.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
-            Integer labelAddr = scope.getLabelAddress(memRef);
-            return labelAddr != -1 ? labelAddr : 0;
+        String label = program.getNames()[index];
+        String opCode = program.getOpCodes()[index];
+        String[] operands = program.getOperands()[index];
+        boolean data = section.equals(".DATA");
+
+        if (opCode == null) {
+            scope.defineLabel(label, data);
+            return;
         }
-        
-        // Handle register + offset patterns like "BX+SI", "BP+8", etc.
-        if (memRef.contains("+")) {
-            String[] parts = memRef.split("\\+");
-            int offset = 0;
-            boolean usesStackSegment = false;
-            
-
-            
-            for (String part : parts) {
-                part = part.trim();
-                if (isRegister16(part)) {
-                    if (part.equals("BP")) {
-                        // BP-relative addressing uses stack segment
-                        usesStackSegment = true;
-                        offset += scope.getRegister16(part);
-                    } else {
-                        offset += scope.getRegister16(part);
-                    }
-                } else if (part.matches("\\d+")) {
-                    offset += Integer.parseInt(part);
-                } else if (part.startsWith("0x")) {
-                    offset += Integer.parseInt(part.substring(2), 16);
-                } else {
-                    // Handle label
-                    int labelAddr = scope.getLabelAddress(part);
-                    if (labelAddr != -1) {
-                        offset += labelAddr;
-                    }
-                }
-            }
-            
-            // For BP-relative addressing, use stack addressing
-            if (usesStackSegment) {
-                return scope.getStackAddress(offset);
-            }
-            
-            return offset & 0xFFFFF; // 20-bit address space
+
+        if (!program.isDirective(index)) {
+            debugln(() -> "Ignoring instruction in " + section + ": " + opCode + " " + String.join(",", operands));
+            return;
         }
-        
-        // Handle register - offset patterns
-        if (memRef.contains("-")) {
-            String[] parts = memRef.split("-");
-            int address = 0;
-            
-            // First part is added
-            String part = parts[0].trim();
-            if (isRegister16(part)) {
-                address += scope.getRegister16(part);
-            } else if (part.matches("\\d+")) {
-                address += Integer.parseInt(part);
-            }
-            
-            // Remaining parts are subtracted
-            for (int i = 1; i < parts.length; i++) {
-                part = parts[i].trim();
-                if (isRegister16(part)) {
-                    address -= scope.getRegister16(part);
-                } else if (part.matches("\\d+")) {
-                    address -= Integer.parseInt(part);
-                }
+
+        if (data && opCode.equals(".BYTE")) {
+            byte[] bytes = new byte[operands.length];
+
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = Utils.parseByte(operands[i]);
             }
-            return address & 0xFFFFF;
+
+            int address = scope.getDataSegmentStart() + scope.getCurrentDataOffset();
+            debugln(() -> "\tLabel: '" + label + "'");
+            debugln(() -> "\tAddress (head): " + address + " (0x" + Integer.toHexString(address) + ")");
+            debugln(() -> "\tStoring bytes: " + Arrays.toString(operands));
+
+            scope.defineBytes(label, bytes);
         }
-        
-        // Handle simple register
-        if (isRegister16(memRef)) {
-            return scope.getRegister16(memRef);
+        else if (data && opCode.equals(".ASCII")) {
+            scope.defineAscii(label, operands[0]);
         }
-        
-        // Handle immediate address
-        try {
-            if (memRef.startsWith("0x")) {
-                return Integer.parseInt(memRef.substring(2), 16);
-            } else {
-                return Integer.parseInt(memRef);
-            }
-        } catch (NumberFormatException e) {
-            return 0;
+        else if (!data && opCode.equals(".SPACE")) {
+            scope.reserveSpace(label, Integer.parseInt(operands[0]));
+        }
+        else {
+            debugln(() -> "Ignoring directive in " + section + ": " + opCode + " " + String.join(",", operands));
         }
     }
 
     /**
-     * Determines if an operand represents a 16-bit operation
-     * 
-     * @param operand The operand to check
-     * @return true if 16-bit, false if 8-bit
+     * Resolves the label operand of every jump, CALL and LOOP instruction to its instruction index,
+     * so that taking a branch is a single assignment to the program counter; a branch is replaced by an
+     * instruction that carries its target, so instructions never change once created
+     *
+     * @param instructions The decoded instructions
+     * @param labels The code labels
+     * @param program The program, for the source line of a failing branch
+     * @param statements The index in the program of every instruction
+     * @throws IllegalStateException If a branch refers to an undefined label
      */
-    private boolean is16BitOperand(String operand)
+    private void resolveBranchTargets(ASM8088Instruction[] instructions, Map<String, Integer> labels,
+                                      ASM8088ProgramIR program, int[] statements)
     {
-        if (operand == null) return false;
-        
-        operand = operand.trim();
-        
-        // Memory references default to 16-bit unless explicitly 8-bit
-        if (operand.startsWith("[") && operand.endsWith("]")) {
-            return is16BitMemoryAccess(operand.substring(1, operand.length() - 1));
+        for (int i = 0; i < instructions.length; i++)
+        {
+            ASM8088Instruction instruction = instructions[i];
+
+            if (!branchOpCodes.contains(instruction.getOpcode())) {
+                continue;
+            }
+
+            String label = instruction.getArgument();
+            Integer targetIndex = labels.get(label);
+
+            if (targetIndex == null) {
+                throw new IllegalStateException("Label not found: " + label
+                        + " (line " + program.getLines()[statements[i]] + ")");
+            }
+
+            instructions[i] = new ASM8088Instruction(instruction.getOpCode(), instruction.getOperand(),
+                    instruction.getSecondOperand(), targetIndex);
         }
-        
-        return isRegister16(operand) || isSegmentRegister(operand);
     }
 
     /**
-     * Determines if a memory access is 16-bit based on context
-     * 
-     * @param memRef The memory reference string
-     * @return true if 16-bit access, false if 8-bit
+     * Decodes a .TEXT statement.
+     * A data directive in the code becomes an instruction named after it, which fails when it is run.
+     *
+     * @param scope The scope holding the data labels and constants
+     * @param program The program
+     * @param index The index of the statement in the program
+     * @return The decoded instruction
      */
-    private boolean is16BitMemoryAccess(String memRef)
+    private static ASM8088Instruction decodeStatement(ASM8088Scope scope, ASM8088ProgramIR program, int index)
     {
-        memRef = memRef.trim().toUpperCase();
+        String opCode = program.getOpCodes()[index];
+        String[] operands = program.getOperands()[index];
 
-        // If the memory reference uses 8-bit registers, treat as 8-bit
-        if (memRef.matches(".*\\b(AL|AH|BL|BH|CL|CH|DL|DH)\\b.*")) {
-            return false;
+        if (program.isDirective(index) || operands.length == 0) {
+            return new ASM8088Instruction(opCode);
         }
 
-        // If the memory reference uses 16-bit registers, treat as 16-bit
-        if (memRef.matches(".*\\b(AX|BX|CX|DX|SI|DI|BP|SP)\\b.*")) {
-            return true;
+        if (operands.length == 1) {
+            return new ASM8088Instruction(opCode, operands[0], scope);
         }
 
-        // Default: treat as 16-bit
-        return true;
+        return new ASM8088Instruction(opCode, operands[0], operands[1], scope);
     }
 
     /**
-     * Checks if an operand is a 16-bit register
+     * Gets the value of an operand (register, immediate, memory, or label)
      * 
-     * @param operand The operand to check
-     * @return true if it's a 16-bit register
+     * @param operand The decoded operand to evaluate
+     * @return The integer value of the operand
      */
-    private boolean isRegister16(String operand)
+    private int getValue(ASM8088Operand operand)
     {
-        return operand.matches("(AX|BX|CX|DX|SI|DI|BP|SP)");
+        switch (operand.getKind()) {
+            case MEMORY:
+                int address = getMemoryAddress(operand);
+                return operand.isWide() ? scope.readWord(address) : scope.readByte(address) & 0xFF;
+            case REGISTER:
+                return scope.getRegister(operand.getRegister());
+            case IMMEDIATE:
+                return operand.getValue();
+            default:
+                return 0;
+        }
     }
 
     /**
-     * Checks if an operand is an 8-bit register
+     * Sets the value of an operand (register or memory)
      * 
-     * @param operand The operand to check
-     * @return true if it's an 8-bit register
+     * @param operand The decoded operand to set
+     * @param value The value to set
      */
-    private boolean isRegister8(String operand)
+    private void setValue(ASM8088Operand operand, int value)
     {
-        return operand.matches("(AL|AH|BL|BH|CL|CH|DL|DH)");
+        switch (operand.getKind()) {
+            case MEMORY:
+                int address = getMemoryAddress(operand);
+
+                if (operand.isWide()) {
+                    scope.writeWord(address, value & 0xFFFF);
+                } else {
+                    scope.writeByte(address, (byte) (value & 0xFF));
+                }
+                break;
+            case REGISTER:
+                scope.setRegister(operand.getRegister(), value);
+                break;
+            default:
+                break;
+        }
     }
 
     /**
-     * Checks if an operand is a segment register
+     * Calculates the memory address of a memory operand
      * 
-     * @param operand The operand to check
-     * @return true if it's a segment register
+     * @param operand The decoded memory operand
+     * @return The calculated memory address
      */
-    private boolean isSegmentRegister(String operand)
+    private int getMemoryAddress(ASM8088Operand operand)
     {
-        return operand.matches("(DS|ES|SS)");
+        int address = operand.getValue();
+
+        for (ASM8088Register register : operand.getAddedRegisters()) {
+            address += scope.getRegister(register);
+        }
+
+        for (ASM8088Register register : operand.getSubtractedRegisters()) {
+            address -= scope.getRegister(register);
+        }
+
+        // BP-relative addressing uses the stack segment
+        if (operand.isStackSegment()) {
+            return scope.getStackAddress(address);
+        }
+
+        return operand.isWrapped() ? address & 0xFFFFF : address; // 20-bit address space
     }
 
     /**
@@ -1585,14 +1122,13 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
      * @param extraInfo Additional information about the operation
      * @return Formatted debug string
      */
-    private String formatDebug(String instruction, String operand, int oldValue, int newValue, String extraInfo) {
+    private String formatDebug(String instruction, ASM8088Operand operand, int oldValue, int newValue, String extraInfo) {
         StringBuilder sb = new StringBuilder();
         sb.append(instruction).append(" ").append(operand);
         
         // Add address information for memory references
-        if (operand.startsWith("[") && operand.endsWith("]")) {
-            String memRef = operand.substring(1, operand.length() - 1).trim();
-            int address = getMemoryAddress(memRef);
+        if (operand.getKind() == ASM8088Operand.Kind.MEMORY) {
+            int address = getMemoryAddress(operand);
             sb.append(" (addr: 0x").append(String.format("%04X", address));
             
             // Show both 16-bit and 8-bit values for memory
@@ -1602,9 +1138,9 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
             sb.append(" | 8bit: 0x").append(String.format("%02X", byteVal & 0xFF)).append(")");
         } 
         // Add register information
-        else if (isRegister16(operand) || isRegister8(operand) || isSegmentRegister(operand)) {
+        else if (operand.getKind() == ASM8088Operand.Kind.REGISTER) {
             sb.append(" (reg");
-            if (is16BitOperand(operand)) {
+            if (operand.isWide()) {
                 sb.append(" - 16bit: 0x").append(String.format("%04X", newValue & 0xFFFF));
             } else {
                 sb.append(" - 8bit: 0x").append(String.format("%02X", newValue & 0xFF));
@@ -1614,7 +1150,7 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
         
         // Add the value change arrow
         sb.append(" => ");
-        if (is16BitOperand(operand)) {
+        if (operand.isWide()) {
             sb.append("0x").append(String.format("%04X", oldValue & 0xFFFF));
             sb.append(" -> 0x").append(String.format("%04X", newValue & 0xFFFF));
         } else {
@@ -1642,22 +1178,21 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
      * @param operation The operation symbol (e.g., "+", "-", "&")
      * @return Formatted debug string
      */
-    private String formatDebugTwoOp(String instruction, String dest, String src, int destOldValue, int destNewValue, int srcValue, String operation) {
+    private String formatDebugTwoOp(String instruction, ASM8088Operand dest, ASM8088Operand src, int destOldValue, int destNewValue, int srcValue, String operation) {
         StringBuilder sb = new StringBuilder();
         sb.append(instruction).append(" ").append(dest).append(", ").append(src);
         
         // Add destination address/register info
-        if (dest.startsWith("[") && dest.endsWith("]")) {
-            String memRef = dest.substring(1, dest.length() - 1).trim();
-            int address = getMemoryAddress(memRef);
+        if (dest.getKind() == ASM8088Operand.Kind.MEMORY) {
+            int address = getMemoryAddress(dest);
             sb.append(" (dest addr: 0x").append(String.format("%04X", address)).append(")");
-        } else if (isRegister16(dest) || isRegister8(dest) || isSegmentRegister(dest)) {
+        } else if (dest.getKind() == ASM8088Operand.Kind.REGISTER) {
             sb.append(" (dest reg)");
         }
         
         // Add the operation details
         sb.append(" => ");
-        if (is16BitOperand(dest)) {
+        if (dest.isWide()) {
             sb.append("0x").append(String.format("%04X", destOldValue & 0xFFFF));
             sb.append(" ").append(operation).append(" 0x").append(String.format("%04X", srcValue & 0xFFFF));
             sb.append(" = 0x").append(String.format("%04X", destNewValue & 0xFFFF));
@@ -1708,18 +1243,18 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
     @Override
     public void interpret(T instruction)
     {
-        String opCode = instruction.getOpCode().toUpperCase();
-        Consumer<T> handler = instructionHandlers.get(opCode);
+        Consumer<T> handler = getHandler(instruction);
         
         if (handler != null) {
+            executedInstructions++;
             handler.accept(instruction);
 
-            if (Utils.TRACER != null) {
-                Utils.TRACER.displayTrace();
+            if (context.isTraced()) {
+                context.getTracer().displayTrace();
             }
         }
         else {
-            throw new IllegalArgumentException("Unknown instruction: " + opCode);
+            throw new IllegalArgumentException("Unknown instruction: " + instruction.getOpCode());
         }
     }
 
@@ -1729,7 +1264,7 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
      */
     @SneakyThrows
     @Override
-    public void execute()
+    protected void executeProgram()
     {
         resume();
         
@@ -1742,12 +1277,17 @@ public class ASM8088Program<T extends ASM8088Instruction> extends Interpreter<T>
 
             ASM8088Instruction instruction = instructions.get(pc);
 
-            debugln("PC=" + pc + ", Next instruction: " + instruction);
+            debugln(() -> "PC=" + pc + ", Next instruction: " + instruction);
             interpret((T) instruction);
+
+            // a taken jump, a call or a return is a safepoint
+            if (scope.getPc() != pc) {
+                safepoint();
+            }
         }
         
         debugln("Program execution completed.");
-        debugln("Final state - PC: " + scope.getPc());
+        debugln(() -> "Final state - PC: " + scope.getPc());
     }
 }
 
@@ -0,0 +1,95 @@
+package xyz.atom7.interpreter.asm8088;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The registers of the 8088 that operands can name.
+ * Each register is identified by its kind and an index into the register file of that kind,
+ * so that decoded operands reach the register file without going through names.
+ */
+@Getter
+public enum ASM8088Register
+{
+    AX(Kind.WORD, 0, false),
+    BX(Kind.WORD, 1, false),
+    CX(Kind.WORD, 2, false),
+    DX(Kind.WORD, 3, false),
+    SI(Kind.WORD, 4, false),
+    DI(Kind.WORD, 5, false),
+    BP(Kind.WORD, 6, false),
+    SP(Kind.WORD, 7, false),
+
+    AL(Kind.BYTE, 0, false),
+    AH(Kind.BYTE, 0, true),
+    BL(Kind.BYTE, 1, false),
+    BH(Kind.BYTE, 1, true),
+    CL(Kind.BYTE, 2, false),
+    CH(Kind.BYTE, 2, true),
+    DL(Kind.BYTE, 3, false),
+    DH(Kind.BYTE, 3, true),
+
+    DS(Kind.SEGMENT, 0, false),
+    ES(Kind.SEGMENT, 1, false),
+    SS(Kind.SEGMENT, 2, false);
+
+    /**
+     * The register families of the 8088
+     */
+    public enum Kind
+    {
+        WORD, BYTE, SEGMENT
+    }
+
+    private static final Map<String, ASM8088Register> BY_NAME = new HashMap<>();
+
+    static {
+        for (ASM8088Register register : values()) {
+            BY_NAME.put(register.name(), register);
+        }
+    }
+
+    private final Kind kind;
+
+    /**
+     * The index of the 16-bit register (for byte registers, the one they are half of) or of the segment register
+     */
+    private final int index;
+
+    /**
+     * Whether a byte register is the high half of its 16-bit register
+     */
+    private final boolean high;
+
+    ASM8088Register(Kind kind, int index, boolean high)
+    {
+        this.kind = kind;
+        this.index = index;
+        this.high = high;
+    }
+
+    /**
+     * Checks if the register is 16 bits wide
+     *
+     * @return true for general purpose and segment registers, false for byte registers
+     */
+    public boolean isWide()
+    {
+        return kind != Kind.BYTE;
+    }
+
+    /**
+     * Looks up a register by its name; names are case-sensitive, as in the source
+     *
+     * @param name The register name
+     * @return The register, or null if the name is not a register
+     */
+    @Nullable
+    public static ASM8088Register fromName(String name)
+    {
+        return BY_NAME.get(name);
+    }
+}
@@ -1,18 +1,19 @@
 package xyz.atom7.interpreter.asm8088;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
-import xyz.atom7.Utils;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.api.interpreter.Scope;
 
 import java.util.*;
-
-import static xyz.atom7.Utils.debugln;
+import java.util.function.IntConsumer;
 
 /**
  * ASM8088Scope represents the execution environment for 8088 assembly programs.
  * This class manages the processor state including registers, memory, flags, and symbol table.
- * It uses a byte array for efficient register storage and implements proper 8088 segmented addressing.
+ * The registers are an int[8] of 16-bit values with the 8-bit halves derived by masking, the flags are derived
+ * lazily from the last operation when they are read, and memory uses proper 8088 segmented addressing.
  */
 @Getter
 @Setter
@@ -21,24 +22,53 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     private int pc = -1;
     
     private final byte[] memory = new byte[0x100000];
-    private final byte[] registers = new byte[16];
-    
-    private static final int AX_OFFSET = 0;
-    private static final int BX_OFFSET = 2;
-    private static final int CX_OFFSET = 4;
-    private static final int DX_OFFSET = 6;
-    private static final int SI_OFFSET = 8;
-    private static final int DI_OFFSET = 10;
-    private static final int BP_OFFSET = 12;
-    private static final int SP_OFFSET = 14;
+
+    /**
+     * The general purpose registers, indexed by {@link ASM8088Register#getIndex()}; each holds a 16-bit value
+     * and the 8-bit halves are derived by masking
+     */
+    private final int[] registers = new int[8];
+
+    private static final int SP_INDEX = ASM8088Register.SP.getIndex();
     
     private int DS = 0, ES = 0, SS = 0;
     
-    private boolean zeroFlag = false;
-    private boolean carryFlag = false;
-    private boolean signFlag = false;
-    private boolean overflowFlag = false;
-    private boolean parityFlag = false;
+    private static final int ZERO_FLAG = 1;
+    private static final int CARRY_FLAG = 1 << 1;
+    private static final int SIGN_FLAG = 1 << 2;
+    private static final int OVERFLOW_FLAG = 1 << 3;
+    private static final int PARITY_FLAG = 1 << 4;
+    private static final int RESULT_FLAGS = ZERO_FLAG | CARRY_FLAG | SIGN_FLAG | PARITY_FLAG;
+    private static final int ALL_FLAGS = RESULT_FLAGS | OVERFLOW_FLAG;
+
+    /**
+     * The flags are evaluated lazily: an operation only records its result, and a flag is derived from the
+     * last recorded operation when it is read. Flags set explicitly, or already derived, are kept here
+     * and marked in {@link #knownFlags}
+     */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int flags = 0;
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int knownFlags = ALL_FLAGS;
+
+    /**
+     * The result and width of the last operation that updated ZF, CF, SF and PF
+     */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int flagResult;
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private boolean flagWide;
+
+    /**
+     * The operands, result and kind of the last arithmetic operation, which OF is derived from
+     */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int overflowOperand1, overflowOperand2, overflowResult;
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private boolean overflowWide, overflowSubtraction;
     
     private int dataSegmentStart = 0x1000;
     private int bssSegmentStart = 0x2000;
@@ -47,6 +77,15 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     
     private final Map<String, Integer> labelAddresses = new HashMap<>();
 
+    /**
+     * The physical memory range holding machine code, whose writes are reported to {@link #codeWriteListener}
+     */
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int codeStart, codeEnd;
+
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private IntConsumer codeWriteListener;
+
     /**
      * Constructor for ASM8088Scope
      * Initializes memory, registers, and sets up the initial processor state
@@ -80,12 +119,82 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
         ES = 0;                         // Extra segment starts at 0
         SS = 0xF000 >> 4;               // Stack segment in high memory
 
-        setRegister16("SP", 0xFFFF);    // Stack pointer starts at top of segment
+        registers[SP_INDEX] = 0xFFFF;   // Stack pointer starts at top of segment
     }
     
     /**
      * Retrieves the value of a 16-bit register
-     * Uses little-endian byte ordering (low byte first, high byte second)
+     * 
+     * @param index The register index (see {@link ASM8088Register#getIndex()})
+     * @return The 16-bit register value
+     */
+    public int getRegister16(int index)
+    {
+        return registers[index];
+    }
+
+    /**
+     * Sets the value of a 16-bit register
+     * 
+     * @param index The register index (see {@link ASM8088Register#getIndex()})
+     * @param value The 16-bit value to set (will be masked to 16 bits)
+     */
+    public void setRegister16(int index, int value)
+    {
+        registers[index] = value & 0xFFFF;
+    }
+
+    /**
+     * Retrieves the value of a register
+     * 
+     * @param register The register
+     * @return The 16-bit value of a word or segment register, or the 8-bit value of a byte register
+     */
+    public int getRegister(ASM8088Register register)
+    {
+        int index = register.getIndex();
+
+        switch (register.getKind()) {
+            case WORD:
+                return registers[index];
+            case BYTE:
+                return register.isHigh() ? registers[index] >>> 8 : registers[index] & 0xFF;
+            default:
+                return index == 0 ? DS : index == 1 ? ES : SS;
+        }
+    }
+
+    /**
+     * Sets the value of a register, masked to its width
+     * Writing a byte register only affects its half of the 16-bit register
+     * 
+     * @param register The register
+     * @param value The value to set
+     */
+    public void setRegister(ASM8088Register register, int value)
+    {
+        int index = register.getIndex();
+
+        switch (register.getKind()) {
+            case WORD:
+                registers[index] = value & 0xFFFF;
+                break;
+            case BYTE:
+                registers[index] = register.isHigh()
+                        ? (registers[index] & 0x00FF) | ((value & 0xFF) << 8)
+                        : (registers[index] & 0xFF00) | (value & 0xFF);
+                break;
+            default:
+                value &= 0xFFFF;
+                if (index == 0) DS = value;
+                else if (index == 1) ES = value;
+                else SS = value;
+                break;
+        }
+    }
+
+    /**
+     * Retrieves the value of a 16-bit register by name
      * 
      * @param reg The register name (AX, BX, CX, DX, SI, DI, BP, SP)
      * @return The 16-bit register value
@@ -93,13 +202,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public int getRegister16(String reg) 
     {
-        int offset = getRegisterOffset(reg);
-        return ((registers[offset + 1] & 0xFF) << 8) | (registers[offset] & 0xFF);
+        return getRegister(lookupRegister(reg, ASM8088Register.Kind.WORD, "Invalid 16-bit register: "));
     }
     
     /**
-     * Sets the value of a 16-bit register
-     * Uses little-endian byte ordering for storage
+     * Sets the value of a 16-bit register by name
      * 
      * @param reg The register name (AX, BX, CX, DX, SI, DI, BP, SP)
      * @param value The 16-bit value to set (will be masked to 16 bits)
@@ -107,25 +214,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public void setRegister16(String reg, int value)
     {
-        int offset = getRegisterOffset(reg);
-        registers[offset] = (byte) (value & 0xFF);
-        registers[offset + 1] = (byte) ((value >> 8) & 0xFF);
-    }
-
-    private final Map<String, Integer> registerMap = Map.of(
-        "AL", AX_OFFSET,
-        "AH", AX_OFFSET + 1,
-        "BL", BX_OFFSET,
-        "BH", BX_OFFSET + 1,
-        "CL", CX_OFFSET,
-        "CH", CX_OFFSET + 1,
-        "DL", DX_OFFSET,
-        "DH", DX_OFFSET + 1
-    );
+        setRegister(lookupRegister(reg, ASM8088Register.Kind.WORD, "Invalid 16-bit register: "), value);
+    }
     
     /**
-     * Retrieves the value of an 8-bit register
-     * Handles both low (L) and high (H) byte access for 16-bit registers
+     * Retrieves the value of an 8-bit register by name
      * 
      * @param reg The 8-bit register name (AL, AH, BL, BH, CL, CH, DL, DH)
      * @return The 8-bit register value (0-255)
@@ -133,17 +226,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public int getRegister8(String reg) 
     {
-        Integer offset = registerMap.get(reg);
-
-        if (offset == null) {
-            throw new IllegalArgumentException("Invalid 8-bit register: " + reg);
-        }
-
-        return registers[offset] & 0xFF;
+        return getRegister(lookupRegister(reg, ASM8088Register.Kind.BYTE, "Invalid 8-bit register: "));
     }
     
     /**
-     * Sets the value of an 8-bit register
+     * Sets the value of an 8-bit register by name
      * Only affects the specified byte, leaving the other byte of the 16-bit register unchanged
      * 
      * @param reg The 8-bit register name (AL, AH, BL, BH, CL, CH, DL, DH)
@@ -152,18 +239,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public void setRegister8(String reg, int value)
     {
-        Integer offset = registerMap.get(reg);
-
-        if (offset == null) {
-            throw new IllegalArgumentException("Invalid 8-bit register: " + reg);
-        }
-
-        registers[offset] = (byte) (value & 0xFF);
+        setRegister(lookupRegister(reg, ASM8088Register.Kind.BYTE, "Invalid 8-bit register: "), value);
     }
     
     /**
-     * Retrieves the value of a segment register
-     * Segment registers are used for memory addressing in the 8088's segmented memory model
+     * Retrieves the value of a segment register by name
      * 
      * @param reg The segment register name (DS, ES, SS)
      * @return The 16-bit segment register value
@@ -171,17 +251,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public int getSegmentRegister(String reg) 
     {
-        switch (reg) {
-            case "DS": return DS;
-            case "ES": return ES;
-            case "SS": return SS;
-            default: throw new IllegalArgumentException("Invalid segment register: " + reg);
-        }
+        return getRegister(lookupRegister(reg, ASM8088Register.Kind.SEGMENT, "Invalid segment register: "));
     }
     
     /**
-     * Sets the value of a segment register
-     * Segment registers are masked to 16 bits as per 8088 architecture
+     * Sets the value of a segment register by name
      * 
      * @param reg The segment register name (DS, ES, SS)
      * @param value The 16-bit segment value (will be masked to 16 bits)
@@ -189,43 +263,27 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      */
     public void setSegmentRegister(String reg, int value) 
     {
-        value &= 0xFFFF;
-        switch (reg) {
-            case "DS": DS = value; break;
-            case "ES": ES = value; break;
-            case "SS": SS = value; break;
-            default: throw new IllegalArgumentException("Invalid segment register: " + reg);
-        }
+        setRegister(lookupRegister(reg, ASM8088Register.Kind.SEGMENT, "Invalid segment register: "), value);
     }
-    
-    private final Map<String, Integer> registers16OffsetMap = Map.of(
-        "AX", AX_OFFSET,
-        "BX", BX_OFFSET,
-        "CX", CX_OFFSET,
-        "DX", DX_OFFSET,
-        "SI", SI_OFFSET,
-        "DI", DI_OFFSET,
-        "BP", BP_OFFSET,
-        "SP", SP_OFFSET
-    );
-
-    /**
-     * Maps register names to their byte array offsets
-     * This provides efficient access to register storage locations
+
+    /**
+     * Resolves a register name, for the name-based accessors used by the tracer and the tests
      * 
-     * @param reg The 16-bit register name
-     * @return The byte offset in the registers array
+     * @param reg The register name
+     * @param kind The expected register kind
+     * @param error The message prefix if the name is not a register of that kind
+     * @return The register
      * @throws IllegalArgumentException if the register name is invalid
      */
-    private int getRegisterOffset(String reg) 
+    private ASM8088Register lookupRegister(String reg, ASM8088Register.Kind kind, String error)
     {
-        Integer offset = registers16OffsetMap.get(reg);
+        ASM8088Register register = ASM8088Register.fromName(reg);
 
-        if (offset == null) {
-            throw new IllegalArgumentException("Invalid 16-bit register: " + reg);
+        if (register == null || register.getKind() != kind) {
+            throw new IllegalArgumentException(error + reg);
         }
 
-        return offset;
+        return register;
     }
 
     /**
@@ -260,6 +318,25 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
         }
 
         memory[address] = value;
+
+        if (address < codeEnd && address >= codeStart) {
+            codeWriteListener.accept(address);
+        }
+    }
+
+    /**
+     * Watches a range of memory holding machine code, so that decoded instructions can be dropped when
+     * the program writes over them
+     *
+     * @param start The first physical address of the code
+     * @param end The physical address after the code
+     * @param listener Called with the address of every byte written in the range
+     */
+    public void watchCode(int start, int end, IntConsumer listener)
+    {
+        codeStart = start;
+        codeEnd = end;
+        codeWriteListener = listener;
     }
 
     /**
@@ -328,134 +405,39 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     }
 
     /**
-     * Processes the .DATA section of an assembly program
-     * Handles .BYTE and .ASCII directives to initialize data in memory
-     * Updates the symbol table with label addresses for program references
-     * 
-     * @param dataLines List of strings containing data section declarations
-     */
-    public void processSectData(List<String> dataLines)
-    {
-        currentDataOffset = 0;
-        
-        debugln("=== DATA SECTION PROCESSING ===");
-
-        for (String line : dataLines)
-        {
-            debugln("Processing data line: '" + line + "'");
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith(";") || line.startsWith("//")) {
-                debugln("  -> Skipping empty/comment line");
-                continue;
-            }
-            
-            if (line.contains(".BYTE")) {
-                processDataByte(line);
-            } 
-            else if (line.contains(".ASCII")) {
-                processDataAscii(line);
-            } 
-            else {
-                debugln("  -> Unknown data directive: " + line);
-            }
-        }
-        
-        debugln("=== END DATA SECTION PROCESSING ===\n");
-    }
-    
-    /**
-     * Processes the .BSS section of an assembly program
-     * Handles .SPACE directive to reserve uninitialized memory space
-     * Updates the symbol table with label addresses for program references
-     * 
-     * @param bssLines List of strings containing BSS section declarations
-     */
-    public void processSectBss(List<String> bssLines)
-    {
-        currentBssOffset = 0;
-        
-        for (String line : bssLines) 
-        {
-            line = line.trim();
-            
-            if (line.isEmpty() || line.startsWith(";") || line.startsWith("//")) {
-                continue;
-            }
-            
-            if (line.contains(".SPACE")) {
-                processReserveSpace(line);
-            }
-        }
-    }
-    
-    /**
-     * Processes a .BYTE directive from the data section
-     * Parses byte values and stores them in memory starting at the data segment
-     * Supports decimal, hexadecimal, and character literal formats
-     * 
-     * @param line The assembly line containing the .BYTE directive
+     * Stores bytes in the data section, as declared by a .BYTE directive
+     *
+     * @param label The label naming the first byte, or null
+     * @param values The bytes
      */
-    private void processDataByte(String line)
+    public void defineBytes(@Nullable String label, byte[] values)
     {
-        String[] parts = line.split(":");
-        if (parts.length < 2) {
-            debugln("\tERROR: No ':' found in line, expecting '<label>: .BYTE <values>'");
-            return;
-        }
-
-        String label = parts[0].trim();
-        String remaining = parts[1].trim();
-
-        if (!remaining.contains(".BYTE")) {
-            debugln("\tERROR: No .BYTE directive found in: " + remaining);
-            return;
-        }
-
-        String values = remaining.substring(remaining.indexOf(".BYTE") + 5).trim();
-
-        debugln("\tLabel: '" + label + "'");
-        debugln("\tValues: '" + values + "'");
-        debugln("\tAddress (head): "
-                + (dataSegmentStart + currentDataOffset)
-                + " (0x" + Integer.toHexString(dataSegmentStart + currentDataOffset)
-                + ")");
+        defineLabel(label, true);
 
-        storeLabelAddress(label, dataSegmentStart + currentDataOffset);
-
-        String[] byteValues = values.split(",");
-
-        for (String value : byteValues)
+        for (byte value : values)
         {
-            value = value.trim();
-            byte byteVal = Utils.parseByte(value);
-
-            debugln("\tStoring byte: " + value + " -> "
-                    + (byteVal & 0xFF) + " at address "
-                    + (dataSegmentStart + currentDataOffset));
-            memory[dataSegmentStart + currentDataOffset] = byteVal;
+            memory[dataSegmentStart + currentDataOffset] = value;
             currentDataOffset++;
         }
     }
-    
+
     /**
-     * Processes a .ASCII directive from the data section
-     * Parses ASCII string and stores each character as a byte in memory
-     * Handles escape sequences and null termination
-     * 
-     * @param line The assembly line containing the .ASCII directive
+     * Stores a string in the data section, as declared by a .ASCII directive
+     * Handles escape sequences; the string is not null-terminated unless it ends with \0
+     *
+     * @param label The label naming the first character, or null
+     * @param literal The string literal, quotes included
      */
-    private void processDataAscii(String line)
+    public void defineAscii(@Nullable String label, String literal)
     {
-        String[] parts = line.split(":");
-        String label = parts[0].trim();
-        String asciiString = line.substring(line.indexOf(".ASCII") + 6).trim();
-        
+        String asciiString = literal;
+
         // Remove quotes and handle escape sequences
         if (asciiString.startsWith("\"") && asciiString.endsWith("\"")) {
             asciiString = asciiString.substring(1, asciiString.length() - 1);
         }
         
-        storeLabelAddress(label, dataSegmentStart + currentDataOffset);
+        defineLabel(label, true);
         
         // Process string with escape sequences
         for (int i = 0; i < asciiString.length(); i++) 
@@ -478,23 +460,31 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     }
     
     /**
-     * Processes a .SPACE directive from the BSS section
-     * Reserves the specified number of bytes in the BSS segment
+     * Reserves space in the BSS segment, as declared by a .SPACE directive
      * Memory is not initialized (remains zero from initial memory setup)
      * 
-     * @param line The assembly line containing the .SPACE directive
+     * @param label The label naming the first byte, or null
+     * @param count The number of bytes to reserve
      */
-    private void processReserveSpace(String line) 
+    public void reserveSpace(@Nullable String label, int count)
     {
-        String[] parts = line.split(":");
-        String label = parts[0].trim();
-        String spaceStr = line.substring(line.indexOf(".SPACE") + 6).trim();
-        int count = Integer.parseInt(spaceStr);
-        
-        storeLabelAddress(label, bssSegmentStart + currentBssOffset);
+        defineLabel(label, false);
         currentBssOffset += count;
     }
 
+    /**
+     * Names the next free address of the data or BSS section
+     *
+     * @param label The label, or null for none
+     * @param data Whether the label is in the data section rather than the BSS section
+     */
+    public void defineLabel(@Nullable String label, boolean data)
+    {
+        if (label != null) {
+            storeLabelAddress(label, data ? dataSegmentStart + currentDataOffset : bssSegmentStart + currentBssOffset);
+        }
+    }
+
     /**
      * Stores a label address in the symbol table
      * Used by assembler directives to track memory locations of labels
@@ -521,29 +511,21 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     
     /**
      * Updates processor flags based on an arithmetic or logical operation result
-     * Sets zero, sign, carry, overflow, and parity flags according to 8088 processor behavior
+     * Only the result is recorded; zero, sign, carry and parity are derived from it when read
      * 
      * @param result The result of the operation
      * @param is16Bit True if the operation was 16-bit, false if 8-bit
      */
     public void updateFlags(int result, boolean is16Bit) 
     {
-        if (is16Bit) {
-            zeroFlag = (result & 0xFFFF) == 0;
-            signFlag = (result & 0x8000) != 0;
-            carryFlag = (result & 0x10000) != 0;
-            // Parity flag is based on the low byte only
-            parityFlag = calculateParity(result & 0xFF);
-        } else {
-            zeroFlag = (result & 0xFF) == 0;
-            signFlag = (result & 0x80) != 0;
-            carryFlag = (result & 0x100) != 0;
-            parityFlag = calculateParity(result & 0xFF);
-        }
+        flagResult = result;
+        flagWide = is16Bit;
+        knownFlags &= ~RESULT_FLAGS;
     }
 
     /**
      * Updates flags specifically for arithmetic operations that can generate overflow
+     * Only the operands and result are recorded; the overflow flag is derived from them when read
      * 
      * @param operand1 First operand
      * @param operand2 Second operand  
@@ -554,71 +536,53 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
     public void updateArithmeticFlags(int operand1, int operand2, int result, boolean is16Bit, boolean isSubtraction)
     {
         updateFlags(result, is16Bit);
-        
-        if (is16Bit) {
-            // Check for signed overflow in 16-bit operations
-            if (isSubtraction) {
-                overflowFlag = ((operand1 & 0x8000) != (operand2 & 0x8000)) && 
-                              ((operand1 & 0x8000) != (result & 0x8000));
-            } else {
-                overflowFlag = ((operand1 & 0x8000) == (operand2 & 0x8000)) && 
-                              ((operand1 & 0x8000) != (result & 0x8000));
-            }
-        } else {
-            // Check for signed overflow in 8-bit operations
-            if (isSubtraction) {
-                overflowFlag = ((operand1 & 0x80) != (operand2 & 0x80)) && 
-                              ((operand1 & 0x80) != (result & 0x80));
-            } else {
-                overflowFlag = ((operand1 & 0x80) == (operand2 & 0x80)) && 
-                              ((operand1 & 0x80) != (result & 0x80));
-            }
-        }
+
+        overflowOperand1 = operand1;
+        overflowOperand2 = operand2;
+        overflowResult = result;
+        overflowWide = is16Bit;
+        overflowSubtraction = isSubtraction;
+        knownFlags &= ~OVERFLOW_FLAG;
     }
 
-    /**
-     * Calculates the parity flag for a byte value
-     * Parity flag is set if the number of 1 bits in the low byte is even
-     * 
-     * @param value The byte value to check
-     * @return True if parity is even (parity flag set)
-     */
-    private boolean calculateParity(int value)
+    public boolean isZeroFlag()
     {
-        int count = 0;
-        value &= 0xFF;
-        
-        for (int i = 0; i < 8; i++) {
-            if ((value & (1 << i)) != 0) {
-                count++;
-            }
-        }
-        
-        return (count % 2) == 0;
+        return flag(ZERO_FLAG);
     }
 
-    @Override
-    public Integer popStack()
+    public boolean isCarryFlag()
     {
-        int sp = getRegister16("SP");
-        int stackAddr = getStackAddress(sp);
-        int word = readWord(stackAddr);
+        return flag(CARRY_FLAG);
+    }
 
-        sp = (sp + 2) & 0xFFFF;
-        setRegister16("SP", sp);
+    public boolean isSignFlag()
+    {
+        return flag(SIGN_FLAG);
+    }
 
-        return word;
+    public boolean isOverflowFlag()
+    {
+        return flag(OVERFLOW_FLAG);
     }
 
-    public void pushStack(int value)
+    public boolean isParityFlag()
     {
-        int sp = getRegister16("SP");
-        int stackAddr = getStackAddress(sp - 2);
+        return flag(PARITY_FLAG);
+    }
 
-        writeWord(stackAddr, value);
+    public void setZeroFlag(boolean zeroFlag)
+    {
+        setFlag(ZERO_FLAG, zeroFlag);
+    }
 
-        sp = (sp - 2) & 0xFFFF;
-        setRegister16("SP", sp);
+    public void setCarryFlag(boolean carryFlag)
+    {
+        setFlag(CARRY_FLAG, carryFlag);
+    }
+
+    public void setSignFlag(boolean signFlag)
+    {
+        setFlag(SIGN_FLAG, signFlag);
     }
 
     /**
@@ -626,8 +590,9 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      * 
      * @param overflowFlag The overflow flag value
      */
-    public void setOverflowFlag(boolean overflowFlag) {
-        this.overflowFlag = overflowFlag;
+    public void setOverflowFlag(boolean overflowFlag)
+    {
+        setFlag(OVERFLOW_FLAG, overflowFlag);
     }
 
     /**
@@ -635,8 +600,97 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
      * 
      * @param parityFlag The parity flag value
      */
-    public void setParityFlag(boolean parityFlag) {
-        this.parityFlag = parityFlag;
+    public void setParityFlag(boolean parityFlag)
+    {
+        setFlag(PARITY_FLAG, parityFlag);
+    }
+
+    /**
+     * Reads a flag, deriving it from the last recorded operation if it is not known yet
+     *
+     * @param flag The flag bit
+     * @return The flag value
+     */
+    private boolean flag(int flag)
+    {
+        if ((knownFlags & flag) == 0) {
+            setFlag(flag, evaluateFlag(flag));
+        }
+
+        return (flags & flag) != 0;
+    }
+
+    private void setFlag(int flag, boolean value)
+    {
+        flags = value ? flags | flag : flags & ~flag;
+        knownFlags |= flag;
+    }
+
+    /**
+     * Derives a flag from the last recorded operation, following 8088 processor behavior
+     *
+     * @param flag The flag bit
+     * @return The flag value
+     */
+    private boolean evaluateFlag(int flag)
+    {
+        int signBit = flagWide ? 0x8000 : 0x80;
+
+        switch (flag)
+        {
+            case ZERO_FLAG:
+                return (flagResult & (flagWide ? 0xFFFF : 0xFF)) == 0;
+            case CARRY_FLAG:
+                return (flagResult & (flagWide ? 0x10000 : 0x100)) != 0;
+            case SIGN_FLAG:
+                return (flagResult & signBit) != 0;
+            case PARITY_FLAG:
+                // parity flag is based on the low byte only, and set if its number of 1 bits is even
+                return (Integer.bitCount(flagResult & 0xFF) & 1) == 0;
+            default:
+                return evaluateOverflow();
+        }
+    }
+
+    /**
+     * Derives the overflow flag: signed overflow occurs when the sign of the result disagrees with
+     * the signs of the operands
+     *
+     * @return The overflow flag value
+     */
+    private boolean evaluateOverflow()
+    {
+        int signBit = overflowWide ? 0x8000 : 0x80;
+        int sign1 = overflowOperand1 & signBit;
+        int sign2 = overflowOperand2 & signBit;
+        int signResult = overflowResult & signBit;
+
+        if (overflowSubtraction) {
+            return sign1 != sign2 && sign1 != signResult;
+        }
+
+        return sign1 == sign2 && sign1 != signResult;
+    }
+
+    @Override
+    public int popStack()
+    {
+        int sp = registers[SP_INDEX];
+        int word = readWord(getStackAddress(sp));
+
+        registers[SP_INDEX] = (sp + 2) & 0xFFFF;
+
+        return word;
+    }
+
+    @Override
+    public void pushStack(int value)
+    {
+        int sp = registers[SP_INDEX];
+
+        writeWord(getStackAddress(sp - 2), value);
+
+        registers[SP_INDEX] = (sp - 2) & 0xFFFF;
     }
 
     /**
@@ -651,11 +705,11 @@ public class ASM8088Scope extends Scope<Object, ASM8088Instruction>
         return "ASM8088Scope{" +
                 "name='" + name + '\'' +
                 ", pc=" + pc +
-                ", zeroFlag=" + zeroFlag +
-                ", carryFlag=" + carryFlag +
-                ", signFlag=" + signFlag +
-                ", overflowFlag=" + overflowFlag +
-                ", parityFlag=" + parityFlag +
+                ", zeroFlag=" + isZeroFlag() +
+                ", carryFlag=" + isCarryFlag() +
+                ", signFlag=" + isSignFlag() +
+                ", overflowFlag=" + isOverflowFlag() +
+                ", parityFlag=" + isParityFlag() +
                 ", DS=" + Integer.toHexString(DS) +
                 ", ES=" + Integer.toHexString(ES) +
                 ", SS=" + Integer.toHexString(SS) +
@@ -0,0 +1,152 @@
+package xyz.atom7.interpreter.ijvm;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The methods of one {@link IJVMLinkedProgram} compiled by {@link IJVMCompiler}, shared by every run of the
+ * program, on any thread: a method is compiled at most once per linked program, and a run finds the methods
+ * hot in earlier runs already compiled.
+ * The classes are defined as hidden classes, which are unloaded together with the linked program once no
+ * run uses it anymore.
+ */
+final class IJVMCompiledCode
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * The name of every generated class; hidden classes get a unique suffix when they are defined
+     */
+    private static final String CLASS_NAME = IJVMCompiledCode.class.getPackageName().replace('.', '/')
+            + "/IJVMCompiled";
+
+    /**
+     * The outcome of compiling a method
+     */
+    static final class Compilation
+    {
+        /**
+         * The compiled method, or null if the method stays interpreted
+         */
+        @Nullable
+        final IJVMCompiledMethod method;
+
+        /**
+         * The stack layout of the compiled method, or null if the method stays interpreted
+         */
+        @Nullable
+        final IJVMCompiler.Plan plan;
+
+        Compilation(@Nullable IJVMCompiledMethod method, @Nullable IJVMCompiler.Plan plan)
+        {
+            this.method = method;
+            this.plan = plan;
+        }
+    }
+
+    private static final Compilation REJECTED = new Compilation(null, null);
+
+    private final IJVMCompiler compiler;
+    private final AtomicReferenceArray<Compilation> compilations;
+    private final Map<IJVMMethod, Integer> indices = new IdentityHashMap<>();
+
+    /**
+     * The largest number of arguments of a method, which sizes the argument array of a run
+     */
+    @Getter
+    private final int maxArgumentCount;
+
+    IJVMCompiledCode(IJVMLinkedProgram program)
+    {
+        IJVMMethod[] methods = program.getMethods();
+        int maxArguments = 0;
+
+        this.compiler = new IJVMCompiler(program);
+        this.compilations = new AtomicReferenceArray<>(methods.length);
+
+        for (int i = 0; i < methods.length; i++) {
+            indices.putIfAbsent(methods[i], i);
+            maxArguments = Math.max(maxArguments, methods[i].getArgumentCount());
+        }
+
+        this.maxArgumentCount = maxArguments;
+    }
+
+    /**
+     * Get the outcome of compiling a method, without compiling it
+     *
+     * @param index The index of the method in the method table
+     * @return The compilation, or null if the method has not been compiled yet
+     */
+    @Nullable
+    Compilation get(int index)
+    {
+        return compilations.get(index);
+    }
+
+    /**
+     * Compile a method, unless it has been compiled already
+     *
+     * @param index The index of the method in the method table
+     * @return The compilation, whose method is null if the compiler rejected it
+     */
+    synchronized Compilation compile(int index)
+    {
+        Compilation compilation = compilations.get(index);
+
+        if (compilation != null) {
+            return compilation;
+        }
+
+        IJVMCompiler.Plan plan = compiler.plan(index);
+        compilation = REJECTED;
+
+        if (plan != null) {
+            try {
+                byte[] bytes = compiler.generate(index, plan, CLASS_NAME);
+                Class<?> type = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+
+                compilation = new Compilation((IJVMCompiledMethod) type.getDeclaredConstructor().newInstance(), plan);
+            }
+            catch (ReflectiveOperationException | RuntimeException e) {
+                // e.g. a method too large for the JVM: leave it to the interpreter
+            }
+        }
+
+        compilations.set(index, compilation);
+        return compilation;
+    }
+
+    /**
+     * @param method A method of the program
+     * @return The index of the method in the method table, or null if it is not part of the program
+     */
+    @Nullable
+    Integer indexOf(IJVMMethod method)
+    {
+        return indices.get(method);
+    }
+
+    /**
+     * @return The number of methods compiled so far
+     */
+    int getCompiledCount()
+    {
+        int count = 0;
+
+        for (int i = 0; i < compilations.length(); i++) {
+            Compilation compilation = compilations.get(i);
+
+            if (compilation != null && compilation.method != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
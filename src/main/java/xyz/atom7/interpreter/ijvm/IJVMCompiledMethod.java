@@ -0,0 +1,23 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An IJVM method compiled to JVM bytecode by {@link IJVMCompiler}.
+ * The generated code keeps the IJVM locals and operand stack slots in JVM locals and runs the method
+ * until it falls off its end, exactly like the interpreter would.
+ */
+interface IJVMCompiledMethod
+{
+    /**
+     * Run the method
+     *
+     * @param jit The runtime serving calls, returns and I/O of the compiled code
+     * @param frame The interpreter frame to take the locals and operand stack from and to write them back to
+     *              when the method ends, or null for a plain call
+     * @param locals The arguments of a plain call, in its first slots; ignored when a frame is given. Only read
+     *               on entry, so the caller may reuse the array for the next call
+     * @param entry The index of the instruction to start at: 0, or a loop header when entering from a frame
+     */
+    void invoke(IJVMJit jit, @Nullable IJVMScope frame, int[] locals, int entry);
+}
@@ -0,0 +1,670 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles linked IJVM methods to JVM bytecode.
+ * A method is only compiled when its operand stack has the same depth on every path to each instruction,
+ * so every stack slot can live in a JVM local, and when it cannot leave the compiled code mid-way:
+ * methods reading input with IN, or calling a method that may end without IRETURN, stay interpreted.
+ */
+final class IJVMCompiler
+{
+    /**
+     * The deepest operand stack a compiled method may use
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private static final String JIT = Type.getInternalName(IJVMJit.class);
+    private static final String SCOPE = Type.getInternalName(IJVMScope.class);
+    private static final String COMPILED_METHOD = Type.getInternalName(IJVMCompiledMethod.class);
+    private static final String INVOKE_DESCRIPTOR = "(L" + JIT + ";L" + SCOPE + ";[II)V";
+
+    // JVM local slots of the generated invoke method
+    private static final int JIT_SLOT = 1;
+    private static final int FRAME_SLOT = 2;
+    private static final int LOCALS_SLOT = 3;
+    private static final int ENTRY_SLOT = 4;
+    private static final int COUNT_SLOT = 5;
+    private static final int FIRST_LOCAL_SLOT = 7;
+
+    private final IJVMLinkedProgram program;
+
+    /**
+     * Whether each method always ends with a return value pending, computed on demand
+     */
+    private final Boolean[] returnsValue;
+
+    IJVMCompiler(IJVMLinkedProgram program)
+    {
+        this.program = program;
+        this.returnsValue = new Boolean[program.getMethods().length];
+    }
+
+    /**
+     * The stack layout of a compilable method
+     */
+    static final class Plan
+    {
+        /**
+         * The operand stack depth on entry to every instruction, -1 if unreachable
+         */
+        final int[] depthAt;
+
+        /**
+         * The instructions execution can enter the compiled code at: the first one and every loop header
+         */
+        final boolean[] entries;
+
+        final int maxDepth;
+
+        private Plan(int[] depthAt, boolean[] entries, int maxDepth)
+        {
+            this.depthAt = depthAt;
+            this.entries = entries;
+            this.maxDepth = maxDepth;
+        }
+    }
+
+    /**
+     * Work out the stack layout of a method
+     *
+     * @param methodIndex The index of the method in the method table
+     * @return The layout, or null if the method cannot be compiled
+     */
+    @Nullable
+    Plan plan(int methodIndex)
+    {
+        IJVMMethod[] methods = program.getMethods();
+        IJVMInstruction[] code = methods[methodIndex].getCode();
+
+        int[] depthAt = new int[code.length];
+        boolean[] entries = new boolean[code.length];
+        Arrays.fill(depthAt, -1);
+
+        if (code.length == 0) {
+            return new Plan(depthAt, entries, 0);
+        }
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        depthAt[0] = 0;
+        entries[0] = true;
+        worklist.push(0);
+
+        int maxDepth = 0;
+
+        while (!worklist.isEmpty())
+        {
+            int pc = worklist.pop();
+            IJVMInstruction instruction = code[pc];
+            IJVMOpcode opcode = instruction.getOpcode();
+
+            if (opcode == null) {
+                return null;
+            }
+
+            int depth = depthAt[pc];
+            int popped = 0, pushed = 0;
+            int target = -1;
+            boolean fallsThrough = true;
+
+            switch (opcode)
+            {
+                case BIPUSH:
+                case ILOAD:
+                case LDC_W:
+                    pushed = 1;
+                    break;
+                case DUP:
+                    popped = 1;
+                    pushed = 2;
+                    break;
+                case SWAP:
+                    popped = 2;
+                    pushed = 2;
+                    break;
+                case IADD:
+                case ISUB:
+                case IAND:
+                case IOR:
+                    popped = 2;
+                    pushed = 1;
+                    break;
+                case POP:
+                case ISTORE:
+                case OUT:
+                case IRETURN:
+                    popped = 1;
+                    break;
+                case IFEQ:
+                case IFLT:
+                    popped = 1;
+                    target = instruction.getOperand() + 1;
+                    break;
+                case IF_ICMPEQ:
+                    popped = 2;
+                    target = instruction.getOperand() + 1;
+                    break;
+                case GOTO:
+                    target = instruction.getOperand();
+                    fallsThrough = false;
+                    break;
+                case INVOKEVIRTUAL:
+                    if (!returnsValue(instruction.getOperand())) {
+                        return null;
+                    }
+                    popped = methods[instruction.getOperand()].getArgumentCount() + 1;
+                    pushed = 1;
+                    break;
+                case HALT:
+                case IINC:
+                case NOP:
+                case LABEL:
+                    break;
+                default:
+                    // IN only pushes when there is input, and ERR has no handler
+                    return null;
+            }
+
+            if (depth < popped) {
+                return null;
+            }
+
+            int next = depth - popped + pushed;
+
+            if (next > MAX_DEPTH) {
+                return null;
+            }
+
+            maxDepth = Math.max(maxDepth, next);
+
+            if (fallsThrough && !propagate(depthAt, worklist, pc + 1, next)) {
+                return null;
+            }
+
+            if (target >= 0) {
+                if (!propagate(depthAt, worklist, target, next)) {
+                    return null;
+                }
+
+                // backward branches are where the interpreter hands a running frame over
+                if (target <= pc && target < code.length) {
+                    entries[target] = true;
+                }
+            }
+        }
+
+        return new Plan(depthAt, entries, maxDepth);
+    }
+
+    /**
+     * Record the stack depth on entry to an instruction
+     *
+     * @return False if the instruction was already reached with a different depth
+     */
+    private static boolean propagate(int[] depthAt, Deque<Integer> worklist, int pc, int depth)
+    {
+        // falling off the end of the method is allowed at any depth
+        if (pc >= depthAt.length) {
+            return true;
+        }
+
+        if (depthAt[pc] == -1) {
+            depthAt[pc] = depth;
+            worklist.push(pc);
+            return true;
+        }
+
+        return depthAt[pc] == depth;
+    }
+
+    /**
+     * Whether a method leaves a return value pending on every path that ends it.
+     * Only such methods can be called from compiled code, since the caller's stack depth after the call
+     * would otherwise depend on the run.
+     *
+     * @param methodIndex The index of the method in the method table
+     * @return True if every way of falling off the end of the method passes an IRETURN after its last call
+     */
+    boolean returnsValue(int methodIndex)
+    {
+        Boolean known = returnsValue[methodIndex];
+
+        if (known != null) {
+            return known;
+        }
+
+        IJVMInstruction[] code = program.getMethods()[methodIndex].getCode();
+
+        // pending[pc]: whether a value is surely pending on entry to pc; null if not reached yet
+        Boolean[] pending = new Boolean[code.length];
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean result = true;
+
+        if (code.length == 0) {
+            result = false;
+        }
+        else {
+            pending[0] = false;
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty())
+        {
+            int pc = worklist.pop();
+            IJVMOpcode opcode = code[pc].getOpcode();
+
+            if (opcode == null || opcode == IJVMOpcode.ERR) {
+                continue;
+            }
+
+            boolean state = pending[pc];
+
+            if (opcode == IJVMOpcode.IRETURN) {
+                state = true;
+            }
+            else if (opcode == IJVMOpcode.INVOKEVIRTUAL) {
+                // the callee's value, if any, is pushed to this frame
+                state = false;
+            }
+
+            List<Integer> successors = new ArrayList<>(2);
+
+            switch (opcode)
+            {
+                case GOTO:
+                    successors.add(code[pc].getOperand());
+                    break;
+                case IFEQ:
+                case IFLT:
+                case IF_ICMPEQ:
+                    successors.add(code[pc].getOperand() + 1);
+                    successors.add(pc + 1);
+                    break;
+                default:
+                    successors.add(pc + 1);
+                    break;
+            }
+
+            for (int next : successors)
+            {
+                if (next >= code.length) {
+                    result &= state;
+                }
+                else if (pending[next] == null || (pending[next] && !state)) {
+                    pending[next] = pending[next] == null ? state : false;
+                    worklist.push(next);
+                }
+            }
+        }
+
+        returnsValue[methodIndex] = result;
+        return result;
+    }
+
+    /**
+     * Generate the class implementing a method
+     *
+     * @param methodIndex The index of the method in the method table
+     * @param plan The stack layout of the method
+     * @param className The internal name of the class to generate
+     * @return The class file
+     */
+    byte[] generate(int methodIndex, Plan plan, String className)
+    {
+        IJVMMethod method = program.getMethods()[methodIndex];
+        IJVMInstruction[] code = method.getCode();
+        int localCount = method.getLocalCount();
+        int firstStackSlot = FIRST_LOCAL_SLOT + localCount;
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object",
+                new String[] {COMPILED_METHOD});
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null, null);
+        mv.visitCode();
+
+        Label[] labels = new Label[code.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+
+        Map<Integer, Label> exits = new TreeMap<>();
+
+        // load the locals and the operand stack, from the frame when there is one
+        Label fromFrame = new Label();
+        Label dispatch = new Label();
+
+        mv.visitInsn(LCONST_0);
+        mv.visitVarInsn(LSTORE, COUNT_SLOT);
+
+        mv.visitVarInsn(ALOAD, FRAME_SLOT);
+        mv.visitJumpInsn(IFNONNULL, fromFrame);
+
+        // the arguments array is reused by the next call, so only the arguments are read from it
+        for (int i = 0; i < localCount; i++) {
+            if (i < method.getArgumentCount()) {
+                mv.visitVarInsn(ALOAD, LOCALS_SLOT);
+                push(mv, i);
+                mv.visitInsn(IALOAD);
+            }
+            else {
+                mv.visitInsn(ICONST_0);
+            }
+            mv.visitVarInsn(ISTORE, FIRST_LOCAL_SLOT + i);
+        }
+        for (int i = 0; i < plan.maxDepth; i++) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, firstStackSlot + i);
+        }
+        mv.visitJumpInsn(GOTO, dispatch);
+
+        mv.visitLabel(fromFrame);
+        for (int i = 0; i < localCount; i++) {
+            mv.visitVarInsn(ALOAD, FRAME_SLOT);
+            push(mv, i);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCOPE, "getLocal", "(I)I", false);
+            mv.visitVarInsn(ISTORE, FIRST_LOCAL_SLOT + i);
+        }
+        for (int i = 0; i < plan.maxDepth; i++) {
+            mv.visitVarInsn(ALOAD, FRAME_SLOT);
+            push(mv, i);
+            mv.visitMethodInsn(INVOKESTATIC, JIT, "stackValue", "(L" + SCOPE + ";I)I", false);
+            mv.visitVarInsn(ISTORE, firstStackSlot + i);
+        }
+
+        mv.visitLabel(dispatch);
+
+        if (code.length == 0) {
+            mv.visitJumpInsn(GOTO, exit(exits, 0));
+        }
+        else {
+            List<Integer> keys = new ArrayList<>();
+            for (int pc = 0; pc < code.length; pc++) {
+                if (plan.entries[pc]) {
+                    keys.add(pc);
+                }
+            }
+
+            mv.visitVarInsn(ILOAD, ENTRY_SLOT);
+            mv.visitLookupSwitchInsn(labels[0],
+                    keys.stream().mapToInt(Integer::intValue).toArray(),
+                    keys.stream().map(pc -> labels[pc]).toArray(Label[]::new));
+        }
+
+        for (int pc = 0; pc < code.length; pc++)
+        {
+            int depth = plan.depthAt[pc];
+
+            if (depth < 0) {
+                continue;
+            }
+
+            IJVMInstruction instruction = code[pc];
+            int operand = instruction.getOperand();
+            int top = firstStackSlot + depth - 1;
+            int next = depth;
+
+            mv.visitLabel(labels[pc]);
+
+            mv.visitVarInsn(LLOAD, COUNT_SLOT);
+            mv.visitInsn(LCONST_1);
+            mv.visitInsn(LADD);
+            mv.visitVarInsn(LSTORE, COUNT_SLOT);
+
+            switch (instruction.getOpcode())
+            {
+                case BIPUSH:
+                    push(mv, instruction.getValue());
+                    mv.visitVarInsn(ISTORE, top + 1);
+                    next++;
+                    break;
+                case LDC_W:
+                    push(mv, program.getConstantPool()[operand]);
+                    mv.visitVarInsn(ISTORE, top + 1);
+                    next++;
+                    break;
+                case ILOAD:
+                    mv.visitVarInsn(ILOAD, FIRST_LOCAL_SLOT + operand);
+                    mv.visitVarInsn(ISTORE, top + 1);
+                    next++;
+                    break;
+                case ISTORE:
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitVarInsn(ISTORE, FIRST_LOCAL_SLOT + operand);
+                    next--;
+                    break;
+                case IADD:
+                    binary(mv, top, IADD);
+                    next--;
+                    break;
+                case ISUB:
+                    binary(mv, top, ISUB);
+                    next--;
+                    break;
+                case IAND:
+                    binary(mv, top, IAND);
+                    next--;
+                    break;
+                case IOR:
+                    binary(mv, top, IOR);
+                    next--;
+                    break;
+                case DUP:
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitVarInsn(ISTORE, top + 1);
+                    next++;
+                    break;
+                case SWAP:
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitVarInsn(ILOAD, top - 1);
+                    mv.visitVarInsn(ISTORE, top);
+                    mv.visitVarInsn(ISTORE, top - 1);
+                    break;
+                case POP:
+                    next--;
+                    break;
+                case OUT:
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "out", "(I)V", false);
+                    next--;
+                    break;
+                case IRETURN:
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "returnValue", "(I)V", false);
+                    next--;
+                    break;
+                case IINC:
+                    if (instruction.getValue() >= Short.MIN_VALUE && instruction.getValue() <= Short.MAX_VALUE) {
+                        mv.visitIincInsn(FIRST_LOCAL_SLOT + operand, instruction.getValue());
+                    }
+                    else {
+                        mv.visitVarInsn(ILOAD, FIRST_LOCAL_SLOT + operand);
+                        push(mv, instruction.getValue());
+                        mv.visitInsn(IADD);
+                        mv.visitVarInsn(ISTORE, FIRST_LOCAL_SLOT + operand);
+                    }
+                    break;
+                case GOTO:
+                    safepointIfBackward(mv, pc, operand);
+                    mv.visitJumpInsn(GOTO, target(labels, exits, operand, depth));
+                    continue;
+                case IFEQ:
+                    safepointIfBackward(mv, pc, operand + 1);
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitJumpInsn(IFEQ, target(labels, exits, operand + 1, depth - 1));
+                    next--;
+                    break;
+                case IFLT:
+                    safepointIfBackward(mv, pc, operand + 1);
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitJumpInsn(IFLT, target(labels, exits, operand + 1, depth - 1));
+                    next--;
+                    break;
+                case IF_ICMPEQ:
+                    safepointIfBackward(mv, pc, operand + 1);
+                    mv.visitVarInsn(ILOAD, top - 1);
+                    mv.visitVarInsn(ILOAD, top);
+                    mv.visitJumpInsn(IF_ICMPEQ, target(labels, exits, operand + 1, depth - 2));
+                    next -= 2;
+                    break;
+                case INVOKEVIRTUAL: {
+                    IJVMMethod callee = program.getMethods()[operand];
+                    int argumentCount = callee.getArgumentCount();
+                    int firstArgument = top - argumentCount + 1;
+
+                    flushCount(mv);
+
+                    // the arguments go through the array of the run, so calls do not allocate
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "arguments", "()[I", false);
+                    for (int i = 0; i < argumentCount; i++) {
+                        mv.visitInsn(DUP);
+                        push(mv, i);
+                        mv.visitVarInsn(ILOAD, firstArgument + i);
+                        mv.visitInsn(IASTORE);
+                    }
+                    mv.visitInsn(POP);
+
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    push(mv, operand);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "invoke", "(I)V", false);
+
+                    // the return value takes the place of the object reference
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "takeReturnValue", "()I", false);
+                    mv.visitVarInsn(ISTORE, firstArgument - 1);
+                    next -= argumentCount;
+                    break;
+                }
+                case HALT:
+                    flushCount(mv);
+                    mv.visitVarInsn(ALOAD, JIT_SLOT);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "halt", "()V", false);
+                    break;
+                default:
+                    break;
+            }
+
+            if (pc + 1 == code.length) {
+                mv.visitJumpInsn(GOTO, exit(exits, next));
+            }
+        }
+
+        // falling off the end: publish the instruction count, and write the state back to the frame
+        for (var entry : exits.entrySet())
+        {
+            int depth = entry.getKey();
+            Label done = new Label();
+
+            mv.visitLabel(entry.getValue());
+            flushCount(mv);
+
+            mv.visitVarInsn(ALOAD, FRAME_SLOT);
+            mv.visitJumpInsn(IFNULL, done);
+
+            for (int i = 0; i < localCount; i++) {
+                mv.visitVarInsn(ALOAD, FRAME_SLOT);
+                push(mv, i);
+                mv.visitVarInsn(ILOAD, FIRST_LOCAL_SLOT + i);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCOPE, "setLocal", "(II)V", false);
+            }
+
+            mv.visitVarInsn(ALOAD, FRAME_SLOT);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCOPE, "clearStack", "()V", false);
+
+            for (int i = 0; i < depth; i++) {
+                mv.visitVarInsn(ALOAD, FRAME_SLOT);
+                mv.visitVarInsn(ILOAD, firstStackSlot + i);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCOPE, "pushStack", "(I)V", false);
+            }
+
+            mv.visitLabel(done);
+            mv.visitInsn(RETURN);
+        }
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+
+    private static Label target(Label[] labels, Map<Integer, Label> exits, int pc, int depth)
+    {
+        return pc < labels.length ? labels[pc] : exit(exits, depth);
+    }
+
+    private static Label exit(Map<Integer, Label> exits, int depth)
+    {
+        return exits.computeIfAbsent(depth, d -> new Label());
+    }
+
+    private static void binary(MethodVisitor mv, int top, int opcode)
+    {
+        mv.visitVarInsn(ILOAD, top - 1);
+        mv.visitVarInsn(ILOAD, top);
+        mv.visitInsn(opcode);
+        mv.visitVarInsn(ISTORE, top - 1);
+    }
+
+    private static void flushCount(MethodVisitor mv)
+    {
+        mv.visitVarInsn(ALOAD, JIT_SLOT);
+        mv.visitVarInsn(LLOAD, COUNT_SLOT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "count", "(J)V", false);
+        mv.visitInsn(LCONST_0);
+        mv.visitVarInsn(LSTORE, COUNT_SLOT);
+    }
+
+    /**
+     * Make a backward branch a safepoint, where the run may be stopped: the instruction count is published
+     * before the check, so that the instruction limit sees it
+     */
+    private static void safepointIfBackward(MethodVisitor mv, int pc, int target)
+    {
+        if (target > pc) {
+            return;
+        }
+
+        mv.visitVarInsn(ALOAD, JIT_SLOT);
+        mv.visitVarInsn(LLOAD, COUNT_SLOT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JIT, "safepoint", "(J)V", false);
+        mv.visitInsn(LCONST_0);
+        mv.visitVarInsn(LSTORE, COUNT_SLOT);
+    }
+
+    private static void push(MethodVisitor mv, int value)
+    {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        }
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        }
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        }
+        else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The binary image of a linked IJVM program, so that a program can be run again without going through
+ * the parser, the semantic analysis and the linker.
+ * <p>
+ * The layout is big-endian: the IJVM magic number and a format version, the constant pool (value and
+ * name of every constant), then the method table. Every method holds its name, argument count, local
+ * names, maximum stack depth and code. The code is IJVM bytecode: one opcode byte per instruction, using
+ * the opcodes of the IJVM specification, followed by its operands. Operands are already linked, so jump
+ * targets are instruction indices, and locals, constants and methods are table indices.
+ * <p>
+ * Images are read through a memory-mapped buffer and decoded in a single pass.
+ */
+public final class IJVMImage
+{
+    /**
+     * The file extension of IJVM images
+     */
+    public static final String EXTENSION = ".ijvm";
+
+    private static final int MAGIC = 0x1DEADFAD;
+    private static final short VERSION = 1;
+
+    /**
+     * Opcodes outside of the IJVM specification: label markers, kept so that jumps and the debug output
+     * still show the label names, and mnemonics the interpreter does not know, which only fail when run
+     */
+    private static final int LABEL = 0xF0;
+    private static final int UNKNOWN = 0xF1;
+
+    private static final Map<IJVMOpcode, Integer> CODES = new EnumMap<>(IJVMOpcode.class);
+    private static final IJVMOpcode[] OPCODES = new IJVMOpcode[256];
+
+    static {
+        code(IJVMOpcode.BIPUSH, 0x10);
+        code(IJVMOpcode.DUP, 0x59);
+        code(IJVMOpcode.ERR, 0xFE);
+        code(IJVMOpcode.GOTO, 0xA7);
+        code(IJVMOpcode.HALT, 0xFF);
+        code(IJVMOpcode.IADD, 0x60);
+        code(IJVMOpcode.IAND, 0x7E);
+        code(IJVMOpcode.IFEQ, 0x99);
+        code(IJVMOpcode.IFLT, 0x9B);
+        code(IJVMOpcode.IF_ICMPEQ, 0x9F);
+        code(IJVMOpcode.IINC, 0x84);
+        code(IJVMOpcode.ILOAD, 0x15);
+        code(IJVMOpcode.IN, 0xFC);
+        code(IJVMOpcode.INVOKEVIRTUAL, 0xB6);
+        code(IJVMOpcode.IOR, 0xB0);
+        code(IJVMOpcode.IRETURN, 0xAC);
+        code(IJVMOpcode.ISTORE, 0x36);
+        code(IJVMOpcode.ISUB, 0x64);
+        code(IJVMOpcode.LDC_W, 0x13);
+        code(IJVMOpcode.NOP, 0x00);
+        code(IJVMOpcode.OUT, 0xFD);
+        code(IJVMOpcode.POP, 0x57);
+        code(IJVMOpcode.SWAP, 0x5F);
+        code(IJVMOpcode.LABEL, LABEL);
+    }
+
+    private IJVMImage()
+    {
+    }
+
+    private static void code(IJVMOpcode opcode, int code)
+    {
+        CODES.put(opcode, code);
+        OPCODES[code] = opcode;
+    }
+
+    /**
+     * Write the image of a linked program
+     *
+     * @param program The linked program
+     * @param path The path of the image
+     * @throws IOException If the image cannot be written
+     */
+    public static void write(@NotNull IJVMLinkedProgram program, @NotNull Path path) throws IOException
+    {
+        Files.write(path, toBytes(program));
+    }
+
+    /**
+     * Encode a linked program
+     *
+     * @param program The linked program
+     * @return The image
+     */
+    public static byte[] toBytes(@NotNull IJVMLinkedProgram program)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            int[] constants = program.getConstantPool();
+            String[] constantNames = program.getConstantNames();
+
+            out.writeInt(constants.length);
+            for (int i = 0; i < constants.length; i++) {
+                out.writeInt(constants[i]);
+                out.writeUTF(constantNames[i]);
+            }
+
+            IJVMMethod[] methods = program.getMethods();
+
+            out.writeInt(methods.length);
+            for (IJVMMethod method : methods) {
+                writeMethod(out, method);
+            }
+        }
+        catch (IOException e) {
+            // a ByteArrayOutputStream does not fail
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, IJVMMethod method) throws IOException
+    {
+        out.writeUTF(method.getName());
+        out.writeInt(method.getArgumentCount());
+        out.writeInt(method.getMaxStack());
+
+        String[] localNames = method.getLocalNames();
+        out.writeInt(localNames.length);
+        for (String name : localNames) {
+            out.writeUTF(name);
+        }
+
+        IJVMInstruction[] code = method.getCode();
+        out.writeInt(code.length);
+
+        for (IJVMInstruction instruction : code)
+        {
+            IJVMOpcode opcode = instruction.getOpcode();
+
+            if (opcode == null) {
+                out.writeByte(UNKNOWN);
+                out.writeUTF(instruction.getOpCode());
+                continue;
+            }
+
+            out.writeByte(CODES.get(opcode));
+
+            switch (opcode)
+            {
+                case BIPUSH:
+                    out.writeInt(instruction.getValue());
+                    break;
+                case IINC:
+                    out.writeInt(instruction.getOperand());
+                    out.writeInt(instruction.getValue());
+                    break;
+                case GOTO:
+                case IFEQ:
+                case IFLT:
+                case IF_ICMPEQ:
+                case ILOAD:
+                case ISTORE:
+                case LDC_W:
+                case INVOKEVIRTUAL:
+                    out.writeInt(instruction.getOperand());
+                    break;
+                case LABEL:
+                    out.writeUTF(instruction.getArgument());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Load an image through a memory-mapped buffer
+     *
+     * @param path The path of the image
+     * @return The linked program
+     * @throws IOException If the image cannot be read
+     * @throws IllegalArgumentException If the file is not a valid image
+     */
+    public static IJVMLinkedProgram read(@NotNull Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Decode an image
+     *
+     * @param buffer The image, from its current position
+     * @return The linked program
+     * @throws IllegalArgumentException If the buffer does not hold a valid image
+     */
+    public static IJVMLinkedProgram read(@NotNull ByteBuffer buffer)
+    {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an IJVM image");
+            }
+
+            short version = buffer.getShort();
+
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported IJVM image version: " + version);
+            }
+
+            int constantCount = readCount(buffer);
+            int[] constants = new int[constantCount];
+            String[] constantNames = new String[constantCount];
+
+            for (int i = 0; i < constantCount; i++) {
+                constants[i] = buffer.getInt();
+                constantNames[i] = readUTF(buffer);
+            }
+
+            IJVMMethod[] methods = new IJVMMethod[readCount(buffer)];
+
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = readMethod(buffer, constantCount, methods.length);
+            }
+
+            IJVMLinkedProgram program = new IJVMLinkedProgram(constants, constantNames, methods);
+            return withArguments(program);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt IJVM image", e);
+        }
+    }
+
+    /**
+     * Read a method, checking every index it holds against the table it refers to, so that a corrupt image
+     * fails here rather than when it is run
+     *
+     * @param constantCount The size of the constant pool
+     * @param methodCount The size of the method table
+     */
+    private static IJVMMethod readMethod(ByteBuffer buffer, int constantCount, int methodCount)
+    {
+        String name = readUTF(buffer);
+        int argumentCount = buffer.getInt();
+        int maxStack = buffer.getInt();
+
+        String[] localNames = new String[readCount(buffer)];
+        for (int i = 0; i < localNames.length; i++) {
+            localNames[i] = readUTF(buffer);
+        }
+
+        if (argumentCount < 0 || argumentCount > localNames.length) {
+            throw new IllegalArgumentException("Corrupt IJVM image: invalid argument count " + argumentCount
+                    + " in " + name);
+        }
+
+        IJVMInstruction[] code = new IJVMInstruction[readCount(buffer)];
+
+        // the linker never sizes the stack beyond one more than the length of the code
+        if (maxStack < 0 || maxStack > code.length + 1) {
+            throw new IllegalArgumentException("Corrupt IJVM image: invalid stack size " + maxStack
+                    + " in " + name);
+        }
+
+        for (int i = 0; i < code.length; i++)
+        {
+            int byteCode = buffer.get() & 0xFF;
+
+            if (byteCode == UNKNOWN) {
+                code[i] = new IJVMInstruction(readUTF(buffer), null, null, 0, 0);
+                continue;
+            }
+
+            IJVMOpcode opcode = OPCODES[byteCode];
+
+            if (opcode == null) {
+                throw new IllegalArgumentException("Unknown IJVM opcode: 0x" + Integer.toHexString(byteCode));
+            }
+
+            int value = 0, operand = 0;
+            String argument = null, secondArgument = null;
+
+            switch (opcode)
+            {
+                case BIPUSH:
+                    value = buffer.getInt();
+                    argument = String.valueOf(value);
+                    break;
+                case IINC:
+                    operand = readIndex(buffer, localNames.length, "local");
+                    value = buffer.getInt();
+                    argument = String.valueOf(value);
+                    secondArgument = localNames[operand];
+                    break;
+                case ILOAD:
+                case ISTORE:
+                    operand = readIndex(buffer, localNames.length, "local");
+                    argument = localNames[operand];
+                    break;
+                // the symbols of the jumps, constants and calls are filled in once the whole program is read
+                case GOTO:
+                case IFEQ:
+                case IFLT:
+                case IF_ICMPEQ:
+                    operand = readIndex(buffer, code.length, "jump target");
+                    break;
+                case LDC_W:
+                    operand = readIndex(buffer, constantCount, "constant");
+                    break;
+                case INVOKEVIRTUAL:
+                    operand = readIndex(buffer, methodCount, "method");
+                    break;
+                case LABEL:
+                    argument = readUTF(buffer);
+                    break;
+                default:
+                    break;
+            }
+
+            code[i] = new IJVMInstruction(opcode.name(), argument, secondArgument, value, operand);
+        }
+
+        return new IJVMMethod(name, code, argumentCount, localNames, maxStack);
+    }
+
+    /**
+     * Restore the symbolic arguments of the jumps, constant loads and calls, which name a label, a constant
+     * or a method, for the debug and trace output
+     */
+    private static IJVMLinkedProgram withArguments(IJVMLinkedProgram program)
+    {
+        IJVMMethod[] methods = program.getMethods();
+
+        for (IJVMMethod method : methods)
+        {
+            IJVMInstruction[] code = method.getCode();
+
+            for (int i = 0; i < code.length; i++)
+            {
+                IJVMInstruction instruction = code[i];
+                IJVMOpcode opcode = instruction.getOpcode();
+                String argument;
+
+                if (opcode == null) {
+                    continue;
+                }
+
+                switch (opcode)
+                {
+                    case GOTO:
+                    case IFEQ:
+                    case IFLT:
+                    case IF_ICMPEQ:
+                        argument = code[instruction.getOperand()].getArgument();
+                        break;
+                    case LDC_W:
+                        argument = program.getConstantNames()[instruction.getOperand()];
+                        break;
+                    case INVOKEVIRTUAL:
+                        argument = methods[instruction.getOperand()].getName();
+                        break;
+                    default:
+                        continue;
+                }
+
+                code[i] = new IJVMInstruction(instruction.getOpCode(), argument, null,
+                        instruction.getValue(), instruction.getOperand());
+            }
+        }
+
+        return program;
+    }
+
+    /**
+     * Read the number of entries of a table, each of which takes at least one byte of the image
+     *
+     * @throws IllegalArgumentException If the count is negative or larger than what is left of the image
+     */
+    private static int readCount(ByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt IJVM image: invalid count " + count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Read an index into a table
+     *
+     * @param size The size of the table
+     * @param table What the table holds, for the error message
+     * @throws IllegalArgumentException If the index is outside the table
+     */
+    private static int readIndex(ByteBuffer buffer, int size, String table)
+    {
+        int index = buffer.getInt();
+
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Corrupt IJVM image: invalid " + table + " index " + index);
+        }
+
+        return index;
+    }
+
+    private static String readUTF(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        // DataOutputStream writes modified UTF-8, which matches UTF-8 for the identifiers of a program
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,12 +1,30 @@
 package xyz.atom7.interpreter.ijvm;
 
 import lombok.Getter;
-import org.antlr.v4.runtime.tree.TerminalNode;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.Utils;
 import xyz.atom7.api.interpreter.Instruction;
 
 @Getter
 public class IJVMInstruction extends Instruction
 {
+    /**
+     * The decoded operation code, or null if the mnemonic is unknown
+     */
+    @Nullable
+    private final IJVMOpcode opcode;
+
+    /**
+     * The numeric operand (BIPUSH value, IINC increment), parsed once at load time
+     */
+    private final int value;
+
+    /**
+     * The operand resolved by the linker: the jump target index, the local slot, the constant pool index
+     * or the method table index, depending on the operation code
+     */
+    private final int operand;
+
     /**
      * Constructor for IJVMInstruction with no arguments
      * 
@@ -14,7 +32,7 @@ public class IJVMInstruction extends Instruction
      */
     public IJVMInstruction(String opCode)
     {
-        super(opCode, null, null);
+        this(opCode, null, null);
     }
 
     /**
@@ -25,32 +43,68 @@ public class IJVMInstruction extends Instruction
      */
     public IJVMInstruction(String opCode, String argument)
     {
-        super(opCode, argument, null);
+        this(opCode, argument, null);
     }
 
     /**
-     * Constructor for IJVMInstruction with one argument
-     * 
+     * Constructor for IJVMInstruction that decodes the operation code and its numeric operand
+     *
      * @param opCode The operation code for the instruction
      * @param argument The argument for the instruction
+     * @param secondArgument The second argument for the instruction
      */
-    public IJVMInstruction(String opCode, TerminalNode argument)
+    public IJVMInstruction(String opCode, @Nullable String argument, @Nullable String secondArgument)
     {
-        super(opCode, argument == null ? null : argument.getText(), null);
+        super(opCode, argument, secondArgument);
+        this.opcode = IJVMOpcode.fromMnemonic(opCode);
+        this.value = decodeValue(opcode, argument);
+        this.operand = 0;
     }
 
     /**
-     * Constructor for IJVMInstruction with two arguments
-     * 
+     * Constructor for a linked copy of an instruction
+     *
+     * @param source The unlinked instruction
+     * @param operand The resolved operand
+     */
+    public IJVMInstruction(IJVMInstruction source, int operand)
+    {
+        super(source.opCode, source.argument, source.secondArgument);
+        this.opcode = source.opcode;
+        this.value = source.value;
+        this.operand = operand;
+    }
+
+    /**
+     * Constructor for an instruction decoded from a binary image, already linked
+     *
      * @param opCode The operation code for the instruction
      * @param argument The argument for the instruction
      * @param secondArgument The second argument for the instruction
+     * @param value The numeric operand
+     * @param operand The resolved operand
      */
-    public IJVMInstruction(String opCode, TerminalNode argument, TerminalNode secondArgument)
+    IJVMInstruction(String opCode, @Nullable String argument, @Nullable String secondArgument, int value, int operand)
     {
-        super(opCode,
-                argument == null ? null : argument.getText(),
-                secondArgument == null ? null : secondArgument.getText()
-        );
+        super(opCode, argument, secondArgument);
+        this.opcode = IJVMOpcode.fromMnemonic(opCode);
+        this.value = value;
+        this.operand = operand;
+    }
+
+    /**
+     * Parses the numeric operand of the instructions that carry one
+     *
+     * @param opcode The decoded operation code
+     * @param argument The textual argument
+     * @return The numeric operand, or 0 if the instruction has none
+     */
+    private static int decodeValue(@Nullable IJVMOpcode opcode, @Nullable String argument)
+    {
+        if (argument == null || (opcode != IJVMOpcode.BIPUSH && opcode != IJVMOpcode.IINC)) {
+            return 0;
+        }
+
+        return Utils.parseInt(argument);
     }
 }
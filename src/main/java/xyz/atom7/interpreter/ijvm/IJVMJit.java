@@ -0,0 +1,166 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * The tiered execution mode of an {@link IJVMProgram}.
+ * Every method starts interpreted; invocations and backward branches are counted per method, and once a
+ * method passes the threshold it is compiled to a JVM class by {@link IJVMCompiler}, so that HotSpot optimises
+ * the emulated code itself. Compiled methods are kept in the {@link IJVMCompiledCode} of the linked program,
+ * so runs sharing a linked program share them, and a method hot in an earlier run starts compiled.
+ * Calls then go to the compiled code, and a frame still interpreting a hot loop is handed over to it at
+ * the next backward branch. Methods the compiler rejects stay interpreted.
+ * The generated classes call back into this class for calls, returns, I/O, the instruction count and the
+ * safepoints of backward branches, where the run may be stopped.
+ */
+final class IJVMJit
+{
+    private final IJVMProgram<?> program;
+    private final IJVMMethod[] methods;
+    private final IJVMCompiledCode code;
+    private final int threshold;
+
+    private final int[] counters;
+
+    /**
+     * The arguments of the call being made, reused by every call of the run: a callee reads them on entry,
+     * before it makes a call of its own
+     */
+    private final int[] arguments;
+
+    /**
+     * @param program The program to run
+     * @param linkedProgram The linked image of the program
+     * @param threshold The number of invocations plus backward branches after which a method is compiled
+     */
+    IJVMJit(IJVMProgram<?> program, IJVMLinkedProgram linkedProgram, int threshold)
+    {
+        this.program = program;
+        this.methods = linkedProgram.getMethods();
+        this.code = linkedProgram.getCompiledCode();
+        this.threshold = threshold;
+        this.counters = new int[methods.length];
+        this.arguments = new int[code.getMaxArgumentCount()];
+    }
+
+    /**
+     * Count an invocation of a method, compiling it once it is hot
+     *
+     * @param index The index of the method in the method table
+     * @return The compiled method, or null if it is still interpreted
+     */
+    @Nullable
+    IJVMCompiledMethod compiledFor(int index)
+    {
+        IJVMCompiledCode.Compilation compilation = code.get(index);
+
+        if (compilation == null && counters[index]++ >= threshold) {
+            compilation = code.compile(index);
+        }
+
+        return compilation == null ? null : compilation.method;
+    }
+
+    /**
+     * Hand an interpreted frame over to the compiled code of its method, on activation or at a backward
+     * branch. On success the frame holds the final state of the method and is left at its end.
+     *
+     * @param frame The interpreted frame
+     * @param entry The index of the instruction the frame continues at
+     * @return True if the compiled code ran the rest of the method
+     */
+    boolean enter(IJVMScope frame, int entry)
+    {
+        Integer index = code.indexOf(frame.getMethod());
+
+        if (index == null) {
+            return false;
+        }
+
+        IJVMCompiledMethod method = compiledFor(index);
+
+        if (method == null) {
+            return false;
+        }
+
+        IJVMCompiler.Plan plan = code.get(index).plan;
+
+        if (entry >= plan.entries.length || !plan.entries[entry] || plan.depthAt[entry] != frame.getStack().size()) {
+            return false;
+        }
+
+        method.invoke(this, frame, null, entry);
+        frame.setPc(methods[index].getCode().length - 1);
+
+        return true;
+    }
+
+    /**
+     * @return The number of methods of the program compiled so far, by this run or an earlier one
+     */
+    int getCompiledCount()
+    {
+        return code.getCompiledCount();
+    }
+
+    /*
+     * Called by the compiled code
+     */
+
+    int[] arguments()
+    {
+        return arguments;
+    }
+
+    void invoke(int index)
+    {
+        program.safepoint(0);
+
+        IJVMCompiledMethod method = compiledFor(index);
+
+        if (method != null) {
+            method.invoke(this, null, arguments, 0);
+        }
+        else {
+            program.invokeInterpreted(methods[index], arguments);
+        }
+    }
+
+    int takeReturnValue()
+    {
+        return program.takeReturnValue();
+    }
+
+    void returnValue(int value)
+    {
+        program.setReturnValue(value);
+    }
+
+    void out(int value)
+    {
+        program.output(value);
+    }
+
+    void halt()
+    {
+        program.haltProgram();
+    }
+
+    void count(long instructions)
+    {
+        program.countExecuted(instructions);
+    }
+
+    void safepoint(long instructions)
+    {
+        program.safepoint(instructions);
+    }
+
+    static int stackValue(IJVMScope frame, int index)
+    {
+        List<Integer> stack = frame.getStack();
+        return index < stack.size() ? stack.get(index) : 0;
+    }
+}
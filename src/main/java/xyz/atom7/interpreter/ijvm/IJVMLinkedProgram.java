@@ -0,0 +1,105 @@
+package xyz.atom7.interpreter.ijvm;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The immutable image of a linked IJVM program.
+ * Jump targets, locals, constants and call targets are all integer indices, so no name is resolved at run time.
+ * An image is shared across threads by caches, batches and sessions, so its tables are only handed out as arrays
+ * inside this package; other code reads them one entry at a time.
+ */
+@RequiredArgsConstructor
+public class IJVMLinkedProgram
+{
+    /**
+     * The constant pool values, indexed by LDC_W operands
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final int[] constantPool;
+
+    /**
+     * The constant pool names, parallel to {@link #constantPool}
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String[] constantNames;
+
+    /**
+     * The method table, indexed by INVOKEVIRTUAL operands; the main block is always at index 0
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final IJVMMethod[] methods;
+
+    /**
+     * The methods compiled by the JIT, created by the first run that enables it
+     */
+    private IJVMCompiledCode compiledCode;
+
+    /**
+     * Get the main block of the program
+     *
+     * @return The main method
+     */
+    public IJVMMethod getMainMethod()
+    {
+        return methods[0];
+    }
+
+    /**
+     * Get the methods of the program compiled by the JIT, shared by every run of the program
+     *
+     * @return The compiled code
+     */
+    synchronized IJVMCompiledCode getCompiledCode()
+    {
+        if (compiledCode == null) {
+            compiledCode = new IJVMCompiledCode(this);
+        }
+
+        return compiledCode;
+    }
+
+    /**
+     * @return The number of constants in the constant pool
+     */
+    public int getConstantCount()
+    {
+        return constantPool.length;
+    }
+
+    /**
+     * @param index The index of the constant, as an LDC_W operand
+     * @return The value of the constant
+     */
+    public int getConstant(int index)
+    {
+        return constantPool[index];
+    }
+
+    /**
+     * @param index The index of the constant, as an LDC_W operand
+     * @return The name of the constant
+     */
+    public String getConstantName(int index)
+    {
+        return constantNames[index];
+    }
+
+    /**
+     * @return The number of methods, the main block included
+     */
+    public int getMethodCount()
+    {
+        return methods.length;
+    }
+
+    /**
+     * @param index The index of the method, as an INVOKEVIRTUAL operand
+     * @return The method
+     */
+    public IJVMMethod getMethod(int index)
+    {
+        return methods[index];
+    }
+}
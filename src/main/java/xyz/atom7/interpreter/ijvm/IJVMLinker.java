@@ -0,0 +1,275 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Resolves the symbolic operands of parsed IJVM scopes into integer indices.
+ * Labels become instruction indices, variables become local slots, constants become pool indices
+ * and method names become method table indices.
+ */
+public final class IJVMLinker
+{
+    private IJVMLinker()
+    {
+    }
+
+    /**
+     * Link the parsed scopes of a program
+     *
+     * @param scopes The parsed scopes, the main block first
+     * @param constantPool The constant pool, keyed by upper-cased name
+     * @return The linked program image
+     */
+    public static IJVMLinkedProgram link(@NotNull List<IJVMScope> scopes, @NotNull Map<String, Integer> constantPool)
+    {
+        int constantCount = constantPool.size();
+        int[] constants = new int[constantCount];
+        String[] constantNames = new String[constantCount];
+        Map<String, Integer> constantIndices = new HashMap<>();
+
+        int index = 0;
+        for (var entry : constantPool.entrySet()) {
+            constants[index] = entry.getValue();
+            constantNames[index] = entry.getKey();
+            constantIndices.put(entry.getKey(), index++);
+        }
+
+        Map<String, Integer> methodIndices = new HashMap<>();
+        for (int i = 0; i < scopes.size(); i++) {
+            methodIndices.putIfAbsent(scopes.get(i).getName(), i);
+        }
+
+        IJVMMethod[] methods = new IJVMMethod[scopes.size()];
+        for (int i = 0; i < scopes.size(); i++) {
+            methods[i] = linkMethod(scopes.get(i), constantIndices, methodIndices);
+        }
+
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = withMaxStack(methods[i], methods);
+        }
+
+        return new IJVMLinkedProgram(constants, constantNames, methods);
+    }
+
+    /**
+     * Link a single scope
+     *
+     * @param scope The parsed scope
+     * @param constantIndices The constant pool indices, keyed by upper-cased name
+     * @param methodIndices The method table indices, keyed by name
+     * @return The linked method
+     */
+    private static IJVMMethod linkMethod(IJVMScope scope,
+                                         Map<String, Integer> constantIndices,
+                                         Map<String, Integer> methodIndices)
+    {
+        List<IJVMInstruction> instructions = scope.getInstructions();
+
+        Map<String, Integer> labelIndices = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++)
+        {
+            IJVMInstruction instruction = instructions.get(i);
+
+            if (instruction.getOpcode() == IJVMOpcode.LABEL) {
+                labelIndices.putIfAbsent(instruction.getArgument(), i);
+            }
+        }
+
+        String[] localNames = scope.getLocals().keySet().toArray(new String[0]);
+        Map<String, Integer> localSlots = new HashMap<>();
+        for (int i = 0; i < localNames.length; i++) {
+            localSlots.put(localNames[i], i);
+        }
+
+        IJVMInstruction[] code = new IJVMInstruction[instructions.size()];
+        for (int i = 0; i < code.length; i++)
+        {
+            IJVMInstruction instruction = instructions.get(i);
+            IJVMOpcode opcode = instruction.getOpcode();
+            int operand = 0;
+
+            if (opcode != null) {
+                switch (opcode)
+                {
+                    case GOTO:
+                    case IFEQ:
+                    case IFLT:
+                    case IF_ICMPEQ:
+                        operand = resolve(labelIndices, instruction.getArgument(), "Label not found: ", scope);
+                        break;
+                    case ILOAD:
+                    case ISTORE:
+                        operand = resolve(localSlots, instruction.getArgument(), "Local not found: ", scope);
+                        break;
+                    case IINC:
+                        operand = resolve(localSlots, instruction.getSecondArgument(), "Local not found: ", scope);
+                        break;
+                    case LDC_W:
+                        operand = resolve(constantIndices, instruction.getArgument().toUpperCase(), "Constant not found: ", scope);
+                        break;
+                    case INVOKEVIRTUAL:
+                        operand = resolve(methodIndices, instruction.getArgument(), "Method blueprint not found: ", scope);
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            code[i] = new IJVMInstruction(instruction, operand);
+        }
+
+        return new IJVMMethod(scope.getName(), code, scope.getArgumentCount(), localNames, 0);
+    }
+
+    /**
+     * Compute the maximum operand stack depth of a linked method, by propagating the depth along every
+     * control flow edge until it settles
+     *
+     * @param method The linked method, with no stack size yet
+     * @param methods The linked method table, for the argument counts of the call targets
+     * @return The same method, with its maximum stack depth
+     */
+    private static IJVMMethod withMaxStack(IJVMMethod method, IJVMMethod[] methods)
+    {
+        IJVMInstruction[] code = method.getCode();
+        int[] depthAt = new int[code.length];
+        Arrays.fill(depthAt, -1);
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        int maxStack = 0;
+
+        if (code.length > 0) {
+            depthAt[0] = 0;
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty())
+        {
+            int pc = worklist.pop();
+            IJVMInstruction instruction = code[pc];
+            IJVMOpcode opcode = instruction.getOpcode();
+
+            int depth = depthAt[pc];
+            int popped = 0, pushed = 0;
+            int target = -1;
+            boolean fallsThrough = true;
+
+            if (opcode != null) {
+                switch (opcode)
+                {
+                    case BIPUSH:
+                    case ILOAD:
+                    case LDC_W:
+                    case IN:
+                        pushed = 1;
+                        break;
+                    case DUP:
+                        popped = 1;
+                        pushed = 2;
+                        break;
+                    case SWAP:
+                        popped = 2;
+                        pushed = 2;
+                        break;
+                    case IADD:
+                    case ISUB:
+                    case IAND:
+                    case IOR:
+                        popped = 2;
+                        pushed = 1;
+                        break;
+                    case POP:
+                    case ISTORE:
+                    case OUT:
+                    case IRETURN:
+                        popped = 1;
+                        break;
+                    case IFEQ:
+                    case IFLT:
+                        popped = 1;
+                        target = instruction.getOperand();
+                        break;
+                    case IF_ICMPEQ:
+                        popped = 2;
+                        target = instruction.getOperand();
+                        break;
+                    case GOTO:
+                        target = instruction.getOperand();
+                        fallsThrough = false;
+                        break;
+                    case INVOKEVIRTUAL:
+                        popped = methods[instruction.getOperand()].getArgumentCount() + 1;
+                        pushed = 1; // the pending return value, pushed when the callee returns
+                        break;
+                    case HALT:
+                    case ERR:
+                        fallsThrough = false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            else {
+                fallsThrough = false;
+            }
+
+            // every instruction pops its operands before pushing, so the depth peaks after it
+            int next = Math.max(0, depth - popped) + pushed;
+            maxStack = Math.max(maxStack, next);
+
+            // on a balanced program the depth never exceeds the code length; beyond that it grows
+            // around a loop, and the frame is left to grow at run time
+            if (next > code.length) {
+                break;
+            }
+
+            if (fallsThrough && pc + 1 < code.length) {
+                propagate(depthAt, worklist, pc + 1, next);
+            }
+
+            if (target >= 0 && target < code.length) {
+                propagate(depthAt, worklist, target, next);
+            }
+        }
+
+        return new IJVMMethod(method.getName(), code, method.getArgumentCount(), method.getLocalNames(), maxStack);
+    }
+
+    /**
+     * Record the stack depth reached at an instruction, queuing it again if the depth grew
+     *
+     * @param depthAt The entry depth of every instruction, -1 if not reached yet
+     * @param worklist The instructions left to visit
+     * @param pc The instruction reached
+     * @param depth The stack depth on entry
+     */
+    private static void propagate(int[] depthAt, Deque<Integer> worklist, int pc, int depth)
+    {
+        if (depth > depthAt[pc]) {
+            depthAt[pc] = depth;
+            worklist.push(pc);
+        }
+    }
+
+    /**
+     * Resolve a symbol, failing the link if it is undefined
+     *
+     * @param symbols The symbol table
+     * @param name The symbol to resolve
+     * @param error The error message prefix
+     * @param scope The scope being linked
+     * @return The index of the symbol
+     */
+    private static int resolve(Map<String, Integer> symbols, String name, String error, IJVMScope scope)
+    {
+        Integer index = symbols.get(name);
+
+        if (index == null) {
+            throw new IllegalStateException(error + name + " (in " + scope.getName() + ")");
+        }
+
+        return index;
+    }
+}
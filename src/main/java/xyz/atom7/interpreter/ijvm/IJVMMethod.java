@@ -0,0 +1,101 @@
+package xyz.atom7.interpreter.ijvm;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A linked IJVM method: its code, with every operand resolved to an integer, and the layout of its locals.
+ * Instances are immutable and shared by every activation of the method; outside this package the code is
+ * only readable through {@link #getInstructions()}.
+ */
+@Getter
+public class IJVMMethod
+{
+    /**
+     * The name of the method, "main" for the main block
+     */
+    private final String name;
+
+    /**
+     * The linked instructions of the method
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final IJVMInstruction[] code;
+
+    /**
+     * The number of arguments, which occupy the first local slots
+     */
+    private final int argumentCount;
+
+    /**
+     * The names of the local slots, arguments first
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String[] localNames;
+
+    /**
+     * The maximum operand stack depth, computed by the linker
+     */
+    private final int maxStack;
+
+    /**
+     * A read-only list view of {@link #code}, shared by every activation
+     */
+    private final List<IJVMInstruction> instructions;
+
+    /**
+     * Constructor for IJVMMethod
+     *
+     * @param name The name of the method
+     * @param code The linked instructions of the method
+     * @param argumentCount The number of arguments
+     * @param localNames The names of the local slots, arguments first
+     * @param maxStack The maximum operand stack depth
+     */
+    public IJVMMethod(String name, IJVMInstruction[] code, int argumentCount, String[] localNames, int maxStack)
+    {
+        this.name = name;
+        this.code = code;
+        this.argumentCount = argumentCount;
+        this.localNames = localNames;
+        this.maxStack = maxStack;
+        this.instructions = Collections.unmodifiableList(Arrays.asList(code));
+    }
+
+    /**
+     * Get the number of local slots, arguments included
+     *
+     * @return The number of local slots
+     */
+    public int getLocalCount()
+    {
+        return localNames.length;
+    }
+
+    /**
+     * Get the name of a local slot
+     *
+     * @param slot The slot, as an ILOAD, ISTORE or IINC operand
+     * @return The name of the local
+     */
+    public String getLocalName(int slot)
+    {
+        return localNames[slot];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Method{" +
+                "name='" + name + '\'' +
+                ", instructions=" + code.length +
+                ", arguments=" + argumentCount +
+                ", locals=" + localNames.length +
+                ", maxStack=" + maxStack +
+                '}';
+    }
+}
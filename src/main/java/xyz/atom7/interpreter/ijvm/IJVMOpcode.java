@@ -0,0 +1,58 @@
+package xyz.atom7.interpreter.ijvm;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operation codes understood by the IJVM interpreter.
+ * Instructions are decoded to one of these once, at load time, so the execution loop never touches mnemonics.
+ */
+public enum IJVMOpcode
+{
+    BIPUSH,
+    DUP,
+    ERR,
+    GOTO,
+    HALT,
+    IADD,
+    IAND,
+    IFEQ,
+    IFLT,
+    IF_ICMPEQ,
+    IINC,
+    ILOAD,
+    IN,
+    INVOKEVIRTUAL,
+    IOR,
+    IRETURN,
+    ISTORE,
+    ISUB,
+    LDC_W,
+    NOP,
+    OUT,
+    POP,
+    SWAP,
+    LABEL;
+
+    private static final Map<String, IJVMOpcode> BY_MNEMONIC = new HashMap<>();
+
+    static {
+        for (IJVMOpcode opcode : values()) {
+            BY_MNEMONIC.put(opcode.name(), opcode);
+        }
+    }
+
+    /**
+     * Decodes a mnemonic, regardless of its case
+     *
+     * @param mnemonic The mnemonic as written in the source
+     * @return The matching opcode, or null if the mnemonic is unknown
+     */
+    @Nullable
+    public static IJVMOpcode fromMnemonic(String mnemonic)
+    {
+        return BY_MNEMONIC.get(mnemonic.toUpperCase());
+    }
+}
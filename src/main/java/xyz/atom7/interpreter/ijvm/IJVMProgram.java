@@ -1,18 +1,24 @@
 package xyz.atom7.interpreter.ijvm;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.SneakyThrows;
-import org.antlr.v4.runtime.tree.TerminalNode;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.Utils;
 import xyz.atom7.api.interpreter.Interpreter;
-import xyz.atom7.parser.IJVMParser;
+import xyz.atom7.api.interpreter.ProgramCache;
+import xyz.atom7.api.io.OutputChannel;
+import xyz.atom7.parser.ijvm.IJVMParseResult;
 import xyz.atom7.parser.ijvm.IJVMParserHelper;
+import xyz.atom7.parser.ijvm.IJVMProgramIR;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 
-import static xyz.atom7.Utils.debugln;
 
 @Getter
 public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
@@ -20,46 +26,96 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
     private final Map<String, Integer> constantPool;
     
     private final List<IJVMScope> scopes;
-    private final Stack<IJVMScope> callStack;
 
-    private Integer pendingReturnValue;
+    /**
+     * The frame arena: the activations of the call stack live in {@code frames[0..depth)},
+     * and the slots above are kept for reuse by later calls
+     */
+    @Getter(AccessLevel.NONE)
+    private IJVMScope[] frames;
+    @Getter(AccessLevel.NONE)
+    private int depth;
+
+    @Getter(AccessLevel.NONE)
+    private int pendingReturnValue;
+    @Getter(AccessLevel.NONE)
+    private boolean hasPendingReturnValue;
 
     private IJVMScope scope;
 
+    /**
+     * The linked image of the program, available once {@link #initProgram(String)} succeeded
+     */
+    private IJVMLinkedProgram linkedProgram;
+
+    /**
+     * The activation of the main block, available once {@link #execute()} started
+     */
+    private IJVMScope mainScope;
+
+    /**
+     * Instruction handlers indexed by {@link IJVMOpcode#ordinal()}, filled once the handlers are registered
+     */
+    private final Consumer<T>[] dispatchTable;
+
+    /**
+     * The characters written by OUT, printed again by HALT
+     */
+    @Getter(AccessLevel.NONE)
+    private final StringBuilder outVideo = new StringBuilder();
+
+    /**
+     * The number of invocations plus backward branches after which a method is compiled to JVM bytecode,
+     * or -1 to only interpret. Tracing and debug output always interpret.
+     */
+    @Setter
+    private int jitThreshold = -1;
+
+    /**
+     * The tiered execution state, while {@link #execute()} runs with the JIT enabled
+     */
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private IJVMJit jit;
+
+    public static final int DEFAULT_JIT_THRESHOLD = 1000;
+
+    @SuppressWarnings("unchecked")
     public IJVMProgram()
     {
         super();
         this.constantPool = new HashMap<>();
         this.scopes = new ArrayList<>();
-        this.callStack = new Stack<>();
-        this.pendingReturnValue = null;
+        this.frames = new IJVMScope[16];
+        this.depth = 0;
+        this.hasPendingReturnValue = false;
+        this.dispatchTable = new Consumer[IJVMOpcode.values().length];
     }
 
     @Override
     protected void initInstructions()
     {
         addInstruction("BIPUSH", (instr) -> {
-            String value = instr.getArgument();
-            int conv = Utils.parseInt(value);
+            int conv = instr.getValue();
 
             scope.pushStack(conv);
-            debugln("BIPUSH " + conv);
+            debugln(() -> "BIPUSH " + conv);
         });
         
         addInstruction("ILOAD", (instr) -> {
             String varName = instr.getArgument();
-            int localValue = scope.getLocals().get(varName);
+            int localValue = scope.getLocal(instr.getOperand());
             
             scope.pushStack(localValue);
-            debugln("ILOAD " + varName + " = " + localValue);
+            debugln(() -> "ILOAD " + varName + " = " + localValue);
         });
         
         addInstruction("ISTORE", (instr) -> {
             String varName = instr.getArgument();
             int popValue = scope.popStack();
 
-            scope.getLocals().replace(varName, popValue);
-            debugln("ISTORE " + varName + " = " + popValue);
+            scope.setLocal(instr.getOperand(), popValue);
+            debugln(() -> "ISTORE " + varName + " = " + popValue);
         });
         
         addInstruction("IADD", (instr) -> {
@@ -67,7 +123,7 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             int a = scope.popStack();
 
             scope.pushStack(a + b);
-            debugln("IADD " + a + " + " + b + " = " + (a+b));
+            debugln(() -> "IADD " + a + " + " + b + " = " + (a+b));
         });
         
         addInstruction("ISUB", (instr) -> {
@@ -75,20 +131,16 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             int a = scope.popStack();
 
             scope.pushStack(a - b);
-            debugln("ISUB " + a + " - " + b + " = " + (a-b));
+            debugln(() -> "ISUB " + a + " - " + b + " = " + (a-b));
         });
         
         addInstruction("GOTO", (instr) -> {
             String label = instr.getArgument();
-            int targetIndex = scope.getLabelInstructionIndex(label);
-
-            debugln("GOTO " + label + " -> index: " + targetIndex);
+            int targetIndex = instr.getOperand();
 
-            if (targetIndex == -1) {
-                throw new IllegalStateException("Label not found: " + label);
-            }
+            debugln(() -> "GOTO " + label + " -> index: " + targetIndex);
 
-            scope.setPc(targetIndex - 1);
+            branch(targetIndex);
         });
 
         addInstruction("POP", (instr) -> {
@@ -98,104 +150,80 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
         
         addInstruction("INVOKEVIRTUAL", (instr) -> {
             String methodName = instr.getArgument();
-            IJVMScope targetScopeBlueprint = scopes.stream()
-                .filter(s -> methodName.equals(s.getName()))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("Method blueprint not found: " + methodName));
+            IJVMMethod method = linkedProgram.getMethods()[instr.getOperand()];
+            IJVMCompiledMethod compiled = jit == null ? null : jit.compiledFor(instr.getOperand());
 
-            scope.setReturnPc(scope.getPc());
-            
-            int argCount = targetScopeBlueprint.getArgumentCount();
-            Integer[] args = new Integer[argCount];
-            
-            for (int i = argCount - 1; i >= 0; i--) {
-                args[i] = scope.popStack();
+            safepoint();
+
+            if (compiled != null) {
+                invokeCompiled(compiled, method);
+                return;
             }
-            
-            scope.popStack(); // just pop the objRef
 
-            IJVMScope newScopeInstance = new IJVMScope(targetScopeBlueprint);
-            callStack.push(newScopeInstance);
+            scope.setReturnPc(scope.getPc());
 
-            var iterator = newScopeInstance.getArguments().entrySet().iterator();
-            for (int i = 0; i < argCount; i++) {
-                newScopeInstance.getLocals().put(iterator.next().getKey(), args[i]);
+            IJVMScope newScopeInstance = pushFrame(method);
+
+            // arguments occupy the first local slots, in declaration order
+            for (int i = method.getArgumentCount() - 1; i >= 0; i--) {
+                newScopeInstance.setLocal(i, scope.popStack());
             }
+            
+            scope.popStack(); // just pop the objRef
 
-            debugln("INVOKEVIRTUAL " + methodName + " (new scope instance created)");
+            debugln(() -> "INVOKEVIRTUAL " + methodName + " (frame " + depth + " activated)");
         });
         
         addInstruction("IRETURN", (instr) -> {
-            pendingReturnValue = scope.popStack();
-            debugln("IRETURN " + pendingReturnValue);
+            setReturnValue(scope.popStack());
+            debugln(() -> "IRETURN " + pendingReturnValue);
         });
 
-        addInstruction("LABEL", (instr) -> debugln("LABEL " + instr.getArgument()));
+        addInstruction("LABEL", (instr) -> debugln(() -> "LABEL " + instr.getArgument()));
 
         addInstruction("IFLT", (instr) -> {
             int a = scope.popStack();
-            debugln("IFLT " + a + " < 0");
+            debugln(() -> "IFLT " + a + " < 0");
 
             if (a < 0) {
-                scope.setPc(scope.getLabelInstructionIndex(instr.getArgument()));
+                branch(instr.getOperand() + 1);
             }
         });
         
         addInstruction("IFEQ", (instr) -> {
             int a = scope.popStack();
-            debugln("IFEQ " + a + " == 0");
+            debugln(() -> "IFEQ " + a + " == 0");
 
             if (a == 0) {
-                scope.setPc(scope.getLabelInstructionIndex(instr.getArgument()));
+                branch(instr.getOperand() + 1);
             }
         });
 
         addInstruction("LDC_W", (instr) -> {
             String constantName = instr.getArgument().toUpperCase();
-            int constantValue = constantPool.get(constantName);
+            int constantValue = linkedProgram.getConstantPool()[instr.getOperand()];
 
             scope.pushStack(constantValue);
-            debugln("LDC_W " + constantName + " = " + constantValue);
+            debugln(() -> "LDC_W " + constantName + " = " + constantValue);
         });
 
         addInstruction("IN", (instr) -> {
-            char value;
+            int value = context.readChar();
 
-            if (scanner.hasNext()) {
-                String input = scanner.nextLine();
-                value = input.charAt(0);
-
-                scope.pushStack((int) value);
-                debugln("IN = " + input + " (input=" + input + ", value=" + value + ")");
+            if (value >= 0) {
+                scope.pushStack(value);
+                debugln(() -> "IN = " + (char) value + " (value=" + value + ")");
             }
         });
 
-        List<Integer> outVideo = new ArrayList<>();
-
-        addInstruction("OUT", (instr) -> {
-            int value = scope.popStack();
-
-            if (Utils.DEBUG) {
-                System.out.println("OUT CHAR: `" + ((char) value) + "`" + " (int equiv. is: " + value + ")");
-            }
-            else {
-                if (Utils.TRACER != null) {
-                    System.out.println("OUTPUT: " + ((char) value) + " (int equiv. is: " + value + ")");
-                }
-                else {
-                    System.out.print((char) value);
-                }
-            }
-
-            outVideo.add(value);
-        });
+        addInstruction("OUT", (instr) -> output(scope.popStack()));
 
         addInstruction("DUP", (instr) -> {
             int value = scope.popStack();
 
             scope.pushStack(value);
             scope.pushStack(value);
-            debugln("DUP " + value);
+            debugln(() -> "DUP " + value);
         });
 
         addInstruction("SWAP", (instr) -> {
@@ -204,31 +232,21 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
 
             scope.pushStack(value1);
             scope.pushStack(value2);
-            debugln("SWAP " + value1 + " <-> " + value2);
+            debugln(() -> "SWAP " + value1 + " <-> " + value2);
         });
 
-        addInstruction("HALT", (instr) -> {
-            debugln("HALT");
-
-            System.out.println("\nPROGRAM OUTPUT IS:");
-            for (int i : outVideo)
-                System.out.print((char) i);
-            System.out.println(" ");
-
-            System.exit(0);
-            halt();
-        });
+        addInstruction("HALT", (instr) -> haltProgram());
 
         addInstruction("NOP", (instr) -> debugln("NOP"));
 
         addInstruction("IINC", (instr) -> {
-            int value = Utils.parseInt(instr.getArgument());
+            int value = instr.getValue();
             String varName = instr.getSecondArgument();
+            int slot = instr.getOperand();
 
-            Map<String, Integer> locals = scope.getLocals();
-            locals.replace(varName, locals.get(varName) + value);
+            scope.setLocal(slot, scope.getLocal(slot) + value);
             
-            debugln("IINC " + varName + " += " + value);
+            debugln(() -> "IINC " + varName + " += " + value);
         });
         
         addInstruction("IAND", (instr) -> {
@@ -236,7 +254,7 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             int a = scope.popStack();
 
             scope.pushStack(a & b);
-            debugln("IAND " + a + " & " + b + " = " + (a&b));
+            debugln(() -> "IAND " + a + " & " + b + " = " + (a&b));
         });
 
         addInstruction("IOR", (instr) -> {
@@ -244,7 +262,7 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             int a = scope.popStack();
 
             scope.pushStack(a | b);
-            debugln("IOR " + a + " | " + b + " = " + (a|b));
+            debugln(() -> "IOR " + a + " | " + b + " = " + (a|b));
         });
         
         addInstruction("IF_ICMPEQ", (instr) -> {
@@ -252,120 +270,221 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             int a = scope.popStack();
 
             if (a == b) {
-                scope.setPc(scope.getLabelInstructionIndex(instr.getArgument()));
+                branch(instr.getOperand() + 1);
             }
         });
+
+        buildDispatchTable();
+    }
+
+    /**
+     * Index the registered handlers by opcode, so that dispatching an instruction is a single array load
+     */
+    private void buildDispatchTable()
+    {
+        for (var entry : instructionHandlers.entrySet()) {
+            dispatchTable[IJVMOpcode.valueOf(entry.getKey()).ordinal()] = entry.getValue();
+        }
+    }
+
+    /**
+     * Initializes the program from a linked image, such as one read by {@link IJVMImage#read(java.nio.file.Path)},
+     * skipping the parser, the semantic analysis and the linker
+     *
+     * @param image The linked program
+     */
+    public void init(@NotNull IJVMLinkedProgram image)
+    {
+        initInstructions();
+        linkedProgram = image;
+    }
+
+    /**
+     * Initializes the program from source, going through a cache of linked programs: a cached program
+     * skips the parser, the semantic analysis and the linker, and a program loaded from source is added
+     * to the cache
+     *
+     * @param contents The source of the program
+     * @param cache The cache of linked programs
+     */
+    public void init(@NotNull String contents, @NotNull ProgramCache<IJVMLinkedProgram> cache)
+    {
+        initInstructions();
+        linkedProgram = cache.get(contents, source -> {
+            initProgram(source);
+            return linkedProgram;
+        });
+    }
+
+    /**
+     * Creates a cache of linked programs, persisted as binary images when given a directory
+     *
+     * @param capacity The number of programs kept in memory
+     * @param directory The directory of the cached images, or null to only cache in memory
+     * @return The cache
+     */
+    public static ProgramCache<IJVMLinkedProgram> newCache(int capacity, @Nullable Path directory)
+    {
+        return new ProgramCache<>(capacity, directory, new ProgramCache.Codec<>()
+        {
+            @Override
+            public byte[] encode(IJVMLinkedProgram program)
+            {
+                return IJVMImage.toBytes(program);
+            }
+
+            @Override
+            public IJVMLinkedProgram decode(byte[] bytes)
+            {
+                return IJVMImage.read(ByteBuffer.wrap(bytes));
+            }
+        }, IJVMImage.EXTENSION);
     }
 
-    @SneakyThrows
     @Override
     protected void initProgram(String contents)
     {
-        IJVMParserHelper helper = new IJVMParserHelper();
-        var parseResult = helper.parseString(contents);
+        initProgram(new IJVMParserHelper().parseString(contents));
+    }
 
+    /**
+     * Initializes the program from source that has already been parsed and analysed, such as the result
+     * of the parse phase, so that it is not parsed again
+     *
+     * @param parseResult The parsed program
+     */
+    public void init(@NotNull IJVMParseResult parseResult)
+    {
+        initInstructions();
+        initProgram(parseResult);
+    }
+
+    @SneakyThrows
+    private void initProgram(IJVMParseResult parseResult)
+    {
         if (haltIfErrors(parseResult)) {
             return;
         }
 
-        var ctx = parseResult.getProgramContext();
+        IJVMProgramIR program = parseResult.getProgram();
+        String[] constantNames = program.getConstantNames();
 
-        IJVMParser.ConstantBlockContext constantBlock = ctx.constantBlock();
-        IJVMParser.MainBlockContext mainBlock = ctx.mainBlock();
-        List<IJVMParser.MethodBlockContext> methodBlocks = ctx.methodBlock();
-
-        if (constantBlock != null && constantBlock.constantDecl() != null) {
-            constantBlock
-                    .constantDecl()
-                    .forEach(decl -> addConstant(decl.ID(), decl.NUM()));
-        }
-
-        IJVMScope mainScope = new IJVMScope("main");
-        mainScope.populateLocalsFromVarBlock(mainBlock.varBlock(0));
-
-        for (var statement : mainBlock.statement()) {
-            mainScope.addInstruction(statement);
+        for (int i = 0; i < constantNames.length; i++) {
+            addConstant(constantNames[i], program.getConstantValues()[i]);
         }
 
-        scopes.add(mainScope);
-
-        for (var methodBlock : methodBlocks)
+        for (IJVMProgramIR.Method method : program.getMethods())
         {
-            var methodDecl = methodBlock.methodDecl();
+            IJVMScope scope = new IJVMScope(method.getName());
 
-            IJVMScope scope = new IJVMScope(methodDecl.ID().getText());
+            for (String parameter : method.getParameters()) {
+                scope.addArgument(parameter);
+            }
 
-            scope.populateLocalsFromMethodParamList(methodDecl);
-            scope.populateLocalsFromVarBlock(methodBlock.varBlock(0));
+            for (String local : method.getLocals()) {
+                scope.addLocal(local, null);
+            }
 
-            for (var statement : methodBlock.statement()) {
-                scope.addInstruction(statement);
+            for (int i = 0; i < method.getOpCodes().length; i++) {
+                scope.addInstruction(new IJVMInstruction(method.getOpCodes()[i], method.getArguments()[i],
+                        method.getSecondArguments()[i]));
             }
 
             scopes.add(scope);
         }
 
-        for (var scope : scopes)
-        {
-            debugln(scope.toString());
-            for (IJVMInstruction instruction : scope.getInstructions())
-                debugln(instruction.toString());
-            debugln(" ");
+        if (isDebug()) {
+            for (var scope : scopes)
+            {
+                debugln(scope.toString());
+                for (IJVMInstruction instruction : scope.getInstructions())
+                    debugln(instruction.toString());
+                debugln(" ");
+            }
+
+            for (var elem : constantPool.entrySet())
+                debugln("const: " + elem.getKey() + " >> " + elem.getValue());
         }
 
-        for (var elem : constantPool.entrySet())
-            debugln("const: " + elem.getKey() + " >> " + elem.getValue());
+        linkedProgram = IJVMLinker.link(scopes, constantPool);
     }
 
     @Override
     public void interpret(T instruction)
     {
-        String opCode = instruction.getOpCode().toUpperCase();
-        Consumer<T> handler = instructionHandlers.get(opCode.toUpperCase());
+        IJVMOpcode opcode = instruction.getOpcode();
+        Consumer<T> handler = opcode == null ? null : dispatchTable[opcode.ordinal()];
         
         if (handler != null) {
+            executedInstructions++;
             handler.accept(instruction);
 
-            if (Utils.TRACER != null) {
-                Utils.TRACER.displayTrace();
+            if (context.isTraced()) {
+                context.getTracer().displayTrace();
             }
         }
         else {
-            throw new IllegalArgumentException("Unknown instruction: " + opCode);
+            throw new IllegalArgumentException("Unknown instruction: " + instruction.getOpCode().toUpperCase());
         }
     }
 
     @SneakyThrows
     @Override
-    public void execute()
+    protected void executeProgram()
     {
+        if (linkedProgram == null) {
+            return;
+        }
+
         resume();
-        callStack.push(scopes.get(0));
-        
-        while (!callStack.isEmpty())
+        depth = 0;
+        hasPendingReturnValue = false;
+        outVideo.setLength(0);
+        jit = jitThreshold >= 0 && !context.isTraced() && !isDebug()
+                ? new IJVMJit(this, linkedProgram, jitThreshold)
+                : null;
+        mainScope = pushFrame(linkedProgram.getMainMethod());
+
+        if (jit != null) {
+            jit.enter(mainScope, 0);
+        }
+
+        run(0);
+    }
+
+    /**
+     * Run the interpreter until the call stack unwinds to the given depth.
+     * Frames returning to a deeper frame push their pending return value to it; the frame returning to
+     * the base depth leaves the value pending for whoever started the run.
+     *
+     * @param baseDepth The call stack depth to stop at
+     */
+    private void run(int baseDepth)
+    {
+        while (depth > baseDepth)
         {
-            IJVMScope currentScope = getCurrentScope();
-            var instructions = currentScope.getInstructions();
+            IJVMScope currentScope = frames[depth - 1];
+            IJVMInstruction[] code = currentScope.getMethod().getCode();
             String currentScopeName = currentScope.getName();
 
-            debugln("Executing in scope: " + currentScopeName + ", Stack: " + currentScope.getStack());
+            debugln(() -> "Executing in scope: " + currentScopeName + ", Stack: " + currentScope.getStack());
             int pc = currentScope.getPc() + 1;
             
-            if (pc >= instructions.size()) {
-                debugln("No more instructions in scope " + currentScopeName + ", popping scope");
-                callStack.pop();
+            if (pc >= code.length) {
+                debugln(() -> "No more instructions in scope " + currentScopeName + ", popping scope");
+                depth--;
 
-                if (!callStack.isEmpty()) {
-                    if (pendingReturnValue != null) {
+                if (depth > baseDepth) {
+                    if (hasPendingReturnValue) {
                         getCurrentScope().pushStack(pendingReturnValue);
-                        debugln("Pushed pending return value to previous scope: " + pendingReturnValue);
-                        pendingReturnValue = null;
+                        debugln(() -> "Pushed pending return value to previous scope: " + pendingReturnValue);
+                        hasPendingReturnValue = false;
                     }
 
                     // Restore the PC of the calling scope to continue after INVOKEVIRTUAL
                     IJVMScope previousScope = getCurrentScope();
                     int returnPc = previousScope.getReturnPc();
-                    debugln("Restoring PC for scope " + previousScope.getName() + " to: " + returnPc);
+                    debugln(() -> "Restoring PC for scope " + previousScope.getName() + " to: " + returnPc);
                     previousScope.setPc(returnPc);
                 }
 
@@ -374,14 +493,160 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
             
             currentScope.setPc(pc);
 
-            IJVMInstruction instruction = instructions.get(pc);
+            IJVMInstruction instruction = code[pc];
             scope = currentScope;
 
-            debugln("PC=" + pc + ", Next instruction: " + instruction);
+            debugln(() -> "PC=" + pc + ", Next instruction: " + instruction);
             interpret((T) instruction);
         }
     }
 
+    /**
+     * Continue the current frame at an instruction. A backward branch is a safepoint, and hands the frame
+     * over to compiled code once its method is hot
+     *
+     * @param next The index of the instruction to execute next
+     */
+    private void branch(int next)
+    {
+        if (next <= scope.getPc()) {
+            safepoint();
+
+            if (jit != null && jit.enter(scope, next)) {
+                return;
+            }
+        }
+
+        scope.setPc(next - 1);
+    }
+
+    /**
+     * Call a compiled method from the interpreter, with the arguments on the current operand stack.
+     * The arguments go through the argument array of the run, so the call does not allocate
+     *
+     * @param compiled The compiled method
+     * @param method The linked method
+     */
+    private void invokeCompiled(IJVMCompiledMethod compiled, IJVMMethod method)
+    {
+        IJVMScope caller = scope;
+        int[] arguments = jit.arguments();
+
+        for (int i = method.getArgumentCount() - 1; i >= 0; i--) {
+            arguments[i] = caller.popStack();
+        }
+
+        caller.popStack(); // just pop the objRef
+
+        compiled.invoke(jit, null, arguments, 0);
+
+        if (hasPendingReturnValue) {
+            caller.pushStack(takeReturnValue());
+        }
+    }
+
+    /**
+     * Run a method in the interpreter on behalf of compiled code, leaving its return value pending
+     *
+     * @param method The linked method
+     * @param arguments The arguments of the method, in the first slots; copied to its frame before it runs
+     */
+    void invokeInterpreted(IJVMMethod method, int[] arguments)
+    {
+        IJVMScope frame = pushFrame(method);
+
+        for (int i = 0; i < method.getArgumentCount(); i++) {
+            frame.setLocal(i, arguments[i]);
+        }
+
+        run(depth - 1);
+    }
+
+    void setReturnValue(int value)
+    {
+        pendingReturnValue = value;
+        hasPendingReturnValue = true;
+    }
+
+    int takeReturnValue()
+    {
+        hasPendingReturnValue = false;
+        return pendingReturnValue;
+    }
+
+    void countExecuted(long instructions)
+    {
+        executedInstructions += instructions;
+    }
+
+    /**
+     * A safepoint of compiled code: count the instructions it executed since its last report, and stop
+     * the run if it has to
+     *
+     * @param instructions The number of instructions executed since the last report
+     */
+    void safepoint(long instructions)
+    {
+        executedInstructions += instructions;
+        safepoint();
+    }
+
+    /**
+     * Write a character to the output of the program
+     *
+     * @param value The character code
+     */
+    void output(int value)
+    {
+        OutputChannel out = context.getOutput();
+
+        if (isDebug()) {
+            out.println("OUT CHAR: `" + ((char) value) + "`" + " (int equiv. is: " + value + ")");
+        }
+        else {
+            if (context.isTraced()) {
+                out.println("OUTPUT: " + ((char) value) + " (int equiv. is: " + value + ")");
+            }
+            else {
+                out.print((char) value);
+            }
+        }
+
+        // only kept for the recap printed by HALT
+        if (context.isReportExit()) {
+            outVideo.append((char) value);
+        }
+    }
+
+    /**
+     * Print the program output and end the run
+     *
+     * @throws xyz.atom7.api.interpreter.ProgramExitException Always, with exit code 0
+     */
+    void haltProgram()
+    {
+        debugln("HALT");
+
+        if (context.isReportExit()) {
+            OutputChannel out = context.getOutput();
+            out.println("\nPROGRAM OUTPUT IS:");
+            out.print(outVideo.toString());
+            out.println(" ");
+        }
+
+        exit(0);
+    }
+
+    /**
+     * Get the number of methods of the program compiled to JVM bytecode, by the last run or an earlier one
+     *
+     * @return The number of compiled methods, 0 if the JIT was disabled
+     */
+    public int getCompiledMethodCount()
+    {
+        return jit == null ? 0 : jit.getCompiledCount();
+    }
+
     /**
      * Get the current scope of the program
      *
@@ -389,7 +654,58 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
      */
     public IJVMScope getCurrentScope()
     {
-        return callStack.peek();
+        if (depth == 0) {
+            throw new EmptyStackException();
+        }
+
+        return frames[depth - 1];
+    }
+
+    /**
+     * Get a read-only view of the call stack, outermost scope first
+     *
+     * @return The active scopes
+     */
+    public List<IJVMScope> getCallStack()
+    {
+        return Collections.unmodifiableList(Arrays.asList(frames).subList(0, depth));
+    }
+
+    /**
+     * Get the value set by the last IRETURN that has not been pushed to a caller yet
+     *
+     * @return The pending return value, or null if there is none
+     */
+    @Nullable
+    public Integer getPendingReturnValue()
+    {
+        return hasPendingReturnValue ? pendingReturnValue : null;
+    }
+
+    /**
+     * Activate a method on top of the call stack, reusing the arena slot when it is already allocated
+     *
+     * @param method The linked method to activate
+     * @return The activated scope
+     */
+    private IJVMScope pushFrame(IJVMMethod method)
+    {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+
+        IJVMScope frame = frames[depth];
+
+        if (frame == null) {
+            frame = new IJVMScope(method);
+            frames[depth] = frame;
+        }
+        else {
+            frame.activate(method);
+        }
+
+        depth++;
+        return frame;
     }
 
     /**
@@ -428,12 +744,12 @@ public class IJVMProgram<T extends IJVMInstruction> extends Interpreter<T>
     /**
      * Add a constant to the constant pool
      *
-     * @param node1 The terminal node representing the constant name
-     * @param node2 The terminal node representing the constant value
+     * @param name The name of the constant
+     * @param value The value of the constant
      */
-    public void addConstant(@NotNull TerminalNode node1, @NotNull TerminalNode node2)
+    public void addConstant(@NotNull String name, @NotNull String value)
     {
-        constantPool.put(node1.getText().toUpperCase(), Utils.parseInt(node2.getText()));
+        constantPool.put(name.toUpperCase(), Utils.parseInt(value));
     }
 
 }
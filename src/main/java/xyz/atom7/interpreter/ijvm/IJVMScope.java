@@ -1,18 +1,18 @@
 package xyz.atom7.interpreter.ijvm;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
-import org.antlr.v4.runtime.tree.TerminalNode;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import xyz.atom7.Utils;
 import xyz.atom7.api.interpreter.Scope;
-import xyz.atom7.parser.IJVMParser;
 
-import java.util.LinkedHashMap;
+import java.util.*;
 
 @Getter
 @Setter
-public class IJVMScope extends Scope<IJVMParser.StatementContext, IJVMInstruction>
+public class IJVMScope extends Scope<IJVMInstruction, IJVMInstruction>
 {
     private int leftAtInstruction = -1, pc = -1; // inner program counter of the scope
     private int returnPc = -1;
@@ -20,6 +20,31 @@ public class IJVMScope extends Scope<IJVMParser.StatementContext, IJVMInstructio
     private final LinkedHashMap<String, Integer> locals;
     private final LinkedHashMap<String, Integer> arguments;
 
+    /**
+     * The linked method this scope is an activation of, or null for a parsed blueprint
+     */
+    @Nullable
+    private IJVMMethod method;
+
+    /**
+     * The frame of an activation: the local slots, laid out as {@link IJVMMethod#getLocalNames()},
+     * followed by the operand stack
+     */
+    @Getter(AccessLevel.NONE)
+    private int[] frame;
+
+    /**
+     * The index of the first operand stack slot in the frame
+     */
+    @Getter(AccessLevel.NONE)
+    private int stackBase;
+
+    /**
+     * The index of the next free operand stack slot in the frame
+     */
+    @Setter(AccessLevel.NONE)
+    private int sp;
+
     /**
      * Constructor for IJVMScope
      * 
@@ -30,118 +55,102 @@ public class IJVMScope extends Scope<IJVMParser.StatementContext, IJVMInstructio
         super(name);
         locals = new LinkedHashMap<>();
         arguments = new LinkedHashMap<>();
+        method = null;
+        frame = new int[0];
+        stackBase = 0;
+        sp = 0;
     }
 
     /**
-     * Copy constructor for creating new instances during calls.
+     * Constructor for creating a new activation of a linked method during calls.
      * 
-     * @param toCopy The blueprint scope to copy.
+     * @param method The linked method to activate.
      */
-    public IJVMScope(IJVMScope toCopy)
+    public IJVMScope(@NotNull IJVMMethod method)
     {
-        super(toCopy.name);
-        this.locals = new LinkedHashMap<>(toCopy.locals);
-        this.arguments = new LinkedHashMap<>(toCopy.arguments);
-        this.stack.addAll(toCopy.stack);
-        this.instructions.addAll(toCopy.instructions);
+        this(method.getName());
+        activate(method);
     }
 
     /**
-     * Add an instruction to the scope
+     * Rebind this scope to a fresh activation of a linked method, reusing its frame when it is large enough.
+     * Used by the frame arena so that calls do not allocate.
      * 
-     * @param statementCtx The statement context
+     * @param method The linked method to activate.
      */
-    @Override
-    public void addInstruction(IJVMParser.StatementContext statementCtx)
+    public void activate(@NotNull IJVMMethod method)
     {
-        IJVMInstruction instruction = null;
-
-        String opCode = statementCtx.getStart().getText();
-
-        if (statementCtx.labelDecl() != null) {
-            instruction = new IJVMInstruction("label", opCode);
-            instructions.add(instruction);
-            return;
-        }
+        int localCount = method.getLocalCount();
+        int size = localCount + method.getMaxStack();
 
-        IJVMParser.InstructionContext instructionCtx = statementCtx.instruction();
-
-        if (instructionCtx.zeroArgInstr() != null) {
-            instruction = new IJVMInstruction(opCode);
-        }
-        else if (instructionCtx.byteArgInstr() != null) {
-            instruction = new IJVMInstruction(
-                    opCode,
-                    instructionCtx.byteArgInstr().NUM(),
-                    instructionCtx.byteArgInstr().ID()
-            );
-        }
-        else if (instructionCtx.jumpInstr() != null) {
-            instruction = new IJVMInstruction(opCode, instructionCtx.jumpInstr().ID());
-        }
-        else if (instructionCtx.varArgInstr() != null) {
-            instruction = new IJVMInstruction(opCode, instructionCtx.varArgInstr().ID());
-        }
-        else if (instructionCtx.methodArgInstr() != null) {
-            instruction = new IJVMInstruction(opCode, instructionCtx.methodArgInstr().ID());
+        if (frame.length < size) {
+            frame = new int[size];
         }
-        else if (instructionCtx.constantArgInstr() != null) {
-            instruction = new IJVMInstruction(opCode, instructionCtx.constantArgInstr().ID());
+        else {
+            Arrays.fill(frame, 0, localCount, 0);
         }
 
-        instructions.add(instruction);
+        this.method = method;
+        this.stackBase = localCount;
+        this.sp = localCount;
+        this.pc = -1;
+        this.returnPc = -1;
+        this.leftAtInstruction = -1;
     }
 
     /**
-     * Populate locals from a variable block
+     * Get the name of the scope, which for an activation is the name of its current method
      * 
-     * @param ctx The variable block context
+     * @return The name of the scope
      */
-    public void populateLocalsFromVarBlock(@Nullable IJVMParser.VarBlockContext ctx)
+    @Override
+    public String getName()
     {
-        if (ctx == null || ctx.varDecl() == null) {
-            return;
-        }
-
-        ctx.varDecl().forEach(decl -> addLocal(decl.ID(), null));
+        return method == null ? name : method.getName();
     }
 
     /**
-     * Populate locals from a method parameter list
+     * Get the instructions of the scope; an activation shares the immutable code of its method
      * 
-     * @param ctx The method declaration context
+     * @return The instructions of the scope
      */
-    public void populateLocalsFromMethodParamList(@Nullable IJVMParser.MethodDeclContext ctx)
+    @Override
+    public List<IJVMInstruction> getInstructions()
     {
-        if (ctx == null || ctx.paramList() == null) {
-            return;
-        }
+        return method == null ? instructions : method.getInstructions();
+    }
 
-        ctx.paramList().ID().forEach(decl -> {
-            addArgument(decl);
-            addLocal(decl, null);
-        });
+    /**
+     * Add an instruction to the scope
+     * 
+     * @param instruction The instruction
+     */
+    @Override
+    public void addInstruction(IJVMInstruction instruction)
+    {
+        instructions.add(instruction);
     }
 
     /**
      * Add a local variable to the scope
      * 
-     * @param node The terminal node representing the local variable
+     * @param name The name of the local variable
      * @param value The value of the local variable
      */
-    public void addLocal(TerminalNode node, Object value)
+    public void addLocal(String name, Object value)
     {
-        locals.put(node.getText(), Utils.parseInt(value));
+        locals.put(name, Utils.parseInt(value));
     }
 
     /**
-     * Add an argument to the scope
+     * Add an argument to the scope, which is also a local variable
      * 
-     * @param node The terminal node representing the argument
+     * @param name The name of the argument
      */
-    private void addArgument(TerminalNode node)
+    public void addArgument(String name)
     {
-        arguments.put(node.getText(), null);
+        arguments.put(name, null);
+        addLocal(name, null);
     }
 
     /**
@@ -155,35 +164,120 @@ public class IJVMScope extends Scope<IJVMParser.StatementContext, IJVMInstructio
     }
 
     /**
-     * Get the index of a label instruction
+     * Get the value of a local slot
      * 
-     * @param label The label to search for
-     * @return The index of the label instruction
+     * @param slot The slot index resolved by the linker
+     * @return The value of the local
      */
-    public int getLabelInstructionIndex(String label)
+    public int getLocal(int slot)
     {
-        for (int i = 0; i < instructions.size(); i++)
-        {
-            var instruction = instructions.get(i);
+        return frame[slot];
+    }
 
-            if ("label".equals(instruction.getOpCode()) &&
-                label.equals(instruction.getArgument())) {
-                return i;
-            }
+    /**
+     * Set the value of a local slot
+     * 
+     * @param slot The slot index resolved by the linker
+     * @param value The new value of the local
+     */
+    public void setLocal(int slot, int value)
+    {
+        frame[slot] = value;
+    }
+
+    /**
+     * Get the local variables of the scope by name; for an activation this is a snapshot of its slots
+     * 
+     * @return The local variables
+     */
+    public Map<String, Integer> getLocals()
+    {
+        if (method == null) {
+            return locals;
+        }
+
+        Map<String, Integer> named = new LinkedHashMap<>();
+        String[] names = method.getLocalNames();
+
+        for (int i = 0; i < names.length; i++) {
+            named.put(names[i], frame[i]);
+        }
+
+        return named;
+    }
+
+    /**
+     * Push a value onto the operand stack
+     * 
+     * @param value The value to push onto the stack
+     */
+    @Override
+    public void pushStack(int value)
+    {
+        if (sp == frame.length) {
+            // only reachable when the stack depth around a loop is unbalanced
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, stackBase + 4));
+        }
+
+        frame[sp++] = value;
+    }
+
+    /**
+     * Pop a value from the operand stack
+     * 
+     * @return The value popped from the stack
+     */
+    @Override
+    public int popStack()
+    {
+        if (sp == stackBase) {
+            throw new EmptyStackException();
         }
 
-        return -1;
+        return frame[--sp];
+    }
+
+    /**
+     * Clear the operand stack
+     */
+    public void clearStack()
+    {
+        sp = stackBase;
+    }
+
+    /**
+     * Get a read-only view of the operand stack, bottom first
+     * 
+     * @return The operand stack contents
+     */
+    public List<Integer> getStack()
+    {
+        return new AbstractList<>()
+        {
+            @Override
+            public Integer get(int index)
+            {
+                Objects.checkIndex(index, size());
+                return frame[stackBase + index];
+            }
+
+            @Override
+            public int size()
+            {
+                return sp - stackBase;
+            }
+        };
     }
 
     @Override
     public String toString()
     {
         return "Scope{" +
-                "name='" + name + '\'' +
+                "name='" + getName() + '\'' +
                 ", leftAtInstruction=" + leftAtInstruction +
                 ", pc=" + pc +
-                ", locals=" + locals +
-                ", stack=" + stack +
+                ", locals=" + getLocals() +
+                ", stack=" + getStack() +
                 '}';
     }
 }
@@ -1,5 +1,7 @@
 package xyz.atom7.parser.asm8088;
 
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.api.parser.ParseResult;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.api.parser.semantic.SemanticError;
@@ -11,21 +13,32 @@ import java.util.List;
 /**
  * Represents the result of parsing an 8088 assembly program.
  */
+@Getter
 public class ASM8088ParseResult extends ParseResult<asm8088Parser.ProgramContext>
 {
+    /**
+     * The compact representation of the program, or null if the program has errors
+     */
+    @Nullable
+    private final ASM8088ProgramIR program;
+
     /**
      * Constructor for ASM8088ParseResult
      * 
-     * @param programContext The program context
+     * @param programContext The program context, or null if the tree is not kept
+     * @param program The compact representation of the program, or null if it has errors
      * @param parserErrors The parser errors
      * @param semanticErrors The semantic errors
      * @param semanticWarnings The semantic warnings
      */
-    public ASM8088ParseResult(asm8088Parser.ProgramContext programContext,
-                             List<ParserError> parserErrors,
-                             List<SemanticError> semanticErrors,
-                             List<SemanticWarning> semanticWarnings)
+    public ASM8088ParseResult(@Nullable asm8088Parser.ProgramContext programContext,
+                              @Nullable ASM8088ProgramIR program,
+                              List<ParserError> parserErrors,
+                              List<SemanticError> semanticErrors,
+                              List<SemanticWarning> semanticWarnings)
     {
         super(programContext, parserErrors, semanticErrors, semanticWarnings);
+        this.program = program;
     }
-} 
\ No newline at end of file
+}
+ 
\ No newline at end of file
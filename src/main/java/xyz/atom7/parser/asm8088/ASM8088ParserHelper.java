@@ -19,32 +19,38 @@ import java.util.List;
  */
 public class ASM8088ParserHelper extends ParserHelper<ASM8088ParseResult>
 {
+    /**
+     * The lexer and the parser of each thread; the generated recognizers share their DFA cache
+     */
+    private final ThreadLocal<asm8088Lexer> lexers = ThreadLocal.withInitial(() -> new asm8088Lexer(null));
+    private final ThreadLocal<asm8088Parser> parsers = ThreadLocal.withInitial(() -> new asm8088Parser(null));
+
     /**
      * Parse an 8088 assembly code from a CharStream.
      *
      * @param input CharStream containing 8088 assembly code
-     * @return The parsed program result containing the tree and any errors
+     * @return The parsed program result containing the compact program and any errors
      */
     @Override
     protected ASM8088ParseResult parseStream(CharStream input)
     {
-        // Create a lexer with our custom error listener
+        // Reuse the lexer of this thread with our custom error listener
         ParserErrorListener lexerErrorListener = new ParserErrorListener();
-        asm8088Lexer lexer = new asm8088Lexer(input);
+        asm8088Lexer lexer = lexers.get();
+        lexer.setInputStream(input);
         lexer.removeErrorListeners();
         lexer.addErrorListener(lexerErrorListener);
         
         // Create a token stream from the lexer
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         
-        // Create a parser with our custom error listener
+        // Reuse the parser of this thread, which collects its errors in our custom error listener
         ParserErrorListener parserErrorListener = new ParserErrorListener();
-        asm8088Parser parser = new asm8088Parser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(parserErrorListener);
+        asm8088Parser parser = parsers.get();
+        parser.setTokenStream(tokens);
         
-        // Parse the program
-        asm8088Parser.ProgramContext programContext = parser.program();
+        // Parse the program, with full LL and error recovery only if SLL fails
+        asm8088Parser.ProgramContext programContext = parseTwoStage(parser, asm8088Parser::program, parserErrorListener);
         
         // Collect parser errors
         List<ParserError> parserErrors = new ArrayList<>();
@@ -56,7 +62,8 @@ public class ASM8088ParserHelper extends ParserHelper<ASM8088ParseResult>
         
         // If there are parser errors, don't proceed to semantic analysis
         if (!parserErrors.isEmpty()) {
-            return new ASM8088ParseResult(programContext, parserErrors, semanticErrors, semanticWarnings);
+            return new ASM8088ParseResult(isKeepTree() ? programContext : null, null,
+                    parserErrors, semanticErrors, semanticWarnings);
         }
         
         // Perform semantic analysis
@@ -66,6 +73,10 @@ public class ASM8088ParserHelper extends ParserHelper<ASM8088ParseResult>
         semanticErrors.addAll(semanticAnalyzer.getErrors());
         semanticWarnings.addAll(semanticAnalyzer.getWarnings());
 
-        return new ASM8088ParseResult(programContext, parserErrors, semanticErrors, semanticWarnings);
+        // Lower the program to its compact representation, after which the tree can be dropped
+        ASM8088ProgramIR program = semanticErrors.isEmpty() ? ASM8088ProgramIR.of(programContext) : null;
+
+        return new ASM8088ParseResult(isKeepTree() ? programContext : null, program,
+                parserErrors, semanticErrors, semanticWarnings);
     }
 } 
\ No newline at end of file
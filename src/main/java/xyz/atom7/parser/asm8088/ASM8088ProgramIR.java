@@ -0,0 +1,189 @@
+package xyz.atom7.parser.asm8088;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.parser.asm8088Parser;
+
+import java.util.Arrays;
+
+/**
+ * The compact intermediate representation of a parsed 8088 assembly program: what the interpreters need
+ * from the parse tree, in flat arrays with one entry per line, so that the tree and its tokens can be
+ * dropped once the program has been analysed. Blank lines have no entry.
+ * <p>
+ * An entry is a section directive, a constant assignment or a statement. A statement has a label, an
+ * operation code, or both; its operands are the text of the instruction operands, the values of a .BYTE
+ * directive, the string of an .ASCII directive or the size of a .SPACE directive.
+ */
+@Getter
+@AllArgsConstructor
+public class ASM8088ProgramIR
+{
+    /**
+     * The kind of an entry
+     */
+    public enum Kind
+    {
+        SECTION,
+        ASSIGNMENT,
+        STATEMENT
+    }
+
+    private static final String[] NO_OPERANDS = new String[0];
+
+    /**
+     * The number of entries
+     */
+    private final int size;
+
+    private final Kind[] kinds;
+
+    /**
+     * The section (.TEXT, .DATA or .BSS), the name of the constant, or the label of the statement, or null
+     */
+    private final String[] names;
+
+    /**
+     * The upper-cased mnemonic or directive (.BYTE, .ASCII, .SPACE) of a statement, or null
+     */
+    private final String[] opCodes;
+
+    /**
+     * The operands of a statement, or the value of a constant
+     */
+    private final String[][] operands;
+
+    /**
+     * The source line of each entry
+     */
+    private final int[] lines;
+
+    /**
+     * Check whether a statement is a data directive rather than an instruction
+     *
+     * @param index The index of the entry
+     * @return True if the entry is a .BYTE, .ASCII or .SPACE directive
+     */
+    public boolean isDirective(int index)
+    {
+        return opCodes[index] != null && opCodes[index].startsWith(".");
+    }
+
+    /**
+     * Lower the parse tree of a program without errors
+     *
+     * @param ctx The program context
+     * @return The intermediate representation of the program
+     */
+    public static ASM8088ProgramIR of(asm8088Parser.ProgramContext ctx)
+    {
+        Builder builder = new Builder();
+        ctx.line().forEach(builder::line);
+
+        return builder.build();
+    }
+
+    /**
+     * Lowers lines one at a time, such as the lines handed over by {@link ASM8088StreamParser}
+     */
+    public static class Builder implements ASM8088StreamParser.LineListener
+    {
+        private int size;
+        private Kind[] kinds = new Kind[64];
+        private String[] names = new String[64];
+        private String[] opCodes = new String[64];
+        private String[][] operands = new String[64][];
+        private int[] lines = new int[64];
+
+        @Override
+        public void line(asm8088Parser.LineContext line)
+        {
+            int number = line.getStart().getLine();
+            asm8088Parser.SectionContext section = line.section();
+            asm8088Parser.AssignmentContext assignment = line.assignment();
+
+            if (section != null) {
+                String name = section.TEXT() != null ? ".TEXT" : section.DATA() != null ? ".DATA" : ".BSS";
+                add(Kind.SECTION, name, null, NO_OPERANDS, number);
+                return;
+            }
+
+            if (assignment != null) {
+                TerminalNode value = assignment.HEX() != null ? assignment.HEX() : assignment.NUM();
+                add(Kind.ASSIGNMENT, assignment.ID().getText(), null, new String[]{value.getText()}, number);
+                return;
+            }
+
+            String label = line.labelDecl() != null ? line.labelDecl().ID().getText() : null;
+            asm8088Parser.StatementContext statement = line.statement();
+
+            if (statement == null) {
+                if (label != null) {
+                    add(Kind.STATEMENT, label, null, NO_OPERANDS, number);
+                }
+                return;
+            }
+
+            if (statement.directive() != null) {
+                asm8088Parser.DirectiveContext directive = statement.directive();
+                add(Kind.STATEMENT, label, directive.getStart().getText().toUpperCase(), directiveOperands(directive),
+                        number);
+                return;
+            }
+
+            asm8088Parser.InstructionContext instruction = statement.instruction();
+            asm8088Parser.OperandListContext operandList = instruction.operandList();
+            String[] texts = operandList == null
+                    ? NO_OPERANDS
+                    : operandList.operand().stream().map(operand -> operand.getText()).toArray(String[]::new);
+
+            add(Kind.STATEMENT, label, instruction.mnemonic().getText().toUpperCase(), texts, number);
+        }
+
+        private static String[] directiveOperands(asm8088Parser.DirectiveContext directive)
+        {
+            if (directive.valueList() != null) {
+                // the hexadecimal and decimal values, in the order they are written
+                return directive.valueList().children.stream()
+                        .filter(child -> child instanceof TerminalNode)
+                        .map(child -> (TerminalNode) child)
+                        .filter(node -> node.getSymbol().getType() != asm8088Parser.COMMA)
+                        .map(TerminalNode::getText)
+                        .toArray(String[]::new);
+            }
+
+            TerminalNode value = directive.STRING() != null ? directive.STRING() : directive.NUM();
+            return value != null ? new String[]{value.getText()} : NO_OPERANDS;
+        }
+
+        private void add(Kind kind, @Nullable String name, @Nullable String opCode, String[] entryOperands, int line)
+        {
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                names = Arrays.copyOf(names, capacity);
+                opCodes = Arrays.copyOf(opCodes, capacity);
+                operands = Arrays.copyOf(operands, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+            }
+
+            kinds[size] = kind;
+            names[size] = name;
+            opCodes[size] = opCode;
+            operands[size] = entryOperands;
+            lines[size] = line;
+            size++;
+        }
+
+        /**
+         * @return The intermediate representation of the lines added so far
+         */
+        public ASM8088ProgramIR build()
+        {
+            return new ASM8088ProgramIR(size, Arrays.copyOf(kinds, size), Arrays.copyOf(names, size),
+                    Arrays.copyOf(opCodes, size), Arrays.copyOf(operands, size), Arrays.copyOf(lines, size));
+        }
+    }
+}
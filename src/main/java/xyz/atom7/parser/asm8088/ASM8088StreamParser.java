@@ -0,0 +1,193 @@
+package xyz.atom7.parser.asm8088;
+
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import xyz.atom7.api.parser.error.ParserError;
+import xyz.atom7.api.parser.error.ParserErrorListener;
+import xyz.atom7.parser.asm8088Lexer;
+import xyz.atom7.parser.asm8088Parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses 8088 assembly a line at a time, for sources too large to hold in memory along with their parse
+ * tree. The characters and the tokens are read through unbuffered streams, and every line is handed to a
+ * listener as soon as it is parsed and then dropped from the tree, so the memory used by the parser
+ * depends on the length of the longest line and not on the size of the source.
+ * <p>
+ * Only the syntax is checked: the semantic analysis of {@link ASM8088ParserHelper} needs the whole tree.
+ * After the first syntax error the rest of the source is still parsed, to report every error, but no
+ * more lines are handed to the listener.
+ */
+public class ASM8088StreamParser
+{
+    /**
+     * The number of characters the character stream reads at a time
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Receives the lines of a program as they are parsed
+     */
+    public interface LineListener
+    {
+        /**
+         * Handle a parsed line; the line and its tokens are dropped when this returns
+         *
+         * @param line The line
+         */
+        void line(asm8088Parser.LineContext line);
+    }
+
+    /**
+     * Parse an 8088 assembly source file a line at a time into its compact representation.
+     *
+     * @param path The source file
+     * @return The result, with the compact program, or null if the source has errors, and the syntax errors
+     * @throws IOException If the file cannot be read
+     */
+    public ASM8088ParseResult parseFile(Path path) throws IOException
+    {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parse 8088 assembly a line at a time into its compact representation.
+     *
+     * @param reader The source
+     * @return The result, with the compact program, or null if the source has errors, and the syntax errors
+     */
+    public ASM8088ParseResult parse(Reader reader)
+    {
+        ASM8088ProgramIR.Builder builder = new ASM8088ProgramIR.Builder();
+        ASM8088ParseResult result = parse(reader, builder);
+
+        return new ASM8088ParseResult(null, result.hasErrors() ? null : builder.build(),
+                result.getParserErrors(), result.getSemanticErrors(), result.getSemanticWarnings());
+    }
+
+    /**
+     * Parse an 8088 assembly source file a line at a time.
+     *
+     * @param path The source file
+     * @param listener Receives every line, until the first syntax error
+     * @return The result, with the syntax errors and a program context without lines
+     * @throws IOException If the file cannot be read
+     */
+    public ASM8088ParseResult parseFile(Path path, LineListener listener) throws IOException
+    {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader, listener);
+        }
+    }
+
+    /**
+     * Parse 8088 assembly a line at a time.
+     *
+     * @param reader The source
+     * @param listener Receives every line, until the first syntax error
+     * @return The result, with the syntax errors and a program context without lines
+     */
+    public ASM8088ParseResult parse(Reader reader, LineListener listener)
+    {
+        // Create a lexer with our custom error listener; the characters are gone once a token is
+        // made, so the tokens keep a copy of their text
+        ParserErrorListener lexerErrorListener = new ParserErrorListener();
+        asm8088Lexer lexer = new asm8088Lexer(new UnbufferedCharStream(reader, BUFFER_SIZE));
+        lexer.setTokenFactory(new CommonTokenFactory(true));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(lexerErrorListener);
+
+        UnbufferedTokenStream tokens = new UnbufferedTokenStream(lexer);
+
+        // Create a parser with our custom error listener
+        ParserErrorListener parserErrorListener = new ParserErrorListener();
+        asm8088Parser parser = new asm8088Parser(tokens);
+        parser.removeErrorListeners();
+        parser.addErrorListener(parserErrorListener);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.addParseListener(new LineEmitter(tokens, listener, lexerErrorListener, parserErrorListener));
+
+        // Parse the program, which is left without its lines
+        asm8088Parser.ProgramContext programContext = parser.program();
+
+        List<ParserError> parserErrors = new ArrayList<>();
+        parserErrors.addAll(lexerErrorListener.getErrors());
+        parserErrors.addAll(parserErrorListener.getErrors());
+
+        return new ASM8088ParseResult(programContext, null, parserErrors, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Hands every parsed line to the listener and removes it from the tree
+     */
+    private static final class LineEmitter implements ParseTreeListener
+    {
+        private final UnbufferedTokenStream tokens;
+        private final LineListener listener;
+        private final ParserErrorListener lexerErrors;
+        private final ParserErrorListener parserErrors;
+
+        private int marker;
+
+        private LineEmitter(UnbufferedTokenStream tokens, LineListener listener,
+                            ParserErrorListener lexerErrors, ParserErrorListener parserErrors)
+        {
+            this.tokens = tokens;
+            this.listener = listener;
+            this.lexerErrors = lexerErrors;
+            this.parserErrors = parserErrors;
+        }
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx)
+        {
+            // keep the tokens of the line buffered, for the text of its error messages
+            if (ctx instanceof asm8088Parser.LineContext) {
+                marker = tokens.mark();
+            }
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx)
+        {
+            if (!(ctx instanceof asm8088Parser.LineContext)) {
+                return;
+            }
+
+            try {
+                if (lexerErrors.getErrors().isEmpty() && parserErrors.getErrors().isEmpty()) {
+                    listener.line((asm8088Parser.LineContext) ctx);
+                }
+            }
+            finally {
+                ctx.getParent().removeLastChild();
+                tokens.release(marker);
+            }
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node)
+        {
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node)
+        {
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package xyz.atom7.parser.ijvm;
 
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 import xyz.atom7.api.parser.ParseResult;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.api.parser.semantic.SemanticError;
@@ -11,21 +13,32 @@ import java.util.List;
 /**
  * Represents the result of parsing an IJVM program.
  */
+@Getter
 public class IJVMParseResult extends ParseResult<IJVMParser.ProgramContext>
 {
+    /**
+     * The compact representation of the program, or null if the program has errors
+     */
+    @Nullable
+    private final IJVMProgramIR program;
+
     /**
      * Constructor for IJVMParseResult
      * 
-     * @param programContext The program context
+     * @param programContext The program context, or null if the tree is not kept
+     * @param program The compact representation of the program, or null if it has errors
      * @param parserErrors The parser errors
      * @param semanticErrors The semantic errors
      * @param semanticWarnings The semantic warnings
      */
-    public IJVMParseResult(IJVMParser.ProgramContext programContext,
+    public IJVMParseResult(@Nullable IJVMParser.ProgramContext programContext,
+                           @Nullable IJVMProgramIR program,
                            List<ParserError> parserErrors,
                            List<SemanticError> semanticErrors,
                            List<SemanticWarning> semanticWarnings)
     {
         super(programContext, parserErrors, semanticErrors, semanticWarnings);
+        this.program = program;
     }
 }
+
@@ -19,32 +19,38 @@ import java.util.List;
  */
 public class IJVMParserHelper extends ParserHelper<IJVMParseResult>
 {
+    /**
+     * The lexer and the parser of each thread; the generated recognizers share their DFA cache
+     */
+    private final ThreadLocal<IJVMLexer> lexers = ThreadLocal.withInitial(() -> new IJVMLexer(null));
+    private final ThreadLocal<IJVMParser> parsers = ThreadLocal.withInitial(() -> new IJVMParser(null));
+
     /**
      * Parse an IJVM code from a CharStream.
      *
      * @param input CharStream containing IJVM code
-     * @return The parsed program result containing the tree and any errors
+     * @return The parsed program result containing the compact program and any errors
      */
     @Override
     protected IJVMParseResult parseStream(CharStream input)
     {
-        // Create a lexer with our custom error listener
+        // Reuse the lexer of this thread with our custom error listener
         ParserErrorListener lexerErrorListener = new ParserErrorListener();
-        IJVMLexer lexer = new IJVMLexer(input);
+        IJVMLexer lexer = lexers.get();
+        lexer.setInputStream(input);
         lexer.removeErrorListeners();
         lexer.addErrorListener(lexerErrorListener);
         
         // Create a token stream from the lexer
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         
-        // Create a parser with our custom error listener
+        // Reuse the parser of this thread, which collects its errors in our custom error listener
         ParserErrorListener parserErrorListener = new ParserErrorListener();
-        IJVMParser parser = new IJVMParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(parserErrorListener);
+        IJVMParser parser = parsers.get();
+        parser.setTokenStream(tokens);
         
-        // Parse the program
-        IJVMParser.ProgramContext programContext = parser.program();
+        // Parse the program, with full LL and error recovery only if SLL fails
+        IJVMParser.ProgramContext programContext = parseTwoStage(parser, IJVMParser::program, parserErrorListener);
         
         // Collect parser errors
         List<ParserError> parserErrors = new ArrayList<>();
@@ -56,7 +62,8 @@ public class IJVMParserHelper extends ParserHelper<IJVMParseResult>
         
         // If there are parser errors, don't proceed to semantic analysis
         if (!parserErrors.isEmpty()) {
-            return new IJVMParseResult(programContext, parserErrors, semanticErrors, semanticWarnings);
+            return new IJVMParseResult(isKeepTree() ? programContext : null, null,
+                    parserErrors, semanticErrors, semanticWarnings);
         }
         
         // Perform semantic analysis
@@ -66,6 +73,10 @@ public class IJVMParserHelper extends ParserHelper<IJVMParseResult>
         semanticErrors.addAll(semanticAnalyzer.getErrors());
         semanticWarnings.addAll(semanticAnalyzer.getWarnings());
 
-        return new IJVMParseResult(programContext, parserErrors, semanticErrors, semanticWarnings);
+        // Lower the program to its compact representation, after which the tree can be dropped
+        IJVMProgramIR program = semanticErrors.isEmpty() ? IJVMProgramIR.of(programContext) : null;
+
+        return new IJVMParseResult(isKeepTree() ? programContext : null, program,
+                parserErrors, semanticErrors, semanticWarnings);
     }
 }
\ No newline at end of file
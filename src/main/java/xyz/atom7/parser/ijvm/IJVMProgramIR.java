@@ -0,0 +1,169 @@
+package xyz.atom7.parser.ijvm;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.jetbrains.annotations.Nullable;
+import xyz.atom7.parser.IJVMParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The compact intermediate representation of a parsed IJVM program: what the interpreters need from the
+ * parse tree, in flat arrays of strings, so that the tree and its tokens can be dropped once the program
+ * has been analysed.
+ */
+@Getter
+@AllArgsConstructor
+public class IJVMProgramIR
+{
+    /**
+     * The pseudo operation code of a label declaration, whose argument is the name of the label
+     */
+    public static final String LABEL = "label";
+
+    /**
+     * The constant names, as declared
+     */
+    private final String[] constantNames;
+
+    /**
+     * The constant values, parallel to {@link #constantNames}
+     */
+    private final String[] constantValues;
+
+    /**
+     * The main block, named "main", followed by the methods in the order they are declared
+     */
+    private final Method[] methods;
+
+    /**
+     * A block of code: the main block or a method
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Method
+    {
+        private final String name;
+        private final String[] parameters;
+        private final String[] locals;
+
+        /**
+         * The operation codes as written, or {@link #LABEL} for a label declaration
+         */
+        private final String[] opCodes;
+
+        /**
+         * The first argument of each instruction, or null, parallel to {@link #opCodes}
+         */
+        private final String[] arguments;
+
+        /**
+         * The second argument of each instruction, or null, parallel to {@link #opCodes}
+         */
+        private final String[] secondArguments;
+
+        /**
+         * The source line of each instruction, parallel to {@link #opCodes}
+         */
+        private final int[] lines;
+    }
+
+    /**
+     * Lower the parse tree of a program without errors
+     *
+     * @param ctx The program context
+     * @return The intermediate representation of the program
+     */
+    public static IJVMProgramIR of(IJVMParser.ProgramContext ctx)
+    {
+        List<String> constantNames = new ArrayList<>();
+        List<String> constantValues = new ArrayList<>();
+        IJVMParser.ConstantBlockContext constantBlock = ctx.constantBlock();
+
+        if (constantBlock != null) {
+            for (var decl : constantBlock.constantDecl()) {
+                constantNames.add(decl.ID().getText());
+                constantValues.add(decl.NUM().getText());
+            }
+        }
+
+        List<IJVMParser.MethodBlockContext> methodBlocks = ctx.methodBlock();
+        Method[] methods = new Method[methodBlocks.size() + 1];
+
+        IJVMParser.MainBlockContext mainBlock = ctx.mainBlock();
+        methods[0] = method("main", null, mainBlock.varBlock(0), mainBlock.statement());
+
+        for (int i = 0; i < methodBlocks.size(); i++)
+        {
+            IJVMParser.MethodBlockContext methodBlock = methodBlocks.get(i);
+            IJVMParser.MethodDeclContext methodDecl = methodBlock.methodDecl();
+
+            methods[i + 1] = method(methodDecl.ID().getText(), methodDecl.paramList(),
+                    methodBlock.varBlock(0), methodBlock.statement());
+        }
+
+        return new IJVMProgramIR(constantNames.toArray(new String[0]), constantValues.toArray(new String[0]),
+                methods);
+    }
+
+    private static Method method(String name, @Nullable IJVMParser.ParamListContext paramList,
+                                 @Nullable IJVMParser.VarBlockContext varBlock,
+                                 List<IJVMParser.StatementContext> statements)
+    {
+        String[] parameters = paramList == null
+                ? new String[0]
+                : paramList.ID().stream().map(TerminalNode::getText).toArray(String[]::new);
+        String[] locals = varBlock == null
+                ? new String[0]
+                : varBlock.varDecl().stream().map(decl -> decl.ID().getText()).toArray(String[]::new);
+
+        int size = statements.size();
+        String[] opCodes = new String[size];
+        String[] arguments = new String[size];
+        String[] secondArguments = new String[size];
+        int[] lines = new int[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            IJVMParser.StatementContext statement = statements.get(i);
+            String opCode = statement.getStart().getText();
+            lines[i] = statement.getStart().getLine();
+
+            if (statement.labelDecl() != null) {
+                opCodes[i] = LABEL;
+                arguments[i] = opCode;
+                continue;
+            }
+
+            IJVMParser.InstructionContext instruction = statement.instruction();
+            opCodes[i] = opCode;
+
+            if (instruction.byteArgInstr() != null) {
+                arguments[i] = text(instruction.byteArgInstr().NUM());
+                secondArguments[i] = text(instruction.byteArgInstr().ID());
+            }
+            else if (instruction.jumpInstr() != null) {
+                arguments[i] = text(instruction.jumpInstr().ID());
+            }
+            else if (instruction.varArgInstr() != null) {
+                arguments[i] = text(instruction.varArgInstr().ID());
+            }
+            else if (instruction.methodArgInstr() != null) {
+                arguments[i] = text(instruction.methodArgInstr().ID());
+            }
+            else if (instruction.constantArgInstr() != null) {
+                arguments[i] = text(instruction.constantArgInstr().ID());
+            }
+        }
+
+        return new Method(name, parameters, locals, opCodes, arguments, secondArguments, lines);
+    }
+
+    @Nullable
+    private static String text(@Nullable TerminalNode node)
+    {
+        return node == null ? null : node.getText();
+    }
+}
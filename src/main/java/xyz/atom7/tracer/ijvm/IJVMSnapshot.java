@@ -13,10 +13,10 @@ import java.util.*;
 public class IJVMSnapshot extends Snapshot<IJVMProgram<IJVMInstruction>, IJVMInstruction>
 {
     private final Stack<IJVMScope> scopes;
-    private final Stack<IJVMScope> callStack;
+    private final List<IJVMScope> callStack;
     private final Map<String, Integer> constantPool;
-    private final LinkedList<Stack<Integer>> stacks;
-    private final Stack<Integer> scopedStack;
+    private final LinkedList<List<Integer>> stacks;
+    private final List<Integer> scopedStack;
     private final Map<String, Integer> scopedLocals;
 
     @Nullable
@@ -29,10 +29,10 @@ public class IJVMSnapshot extends Snapshot<IJVMProgram<IJVMInstruction>, IJVMIns
     {
         super(interpreter, scopeInstructions, pc);
         scopes = new Stack<>();
-        callStack = new Stack<>();
+        callStack = new ArrayList<>();
         constantPool = new HashMap<>();
         stacks = new LinkedList<>();
-        scopedStack = new Stack<>();
+        scopedStack = new ArrayList<>();
         scopedLocals = new HashMap<>();
     }
 
@@ -50,7 +50,7 @@ public class IJVMSnapshot extends Snapshot<IJVMProgram<IJVMInstruction>, IJVMIns
         scopes.addAll(interpreter.getScopes());
         callStack.addAll(interpreter.getCallStack());
         constantPool.putAll(interpreter.getConstantPool());
-        callStack.forEach(scope -> stacks.add(scope.getStack()));
+        callStack.forEach(scope -> stacks.add(new ArrayList<>(scope.getStack())));
         scopedStack.addAll(interpreter.getCurrentScope().getStack());
         scopedLocals.putAll(interpreter.getCurrentScope().getLocals());
     }
@@ -0,0 +1,153 @@
+package xyz.atom7.benchmark;
+
+import xyz.atom7.api.interpreter.ExecutionContext;
+import xyz.atom7.api.interpreter.Interpreter;
+import xyz.atom7.interpreter.asm8088.ASM8088BlockProgram;
+import xyz.atom7.interpreter.asm8088.ASM8088Instruction;
+import xyz.atom7.interpreter.asm8088.ASM8088Program;
+import xyz.atom7.interpreter.ijvm.IJVMInstruction;
+import xyz.atom7.interpreter.ijvm.IJVMProgram;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Throughput benchmark for the bundled example programs.
+ * Not a unit test: run it with `java -cp target/classes:target/test-classes:<antlr-runtime> xyz.atom7.benchmark.InterpreterBenchmark`.
+ */
+public class InterpreterBenchmark
+{
+    private static final String[][] IJVM_CASES = {
+            {"ijvm_test_0_(13-06-2023).jas", "1,2,3"},
+            {"ijvm_test_0_(13-06-2022).jas", "0,3,2"},
+            {"ijvm_test_0_(28-06-2024).jas", "15,5,6"},
+            {"ijvm_test_1_(10-02-2023).jas", "9,1"},
+            {"ijvm_test_1_(13-06-2023).jas", "1,2,3"},
+            {"ijvm_test_1_(30-04-2021).jas", "1,2,3"},
+            {"ijvm_test_2_(13-06-2023).jas", "1,2,3"},
+            {"ijvm_test_2_(27-06-2022).jas", "5,3"},
+            {"ijvm_test_2_(30-04-2021).jas", "1,3"},
+            {"ijvm_test_3_(30-04-2021).jas", "1,2,3"},
+            {"ijvm_test_3_(8-05-2024).jas", "1,2,3"},
+            {"ijvm_test_Tanenbaum_(16-02-1999).jas", ""},
+    };
+
+    private static final String[][] ASM8088_CASES = {
+            {"8088_test_fibonacci.asm", "5"},
+            {"8088_test_is_prime.asm", "7"},
+            {"8088_test_is_prime.asm", "4"},
+            {"8088_test_pythagorean.asm", "3;4;"},
+            {"8088_test_sqrt.asm", "9;4;"},
+            {"8088_test_gdc.asm", "9;6;"},
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        benchmark("IJVM", "ijvm", IJVM_CASES, IJVMProgram<IJVMInstruction>::new,
+                InterpreterBenchmark::ijvmInput, iterations);
+        benchmark("IJVM (jit)", "ijvm", IJVM_CASES, InterpreterBenchmark::ijvmJitProgram,
+                InterpreterBenchmark::ijvmInput, iterations);
+        benchmark("8088", "8088", ASM8088_CASES, ASM8088Program<ASM8088Instruction>::new,
+                InterpreterBenchmark::asm8088Input, iterations);
+        benchmark("8088 (block)", "8088", ASM8088_CASES, ASM8088BlockProgram<ASM8088Instruction>::new,
+                InterpreterBenchmark::asm8088Input, iterations);
+    }
+
+    /**
+     * Warms up, then measures one family of example programs and prints its throughput.
+     */
+    private static void benchmark(String name, String directory, String[][] cases,
+                                  Supplier<Interpreter<?>> factory, Function<String, byte[]> inputs,
+                                  int iterations) throws Exception
+    {
+        run(directory, cases, factory, inputs, iterations / 4);
+        long[] measured = run(directory, cases, factory, inputs, iterations);
+
+        double seconds = measured[1] / 1e9;
+        System.out.printf("%s: %d runs, %d instructions in %.3f s -> %.0f instructions/s%n",
+                name, iterations * cases.length, measured[0], seconds, measured[0] / seconds);
+    }
+
+    /**
+     * Runs every case the given number of times, timing only the execution phase.
+     * Every run reads its own input and writes to a discarded output.
+     *
+     * @return {executed instructions, elapsed nanoseconds}
+     */
+    private static long[] run(String directory, String[][] cases, Supplier<Interpreter<?>> factory,
+                              Function<String, byte[]> inputs, int iterations) throws Exception
+    {
+        long instructions = 0;
+        long elapsed = 0;
+
+        for (String[] testCase : cases)
+        {
+            String source = Files.readString(Paths.get("src/main/resources/examples/" + directory + "/" + testCase[0]));
+            byte[] input = inputs.apply(testCase[1]);
+
+            for (int i = 0; i < iterations; i++)
+            {
+                Interpreter<?> program = factory.get();
+                program.setContext(new ExecutionContext(false, new ByteArrayInputStream(input),
+                        OutputStream.nullOutputStream()));
+                program.init(source);
+
+                long start = System.nanoTime();
+                program.execute();
+                elapsed += System.nanoTime() - start;
+                instructions += program.getExecutedInstructions();
+            }
+        }
+
+        return new long[] {instructions, elapsed};
+    }
+
+    private static Interpreter<?> ijvmJitProgram()
+    {
+        IJVMProgram<IJVMInstruction> program = new IJVMProgram<>();
+        program.setJitThreshold(IJVMProgram.DEFAULT_JIT_THRESHOLD);
+        return program;
+    }
+
+    /**
+     * Builds the keyboard input used by the examples: one digit per line, each number terminated by ';'.
+     */
+    private static byte[] ijvmInput(String inputs)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (String value : inputs.split(",")) {
+            if (value.isBlank()) {
+                continue;
+            }
+
+            for (char digit : value.trim().toCharArray()) {
+                sb.append(digit).append('\n');
+            }
+
+            sb.append(';').append('\n');
+        }
+
+        return sb.toString().getBytes();
+    }
+
+    /**
+     * Builds the keyboard input used by the 8088 examples: one character per line.
+     */
+    private static byte[] asm8088Input(String inputs)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (char c : inputs.toCharArray()) {
+            sb.append(c).append('\n');
+        }
+
+        return sb.toString().getBytes();
+    }
+}
@@ -0,0 +1,142 @@
+package xyz.atom7.compiler;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import xyz.atom7.compiler.ijvm.IJVMJarCompiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.atom7.Utils.codeWritten;
+
+public class IJVMJarCompilerTest
+{
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Compiles every IJVM example file and runs the jar in a fresh JVM, with only the jar on the class path
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("xyz.atom7.interpreter.IJVMProgramTest#ijvmTestCases")
+    @DisplayName("IJVM Example Files (compiled jar)")
+    void testCompiledExampleFiles(String testName, String fileName, String inputs, String expectedOutput)
+            throws Exception
+    {
+        Path jar = compile("src/main/resources/examples/ijvm/" + fileName);
+        String output = runJar(jar, toInput(inputs));
+
+        assertEquals(expectedOutput.trim(), programOutput(output),
+                "Output mismatch for " + testName + ". Full captured output: " + output);
+    }
+
+    @Test
+    @DisplayName("Tanenbaum Test (compiled jar)")
+    void testCompiledTanenbaumExample() throws Exception
+    {
+        Path jar = compile("src/main/resources/examples/ijvm/ijvm_test_Tanenbaum_(16-02-1999).jas");
+        String output = runJar(jar, "");
+
+        assertTrue(output.contains("OK"), "Tanenbaum test should output 'OK'. Actual output: " + output);
+    }
+
+    @Test
+    @DisplayName("The jar only holds the program and its runtime")
+    void testJarContents() throws Exception
+    {
+        Path jar = compile("src/main/resources/examples/ijvm/ijvm_test_Tanenbaum_(16-02-1999).jas");
+
+        try (JarFile file = new JarFile(jar.toFile())) {
+            List<String> classes = Collections.list(file.entries()).stream()
+                    .map(entry -> entry.getName())
+                    .filter(name -> name.endsWith(".class"))
+                    .sorted()
+                    .collect(Collectors.toList());
+
+            assertEquals(List.of(
+                    "ijvm/Main.class",
+                    "xyz/atom7/compiler/ijvm/IJVMRuntime$OperandStack.class",
+                    "xyz/atom7/compiler/ijvm/IJVMRuntime.class"), classes);
+            assertEquals(IJVMJarCompiler.MAIN_CLASS, file.getManifest().getMainAttributes().getValue("Main-Class"));
+        }
+    }
+
+    @Test
+    @DisplayName("Programs with semantic errors are not compiled")
+    void testRejectsInvalidProgram()
+    {
+        String source = codeWritten(
+                ".main",
+                "GOTO missing",
+                ".end-main"
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> IJVMJarCompiler.fromSource(source));
+    }
+
+    private Path compile(String sourcePath) throws IOException
+    {
+        Path jar = tempDir.resolve("program.jar");
+        IJVMJarCompiler.fromSource(Files.readString(Paths.get(sourcePath))).writeJar(jar);
+        return jar;
+    }
+
+    private static String runJar(Path jar, String input) throws Exception
+    {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-jar", jar.toString())
+                .redirectErrorStream(true)
+                .start();
+
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(input.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        process.waitFor();
+
+        return output;
+    }
+
+    /**
+     * Each number is entered digit by digit, followed by a semicolon, one character per line
+     */
+    private static String toInput(String inputs)
+    {
+        StringBuilder input = new StringBuilder();
+
+        for (String value : inputs.split(",")) {
+            for (char digit : value.trim().toCharArray()) {
+                input.append(digit).append('\n');
+            }
+            input.append(';').append('\n');
+        }
+
+        return input.toString();
+    }
+
+    private static String programOutput(String output)
+    {
+        String[] lines = output.split("\n");
+
+        for (int i = 0; i + 1 < lines.length; i++) {
+            if (lines[i].contains("PROGRAM OUTPUT IS:")) {
+                return lines[i + 1].trim();
+            }
+        }
+
+        return "";
+    }
+}
@@ -4,20 +4,53 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import xyz.atom7.api.interpreter.BudgetExhaustedException;
+import xyz.atom7.api.interpreter.CancellationToken;
+import xyz.atom7.api.interpreter.ExecutionContext;
+import xyz.atom7.api.interpreter.ProgramCache;
+import xyz.atom7.api.interpreter.RunBatch;
+import xyz.atom7.api.io.InputChannel;
+import xyz.atom7.api.io.MemoryOutputChannel;
+import xyz.atom7.api.io.OutputChannel;
+import xyz.atom7.interpreter.asm8088.ASM8088Assembler;
+import xyz.atom7.interpreter.asm8088.ASM8088BlockProgram;
 import xyz.atom7.interpreter.asm8088.ASM8088Instruction;
+import xyz.atom7.interpreter.asm8088.ASM8088LinkedProgram;
+import xyz.atom7.interpreter.asm8088.ASM8088MachineProgram;
 import xyz.atom7.interpreter.asm8088.ASM8088Program;
+import xyz.atom7.parser.asm8088.ASM8088ParseResult;
+import xyz.atom7.parser.asm8088.ASM8088ParserHelper;
+import xyz.atom7.parser.asm8088.ASM8088StreamParser;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.Permission;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +60,9 @@ public class ASM8088ProgramTest
 {
     private ASM8088Program<ASM8088Instruction> program;
 
+    @TempDir
+    Path cacheDirectory;
+
     @BeforeEach
     void setUp()
     {
@@ -64,70 +100,158 @@ public class ASM8088ProgramTest
     @DisplayName("8088 Assembly Example Files")
     void test8088ExampleFiles(String testName, String fileName, String inputs, String expectedOutput)
     {
-        // Custom SecurityManager to catch System.exit calls
-        SecurityManager originalSecurityManager = System.getSecurityManager();
-        System.setSecurityManager(new NoExitSecurityManager());
-        
-        try {
-            // Read the file content
-            Path filePath = Paths.get("src/main/resources/examples/8088/" + fileName);
-            String fileContent = Files.readString(filePath);
-
-            // Prepare input stream if inputs are provided
-            InputStream originalIn = System.in;
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            PrintStream originalOut = System.out;
-            
-            try {
-                // Redirect input if needed
-                if (inputs != null && !inputs.trim().isEmpty()) {
-                    // For 8088 input, we need to simulate entering characters
-                    StringBuilder inputBuilder = new StringBuilder();
-                    String[] inputValues = inputs.split(",");
-                    for (String value : inputValues) {
-                        String trimmedValue = value.trim();
-                        // Add each character of the input
-                        for (char c : trimmedValue.toCharArray()) {
-                            inputBuilder.append(c).append("\n");
-                        }
-                    }
-                    System.setIn(new ByteArrayInputStream(inputBuilder.toString().getBytes()));
-                }
+        runExampleFile(source -> load(new ASM8088Program<>(), source), testName, fileName, inputs, expectedOutput);
+    }
 
-                // Capture output
-                System.setOut(new PrintStream(outputStream));
-
-                // Create and run the program
-                ASM8088Program<ASM8088Instruction> testProgram = new ASM8088Program<>();
-                testProgram.init(fileContent);
-                
-                try {
-                    testProgram.execute();
-                } catch (ExitException e) {
-                    // Expected when program calls System.exit
-                    // This is normal program termination
-                }
+    /**
+     * Runs the 8088 assembly example files on the basic-block engine, which must produce the same output.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("asm8088TestCases")
+    @DisplayName("8088 Assembly Example Files (block engine)")
+    void test8088ExampleFilesBlockEngine(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> load(new ASM8088BlockProgram<>(), source), testName, fileName, inputs, expectedOutput);
+    }
+
+    /**
+     * Runs the 8088 assembly example files from their machine code, which must produce the same output.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("asm8088TestCases")
+    @DisplayName("8088 Assembly Example Files (machine code)")
+    void test8088ExampleFilesMachineCode(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> load(new ASM8088MachineProgram<>(), source), testName, fileName, inputs, expectedOutput);
+    }
+
+    /**
+     * Runs the 8088 assembly example files from their saved images, without the source.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("asm8088TestCases")
+    @DisplayName("8088 Assembly Example Files (image)")
+    void test8088ExampleFilesImage(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> fromImage(load(new ASM8088MachineProgram<>(), source).toImage()),
+                testName, fileName, inputs, expectedOutput);
+    }
 
-            } finally {
-                // Restore original streams
-                System.setIn(originalIn);
-                System.setOut(originalOut);
+    /**
+     * Runs the 8088 assembly example files from the on-disk program cache: a first cache loads and stores
+     * each program, and a second one, like a later process, reads it back without parsing
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("asm8088TestCases")
+    @DisplayName("8088 Assembly Example Files (program cache)")
+    void test8088ExampleFilesCached(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> {
+            new ASM8088Program<>().init(source, ASM8088Program.newCache(1, cacheDirectory));
+
+            ASM8088Program<ASM8088Instruction> cached = new ASM8088Program<>();
+            cached.init(source, ASM8088Program.newCache(1, cacheDirectory));
+            return cached;
+        }, testName, fileName, inputs, expectedOutput);
+    }
+
+    @ParameterizedTest(name = "count={0}")
+    @ValueSource(ints = {-1, Integer.MAX_VALUE})
+    @DisplayName("A corrupt cache entry that passes the header check should be rebuilt from the source")
+    void testCorruptCacheEntry(int count) throws IOException
+    {
+        String code = codeWritten(
+                ".SECT .TEXT",
+                "MOV AX, 42"
+        );
+
+        // a valid header, no labels, and a data section of the given size
+        byte[] header = program.link(new ASM8088ParserHelper().parseString(code)).toBytes();
+        byte[] corrupt = ByteBuffer.allocate(18).put(header, 0, 6).putInt(0).putInt(0).putInt(count).array();
+
+        Path file = cacheDirectory.resolve(ProgramCache.key(code) + ASM8088LinkedProgram.EXTENSION);
+        Files.write(file, corrupt);
+
+        ASM8088Program<ASM8088Instruction> cached = new ASM8088Program<>();
+        cached.init(code, ASM8088Program.newCache(1, cacheDirectory));
+        cached.execute();
+
+        assertEquals(42, cached.getScope().getRegister16("AX"));
+        assertEquals(1, ASM8088LinkedProgram.fromBytes(Files.readAllBytes(file)).getInstructionCount(),
+                "The file should have been rewritten");
+    }
+
+    /**
+     * Runs the 8088 assembly example files parsed a line at a time, without their parse tree
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("asm8088TestCases")
+    @DisplayName("8088 Assembly Example Files (streamed)")
+    void test8088ExampleFilesStreamed(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> {
+            ASM8088Program<ASM8088Instruction> streamed = new ASM8088Program<>();
+
+            try {
+                streamed.init(Files.writeString(cacheDirectory.resolve(fileName), source));
             }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return streamed;
+        }, testName, fileName, inputs, expectedOutput);
+    }
 
-            // Get the captured output and extract the printed numbers
-            String output = outputStream.toString();
-            String actualOutput = extractPrintedNumbers(output);
-            
-            // Compare with expected output
-            assertEquals(expectedOutput.trim(), actualOutput.trim(), 
-                "Output mismatch for " + testName + ". Full captured output: " + output);
+    private static <P extends ASM8088Program<ASM8088Instruction>> P load(P program, String source)
+    {
+        program.init(source);
+        return program;
+    }
+
+    private static ASM8088MachineProgram<ASM8088Instruction> fromImage(byte[] image)
+    {
+        ASM8088MachineProgram<ASM8088Instruction> program = new ASM8088MachineProgram<>();
+        program.init(image);
+        return program;
+    }
+
+    private void runExampleFile(Function<String, ASM8088Program<ASM8088Instruction>> loader,
+                                String testName, String fileName, String inputs, String expectedOutput)
+    {
+        String fileContent;
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to test " + fileName + ": " + e.getMessage(), e);
-        } finally {
-            // Restore original security manager
-            System.setSecurityManager(originalSecurityManager);
+        try {
+            fileContent = Files.readString(Paths.get("src/main/resources/examples/8088/" + fileName));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+
+        // For 8088 input, every character is entered on a line of its own
+        StringBuilder input = new StringBuilder();
+
+        if (inputs != null && !inputs.trim().isEmpty()) {
+            for (String value : inputs.split(",")) {
+                for (char c : value.trim().toCharArray()) {
+                    input.append(c).append("\n");
+                }
+            }
+        }
+
+        MemoryOutputChannel output = OutputChannel.memory();
+        ExecutionContext context = new ExecutionContext(false, InputChannel.of(input.toString()), output);
+
+        ASM8088Program<ASM8088Instruction> testProgram = loader.apply(fileContent);
+        testProgram.setContext(context);
+        testProgram.execute();
+
+        assertTrue(context.isExited(), testName + " should end with the exit system call");
+        assertEquals(0, context.getExitCode());
+
+        // Compare the printed numbers with the expected output
+        String actualOutput = extractPrintedNumbers(output.toString());
+        assertEquals(expectedOutput.trim(), actualOutput.trim(),
+                "Output mismatch for " + testName + ". Full captured output: " + output);
     }
 
     /**
@@ -371,8 +495,29 @@ public class ASM8088ProgramTest
 
             assertFalse(program.getScope().isZeroFlag());
         }
+
+        @Test
+        @DisplayName("Logical operations should keep the overflow flag of the last arithmetic operation")
+        void testOverflowKeptByLogicalOperation()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV AX, 32767",
+                    "ADD AX, 1",
+                    "MOV BX, 3",
+                    "AND BX, BX"
+            );
+
+            program.init(code);
+            program.execute();
+
+            assertTrue(program.getScope().isOverflowFlag());
+            assertTrue(program.getScope().isParityFlag());
+            assertFalse(program.getScope().isZeroFlag());
+            assertFalse(program.getScope().isSignFlag());
+        }
     }
-    
+
     @Nested
     @DisplayName("Jump Instructions")
     class JumpInstructionsTest
@@ -433,6 +578,53 @@ public class ASM8088ProgramTest
 
             assertEquals(42, program.getScope().getRegister16("AX"));
         }
+
+        private String undefinedTarget(String branch)
+        {
+            return codeWritten(
+                    ".SECT .TEXT",
+                    "MOV CX, 1",
+                    "start:",
+                    branch + " nowhere",
+                    "MOV AX, 1"
+            );
+        }
+
+        private void assertLabelNotFound(Executable load)
+        {
+            IllegalStateException e = assertThrows(IllegalStateException.class, load);
+            assertEquals("Label not found: nowhere (line 4)", e.getMessage());
+        }
+
+        @ParameterizedTest(name = "{0}")
+        @ValueSource(strings = {"JMP", "JE", "JNE", "CALL", "LOOP"})
+        @DisplayName("A branch to an undefined label should be rejected when a parsed program is loaded")
+        void testUndefinedTargetFromTree(String branch)
+        {
+            String code = undefinedTarget(branch);
+            ASM8088ParseResult result = new ASM8088ParserHelper().parseString(code);
+
+            // the semantic analysis reports the label, so the program never reaches the load-time check
+            assertTrue(result.hasSemanticErrors());
+            assertNull(program.link(result));
+
+            program.init(code);
+            assertEquals(0, program.getInstructions().size(), "Nothing should be loaded");
+        }
+
+        @ParameterizedTest(name = "{0}")
+        @ValueSource(strings = {"JMP", "JE", "JNE", "CALL", "LOOP"})
+        @DisplayName("A branch to an undefined label should fail when a streamed program is loaded")
+        void testUndefinedTargetFromStream(String branch) throws IOException
+        {
+            String code = undefinedTarget(branch);
+            Path file = cacheDirectory.resolve("undefined.asm");
+            Files.writeString(file, code);
+
+            assertLabelNotFound(() -> program.link(new ASM8088StreamParser().parse(new StringReader(code))));
+            assertLabelNotFound(() -> program.init(file));
+            assertEquals(0, program.getInstructions().size(), "Nothing should be loaded");
+        }
     }
     
     @Nested
@@ -581,50 +773,30 @@ public class ASM8088ProgramTest
     @DisplayName("System call test")
     void testSystemCall()
     {
-        // Custom SecurityManager to catch System.exit calls
-        SecurityManager originalSecurityManager = System.getSecurityManager();
-        System.setSecurityManager(new NoExitSecurityManager());
-        
-        try {
-            String code = codeWritten(
-                    ".SECT .DATA",
-                    "msg: .ASCII \"Hi\"",
-                    ".SECT .TEXT",
-                    "PUSH msg",
-                    "PUSH 42",
-                    "PUSH 127",   // Printf syscall
-                    "SYS",
-                    "PUSH 0",     // Exit code
-                    "PUSH 1",     // Exit syscall
-                    "SYS"
-            );
+        String code = codeWritten(
+                ".SECT .DATA",
+                "msg: .ASCII \"Hi\"",
+                ".SECT .TEXT",
+                "PUSH msg",
+                "PUSH 42",
+                "PUSH 127",   // Printf syscall
+                "SYS",
+                "PUSH 0",     // Exit code
+                "PUSH 1",     // Exit syscall
+                "SYS"
+        );
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            PrintStream originalOut = System.out;
-            
-            try {
-                System.setOut(new PrintStream(outputStream));
-                
-                program.init(code);
-                
-                try {
-                    program.execute();
-                } catch (ExitException e) {
-                    // Expected when exit syscall is called
-                    assertEquals(0, e.status);
-                }
-                
-            } finally {
-                System.setOut(originalOut);
-            }
+        MemoryOutputChannel output = OutputChannel.memory();
+        ExecutionContext context = new ExecutionContext(false, InputChannel.of(""), output);
 
-            String output = outputStream.toString();
-            // Check that printf was called (should contain the format and value)
-            assertNotNull(output, "Should produce output from printf");
+        program.setContext(context);
+        program.init(code);
+        program.execute();
 
-        } finally {
-            System.setSecurityManager(originalSecurityManager);
-        }
+        // The exit syscall should end the run with its exit code, after printf wrote its output
+        assertTrue(context.isExited());
+        assertEquals(0, context.getExitCode());
+        assertFalse(output.toString().isEmpty(), "Should produce output from printf");
     }
 
     @Nested
@@ -1344,44 +1516,445 @@ public class ASM8088ProgramTest
 
             assertEquals(255, program.getScope().getRegister8("CL"));
         }
+
+        @Test
+        @DisplayName("Code can refer to data declared after it")
+        void testDataAfterCode()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV BX, values",
+                    "MOV AL, [BX+1]",
+                    ".SECT .DATA",
+                    "values: .BYTE 7, 8"
+            );
+
+            program.init(code);
+            program.execute();
+
+            assertEquals(8, program.getScope().getRegister8("AL"));
+        }
+
+        @Test
+        @DisplayName("Unlabelled .BYTE lines continue the data before them")
+        void testUnlabelledBytes()
+        {
+            String code = codeWritten(
+                    ".SECT .DATA",
+                    "numbers: .BYTE 1, 2",
+                    ".BYTE 3",
+                    ".SECT .TEXT",
+                    "MOV BX, numbers",
+                    "MOV AL, [BX+2]"
+            );
+
+            program.init(code);
+            program.execute();
+
+            assertEquals(3, program.getScope().getRegister8("AL"));
+        }
+
+        @Test
+        @DisplayName("A parse result can be loaded without parsing again")
+        void testInitFromParseResult()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV AX, 4",
+                    "ADD AX, 2"
+            );
+
+            program.init(new ASM8088ParserHelper().parseString(code));
+            program.execute();
+
+            assertEquals(6, program.getScope().getRegister16("AX"));
+        }
     }
 
-    /**
-     * Custom SecurityManager that prevents System.exit() calls by throwing an exception instead.
-     */
-    private static class NoExitSecurityManager extends SecurityManager 
+    @Nested
+    @DisplayName("Machine Code")
+    class MachineCodeTest
     {
-        @Override
-        public void checkPermission(Permission perm) 
+        private final ASM8088MachineProgram<ASM8088Instruction> machine = new ASM8088MachineProgram<>();
+
+        @Test
+        @DisplayName("Instructions are assembled to 8088 machine code")
+        void testEncoding()
         {
-            // Allow all permissions except exit
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV AX, 5",
+                    "ADD AX, BX",
+                    "CMP CX, 1",
+                    "MOVB AL, [BX+SI]",
+                    "PUSH 127",
+                    "SYS"
+            );
+
+            program.init(code);
+            ASM8088Assembler.Assembly assembly = ASM8088Assembler.assemble(program.getInstructions(), 0x100);
+
+            assertArrayEquals(new byte[] {
+                    (byte) 0xB8, 0x05, 0x00,
+                    0x01, (byte) 0xD8,
+                    (byte) 0x83, (byte) 0xF9, 0x01,
+                    (byte) 0x8A, 0x00,
+                    0x68, 0x7F, 0x00,
+                    (byte) 0xCD, 0x20
+            }, assembly.code);
+            assertArrayEquals(new int[] {0x100, 0x103, 0x105, 0x108, 0x10A, 0x10D, 0x10F}, assembly.addresses);
+        }
+
+        @Test
+        @DisplayName("Conditional jumps out of short range use a near jump")
+        void testFarConditionalJump()
+        {
+            String[] lines = new String[140];
+            lines[0] = ".SECT .TEXT";
+            lines[1] = "MOV AX, 1";
+            lines[2] = "CMP AX, 1";
+            lines[3] = "JE far";
+            for (int i = 4; i < lines.length - 2; i++) {
+                lines[i] = "MOV BX, 1000";
+            }
+            lines[lines.length - 2] = "far:";
+            lines[lines.length - 1] = "MOV CX, 7";
+
+            machine.init(codeWritten(lines));
+            machine.execute();
+
+            assertEquals(0, machine.getScope().getRegister16("BX"));
+            assertEquals(7, machine.getScope().getRegister16("CX"));
+        }
+
+        @Test
+        @DisplayName("Writing over the code drops the decoded instructions")
+        void testSelfModifyingCode()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV DX, 0",
+                    "again: MOV AX, 1",   // the immediate is at 0x104
+                    "ADD DX, AX",
+                    "MOVB [260], 5",
+                    "INC CX",
+                    "CMP CX, 2",
+                    "JNE again"
+            );
+
+            machine.init(code);
+            machine.execute();
+
+            assertEquals(6, machine.getScope().getRegister16("DX")); // 1 + 5
         }
 
-        @Override
-        public void checkPermission(Permission perm, Object context) 
+        @Test
+        @DisplayName("CALL pushes the return address")
+        void testCallPushesAddress()
         {
-            // Allow all permissions except exit
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "CALL func",        // 0x100, returns to 0x103
+                    "JMP end",
+                    "func: MOV BP, SP",
+                    "MOV AX, [BP+0]",
+                    "RET",
+                    "end:"
+            );
+
+            machine.init(code);
+            machine.execute();
+
+            assertEquals(0x103, machine.getScope().getRegister16("AX"));
         }
 
-        @Override
-        public void checkExit(int status) 
+        @Test
+        @DisplayName("Operands without an 8088 encoding are rejected")
+        void testRejectsUnencodableOperand()
         {
-            super.checkExit(status);
-            throw new ExitException(status);
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "MOV AX, [BX+DX]"
+            );
+
+            assertThrows(IllegalStateException.class, () -> machine.init(code));
         }
     }
 
-    /**
-     * Exception thrown when System.exit() is called.
-     */
-    private static class ExitException extends SecurityException 
+    @Nested
+    @DisplayName("Execution Context")
+    class ExecutionContextTest
+    {
+        @Test
+        @DisplayName("SYS EXIT should end the run with its code, without exiting the JVM")
+        void testExit()
+        {
+            String code = codeWritten(
+                    "_EXIT = 1",
+                    ".SECT .TEXT",
+                    "PUSH 3",
+                    "PUSH _EXIT",
+                    "SYS",
+                    "MOV BX, 1"
+            );
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ExecutionContext context = new ExecutionContext(false, InputStream.nullInputStream(),
+                    new PrintStream(output));
+
+            program.setContext(context);
+            program.init(code);
+            program.execute();
+
+            assertTrue(context.isExited());
+            assertEquals(3, context.getExitCode());
+            assertEquals(0, program.getScope().getRegister16("BX"), "No instruction should run after the exit");
+            assertTrue(output.toString().contains("Program exited with code: 3"));
+        }
+
+        @Test
+        @DisplayName("Programs on different threads should keep their own input, output and exit")
+        void testConcurrentRuns() throws Exception
+        {
+            String source = Files.readString(Paths.get("src/main/resources/examples/8088/8088_test_is_prime.asm"));
+            int[] numbers = {2, 3, 4, 5, 6, 7, 8, 9};
+            String[] expected = {"1", "1", "0", "1", "0", "1", "0", "0"};
+
+            ExecutorService executor = Executors.newFixedThreadPool(numbers.length);
+            CountDownLatch start = new CountDownLatch(1);
+
+            try {
+                List<Future<String>> outputs = new ArrayList<>();
+
+                for (int number : numbers)
+                {
+                    outputs.add(executor.submit(() -> {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        ExecutionContext context = new ExecutionContext(false,
+                                new ByteArrayInputStream((number + "\n").getBytes()), new PrintStream(output));
+
+                        ASM8088Program<ASM8088Instruction> concurrent = new ASM8088BlockProgram<>();
+                        concurrent.setContext(context);
+                        concurrent.init(source);
+
+                        start.await();
+                        concurrent.execute();
+
+                        assertTrue(context.isExited());
+                        assertEquals(0, context.getExitCode());
+                        return output.toString();
+                    }));
+                }
+
+                start.countDown();
+
+                for (int i = 0; i < numbers.length; i++) {
+                    assertEquals(expected[i], extractPrintedNumbers(outputs.get(i).get()).trim(),
+                            "Output mismatch for n=" + numbers[i]);
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Run Budget")
+    class RunBudgetTest
+    {
+        private final String loop = codeWritten(
+                ".SECT .TEXT",
+                "start:",
+                "INC AX",
+                "JMP start"
+        );
+
+        private Stream<ASM8088Program<ASM8088Instruction>> engines()
+        {
+            return Stream.of(new ASM8088Program<>(), new ASM8088BlockProgram<>(), new ASM8088MachineProgram<>());
+        }
+
+        private ExecutionContext context(ASM8088Program<ASM8088Instruction> engine)
+        {
+            ExecutionContext context = new ExecutionContext(false, InputStream.nullInputStream(),
+                    OutputStream.nullOutputStream());
+            engine.setContext(context);
+            return context;
+        }
+
+        @Test
+        @DisplayName("A loop should be stopped once it has used up its instruction limit, on every engine")
+        void testInstructionLimit()
+        {
+            engines().forEach(engine -> {
+                ExecutionContext context = context(engine);
+                context.setInstructionLimit(10_000);
+
+                engine.init(loop);
+                engine.execute();
+
+                String name = engine.getClass().getSimpleName();
+                long executed = engine.getExecutedInstructions();
+
+                assertEquals(BudgetExhaustedException.Reason.INSTRUCTIONS, context.getStopReason(), name);
+                assertTrue(executed >= 10_000 && executed < 10_010, name + " executed " + executed);
+                assertEquals(executed / 2, engine.getScope().getRegister16("AX"), name);
+            });
+        }
+
+        @Test
+        @DisplayName("A loop should be stopped once it has used up its time limit, on every engine")
+        void testTimeLimit()
+        {
+            engines().forEach(engine -> {
+                ExecutionContext context = context(engine);
+                context.setTimeLimit(Duration.ofMillis(20));
+
+                engine.init(loop);
+                engine.execute();
+
+                assertEquals(BudgetExhaustedException.Reason.TIME, context.getStopReason(),
+                        engine.getClass().getSimpleName());
+            });
+        }
+
+        @Test
+        @DisplayName("Runs on a fixed pool should be stopped when their shared token is cancelled")
+        void testCancellation() throws Exception
+        {
+            CancellationToken token = new CancellationToken();
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+
+            try {
+                List<ExecutionContext> contexts = new ArrayList<>();
+                List<Future<?>> runs = new ArrayList<>();
+
+                for (ASM8088Program<ASM8088Instruction> engine : engines().collect(Collectors.toList()))
+                {
+                    ExecutionContext context = context(engine);
+                    context.setCancellationToken(token);
+                    engine.init(loop);
+
+                    contexts.add(context);
+                    runs.add(executor.submit(engine::execute));
+                }
+
+                Thread.sleep(50);
+                token.cancel();
+
+                for (Future<?> run : runs) {
+                    run.get(5, TimeUnit.SECONDS);
+                }
+
+                for (ExecutionContext context : contexts) {
+                    assertEquals(BudgetExhaustedException.Reason.CANCELLED, context.getStopReason());
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Run Batch")
+    class RunBatchTest
     {
-        public final int status;
+        private final List<RunBatch.InputVector> vectors = List.of(
+                new RunBatch.InputVector("2\n", "1"),
+                new RunBatch.InputVector("4\n", "0"),
+                new RunBatch.InputVector("7\n", "1"),
+                new RunBatch.InputVector("9\n", "1"),
+                new RunBatch.InputVector("8\n", null)
+        );
 
-        public ExitException(int status) 
+        private ASM8088LinkedProgram image() throws IOException
         {
-            super("System.exit(" + status + ") called");
-            this.status = status;
+            return program.link(new ASM8088ParserHelper().parseString(
+                    Files.readString(Paths.get("src/main/resources/examples/8088/8088_test_is_prime.asm"))));
+        }
+
+        private void assertBatch(RunBatch batch)
+        {
+            List<RunBatch.Run> runs = batch.getRuns();
+            String[] outputs = {"1", "0", "1", "0", "0"};
+
+            assertEquals(vectors.size(), runs.size());
+
+            for (int i = 0; i < runs.size(); i++) {
+                assertSame(vectors.get(i), runs.get(i).getVector(), "Runs should keep the order of the vectors");
+                assertEquals(outputs[i], runs.get(i).getOutput().strip(), "Output mismatch for run " + i);
+                assertTrue(runs.get(i).isExited());
+                assertTrue(runs.get(i).getExecutedInstructions() > 0);
+            }
+
+            assertFalse(runs.get(3).isPassed(), "A run with an unexpected output should fail");
+            assertTrue(runs.get(4).isPassed(), "A run without an expected output should only have to end");
+            assertEquals(1, batch.getFailures());
+            assertTrue(batch.getRunsPerSecond() > 0);
+            assertTrue(batch.getInstructionsPerSecond() > 0);
+        }
+
+        @Test
+        @DisplayName("Every run should start from the pristine data of the shared image")
+        void testRunAll() throws IOException
+        {
+            ASM8088LinkedProgram image = image();
+
+            assertBatch(RunBatch.runAll(() -> {
+                ASM8088Program<ASM8088Instruction> run = new ASM8088Program<>();
+                run.init(image);
+                return run;
+            }, vectors, new ForkJoinPool(4)));
+
+            assertBatch(RunBatch.runAll(() -> {
+                ASM8088Program<ASM8088Instruction> run = new ASM8088BlockProgram<>();
+                run.init(image);
+                return run;
+            }, vectors, ForkJoinPool.commonPool()));
+        }
+
+        @Test
+        @DisplayName("A run that fails should be reported without stopping the batch")
+        void testFailedRun()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    ".BYTE 1"
+            );
+
+            ASM8088LinkedProgram image = program.link(new ASM8088ParserHelper().parseString(code));
+            RunBatch batch = RunBatch.runAll(() -> {
+                ASM8088Program<ASM8088Instruction> run = new ASM8088Program<>();
+                run.init(image);
+                return run;
+            }, vectors.subList(0, 2), ForkJoinPool.commonPool());
+
+            assertEquals(2, batch.getFailures());
+            assertNotNull(batch.getRuns().get(0).getError());
+        }
+
+        @Test
+        @DisplayName("A run that never ends should be stopped by its limit and fail")
+        void testStoppedRun()
+        {
+            String code = codeWritten(
+                    ".SECT .TEXT",
+                    "start:",
+                    "JMP start"
+            );
+
+            ASM8088LinkedProgram image = program.link(new ASM8088ParserHelper().parseString(code));
+            RunBatch batch = RunBatch.runAll(() -> {
+                ASM8088Program<ASM8088Instruction> run = new ASM8088BlockProgram<>();
+                run.init(image);
+                return run;
+            }, vectors.subList(0, 2), ForkJoinPool.commonPool(), context -> context.setInstructionLimit(1_000));
+
+            assertEquals(2, batch.getFailures());
+            assertEquals(BudgetExhaustedException.Reason.INSTRUCTIONS, batch.getRuns().get(0).getStopReason());
+            assertNull(batch.getRuns().get(0).getError());
         }
     }
-} 
\ No newline at end of file
+}
@@ -4,24 +4,62 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import xyz.atom7.api.interpreter.BudgetExhaustedException;
+import xyz.atom7.api.interpreter.CancellationToken;
+import xyz.atom7.api.interpreter.ExecutionContext;
+import xyz.atom7.api.interpreter.ProgramCache;
+import xyz.atom7.api.interpreter.RunBatch;
+import xyz.atom7.api.io.BufferedOutputChannel;
+import xyz.atom7.api.io.InputChannel;
+import xyz.atom7.api.io.MemoryOutputChannel;
+import xyz.atom7.api.io.OutputChannel;
+import xyz.atom7.api.session.Session;
+import xyz.atom7.api.session.SessionService;
+import xyz.atom7.interpreter.ijvm.IJVMImage;
 import xyz.atom7.interpreter.ijvm.IJVMInstruction;
+import xyz.atom7.interpreter.ijvm.IJVMLinkedProgram;
+import xyz.atom7.interpreter.ijvm.IJVMMethod;
 import xyz.atom7.interpreter.ijvm.IJVMProgram;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.Permission;
-import java.util.Stack;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static xyz.atom7.Utils.codeWritten;
 
@@ -29,6 +67,9 @@ public class IJVMProgramTest
 {
     private IJVMProgram<IJVMInstruction> program;
 
+    @TempDir
+    Path cacheDirectory;
+
     @BeforeEach
     void setUp()
     {
@@ -86,70 +127,130 @@ public class IJVMProgramTest
     @DisplayName("IJVM Example Files")
     void testIJVMExampleFiles(String testName, String fileName, String inputs, String expectedOutput)
     {
-        // Custom SecurityManager to catch System.exit calls
-        SecurityManager originalSecurityManager = System.getSecurityManager();
-        System.setSecurityManager(new NoExitSecurityManager());
-        
+        runExampleFile(IJVMProgramTest::load, testName, fileName, inputs, expectedOutput);
+    }
+
+    /**
+     * Runs the IJVM example files with every method compiled as soon as possible, which must produce the
+     * same output as the interpreter.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("ijvmTestCases")
+    @DisplayName("IJVM Example Files (JIT)")
+    void testIJVMExampleFilesJit(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> {
+            IJVMProgram<IJVMInstruction> jitProgram = new IJVMProgram<>();
+            jitProgram.setJitThreshold(0);
+            jitProgram.init(source);
+            return jitProgram;
+        }, testName, fileName, inputs, expectedOutput);
+    }
+
+    /**
+     * Runs the IJVM example files from their binary image, which must produce the same output as the source
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("ijvmTestCases")
+    @DisplayName("IJVM Example Files (binary image)")
+    void testIJVMExampleFilesImage(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> {
+            IJVMProgram<IJVMInstruction> imageProgram = new IJVMProgram<>();
+            imageProgram.init(roundTrip(load(source).getLinkedProgram()));
+            return imageProgram;
+        }, testName, fileName, inputs, expectedOutput);
+    }
+
+    /**
+     * Runs the IJVM example files from the on-disk program cache: a first cache loads and stores each
+     * program, and a second one, like a later process, reads it back without parsing
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("ijvmTestCases")
+    @DisplayName("IJVM Example Files (program cache)")
+    void testIJVMExampleFilesCached(String testName, String fileName, String inputs, String expectedOutput)
+    {
+        runExampleFile(source -> {
+            new IJVMProgram<>().init(source, IJVMProgram.newCache(1, cacheDirectory));
+
+            ProgramCache<IJVMLinkedProgram> cache = IJVMProgram.newCache(1, cacheDirectory);
+            IJVMProgram<IJVMInstruction> cachedProgram = new IJVMProgram<>();
+            cachedProgram.init(source, cache);
+
+            assertEquals(1, cache.getMisses());
+            return cachedProgram;
+        }, testName, fileName, inputs, expectedOutput);
+    }
+
+    private static IJVMProgram<IJVMInstruction> load(String source)
+    {
+        IJVMProgram<IJVMInstruction> loaded = new IJVMProgram<>();
+        loaded.init(source);
+        return loaded;
+    }
+
+    /**
+     * Writes a linked program to an image file and maps it back
+     */
+    private static IJVMLinkedProgram roundTrip(IJVMLinkedProgram linkedProgram)
+    {
         try {
-            // Read the file content
-            Path filePath = Paths.get("src/main/resources/examples/ijvm/" + fileName);
-            String fileContent = Files.readString(filePath);
-
-            // Prepare input stream if inputs are provided
-            InputStream originalIn = System.in;
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            PrintStream originalOut = System.out;
-            
+            Path image = Files.createTempFile("program", IJVMImage.EXTENSION);
+
             try {
-                // Redirect input if needed
-                if (inputs != null && !inputs.trim().isEmpty()) {
-                    // For IJVM input, we need to simulate entering numbers followed by semicolons (0x3b)
-                    StringBuilder inputBuilder = new StringBuilder();
-                    String[] inputValues = inputs.split(",");
-                    for (String value : inputValues) {
-                        // Each number is entered digit by digit, followed by semicolon
-                        String trimmedValue = value.trim();
-                        for (char digit : trimmedValue.toCharArray()) {
-                            inputBuilder.append(digit).append("\n");
-                        }
-                        inputBuilder.append(";").append("\n"); // semicolon acts as enter (0x3b)
-                    }
-                    System.setIn(new ByteArrayInputStream(inputBuilder.toString().getBytes()));
-                }
+                IJVMImage.write(linkedProgram, image);
+                return IJVMImage.read(image);
+            }
+            finally {
+                Files.delete(image);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                // Capture output
-                System.setOut(new PrintStream(outputStream));
+    private void runExampleFile(Function<String, IJVMProgram<IJVMInstruction>> loader,
+                                String testName, String fileName, String inputs, String expectedOutput)
+    {
+        String fileContent = readExample(fileName);
 
-                // Create and run the program
-                IJVMProgram<IJVMInstruction> testProgram = new IJVMProgram<>();
-                testProgram.init(fileContent);
-                
-                try {
-                    testProgram.execute();
-                } catch (ExitException e) {
-                    // Expected when HALT instruction calls System.exit
-                    // This is normal program termination
-                }
+        // For IJVM input, every digit is entered on a line of its own, and a semicolon (0x3b) ends each number
+        StringBuilder input = new StringBuilder();
 
-            } finally {
-                // Restore original streams
-                System.setIn(originalIn);
-                System.setOut(originalOut);
+        if (inputs != null && !inputs.trim().isEmpty()) {
+            for (String value : inputs.split(",")) {
+                for (char digit : value.trim().toCharArray()) {
+                    input.append(digit).append("\n");
+                }
+                input.append(";").append("\n");
             }
+        }
+
+        MemoryOutputChannel output = OutputChannel.memory();
+        ExecutionContext context = new ExecutionContext(false, InputChannel.of(input.toString()), output);
 
-            // Get the captured output and extract just the printed numbers
-            String output = outputStream.toString();
-            String actualOutput = extractPrintedNumbers(output);
-            
-            // Compare with expected output
-            assertEquals(expectedOutput.trim(), actualOutput.trim(), 
+        IJVMProgram<IJVMInstruction> testProgram = loader.apply(fileContent);
+        testProgram.setContext(context);
+        testProgram.execute();
+
+        assertTrue(context.isExited(), testName + " should end with HALT");
+        assertEquals(0, context.getExitCode());
+
+        // Compare the output printed by HALT with the expected output
+        String actualOutput = extractPrintedNumbers(output.toString());
+        assertEquals(expectedOutput.trim(), actualOutput.trim(),
                 "Output mismatch for " + testName + ". Full captured output: " + output);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to test " + fileName + ": " + e.getMessage(), e);
-        } finally {
-            // Restore original security manager
-            System.setSecurityManager(originalSecurityManager);
+    private static String readExample(String fileName)
+    {
+        try {
+            return Files.readString(Paths.get("src/main/resources/examples/ijvm/" + fileName));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -157,49 +258,17 @@ public class IJVMProgramTest
     @DisplayName("Tanenbaum Test (no input required)")
     void testTanenbaumExample()
     {
-        // Custom SecurityManager to catch System.exit calls
-        SecurityManager originalSecurityManager = System.getSecurityManager();
-        System.setSecurityManager(new NoExitSecurityManager());
-        
-        try {
-            // Read the Tanenbaum test file
-            Path filePath = Paths.get("src/main/resources/examples/ijvm/ijvm_test_Tanenbaum_(16-02-1999).jas");
-            String fileContent = Files.readString(filePath);
-
-            // Capture output
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            PrintStream originalOut = System.out;
-            
-            try {
-                System.setOut(new PrintStream(outputStream));
+        MemoryOutputChannel output = OutputChannel.memory();
+        ExecutionContext context = new ExecutionContext(false, InputChannel.of(""), output);
 
-                // Create and run the program
-                IJVMProgram<IJVMInstruction> testProgram = new IJVMProgram<>();
-                testProgram.init(fileContent);
-                
-                try {
-                    testProgram.execute();
-                } catch (ExitException e) {
-                    // Expected when HALT instruction calls System.exit
-                    // This is normal program termination
-                }
+        IJVMProgram<IJVMInstruction> testProgram = new IJVMProgram<>();
+        testProgram.setContext(context);
+        testProgram.init(readExample("ijvm_test_Tanenbaum_(16-02-1999).jas"));
+        testProgram.execute();
 
-            } finally {
-                System.setOut(originalOut);
-            }
-
-            // Get the captured output
-            String output = outputStream.toString();
-            
-            // The Tanenbaum test should output "OK" (characters 79, 75)
-            assertTrue(output.contains("OK"), "Tanenbaum test should output 'OK'. Actual output: " + output);
-
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to test Tanenbaum example: " + e.getMessage(), e);
-        } finally {
-            // Restore original security manager
-            System.setSecurityManager(originalSecurityManager);
-        }
+        // The Tanenbaum test should output "OK" (characters 79, 75)
+        assertTrue(context.isExited());
+        assertTrue(output.toString().contains("OK"), "Tanenbaum test should output 'OK'. Actual output: " + output);
     }
 
     /**
@@ -241,47 +310,6 @@ public class IJVMProgramTest
         return result.toString();
     }
 
-    /**
-     * Custom SecurityManager that prevents System.exit() calls by throwing an exception instead.
-     * This allows us to test programs that call System.exit() without terminating the test JVM.
-     */
-    private static class NoExitSecurityManager extends SecurityManager 
-    {
-        @Override
-        public void checkPermission(Permission perm) 
-        {
-            // Allow all permissions except exit
-        }
-
-        @Override
-        public void checkPermission(Permission perm, Object context) 
-        {
-            // Allow all permissions except exit
-        }
-
-        @Override
-        public void checkExit(int status) 
-        {
-            super.checkExit(status);
-            throw new ExitException(status);
-        }
-    }
-
-    /**
-     * Exception thrown when System.exit() is called, allowing us to catch it
-     * instead of terminating the JVM.
-     */
-    private static class ExitException extends SecurityException 
-    {
-        public final int status;
-
-        public ExitException(int status) 
-        {
-            super("System.exit(" + status + ") called");
-            this.status = status;
-        }
-    }
-
     @Nested
     @DisplayName("Stack Operation Instructions")
     class StackOperationInstructionsTest
@@ -634,6 +662,44 @@ public class IJVMProgramTest
     @DisplayName("Method Invocation")
     class MethodInvocationTest
     {
+        private final String summing = codeWritten(
+                ".constant",
+                "OBJREF 0x0",
+                ".end-constant",
+
+                ".main",
+                ".var",
+                "i",
+                "total",
+                ".end-var",
+                "BIPUSH 10",
+                "ISTORE i",
+                "BIPUSH 0",
+                "ISTORE total",
+                "loop:",
+                "ILOAD i",
+                "IFEQ done",
+                "LDC_W OBJREF",
+                "ILOAD total",
+                "ILOAD i",
+                "INVOKEVIRTUAL add",
+                "ISTORE total",
+                "IINC i -1",
+                "GOTO loop",
+                "done:",
+                "ILOAD total",
+                ".end-main",
+
+                ".method add(a, b)",
+                ".var",
+                ".end-var",
+                "ILOAD a",
+                "ILOAD b",
+                "IADD",
+                "IRETURN",
+                ".end-method"
+        );
+
         @Test
         @DisplayName("INVOKEVIRTUAL should call a method and return a value")
         void testInvokeVirtual()
@@ -670,6 +736,121 @@ public class IJVMProgramTest
             assertEquals(1, stack.size());
             assertEquals(12, stack.get(0));
         }
+
+        @Test
+        @DisplayName("Hot methods should run compiled with the same result")
+        void testJitCompiledMethod()
+        {
+            program.setJitThreshold(0);
+            program.init(summing);
+            program.execute();
+
+            var stack = getStackFromMain(program);
+            assertEquals(1, stack.size());
+            assertEquals(55, stack.get(0));
+            assertEquals(2, program.getCompiledMethodCount());
+        }
+
+        @Test
+        @DisplayName("Runs sharing a linked program should share its compiled methods")
+        void testJitSharedCode()
+        {
+            program.setJitThreshold(0);
+            program.init(summing);
+            program.execute();
+
+            // never hot enough to compile on its own
+            IJVMProgram<IJVMInstruction> other = new IJVMProgram<>();
+            other.setJitThreshold(Integer.MAX_VALUE);
+            other.init(program.getLinkedProgram());
+            other.execute();
+
+            assertEquals(List.of(55), getStackFromMain(other));
+            assertEquals(2, other.getCompiledMethodCount());
+        }
+
+        @Test
+        @DisplayName("Calls between compiled methods should not allocate")
+        void testJitCallsDoNotAllocate()
+        {
+            String code = codeWritten(
+                    ".constant",
+                    "OBJREF 0x0",
+                    "CALLS 100000",
+                    ".end-constant",
+
+                    ".main",
+                    ".var",
+                    "i",
+                    ".end-var",
+                    "LDC_W CALLS",
+                    "ISTORE i",
+                    "loop:",
+                    "ILOAD i",
+                    "IFEQ done",
+                    "LDC_W OBJREF",
+                    "ILOAD i",
+                    "BIPUSH 1",
+                    "INVOKEVIRTUAL add",
+                    "POP",
+                    "IINC i -1",
+                    "GOTO loop",
+                    "done:",
+                    ".end-main",
+
+                    ".method add(a, b)",
+                    ".var",
+                    "c",
+                    ".end-var",
+                    "ILOAD a",
+                    "ILOAD b",
+                    "IADD",
+                    "IRETURN",
+                    ".end-method"
+            );
+
+            var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            program.setJitThreshold(0);
+            program.init(code);
+            program.execute();
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            program.execute();
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            assertEquals(2, program.getCompiledMethodCount());
+            assertTrue(allocated < 256 * 1024, "100000 compiled calls allocated " + allocated + " bytes");
+        }
+
+        @Test
+        @DisplayName("Batch runs with the JIT should share the compiled methods of their image")
+        void testJitBatch()
+        {
+            program.init(summing);
+            IJVMLinkedProgram image = program.getLinkedProgram();
+
+            List<RunBatch.InputVector> vectors = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                vectors.add(new RunBatch.InputVector("", null));
+            }
+
+            RunBatch batch = RunBatch.runAll(() -> {
+                IJVMProgram<IJVMInstruction> run = new IJVMProgram<>();
+                run.setJitThreshold(0);
+                run.init(image);
+                return run;
+            }, vectors, new ForkJoinPool(4));
+
+            assertEquals(0, batch.getFailures());
+
+            IJVMProgram<IJVMInstruction> other = new IJVMProgram<>();
+            other.setJitThreshold(Integer.MAX_VALUE);
+            other.init(image);
+            other.execute();
+
+            assertEquals(2, other.getCompiledMethodCount());
+        }
     }
     
     @Nested
@@ -701,6 +882,214 @@ public class IJVMProgramTest
         }
     }
 
+    @Nested
+    @DisplayName("Binary Image")
+    class BinaryImageTest
+    {
+        @Test
+        @DisplayName("An image should keep the code, the symbols and the layout of every method")
+        void testRoundTrip() throws IOException
+        {
+            Path filePath = Paths.get("src/main/resources/examples/ijvm/ijvm_test_3_(8-05-2024).jas");
+            IJVMLinkedProgram linked = load(Files.readString(filePath)).getLinkedProgram();
+            IJVMLinkedProgram image = roundTrip(linked);
+
+            assertEquals(linked.getConstantCount(), image.getConstantCount());
+
+            for (int i = 0; i < linked.getConstantCount(); i++)
+            {
+                assertEquals(linked.getConstant(i), image.getConstant(i));
+                assertEquals(linked.getConstantName(i), image.getConstantName(i));
+            }
+
+            assertEquals(linked.getMethodCount(), image.getMethodCount());
+
+            for (int i = 0; i < linked.getMethodCount(); i++)
+            {
+                IJVMMethod expected = linked.getMethod(i);
+                IJVMMethod actual = image.getMethod(i);
+
+                assertEquals(expected.toString(), actual.toString());
+
+                for (int slot = 0; slot < expected.getLocalCount(); slot++) {
+                    assertEquals(expected.getLocalName(slot), actual.getLocalName(slot));
+                }
+
+                for (int pc = 0; pc < expected.getInstructions().size(); pc++)
+                {
+                    IJVMInstruction expectedInstruction = expected.getInstructions().get(pc);
+                    IJVMInstruction actualInstruction = actual.getInstructions().get(pc);
+
+                    assertEquals(expectedInstruction.getOpcode(), actualInstruction.getOpcode());
+                    assertEquals(expectedInstruction.getOperand(), actualInstruction.getOperand());
+                    assertEquals(expectedInstruction.getValue(), actualInstruction.getValue());
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("An image should run like its source")
+        void testRunImage()
+        {
+            String code = codeWritten(
+                    ".constant",
+                    "OBJREF 0x0",
+                    ".end-constant",
+
+                    ".main",
+                    ".var",
+                    "a",
+                    ".end-var",
+                    "LDC_W OBJREF",
+                    "BIPUSH 42",
+                    "INVOKEVIRTUAL half",
+                    "ISTORE a",
+                    "IINC a 1",
+                    "ILOAD a",
+                    ".end-main",
+
+                    ".method half(x)",
+                    ".var",
+                    ".end-var",
+                    "ILOAD x",
+                    "BIPUSH 21",
+                    "ISUB",
+                    "IRETURN",
+                    ".end-method"
+            );
+
+            program.init(roundTrip(load(code).getLinkedProgram()));
+            program.execute();
+
+            var stack = getStackFromMain(program);
+            assertEquals(1, stack.size());
+            assertEquals(22, stack.get(0));
+        }
+
+        @Test
+        @DisplayName("A file that is not an image should be rejected")
+        void testRejectsInvalidImage()
+        {
+            byte[] garbage = "not an image".getBytes();
+
+            assertThrows(IllegalArgumentException.class, () -> IJVMImage.read(ByteBuffer.wrap(garbage)));
+            assertThrows(IllegalArgumentException.class, () -> IJVMImage.read(ByteBuffer.wrap(new byte[] {0x1D})));
+        }
+
+        @ParameterizedTest(name = "count={0}")
+        @ValueSource(ints = {-1, Integer.MIN_VALUE, Integer.MAX_VALUE})
+        @DisplayName("An image with a corrupt count should be rejected")
+        void testRejectsCorruptCount(int count)
+        {
+            byte[] image = corruptImage(count);
+
+            assertThrows(IllegalArgumentException.class, () -> IJVMImage.read(ByteBuffer.wrap(image)));
+        }
+
+        static Stream<Arguments> corruptMethods()
+        {
+            return Stream.of(
+                    Arguments.of("ILOAD a", "arguments", -1),
+                    Arguments.of("ILOAD a", "arguments", 2),
+                    Arguments.of("ILOAD a", "stack", -1),
+                    Arguments.of("ILOAD a", "stack", Integer.MAX_VALUE),
+                    Arguments.of("ILOAD a", "operand", 1),
+                    Arguments.of("ISTORE a", "operand", -1),
+                    Arguments.of("IINC a 1", "operand", 1),
+                    Arguments.of("GOTO end", "operand", 99),
+                    Arguments.of("LDC_W OBJREF", "operand", 1),
+                    Arguments.of("INVOKEVIRTUAL zero", "operand", 2)
+            );
+        }
+
+        @ParameterizedTest(name = "{0}: {1}={2}")
+        @MethodSource("corruptMethods")
+        @DisplayName("An image with a method that refers outside its tables should be rejected when read")
+        void testRejectsCorruptMethod(String instruction, String field, int value)
+        {
+            byte[] image = corruptMethod(instruction, field, value);
+
+            assertThrows(IllegalArgumentException.class, () -> IJVMImage.read(ByteBuffer.wrap(image)));
+        }
+    }
+
+    /**
+     * Build the image of a program whose main block runs the given instruction once its local is set, with a field
+     * of the main block overwritten: its argument count, its stack size, or the operand of that instruction
+     */
+    private static byte[] corruptMethod(String instruction, String field, int value)
+    {
+        String code = codeWritten(
+                ".constant",
+                "OBJREF 0x0",
+                ".end-constant",
+                ".main",
+                ".var",
+                "a",
+                ".end-var",
+                "BIPUSH 0",
+                "ISTORE a",
+                instruction,
+                "end:",
+                "HALT",
+                ".end-main",
+                ".method zero()",
+                "BIPUSH 0",
+                "IRETURN",
+                ".end-method"
+        );
+
+        ByteBuffer image = ByteBuffer.wrap(IJVMImage.toBytes(load(code).getLinkedProgram()));
+        assertDoesNotThrow(() -> IJVMImage.read(image.duplicate()), "The image should be valid before it is corrupted");
+
+        // skip the header and the constant pool, then the method count and the name of the main block
+        int position = 6;
+        int constantCount = image.getInt(position);
+        position += 4;
+
+        for (int i = 0; i < constantCount; i++) {
+            position += 6 + Short.toUnsignedInt(image.getShort(position + 4));
+        }
+
+        position += 4;
+        position += 2 + Short.toUnsignedInt(image.getShort(position));
+
+        int argumentCount = position;
+        int maxStack = position + 4;
+        int localCount = image.getInt(position + 8);
+        position += 12;
+
+        for (int i = 0; i < localCount; i++) {
+            position += 2 + Short.toUnsignedInt(image.getShort(position));
+        }
+
+        // the code length, BIPUSH and ISTORE with their operands, then the opcode of the instruction
+        int operand = position + 15;
+
+        if (field.equals("arguments")) {
+            image.putInt(argumentCount, value);
+        }
+        else if (field.equals("stack")) {
+            image.putInt(maxStack, value);
+        }
+        else {
+            image.putInt(operand, value);
+        }
+
+        return image.array();
+    }
+
+    /**
+     * Build an image with a valid header followed by a constant count, and nothing else
+     */
+    private byte[] corruptImage(int constantCount)
+    {
+        program.init(codeWritten(".main", "BIPUSH 1", ".end-main"));
+        byte[] header = IJVMImage.toBytes(program.getLinkedProgram());
+
+        return ByteBuffer.allocate(10).put(header, 0, 6).putInt(constantCount).array();
+    }
+
     @Test
     @DisplayName("Should iterate until zero")
     void testIter()
@@ -774,8 +1163,618 @@ public class IJVMProgramTest
         assertEquals(10, stack.get(0));  // Sum of 1+2+3+4 = 10
     }
 
-    private Stack<Integer> getStackFromMain(IJVMProgram<?> program)
+    @Nested
+    @DisplayName("Execution Context")
+    class ExecutionContextTest
+    {
+        private final String code = codeWritten(
+                ".main",
+                ".var",
+                "c",
+                ".end-var",
+                "IN",
+                "ISTORE c",
+                "ILOAD c",
+                "OUT",
+                "ILOAD c",
+                "BIPUSH 1",
+                "IADD",
+                "OUT",
+                "HALT",
+                "BIPUSH 1",
+                ".end-main"
+        );
+
+        private String run(IJVMProgram<IJVMInstruction> program, String input)
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ExecutionContext context = new ExecutionContext(false, new ByteArrayInputStream(input.getBytes()),
+                    new PrintStream(output));
+
+            program.setContext(context);
+            program.execute();
+
+            assertTrue(context.isExited(), "HALT should end the run");
+            assertEquals(0, context.getExitCode());
+            assertTrue(getStackFromMain(program).isEmpty(), "No instruction should run after HALT");
+            return extractPrintedNumbers(output.toString());
+        }
+
+        @Test
+        @DisplayName("HALT should end the run without exiting the JVM")
+        void testHalt()
+        {
+            program.init(code);
+            assertEquals("AB", run(program, "A\n"));
+
+            program.setJitThreshold(0);
+            assertEquals("xy", run(program, "x\n"), "A rerun should start with an empty output");
+        }
+
+        @Test
+        @DisplayName("Programs on different threads should keep their own input, output and exit")
+        void testConcurrentRuns() throws Exception
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            CountDownLatch start = new CountDownLatch(1);
+
+            try {
+                List<Future<String>> outputs = new ArrayList<>();
+
+                for (int i = 0; i < 8; i++)
+                {
+                    String input = (char) ('a' + 2 * i) + "\n";
+                    boolean jit = i % 2 == 0;
+
+                    outputs.add(executor.submit(() -> {
+                        IJVMProgram<IJVMInstruction> concurrent = new IJVMProgram<>();
+                        concurrent.setJitThreshold(jit ? 0 : -1);
+                        concurrent.init(code);
+
+                        start.await();
+                        return run(concurrent, input);
+                    }));
+                }
+
+                start.countDown();
+
+                for (int i = 0; i < 8; i++) {
+                    String expected = "" + (char) ('a' + 2 * i) + (char) ('b' + 2 * i);
+                    assertEquals(expected, outputs.get(i).get());
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Run Budget")
+    class RunBudgetTest
+    {
+        private final String loop = codeWritten(
+                ".main",
+                "LOOP:",
+                "BIPUSH 1",
+                "POP",
+                "GOTO LOOP",
+                ".end-main"
+        );
+
+        private final String recursion = codeWritten(
+                ".constant",
+                "OBJREF 0x0",
+                ".end-constant",
+                ".main",
+                "LDC_W OBJREF",
+                "INVOKEVIRTUAL forever",
+                ".end-main",
+                ".method forever()",
+                "LDC_W OBJREF",
+                "INVOKEVIRTUAL forever",
+                "IRETURN",
+                ".end-method"
+        );
+
+        private ExecutionContext context()
+        {
+            ExecutionContext context = new ExecutionContext(false, InputStream.nullInputStream(),
+                    OutputStream.nullOutputStream());
+            program.setContext(context);
+            return context;
+        }
+
+        @ParameterizedTest(name = "jitThreshold={0}")
+        @ValueSource(ints = {-1, 0})
+        @DisplayName("A loop should be stopped once it has used up its instruction limit, on every run")
+        void testInstructionLimit(int jitThreshold)
+        {
+            ExecutionContext context = context();
+            context.setInstructionLimit(10_000);
+
+            program.setJitThreshold(jitThreshold);
+            program.init(loop);
+
+            for (int run = 1; run <= 2; run++)
+            {
+                long before = program.getExecutedInstructions();
+                program.execute();
+                long executed = program.getExecutedInstructions() - before;
+
+                assertTrue(context.isStopped());
+                assertEquals(BudgetExhaustedException.Reason.INSTRUCTIONS, context.getStopReason());
+                assertFalse(context.isExited());
+                assertTrue(executed >= 10_000 && executed < 10_010, "Run " + run + " executed " + executed);
+            }
+        }
+
+        @Test
+        @DisplayName("Calls should be safepoints too")
+        void testRecursion()
+        {
+            ExecutionContext context = context();
+            context.setInstructionLimit(1_000);
+
+            program.init(recursion);
+            program.execute();
+
+            assertEquals(BudgetExhaustedException.Reason.INSTRUCTIONS, context.getStopReason());
+        }
+
+        @Test
+        @DisplayName("A loop should be stopped once it has used up its time limit")
+        void testTimeLimit()
+        {
+            ExecutionContext context = context();
+            context.setTimeLimit(Duration.ofMillis(50));
+
+            program.setJitThreshold(0);
+            program.init(loop);
+
+            long start = System.nanoTime();
+            program.execute();
+
+            assertEquals(BudgetExhaustedException.Reason.TIME, context.getStopReason());
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        }
+
+        @ParameterizedTest(name = "jitThreshold={0}")
+        @ValueSource(ints = {-1, 0})
+        @DisplayName("A run should be stopped when it is cancelled from another thread")
+        void testCancellation(int jitThreshold) throws Exception
+        {
+            ExecutionContext context = context();
+            CancellationToken token = new CancellationToken();
+            context.setCancellationToken(token);
+
+            program.setJitThreshold(jitThreshold);
+            program.init(loop);
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            try {
+                Future<?> run = executor.submit(program::execute);
+
+                Thread.sleep(50);
+                assertFalse(run.isDone(), "The loop should still be running");
+
+                token.cancel();
+                run.get(5, TimeUnit.SECONDS);
+
+                assertEquals(BudgetExhaustedException.Reason.CANCELLED, context.getStopReason());
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("A run within its budget should not be stopped")
+        void testWithinBudget()
+        {
+            ExecutionContext context = context();
+            context.setInstructionLimit(1_000);
+            context.setTimeLimit(Duration.ofSeconds(10));
+
+            program.init(codeWritten(
+                    ".main",
+                    "BIPUSH 3",
+                    "LOOP:",
+                    "BIPUSH -1",
+                    "IADD",
+                    "DUP",
+                    "IFEQ END",
+                    "GOTO LOOP",
+                    "END:",
+                    ".end-main"
+            ));
+            program.execute();
+
+            assertFalse(context.isStopped());
+            assertNull(context.getStopReason());
+        }
+    }
+
+    @Nested
+    @DisplayName("I/O Channels")
+    class ChannelTest
+    {
+        private final String echo = codeWritten(
+                ".main",
+                "LOOP:",
+                "IN",
+                "DUP",
+                "BIPUSH 46",
+                "IF_ICMPEQ END",
+                "OUT",
+                "GOTO LOOP",
+                "END:",
+                "HALT",
+                ".end-main"
+        );
+
+        @Test
+        @DisplayName("IN should read the first character of every non-empty line, and OUT should be captured in memory")
+        void testMemoryChannels()
+        {
+            MemoryOutputChannel output = OutputChannel.memory();
+            ExecutionContext context = new ExecutionContext(false, InputChannel.of("ab\r\n\n\nc\r\nd\n."), output);
+            context.setReportExit(false);
+
+            program.setContext(context);
+            program.init(echo);
+            program.execute();
+
+            assertEquals("acd", output.toString());
+        }
+
+        @Test
+        @DisplayName("Output larger than the buffer should reach the stream in order")
+        void testBufferedOutput()
+        {
+            StringBuilder input = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+
+            for (int i = 0; i < 3 * BufferedOutputChannel.BUFFER_SIZE; i++) {
+                char c = (char) ('a' + i % 26);
+                input.append(c).append('\n');
+                expected.append(c);
+            }
+
+            input.append(".\n");
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ExecutionContext context = new ExecutionContext(false,
+                    new ByteArrayInputStream(input.toString().getBytes()), output);
+            context.setReportExit(false);
+
+            program.setContext(context);
+            program.init(echo);
+            program.execute();
+
+            assertEquals(expected.toString(), output.toString());
+        }
+
+        @Test
+        @DisplayName("The output should be flushed before a read that may block")
+        void testFlushBeforeRead()
+        {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            List<String> flushedBeforeRead = new ArrayList<>();
+
+            // an input that records what had been written when it was read from
+            InputStream input = new InputStream()
+            {
+                private final byte[] line = "x\n".getBytes();
+                private int position;
+
+                @Override
+                public int read()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length)
+                {
+                    flushedBeforeRead.add(output.toString());
+
+                    if (position == line.length) {
+                        return -1;
+                    }
+
+                    bytes[offset] = line[position++];
+                    return 1;
+                }
+            };
+
+            program.setContext(new ExecutionContext(false, input, output));
+            program.init(codeWritten(
+                    ".main",
+                    "BIPUSH 63",
+                    "OUT",
+                    "IN",
+                    "OUT",
+                    ".end-main"
+            ));
+            program.execute();
+
+            assertEquals("?", flushedBeforeRead.get(0), "The prompt should be written before the program waits");
+            assertEquals("?x", output.toString());
+        }
+    }
+
+    @Nested
+    @DisplayName("Sessions")
+    class SessionServiceTest
+    {
+        private final String echo = codeWritten(
+                ".main",
+                "BIPUSH 62",
+                "OUT",
+                "LOOP:",
+                "IN",
+                "DUP",
+                "BIPUSH 46",
+                "IF_ICMPEQ END",
+                "OUT",
+                "GOTO LOOP",
+                "END:",
+                "HALT",
+                ".end-main"
+        );
+
+        private IJVMLinkedProgram linked()
+        {
+            program.init(echo);
+            return program.getLinkedProgram();
+        }
+
+        private IJVMProgram<IJVMInstruction> newProgram(IJVMLinkedProgram linked)
+        {
+            IJVMProgram<IJVMInstruction> session = new IJVMProgram<>();
+            session.init(linked);
+            return session;
+        }
+
+        @Test
+        @DisplayName("Thousands of sessions should wait for input at once, and stream their output back")
+        void testManySessions()
+        {
+            int count = 10_000;
+            IJVMLinkedProgram linked = linked();
+
+            try (SessionService service = new SessionService()) {
+                List<Session> sessions = new ArrayList<>();
+                List<StringBuilder> outputs = new ArrayList<>();
+
+                for (int i = 0; i < count; i++) {
+                    StringBuilder output = new StringBuilder();
+                    outputs.add(output);
+                    sessions.add(service.open(newProgram(linked), output::append));
+                }
+
+                assertEquals(count, service.getActiveSessions(), "Every session should be waiting for input");
+
+                for (int i = 0; i < count; i++) {
+                    Session session = sessions.get(i);
+                    session.sendLine(String.valueOf((char) ('a' + i % 26)));
+                    session.send("b\n.\n");
+                }
+
+                for (int i = 0; i < count; i++) {
+                    Session session = sessions.get(i);
+                    session.getCompletion().join();
+
+                    assertNull(session.getFailure());
+                    assertFalse(session.getContext().isStopped());
+                    assertEquals(">" + (char) ('a' + i % 26) + "b", outputs.get(i).toString());
+                }
+
+                assertEquals(0, service.getActiveSessions());
+            }
+        }
+
+        @Test
+        @DisplayName("The output should be streamed before the program waits for more input")
+        void testInteractive() throws Exception
+        {
+            BlockingQueue<String> outputs = new LinkedBlockingQueue<>();
+
+            try (SessionService service = new SessionService()) {
+                Session session = service.open(newProgram(linked()), outputs::add);
+
+                assertEquals(">", outputs.poll(5, TimeUnit.SECONDS));
+
+                session.sendLine("x");
+                assertEquals("x", outputs.poll(5, TimeUnit.SECONDS));
+
+                session.sendLine("yz");
+                assertEquals("y", outputs.poll(5, TimeUnit.SECONDS));
+
+                session.sendLine(".");
+                assertSame(session, session.getCompletion().get(5, TimeUnit.SECONDS));
+                assertNull(service.getSession(session.getId()));
+            }
+        }
+
+        @Test
+        @DisplayName("A session waiting for input should be stopped when it is cancelled")
+        void testCancelWaiting() throws Exception
+        {
+            try (SessionService service = new SessionService()) {
+                Session session = service.open(newProgram(linked()), output -> {});
+
+                Thread.sleep(50);
+                assertFalse(session.isDone());
+                assertSame(session, service.getSession(session.getId()));
+
+                session.cancel();
+                session.getCompletion().get(5, TimeUnit.SECONDS);
+
+                assertEquals(BudgetExhaustedException.Reason.CANCELLED, session.getContext().getStopReason());
+            }
+        }
+
+        @Test
+        @DisplayName("Closing the service should stop the sessions still running")
+        void testClose()
+        {
+            List<Session> sessions = new ArrayList<>();
+            String loop = codeWritten(
+                    ".main",
+                    "LOOP:",
+                    "GOTO LOOP",
+                    ".end-main"
+            );
+
+            try (SessionService service = new SessionService()) {
+                sessions.add(service.open(newProgram(linked()), output -> {}));
+
+                IJVMProgram<IJVMInstruction> looping = new IJVMProgram<>();
+                looping.init(loop);
+                sessions.add(service.open(looping, output -> {}));
+            }
+
+            for (Session session : sessions) {
+                assertTrue(session.isDone());
+                assertEquals(BudgetExhaustedException.Reason.CANCELLED, session.getContext().getStopReason());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Program Cache")
+    class ProgramCacheTest
+    {
+        private final String code = codeWritten(
+                ".main",
+                "BIPUSH 20",
+                "BIPUSH 22",
+                "IADD",
+                ".end-main"
+        );
+
+        @Test
+        @DisplayName("A cached program should be loaded once and shared")
+        void testMemoryHit()
+        {
+            ProgramCache<IJVMLinkedProgram> cache = IJVMProgram.newCache(4, null);
+            IJVMProgram<IJVMInstruction> other = new IJVMProgram<>();
+
+            program.init(code, cache);
+            other.init(code, cache);
+
+            assertSame(program.getLinkedProgram(), other.getLinkedProgram());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            other.execute();
+            program.execute();
+
+            assertEquals(List.of(42), getStackFromMain(program));
+            assertEquals(List.of(42), getStackFromMain(other));
+        }
+
+        @Test
+        @DisplayName("A full cache should evict the least recently used program")
+        void testEviction()
+        {
+            ProgramCache<String> cache = new ProgramCache<>(2);
+            AtomicInteger loads = new AtomicInteger();
+            Function<String, String> loader = source -> {
+                loads.incrementAndGet();
+                return source.toUpperCase();
+            };
+
+            cache.get("a", loader);
+            cache.get("b", loader);
+            cache.get("a", loader);
+            cache.get("c", loader);
+
+            assertEquals(2, cache.size());
+            assertEquals(3, loads.get());
+
+            assertEquals("A", cache.get("a", loader));
+            assertEquals("B", cache.get("b", loader));
+            assertEquals(4, loads.get());
+        }
+
+        @Test
+        @DisplayName("A program should be read back from disk by another cache")
+        void testDiskRoundTrip()
+        {
+            program.init(code, IJVMProgram.newCache(1, cacheDirectory));
+
+            ProgramCache<IJVMLinkedProgram> cache = IJVMProgram.newCache(1, cacheDirectory);
+            IJVMProgram<IJVMInstruction> cached = new IJVMProgram<>();
+            cached.init(code, cache);
+            cached.execute();
+
+            assertTrue(Files.isRegularFile(cacheDirectory.resolve(ProgramCache.key(code) + IJVMImage.EXTENSION)));
+            assertEquals(List.of(42), getStackFromMain(cached));
+        }
+
+        @ParameterizedTest(name = "count={0}")
+        @ValueSource(ints = {-1, Integer.MAX_VALUE})
+        @DisplayName("A corrupt image that passes the header check should be rebuilt from the source")
+        void testCorruptImage(int count) throws IOException
+        {
+            Path file = cacheDirectory.resolve(ProgramCache.key(code) + IJVMImage.EXTENSION);
+            Files.write(file, corruptImage(count));
+
+            IJVMProgram<IJVMInstruction> cached = new IJVMProgram<>();
+            cached.init(code, IJVMProgram.newCache(1, cacheDirectory));
+            cached.execute();
+
+            assertEquals(List.of(42), getStackFromMain(cached));
+            assertEquals(1, IJVMImage.read(file).getMethodCount(), "The file should have been rewritten");
+        }
+
+        @Test
+        @DisplayName("A corrupt cache file should be replaced by loading the source")
+        void testCorruptFile() throws IOException
+        {
+            Path file = cacheDirectory.resolve(ProgramCache.key("a") + ".txt");
+            Files.write(file, new byte[]{1, 2, 3});
+
+            ProgramCache<String> cache = new ProgramCache<>(1, cacheDirectory, new ProgramCache.Codec<>()
+            {
+                @Override
+                public byte[] encode(String program)
+                {
+                    return program.getBytes();
+                }
+
+                @Override
+                public String decode(byte[] bytes)
+                {
+                    if (bytes.length == 0 || bytes[0] != 'A') {
+                        throw new IllegalArgumentException("Not a program");
+                    }
+                    return new String(bytes);
+                }
+            }, ".txt");
+
+            assertEquals("A", cache.get("a", String::toUpperCase));
+            assertArrayEquals("A".getBytes(), Files.readAllBytes(file));
+        }
+
+        @Test
+        @DisplayName("A program that fails to load should not be cached")
+        void testFailedLoad()
+        {
+            ProgramCache<String> cache = new ProgramCache<>(1);
+
+            assertNull(cache.get("a", source -> null));
+            assertEquals(0, cache.size());
+            assertEquals("A", cache.get("a", String::toUpperCase));
+        }
+    }
+
+    private List<Integer> getStackFromMain(IJVMProgram<?> program)
     {
-        return program.getScopes().get(0).getStack();
+        return program.getMainScope().getStack();
     }
 }
\ No newline at end of file
@@ -6,10 +6,15 @@ import org.junit.jupiter.api.Test;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.parser.asm8088.ASM8088ParseResult;
 import xyz.atom7.parser.asm8088.ASM8088ParserHelper;
+import xyz.atom7.parser.asm8088.ASM8088ProgramIR;
+import xyz.atom7.parser.asm8088.ASM8088StreamParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -234,7 +239,75 @@ public class ASM8088ParserErrorTest
     }
 
     /**
-     * Analyze the code and return the parser errors
+     * Test that the streaming parser hands over every line of a valid program, and none after an error
+     */
+    @Test
+    @DisplayName("Streaming parser should hand over the lines until the first error")
+    public void testStreamedLines() {
+        List<String> lines = new ArrayList<>();
+        ASM8088StreamParser.LineListener listener = line -> lines.add(line.getText());
+
+        ASM8088ParseResult result = new ASM8088StreamParser().parse(new StringReader(codeWritten(
+                ".SECT .TEXT",
+                "start:",
+                "    MOV AX, 1",
+                "    INVALID AX",
+                "    MOV BX, 2"
+        )), listener);
+
+        assertFalse(result.getParserErrors().isEmpty(), "Should detect invalid mnemonic");
+        assertEquals(List.of(".SECT.TEXT\n", "start:\n", "MOVAX,1\n"), lines);
+        assertTrue(result.getProgramContext().line().isEmpty(), "Lines should be dropped from the tree");
+    }
+
+    /**
+     * Test that a valid program is lowered to its compact representation, and that the parse tree is only
+     * kept when asked for
+     */
+    @Test
+    @DisplayName("Valid program should be lowered to its compact representation")
+    public void testProgramIR() {
+        String code = codeWritten(
+                "_EXIT = 1",
+                ".SECT .TEXT",
+                "start:",
+                "    mov ax, (value)",
+                "",
+                "    ret",
+                ".SECT .DATA",
+                "value: .BYTE 0x10, 2",
+                "text: .ASCII \"hi\"",
+                ".SECT .BSS",
+                "buffer: .SPACE 4"
+        );
+
+        ASM8088ParseResult result = parserHelper.parseString(code);
+        ASM8088ProgramIR program = result.getProgram();
+
+        assertNull(result.getProgramContext(), "The parse tree should be dropped");
+        assertEquals(10, program.getSize(), "Blank lines should have no entry");
+        assertEquals(ASM8088ProgramIR.Kind.ASSIGNMENT, program.getKinds()[0]);
+        assertArrayEquals(new String[]{"1"}, program.getOperands()[0]);
+        assertEquals(".TEXT", program.getNames()[1]);
+        assertEquals("start", program.getNames()[2]);
+        assertNull(program.getOpCodes()[2]);
+        assertEquals("MOV", program.getOpCodes()[3]);
+        assertArrayEquals(new String[]{"ax", "(value)"}, program.getOperands()[3]);
+        assertEquals(6, program.getLines()[4]);
+        assertTrue(program.isDirective(6));
+        assertArrayEquals(new String[]{"0x10", "2"}, program.getOperands()[6]);
+        assertArrayEquals(new String[]{"\"hi\""}, program.getOperands()[7]);
+        assertArrayEquals(new String[]{"4"}, program.getOperands()[9]);
+
+        assertProgramsEqual(program, new ASM8088StreamParser().parse(new StringReader(code)).getProgram());
+
+        parserHelper.setKeepTree(true);
+        assertNotNull(parserHelper.parseString(code).getProgramContext(), "The parse tree should be kept");
+    }
+
+    /**
+     * Analyze the code and return the parser errors, checking that the streaming parser reports the same
+     * syntax errors
      * 
      * @param code The code to analyze
      * @return The parser errors
@@ -242,6 +315,10 @@ public class ASM8088ParserErrorTest
     private List<ParserError> analyzeCode(String code)
     {
         ASM8088ParseResult result = parserHelper.parseString(code);
+        ASM8088ParseResult streamed = new ASM8088StreamParser().parse(new StringReader(code), line -> {});
+
+        assertEquals(result.getParserErrors().toString(), streamed.getParserErrors().toString(),
+                "The streaming parser should report the same syntax errors");
         return result.getParserErrors();
     }
 
@@ -255,6 +332,24 @@ public class ASM8088ParserErrorTest
     private List<ParserError> analyzeCodeFromPath(String filePath) throws IOException
     {
         ASM8088ParseResult result = parserHelper.parseFile(filePath);
+        ASM8088ParseResult streamed = new ASM8088StreamParser().parseFile(Paths.get(filePath));
+
+        assertEquals(result.getParserErrors().toString(), streamed.getParserErrors().toString(),
+                "The streaming parser should report the same syntax errors");
+
+        if (result.getProgram() != null) {
+            assertProgramsEqual(result.getProgram(), streamed.getProgram());
+        }
+
         return result.getParserErrors();
     }
+
+    private static void assertProgramsEqual(ASM8088ProgramIR expected, ASM8088ProgramIR actual)
+    {
+        assertArrayEquals(expected.getKinds(), actual.getKinds());
+        assertArrayEquals(expected.getNames(), actual.getNames());
+        assertArrayEquals(expected.getOpCodes(), actual.getOpCodes());
+        assertArrayEquals(expected.getOperands(), actual.getOperands());
+        assertArrayEquals(expected.getLines(), actual.getLines());
+    }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import xyz.atom7.api.parser.error.ParserError;
 import xyz.atom7.parser.ijvm.IJVMParseResult;
 import xyz.atom7.parser.ijvm.IJVMParserHelper;
+import xyz.atom7.parser.ijvm.IJVMProgramIR;
 
 import java.io.File;
 import java.io.IOException;
@@ -263,6 +264,82 @@ public class IJVMParserErrorTest
         assertTrue(errors.size() >= 2, "Should detect multiple errors");
     }
 
+    /**
+     * Test that errors are reported once, although invalid input is parsed a second time after SLL fails
+     */
+    @Test
+    @DisplayName("Should report each error once")
+    public void testErrorsReportedOnce() {
+        String invalidCode = codeWritten(
+                ".main",
+                "BIPUSH 1",
+                "INVALID_INSTR", // First error
+                "BIPUSH",        // Second error
+                ".end-main"
+        );
+
+        List<ParserError> errors = analyzeCode(invalidCode);
+        long distinct = errors.stream().map(ParserError::getFormattedMessage).distinct().count();
+
+        assertTrue(errors.size() >= 2, "Should detect multiple errors");
+        assertEquals(errors.size(), distinct, "Should not report an error twice: " + errors);
+    }
+
+    /**
+     * Test that a valid program is lowered to its compact representation, and that the parse tree is only
+     * kept when asked for
+     */
+    @Test
+    @DisplayName("Valid program should be lowered to its compact representation")
+    public void testProgramIR() {
+        String code = codeWritten(
+                ".constant",
+                "OBJREF 0x40",
+                ".end-constant",
+                ".main",
+                ".var",
+                "x",
+                ".end-var",
+                "LDC_W OBJREF",
+                "BIPUSH 2",
+                "INVOKEVIRTUAL twice",
+                "ISTORE x",
+                ".end-main",
+                ".method twice(n)",
+                "loop:",
+                "ILOAD n",
+                "IINC n 1",
+                "IRETURN",
+                ".end-method"
+        );
+
+        IJVMParseResult result = parserHelper.parseString(code);
+        IJVMProgramIR program = result.getProgram();
+
+        assertNull(result.getProgramContext(), "The parse tree should be dropped");
+        assertArrayEquals(new String[]{"OBJREF"}, program.getConstantNames());
+        assertArrayEquals(new String[]{"0x40"}, program.getConstantValues());
+
+        IJVMProgramIR.Method main = program.getMethods()[0];
+        assertEquals("main", main.getName());
+        assertArrayEquals(new String[]{"x"}, main.getLocals());
+        assertArrayEquals(new String[]{"LDC_W", "BIPUSH", "INVOKEVIRTUAL", "ISTORE"}, main.getOpCodes());
+        assertArrayEquals(new String[]{"OBJREF", "2", "twice", "x"}, main.getArguments());
+
+        IJVMProgramIR.Method twice = program.getMethods()[1];
+        assertEquals("twice", twice.getName());
+        assertArrayEquals(new String[]{"n"}, twice.getParameters());
+        assertArrayEquals(new String[]{IJVMProgramIR.LABEL, "ILOAD", "IINC", "IRETURN"}, twice.getOpCodes());
+        assertArrayEquals(new String[]{"loop", "n", "1", null}, twice.getArguments());
+        assertArrayEquals(new String[]{null, null, "n", null}, twice.getSecondArguments());
+        assertArrayEquals(new int[]{14, 15, 16, 17}, twice.getLines());
+
+        parserHelper.setKeepTree(true);
+        assertNotNull(parserHelper.parseString(code).getProgramContext(), "The parse tree should be kept");
+        assertNull(parserHelper.parseString(".main\nBIPUSH\n.end-main\n").getProgram(),
+                "A program with errors should not be lowered");
+    }
+
     /**
      * Test all example files
      */
@@ -0,0 +1,110 @@
+package xyz.atom7.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.atom7.api.parser.ParseBatch;
+import xyz.atom7.api.parser.ParseResult;
+import xyz.atom7.api.parser.ParserHelper;
+import xyz.atom7.parser.asm8088.ASM8088ParserHelper;
+import xyz.atom7.parser.ijvm.IJVMParserHelper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parsing batches of source files in parallel.
+ */
+public class ParseBatchTest
+{
+    /**
+     * Every example file, repeated, with invalid programs mixed in
+     */
+    private static List<Path> batch(String directory, String extension, String invalid)
+            throws IOException
+    {
+        List<Path> examples;
+
+        try (Stream<Path> files = Files.list(Paths.get("src/main/resources/examples", directory))) {
+            examples = files.filter(path -> path.toString().endsWith(extension)).sorted().collect(Collectors.toList());
+        }
+
+        Path invalidFile = Files.writeString(Files.createTempFile("invalid", extension), invalid);
+        invalidFile.toFile().deleteOnExit();
+
+        List<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            paths.addAll(examples);
+            paths.add(invalidFile);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Parses a batch on several threads and checks each result against a parse of its file alone
+     */
+    private static <T extends ParseResult<?>> void assertBatchMatchesSequential(ParserHelper<T> helper,
+                                                                             List<Path> paths) throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        helper.setKeepTree(true);
+
+        try {
+            ParseBatch<T> batch = helper.parseAll(paths, pool);
+
+            assertEquals(paths.size(), batch.getResults().size());
+            assertEquals(8, batch.getFailures());
+            assertTrue(batch.getBytes() > 0);
+            assertTrue(batch.getFilesPerSecond() > 0 && batch.getMegabytesPerSecond() > 0);
+
+            for (int i = 0; i < paths.size(); i++)
+            {
+                T expected = helper.parseFile(paths.get(i).toString());
+                T actual = batch.getResults().get(i);
+
+                assertEquals(expected.getProgramContext().getText(), actual.getProgramContext().getText(),
+                        "Result out of order or different for " + paths.get(i));
+                assertEquals(expected.getParserErrors().toString(), actual.getParserErrors().toString());
+                assertEquals(expected.getSemanticErrors().toString(), actual.getSemanticErrors().toString());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("IJVM files should be parsed in parallel, in order")
+    void testIJVMBatch() throws IOException
+    {
+        List<Path> paths = batch("ijvm", ".jas", ".main\nINVALID_INSTR\n.end-main\n");
+        assertBatchMatchesSequential(new IJVMParserHelper(), paths);
+    }
+
+    @Test
+    @DisplayName("8088 files should be parsed in parallel, in order")
+    void test8088Batch() throws IOException
+    {
+        List<Path> paths = batch("8088", ".asm", "SECTION .TEXT\nMOV AX,\n");
+        assertBatchMatchesSequential(new ASM8088ParserHelper(), paths);
+    }
+
+    @Test
+    @DisplayName("A missing file should fail the batch")
+    void testMissingFile()
+    {
+        List<Path> paths = List.of(Paths.get("src/main/resources/examples/ijvm/missing.jas"));
+        assertThrows(NoSuchFileException.class, () -> new IJVMParserHelper().parseAll(paths));
+    }
+}